@@ -0,0 +1,21 @@
+package com.cqcloud.platform.cluster;
+
+import java.util.function.Consumer;
+
+/**
+ * 集群消息总线（发布/订阅）
+ * @author weimeilayer@gmail.com ✨
+ * @date 💓💕 2024年4月12日 🐬🐇 💓💕
+ */
+public interface ClusterBus {
+
+    /**
+     * 发布消息到频道
+     */
+    void publish(String channel, String message);
+
+    /**
+     * 订阅频道
+     */
+    void subscribe(String channel, Consumer<String> listener);
+}
@@ -0,0 +1,237 @@
+package com.cqcloud.platform.cluster;
+
+import com.cqcloud.platform.config.SseProperties;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 集群在线状态服务
+ * <p>
+ * 记录本节点持有的客户端，并以租约方式登记到共享存储（定期续约，节点宕机后自动过期）。
+ * 查询其他节点的客户端时先查本地近缓存，未命中的批量查询存储；
+ * 客户端上下线时通过发布/订阅通知各节点失效对应的缓存条目。
+ * 未启用集群时只使用本节点的连接信息。
+ * @author weimeilayer@gmail.com ✨
+ * @date 💓💕 2024年4月12日 🐬🐇 💓💕
+ */
+@Slf4j
+public class ClusterPresenceService {
+
+    private final PresenceStore presenceStore;
+    private final ClusterBus clusterBus;
+    private final SseProperties.Cluster properties;
+    private final String nodeId;
+    private final String invalidateChannel;
+
+    // 本节点客户端：clientId -> userId
+    private final Map<String, String> localClients = new ConcurrentHashMap<>();
+
+    // 近缓存：clientId -> 所在节点（null表示不在线）
+    private final Map<String, CachedNode> nearCache = new ConcurrentHashMap<>();
+
+    private ScheduledExecutorService scheduler;
+
+    public ClusterPresenceService(PresenceStore presenceStore, ClusterBus clusterBus, SseProperties sseProperties) {
+        this.presenceStore = presenceStore;
+        this.clusterBus = clusterBus;
+        this.properties = sseProperties.getCluster();
+        String configuredNodeId = properties.getNodeId();
+        this.nodeId = configuredNodeId != null && !configuredNodeId.isBlank()
+                ? configuredNodeId : UUID.randomUUID().toString();
+        this.invalidateChannel = properties.getKeyPrefix() + "presence:invalidate";
+    }
+
+    @PostConstruct
+    public void init() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        clusterBus.subscribe(invalidateChannel, nearCache::remove);
+
+        long refreshMillis = Math.max(1000, properties.getLeaseTtl().toMillis() / 3);
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "sse-presence");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleAtFixedRate(this::refreshLeases, refreshMillis, refreshMillis, TimeUnit.MILLISECONDS);
+        scheduler.scheduleAtFixedRate(this::purgeNearCache, 60, 60, TimeUnit.SECONDS);
+        log.info("集群在线状态已启用: nodeId={}", nodeId);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        if (properties.isEnabled()) {
+            new ArrayList<>(localClients.entrySet()).forEach(entry -> unregister(entry.getKey(), entry.getValue()));
+        }
+    }
+
+    /**
+     * 本节点ID
+     */
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * 客户端在本节点上线
+     */
+    public void onConnect(String clientId, String userId) {
+        localClients.put(clientId, userId);
+        if (!properties.isEnabled()) {
+            return;
+        }
+        try {
+            presenceStore.register(clientId, userId, nodeId, properties.getLeaseTtl());
+            clusterBus.publish(invalidateChannel, clientId);
+        } catch (RuntimeException e) {
+            log.warn("登记在线状态失败: clientId={}", clientId, e);
+        }
+    }
+
+    /**
+     * 客户端从本节点下线
+     */
+    public void onDisconnect(String clientId) {
+        String userId = localClients.remove(clientId);
+        if (userId != null && properties.isEnabled()) {
+            unregister(clientId, userId);
+        }
+    }
+
+    /**
+     * 客户端是否在集群内在线
+     */
+    public boolean isOnline(String clientId) {
+        return localClients.containsKey(clientId) || findNodes(List.of(clientId)).containsKey(clientId);
+    }
+
+    /**
+     * 批量查询客户端所在节点，不在线的客户端不出现在结果中
+     */
+    public Map<String, String> findNodes(Collection<String> clientIds) {
+        Map<String, String> nodes = new HashMap<>();
+        List<String> misses = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        for (String clientId : clientIds) {
+            if (localClients.containsKey(clientId)) {
+                nodes.put(clientId, nodeId);
+                continue;
+            }
+            if (!properties.isEnabled()) {
+                continue;
+            }
+            CachedNode cached = nearCache.get(clientId);
+            if (cached != null && cached.expiresAt() > now) {
+                if (cached.nodeId() != null) {
+                    nodes.put(clientId, cached.nodeId());
+                }
+            } else {
+                misses.add(clientId);
+            }
+        }
+
+        if (!misses.isEmpty()) {
+            Map<String, String> found;
+            try {
+                found = presenceStore.findNodes(misses);
+            } catch (RuntimeException e) {
+                log.warn("查询在线状态失败: clients={}", misses.size(), e);
+                return nodes;
+            }
+            long expiresAt = now + properties.getNearCacheTtl().toMillis();
+            for (String clientId : misses) {
+                String node = found.get(clientId);
+                if (node != null) {
+                    nodes.put(clientId, node);
+                }
+                // 缓存已满时不再缓存，等待过期清理
+                if (nearCache.size() < properties.getNearCacheSize()) {
+                    nearCache.put(clientId, new CachedNode(node, expiresAt));
+                }
+            }
+        }
+        return nodes;
+    }
+
+    /**
+     * 查询在集群内在线的客户端
+     */
+    public Set<String> filterOnline(Collection<String> clientIds) {
+        return new HashSet<>(findNodes(clientIds).keySet());
+    }
+
+    /**
+     * 查询用户在集群内的在线客户端
+     */
+    public Set<String> findUserClients(String userId) {
+        Set<String> clients = new HashSet<>();
+        localClients.forEach((clientId, owner) -> {
+            if (owner.equals(userId)) {
+                clients.add(clientId);
+            }
+        });
+        if (properties.isEnabled()) {
+            try {
+                clients.addAll(presenceStore.findUserClients(userId));
+            } catch (RuntimeException e) {
+                log.warn("查询用户在线客户端失败: userId={}", userId, e);
+            }
+        }
+        return clients;
+    }
+
+    /**
+     * 获取在线状态统计信息
+     */
+    public Map<String, Object> getStatistics() {
+        return Map.of(
+                "enabled", properties.isEnabled(),
+                "nodeId", nodeId,
+                "localClients", localClients.size(),
+                "nearCacheSize", nearCache.size()
+        );
+    }
+
+    private void unregister(String clientId, String userId) {
+        try {
+            presenceStore.unregister(clientId, userId, nodeId);
+            clusterBus.publish(invalidateChannel, clientId);
+        } catch (RuntimeException e) {
+            log.warn("注销在线状态失败: clientId={}", clientId, e);
+        }
+    }
+
+    private void refreshLeases() {
+        try {
+            presenceStore.refresh(nodeId, Map.copyOf(localClients), properties.getLeaseTtl());
+        } catch (RuntimeException e) {
+            log.warn("在线租约续约失败: clients={}", localClients.size(), e);
+        }
+    }
+
+    private void purgeNearCache() {
+        long now = System.currentTimeMillis();
+        nearCache.values().removeIf(cached -> cached.expiresAt() <= now);
+    }
+
+    private record CachedNode(String nodeId, long expiresAt) {
+    }
+}
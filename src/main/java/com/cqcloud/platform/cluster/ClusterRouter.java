@@ -0,0 +1,109 @@
+package com.cqcloud.platform.cluster;
+
+import com.cqcloud.platform.config.SseProperties;
+import com.cqcloud.platform.dto.NotificationMessage;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * 跨节点消息路由
+ * <p>
+ * 根据在线状态把接收者按所在节点分组，只向实际持有接收者的节点发布一次，
+ * 每个节点订阅自己的路由频道，收到后投递给本地连接。
+ * @author weimeilayer@gmail.com ✨
+ * @date 💓💕 2024年4月12日 🐬🐇 💓💕
+ */
+@Slf4j
+public class ClusterRouter {
+
+    private final ClusterBus clusterBus;
+    private final ClusterPresenceService presenceService;
+    private final SseProperties.Cluster properties;
+    private final ObjectMapper objectMapper;
+
+    private volatile Consumer<RoutedEvent> localDelivery = event -> { };
+
+    public ClusterRouter(ClusterBus clusterBus, ClusterPresenceService presenceService,
+                         SseProperties sseProperties, ObjectMapper objectMapper) {
+        this.clusterBus = clusterBus;
+        this.presenceService = presenceService;
+        this.properties = sseProperties.getCluster();
+        this.objectMapper = objectMapper;
+    }
+
+    @PostConstruct
+    public void init() {
+        if (properties.isEnabled()) {
+            clusterBus.subscribe(channel(presenceService.getNodeId()), this::onMessage);
+        }
+    }
+
+    /**
+     * 是否启用跨节点路由
+     */
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    /**
+     * 设置本地投递回调
+     */
+    public void setLocalDelivery(Consumer<RoutedEvent> localDelivery) {
+        this.localDelivery = localDelivery;
+    }
+
+    /**
+     * 将事件路由到持有接收者的其他节点
+     * @param clientIds 不在本节点的接收者
+     * @return 发布到的节点数
+     */
+    public int route(Collection<String> clientIds, String event, String id, NotificationMessage message) {
+        if (!properties.isEnabled() || clientIds.isEmpty()) {
+            return 0;
+        }
+
+        Map<String, List<String>> byNode = new HashMap<>();
+        presenceService.findNodes(clientIds).forEach((clientId, node) -> {
+            if (!node.equals(presenceService.getNodeId())) {
+                byNode.computeIfAbsent(node, k -> new ArrayList<>()).add(clientId);
+            }
+        });
+
+        byNode.forEach((node, recipients) -> {
+            try {
+                String payload = objectMapper.writeValueAsString(new RoutedEvent(event, id, message, recipients));
+                clusterBus.publish(channel(node), payload);
+            } catch (JsonProcessingException | RuntimeException e) {
+                log.warn("跨节点路由失败: node={}, recipients={}", node, recipients.size(), e);
+            }
+        });
+        return byNode.size();
+    }
+
+    private void onMessage(String payload) {
+        try {
+            localDelivery.accept(objectMapper.readValue(payload, RoutedEvent.class));
+        } catch (JsonProcessingException e) {
+            log.warn("无法解析跨节点消息: {}", e.getMessage());
+        }
+    }
+
+    private String channel(String node) {
+        return properties.getKeyPrefix() + "route:" + node;
+    }
+
+    /**
+     * 跨节点路由的事件
+     */
+    public record RoutedEvent(String event, String id, NotificationMessage message, List<String> clientIds) {
+    }
+}
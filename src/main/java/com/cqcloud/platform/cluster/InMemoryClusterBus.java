@@ -0,0 +1,40 @@
+package com.cqcloud.platform.cluster;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * 内存消息总线，用于单节点部署和测试；同一实例可被多个节点共享以模拟集群
+ * @author weimeilayer@gmail.com ✨
+ * @date 💓💕 2024年4月12日 🐬🐇 💓💕
+ */
+@Slf4j
+public class InMemoryClusterBus implements ClusterBus {
+
+    private final Map<String, List<Consumer<String>>> listeners = new ConcurrentHashMap<>();
+
+    @Override
+    public void publish(String channel, String message) {
+        List<Consumer<String>> subscribers = listeners.get(channel);
+        if (subscribers == null) {
+            return;
+        }
+        for (Consumer<String> listener : subscribers) {
+            try {
+                listener.accept(message);
+            } catch (RuntimeException e) {
+                log.warn("集群消息处理失败: channel={}", channel, e);
+            }
+        }
+    }
+
+    @Override
+    public void subscribe(String channel, Consumer<String> listener) {
+        listeners.computeIfAbsent(channel, k -> new CopyOnWriteArrayList<>()).add(listener);
+    }
+}
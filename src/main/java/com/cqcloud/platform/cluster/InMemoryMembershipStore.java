@@ -0,0 +1,180 @@
+package com.cqcloud.platform.cluster;
+
+import com.cqcloud.platform.dto.GroupInfo;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 内存群组成员存储，用于单节点部署和测试
+ * @author weimeilayer@gmail.com ✨
+ * @date 💓💕 2024年4月12日 🐬🐇 💓💕
+ */
+public class InMemoryMembershipStore implements MembershipStore {
+
+    // 群组成员：groupId -> Set<clientId>
+    private final Map<String, Set<String>> groupMembers = new ConcurrentHashMap<>();
+
+    // 客户端所属群组：clientId -> Set<groupId>
+    private final Map<String, Set<String>> clientGroups = new ConcurrentHashMap<>();
+
+    // 群组信息：groupId -> GroupInfo
+    private final Map<String, GroupInfo> groupInfos = new ConcurrentHashMap<>();
+
+    @Override
+    public synchronized boolean addMember(String groupId, String clientId) {
+        if (!groupMembers.computeIfAbsent(groupId, k -> ConcurrentHashMap.newKeySet()).add(clientId)) {
+            return false;
+        }
+        clientGroups.computeIfAbsent(clientId, k -> ConcurrentHashMap.newKeySet()).add(groupId);
+        return true;
+    }
+
+    @Override
+    public synchronized long removeMember(String groupId, String clientId) {
+        Set<String> members = groupMembers.get(groupId);
+        if (members == null || !members.remove(clientId)) {
+            return -1;
+        }
+        removeClientGroup(clientId, groupId);
+        return members.size();
+    }
+
+    @Override
+    public synchronized Set<String> removeClients(Collection<String> clientIds) {
+        Set<String> affected = new HashSet<>();
+        for (String clientId : clientIds) {
+            Set<String> groups = clientGroups.remove(clientId);
+            if (groups == null) {
+                continue;
+            }
+            for (String groupId : groups) {
+                Set<String> members = groupMembers.get(groupId);
+                if (members != null && members.remove(clientId)) {
+                    affected.add(groupId);
+                }
+            }
+        }
+        return affected;
+    }
+
+    @Override
+    public Set<String> getMembers(String groupId) {
+        Set<String> members = groupMembers.get(groupId);
+        return members != null ? new HashSet<>(members) : Collections.emptySet();
+    }
+
+    /**
+     * 按成员ID有序翻页，游标为上一页最后一个成员；每页遍历一次成员集合，只保留本页大小的堆
+     */
+    @Override
+    public MemberPage scanMembers(String groupId, String cursor, int count) {
+        Set<String> members = groupMembers.get(groupId);
+        if (members == null) {
+            return new MemberPage(List.of(), null);
+        }
+
+        // 大顶堆保留游标之后最小的count+1个成员，多出的一个用于判断是否还有下一页
+        PriorityQueue<String> page = new PriorityQueue<>(count + 2, Comparator.reverseOrder());
+        for (String clientId : members) {
+            if (cursor != null && clientId.compareTo(cursor) <= 0) {
+                continue;
+            }
+            if (page.size() <= count) {
+                page.offer(clientId);
+            } else if (clientId.compareTo(page.peek()) < 0) {
+                page.poll();
+                page.offer(clientId);
+            }
+        }
+
+        boolean hasMore = page.size() > count;
+        if (hasMore) {
+            page.poll();
+        }
+        List<String> result = new ArrayList<>(page);
+        Collections.sort(result);
+        return new MemberPage(result, hasMore ? result.get(result.size() - 1) : null);
+    }
+
+    @Override
+    public long countMembers(String groupId) {
+        Set<String> members = groupMembers.get(groupId);
+        return members != null ? members.size() : 0;
+    }
+
+    @Override
+    public Map<String, Long> countMembers(Collection<String> groupIds) {
+        Map<String, Long> counts = new HashMap<>();
+        groupIds.forEach(groupId -> counts.put(groupId, countMembers(groupId)));
+        return counts;
+    }
+
+    @Override
+    public boolean isMember(String groupId, String clientId) {
+        Set<String> members = groupMembers.get(groupId);
+        return members != null && members.contains(clientId);
+    }
+
+    @Override
+    public Set<String> getClientGroups(String clientId) {
+        Set<String> groups = clientGroups.get(clientId);
+        return groups != null ? new HashSet<>(groups) : Collections.emptySet();
+    }
+
+    @Override
+    public synchronized void saveGroup(GroupInfo groupInfo) {
+        groupInfos.put(groupInfo.getGroupId(), groupInfo);
+        groupMembers.computeIfAbsent(groupInfo.getGroupId(), k -> ConcurrentHashMap.newKeySet());
+    }
+
+    @Override
+    public GroupInfo getGroup(String groupId) {
+        return groupInfos.get(groupId);
+    }
+
+    @Override
+    public synchronized boolean addAdministrator(String groupId, String userId) {
+        GroupInfo groupInfo = groupInfos.get(groupId);
+        if (groupInfo == null) {
+            return false;
+        }
+        groupInfo.getAdministrators().add(userId);
+        return true;
+    }
+
+    @Override
+    public boolean groupExists(String groupId) {
+        return groupMembers.containsKey(groupId);
+    }
+
+    @Override
+    public Set<String> getAllGroups() {
+        return new HashSet<>(groupMembers.keySet());
+    }
+
+    @Override
+    public synchronized void deleteGroup(String groupId) {
+        Set<String> members = groupMembers.remove(groupId);
+        if (members != null) {
+            members.forEach(clientId -> removeClientGroup(clientId, groupId));
+        }
+        groupInfos.remove(groupId);
+    }
+
+    private void removeClientGroup(String clientId, String groupId) {
+        clientGroups.computeIfPresent(clientId, (key, groups) -> {
+            groups.remove(groupId);
+            return groups.isEmpty() ? null : groups;
+        });
+    }
+}
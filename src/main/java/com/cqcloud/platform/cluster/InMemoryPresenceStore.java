@@ -0,0 +1,71 @@
+package com.cqcloud.platform.cluster;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * 内存在线状态存储，用于单节点部署和测试
+ * @author weimeilayer@gmail.com ✨
+ * @date 💓💕 2024年4月12日 🐬🐇 💓💕
+ */
+public class InMemoryPresenceStore implements PresenceStore {
+
+    private final Map<String, Lease> leases = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> userClients = new ConcurrentHashMap<>();
+
+    @Override
+    public void register(String clientId, String userId, String nodeId, Duration ttl) {
+        leases.put(clientId, new Lease(nodeId, userId, System.currentTimeMillis() + ttl.toMillis()));
+        if (userId != null) {
+            userClients.computeIfAbsent(userId, k -> ConcurrentHashMap.newKeySet()).add(clientId);
+        }
+    }
+
+    @Override
+    public void refresh(String nodeId, Map<String, String> clientUsers, Duration ttl) {
+        long expiresAt = System.currentTimeMillis() + ttl.toMillis();
+        clientUsers.forEach((clientId, userId) -> leases.put(clientId, new Lease(nodeId, userId, expiresAt)));
+    }
+
+    @Override
+    public void unregister(String clientId, String userId, String nodeId) {
+        Lease removed = leases.computeIfPresent(clientId, (key, lease) ->
+                lease.nodeId().equals(nodeId) ? null : lease);
+        if (removed == null && userId != null) {
+            userClients.computeIfPresent(userId, (key, clients) -> {
+                clients.remove(clientId);
+                return clients.isEmpty() ? null : clients;
+            });
+        }
+    }
+
+    @Override
+    public Map<String, String> findNodes(Collection<String> clientIds) {
+        long now = System.currentTimeMillis();
+        Map<String, String> nodes = new HashMap<>();
+        for (String clientId : clientIds) {
+            Lease lease = leases.get(clientId);
+            if (lease != null && lease.expiresAt() > now) {
+                nodes.put(clientId, lease.nodeId());
+            }
+        }
+        return nodes;
+    }
+
+    @Override
+    public Set<String> findUserClients(String userId) {
+        Set<String> clients = userClients.get(userId);
+        if (clients == null) {
+            return Set.of();
+        }
+        return findNodes(clients).keySet().stream().collect(Collectors.toSet());
+    }
+
+    private record Lease(String nodeId, String userId, long expiresAt) {
+    }
+}
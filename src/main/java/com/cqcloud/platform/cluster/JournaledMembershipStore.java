@@ -0,0 +1,123 @@
+package com.cqcloud.platform.cluster;
+
+import com.cqcloud.platform.dto.GroupInfo;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 记录变更日志的群组成员存储
+ * <p>
+ * 读操作直接委托；修改在同一把锁内先修改存储再追加日志，日志顺序与修改顺序一致。
+ * 没有实际改变状态的修改（重复加入、移除非成员）不记录。
+ * @author weimeilayer@gmail.com ✨
+ * @date 💓💕 2024年4月12日 🐬🐇 💓💕
+ */
+public class JournaledMembershipStore implements MembershipStore {
+
+    private final MembershipStore delegate;
+    private final MembershipJournal journal;
+
+    public JournaledMembershipStore(MembershipStore delegate, MembershipJournal journal) {
+        this.delegate = delegate;
+        this.journal = journal;
+    }
+
+    public MembershipJournal getJournal() {
+        return journal;
+    }
+
+    @Override
+    public synchronized boolean addMember(String groupId, String clientId) {
+        boolean added = delegate.addMember(groupId, clientId);
+        if (added) {
+            journal.addMember(groupId, clientId);
+        }
+        return added;
+    }
+
+    @Override
+    public synchronized long removeMember(String groupId, String clientId) {
+        long remaining = delegate.removeMember(groupId, clientId);
+        if (remaining >= 0) {
+            journal.removeMember(groupId, clientId);
+        }
+        return remaining;
+    }
+
+    @Override
+    public synchronized Set<String> removeClients(Collection<String> clientIds) {
+        Set<String> affected = delegate.removeClients(clientIds);
+        if (!affected.isEmpty()) {
+            journal.removeClients(clientIds);
+        }
+        return affected;
+    }
+
+    @Override
+    public Set<String> getMembers(String groupId) {
+        return delegate.getMembers(groupId);
+    }
+
+    @Override
+    public MemberPage scanMembers(String groupId, String cursor, int count) {
+        return delegate.scanMembers(groupId, cursor, count);
+    }
+
+    @Override
+    public long countMembers(String groupId) {
+        return delegate.countMembers(groupId);
+    }
+
+    @Override
+    public Map<String, Long> countMembers(Collection<String> groupIds) {
+        return delegate.countMembers(groupIds);
+    }
+
+    @Override
+    public boolean isMember(String groupId, String clientId) {
+        return delegate.isMember(groupId, clientId);
+    }
+
+    @Override
+    public Set<String> getClientGroups(String clientId) {
+        return delegate.getClientGroups(clientId);
+    }
+
+    @Override
+    public synchronized void saveGroup(GroupInfo groupInfo) {
+        delegate.saveGroup(groupInfo);
+        journal.saveGroup(groupInfo);
+    }
+
+    @Override
+    public GroupInfo getGroup(String groupId) {
+        return delegate.getGroup(groupId);
+    }
+
+    @Override
+    public synchronized boolean addAdministrator(String groupId, String userId) {
+        boolean added = delegate.addAdministrator(groupId, userId);
+        if (added) {
+            journal.addAdministrator(groupId, userId);
+        }
+        return added;
+    }
+
+    @Override
+    public boolean groupExists(String groupId) {
+        return delegate.groupExists(groupId);
+    }
+
+    @Override
+    public Set<String> getAllGroups() {
+        return delegate.getAllGroups();
+    }
+
+    @Override
+    public synchronized void deleteGroup(String groupId) {
+        delegate.deleteGroup(groupId);
+        journal.deleteGroup(groupId);
+    }
+}
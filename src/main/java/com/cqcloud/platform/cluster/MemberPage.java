@@ -0,0 +1,13 @@
+package com.cqcloud.platform.cluster;
+
+import java.util.List;
+
+/**
+ * 群组成员分页结果
+ * @param members    本页成员
+ * @param nextCursor 下一页游标，null表示已到末尾
+ * @author weimeilayer@gmail.com ✨
+ * @date 💓💕 2024年4月12日 🐬🐇 💓💕
+ */
+public record MemberPage(List<String> members, String nextCursor) {
+}
@@ -0,0 +1,231 @@
+package com.cqcloud.platform.cluster;
+
+import com.cqcloud.platform.dto.GroupInfo;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 群组成员关系变更日志
+ * <p>
+ * 每次修改追加一条二进制记录并写入操作系统缓冲，进程崩溃不丢失已返回的修改。
+ * 快照前轮换：当前日志并入 .prev 后重新开始，快照写完再删除 .prev；
+ * 重放时依次应用 .prev 和当前日志，记录都是幂等的覆盖操作，与快照重叠的部分重复应用不影响结果。
+ * 日志关闭时（恢复前、停机后）追加的记录被丢弃。
+ * @author weimeilayer@gmail.com ✨
+ * @date 💓💕 2024年4月12日 🐬🐇 💓💕
+ */
+@Slf4j
+public class MembershipJournal {
+
+    private static final byte ADD_MEMBER = 1;
+    private static final byte REMOVE_MEMBER = 2;
+    private static final byte REMOVE_CLIENTS = 3;
+    private static final byte SAVE_GROUP = 4;
+    private static final byte ADD_ADMINISTRATOR = 5;
+    private static final byte DELETE_GROUP = 6;
+
+    private final Path file;
+    private final Path previous;
+    private final ObjectMapper objectMapper;
+
+    private final LongAdder appended = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+
+    private DataOutputStream out;
+
+    public MembershipJournal(Path file, ObjectMapper objectMapper) {
+        this.file = file;
+        this.previous = file.resolveSibling(file.getFileName() + ".prev");
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * 开始追加记录
+     */
+    public synchronized void open() throws IOException {
+        if (out != null) {
+            return;
+        }
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        out = new DataOutputStream(new BufferedOutputStream(
+                Files.newOutputStream(file, StandardOpenOption.CREATE, StandardOpenOption.APPEND)));
+    }
+
+    /**
+     * 停止追加记录，之后的修改不再记录
+     */
+    public synchronized void close() {
+        if (out == null) {
+            return;
+        }
+        try {
+            out.close();
+        } catch (IOException e) {
+            log.warn("关闭群组变更日志失败: file={}", file, e);
+        }
+        out = null;
+    }
+
+    /**
+     * 快照前轮换：当前日志并入 .prev，按需重新开始追加
+     * <p>
+     * 上一次快照失败时 .prev 仍在，当前日志追加在其后，不丢失记录。
+     * @param reopen 是否重新开始追加
+     */
+    public synchronized void rotate(boolean reopen) throws IOException {
+        close();
+        if (Files.exists(file)) {
+            if (Files.exists(previous)) {
+                try (OutputStream prevOut = Files.newOutputStream(previous, StandardOpenOption.APPEND)) {
+                    Files.copy(file, prevOut);
+                }
+                Files.delete(file);
+            } else {
+                Files.move(file, previous);
+            }
+        }
+        if (reopen) {
+            open();
+        }
+    }
+
+    /**
+     * 快照写完后删除已包含在快照中的日志
+     */
+    public synchronized void discardPrevious() throws IOException {
+        Files.deleteIfExists(previous);
+    }
+
+    /**
+     * 依次重放 .prev 和当前日志，末尾写了一半的记录忽略
+     * @return 重放的记录数
+     */
+    public synchronized int replay(MembershipStore store) throws IOException {
+        int replayed = 0;
+        for (Path path : List.of(previous, file)) {
+            if (Files.exists(path)) {
+                replayed += replay(path, store);
+            }
+        }
+        return replayed;
+    }
+
+    public void addMember(String groupId, String clientId) {
+        append(ADD_MEMBER, out -> {
+            out.writeUTF(groupId);
+            out.writeUTF(clientId);
+        });
+    }
+
+    public void removeMember(String groupId, String clientId) {
+        append(REMOVE_MEMBER, out -> {
+            out.writeUTF(groupId);
+            out.writeUTF(clientId);
+        });
+    }
+
+    public void removeClients(Collection<String> clientIds) {
+        append(REMOVE_CLIENTS, out -> {
+            out.writeInt(clientIds.size());
+            for (String clientId : clientIds) {
+                out.writeUTF(clientId);
+            }
+        });
+    }
+
+    public void saveGroup(GroupInfo groupInfo) {
+        append(SAVE_GROUP, out -> MembershipSnapshot.writeGroup(out, groupInfo, objectMapper));
+    }
+
+    public void addAdministrator(String groupId, String userId) {
+        append(ADD_ADMINISTRATOR, out -> {
+            out.writeUTF(groupId);
+            out.writeUTF(userId);
+        });
+    }
+
+    public void deleteGroup(String groupId) {
+        append(DELETE_GROUP, out -> out.writeUTF(groupId));
+    }
+
+    /**
+     * 追加的记录数和写入失败数
+     */
+    public long getAppended() {
+        return appended.sum();
+    }
+
+    public long getFailed() {
+        return failed.sum();
+    }
+
+    private synchronized void append(byte op, RecordWriter writer) {
+        if (out == null) {
+            return;
+        }
+        try {
+            out.writeByte(op);
+            writer.write(out);
+            out.flush();
+            appended.increment();
+        } catch (IOException e) {
+            // 停止记录，下次快照轮换时重新开始
+            failed.increment();
+            log.warn("写入群组变更日志失败，停止记录直到下次快照: file={}", file, e);
+            close();
+        }
+    }
+
+    private int replay(Path path, MembershipStore store) throws IOException {
+        int replayed = 0;
+        try (InputStream fileIn = Files.newInputStream(path);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(fileIn, 64 * 1024))) {
+            while (true) {
+                int op = in.read();
+                if (op < 0) {
+                    break;
+                }
+                switch (op) {
+                    case ADD_MEMBER -> store.addMember(in.readUTF(), in.readUTF());
+                    case REMOVE_MEMBER -> store.removeMember(in.readUTF(), in.readUTF());
+                    case REMOVE_CLIENTS -> {
+                        List<String> clientIds = new ArrayList<>();
+                        for (int count = in.readInt(); count > 0; count--) {
+                            clientIds.add(in.readUTF());
+                        }
+                        store.removeClients(clientIds);
+                    }
+                    case SAVE_GROUP -> store.saveGroup(MembershipSnapshot.readGroup(in, objectMapper));
+                    case ADD_ADMINISTRATOR -> store.addAdministrator(in.readUTF(), in.readUTF());
+                    case DELETE_GROUP -> store.deleteGroup(in.readUTF());
+                    default -> throw new IOException("无效的变更记录类型: " + op + ", file=" + path);
+                }
+                replayed++;
+            }
+        } catch (EOFException e) {
+            log.warn("群组变更日志末尾记录不完整，已忽略: file={}, replayed={}", path, replayed);
+        }
+        return replayed;
+    }
+
+    @FunctionalInterface
+    private interface RecordWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+}
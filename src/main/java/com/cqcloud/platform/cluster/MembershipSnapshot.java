@@ -0,0 +1,205 @@
+package com.cqcloud.platform.cluster;
+
+import com.cqcloud.platform.dto.GroupInfo;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 群组成员关系快照文件
+ * <p>
+ * 二进制格式：文件头、客户端ID字典、各群组的群组信息和成员（字典下标）。
+ * 同一客户端加入多个群组时ID只写一次。先写临时文件并刷盘，再原子替换正式文件，
+ * 写出中途停止不会损坏上一份快照。
+ * @author weimeilayer@gmail.com ✨
+ * @date 💓💕 2024年4月12日 🐬🐇 💓💕
+ */
+public final class MembershipSnapshot {
+
+    private static final int MAGIC = 0x53534547;
+    private static final int VERSION = 1;
+
+    private static final TypeReference<Map<String, Object>> METADATA_TYPE = new TypeReference<>() {
+    };
+
+    private MembershipSnapshot() {
+    }
+
+    /**
+     * 把存储中的全部群组写入快照文件
+     * @return 写入的群组数
+     */
+    public static int write(MembershipStore store, Path file, ObjectMapper objectMapper) throws IOException {
+        // 先收集成员并建立客户端字典，字典写在群组之前
+        Map<String, Integer> clientIndex = new LinkedHashMap<>();
+        List<GroupInfo> groups = new ArrayList<>();
+        List<int[]> members = new ArrayList<>();
+        for (String groupId : store.getAllGroups()) {
+            GroupInfo groupInfo = store.getGroup(groupId);
+            if (groupInfo == null) {
+                continue;
+            }
+            Set<String> clientIds = store.getMembers(groupId);
+            int[] indexes = new int[clientIds.size()];
+            int i = 0;
+            for (String clientId : clientIds) {
+                indexes[i++] = clientIndex.computeIfAbsent(clientId, key -> clientIndex.size());
+            }
+            groups.add(groupInfo);
+            members.add(indexes);
+        }
+
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileOutputStream fileOut = new FileOutputStream(tmp.toFile());
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut, 64 * 1024))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(System.currentTimeMillis());
+
+            out.writeInt(clientIndex.size());
+            for (String clientId : clientIndex.keySet()) {
+                out.writeUTF(clientId);
+            }
+
+            out.writeInt(groups.size());
+            for (int i = 0; i < groups.size(); i++) {
+                writeGroup(out, groups.get(i), objectMapper);
+                int[] indexes = members.get(i);
+                out.writeInt(indexes.length);
+                for (int index : indexes) {
+                    out.writeInt(index);
+                }
+            }
+            out.flush();
+            fileOut.getFD().sync();
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return groups.size();
+    }
+
+    /**
+     * 把快照文件中的群组批量载入存储
+     * @return 快照中的全部客户端ID，文件不存在时为空
+     */
+    public static Set<String> read(Path file, MembershipStore store, ObjectMapper objectMapper) throws IOException {
+        if (!Files.exists(file)) {
+            return new HashSet<>();
+        }
+        try (InputStream fileIn = Files.newInputStream(file);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(fileIn, 64 * 1024))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("不是群组快照文件: " + file);
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                throw new IOException("不支持的快照版本: " + version);
+            }
+            in.readLong();
+
+            String[] clientIds = new String[in.readInt()];
+            for (int i = 0; i < clientIds.length; i++) {
+                clientIds[i] = in.readUTF();
+            }
+
+            int groupCount = in.readInt();
+            for (int i = 0; i < groupCount; i++) {
+                GroupInfo groupInfo = readGroup(in, objectMapper);
+                store.saveGroup(groupInfo);
+                int memberCount = in.readInt();
+                for (int j = 0; j < memberCount; j++) {
+                    store.addMember(groupInfo.getGroupId(), clientIds[in.readInt()]);
+                }
+            }
+            return new HashSet<>(List.of(clientIds));
+        }
+    }
+
+    static void writeGroup(DataOutput out, GroupInfo groupInfo, ObjectMapper objectMapper) throws IOException {
+        out.writeUTF(groupInfo.getGroupId());
+        writeNullable(out, groupInfo.getGroupName());
+        writeNullable(out, groupInfo.getCreator());
+        out.writeLong(groupInfo.getCreateTime() != null ? groupInfo.getCreateTime().getTime() : -1);
+        out.writeInt(groupInfo.getMaxMembers() != null ? groupInfo.getMaxMembers() : -1);
+
+        Map<String, Object> metadata = groupInfo.getMetadata();
+        if (metadata == null) {
+            out.writeInt(-1);
+        } else {
+            byte[] json = objectMapper.writeValueAsBytes(metadata);
+            out.writeInt(json.length);
+            out.write(json);
+        }
+
+        Set<String> administrators = groupInfo.getAdministrators();
+        out.writeInt(administrators != null ? administrators.size() : 0);
+        if (administrators != null) {
+            for (String administrator : administrators) {
+                out.writeUTF(administrator);
+            }
+        }
+    }
+
+    static GroupInfo readGroup(DataInput in, ObjectMapper objectMapper) throws IOException {
+        String groupId = in.readUTF();
+        String groupName = readNullable(in);
+        String creator = readNullable(in);
+        long createTime = in.readLong();
+        int maxMembers = in.readInt();
+
+        Map<String, Object> metadata = null;
+        int metadataLength = in.readInt();
+        if (metadataLength >= 0) {
+            byte[] json = new byte[metadataLength];
+            in.readFully(json);
+            metadata = new HashMap<>(objectMapper.readValue(json, METADATA_TYPE));
+        }
+
+        Set<String> administrators = new HashSet<>();
+        int adminCount = in.readInt();
+        for (int i = 0; i < adminCount; i++) {
+            administrators.add(in.readUTF());
+        }
+
+        return GroupInfo.builder()
+                .groupId(groupId)
+                .groupName(groupName)
+                .creator(creator)
+                .createTime(createTime >= 0 ? new Date(createTime) : null)
+                .maxMembers(maxMembers >= 0 ? maxMembers : null)
+                .metadata(metadata)
+                .administrators(administrators)
+                .build();
+    }
+
+    static void writeNullable(DataOutput out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    static String readNullable(DataInput in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
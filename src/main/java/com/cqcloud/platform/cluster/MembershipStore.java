@@ -0,0 +1,98 @@
+package com.cqcloud.platform.cluster;
+
+import com.cqcloud.platform.dto.GroupInfo;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 群组成员存储
+ * @author weimeilayer@gmail.com ✨
+ * @date 💓💕 2024年4月12日 🐬🐇 💓💕
+ */
+public interface MembershipStore {
+
+    /**
+     * 添加成员
+     * @return false表示已是成员
+     */
+    boolean addMember(String groupId, String clientId);
+
+    /**
+     * 移除成员
+     * @return 移除后的成员数，-1表示不是成员
+     */
+    long removeMember(String groupId, String clientId);
+
+    /**
+     * 批量移除客户端的全部成员关系
+     * @return 受影响的群组
+     */
+    Set<String> removeClients(Collection<String> clientIds);
+
+    /**
+     * 获取群组成员
+     */
+    Set<String> getMembers(String groupId);
+
+    /**
+     * 分页遍历群组成员
+     * <p>
+     * 游标由实现定义，调用方只需原样传回；遍历期间一直存在的成员至少返回一次。
+     * @param cursor 上一页返回的游标，首页传null
+     * @param count  每页数量（Redis实现为建议值）
+     * @throws IllegalArgumentException 游标无效
+     */
+    MemberPage scanMembers(String groupId, String cursor, int count);
+
+    /**
+     * 获取群组成员数量
+     */
+    long countMembers(String groupId);
+
+    /**
+     * 批量获取群组成员数量
+     */
+    Map<String, Long> countMembers(Collection<String> groupIds);
+
+    /**
+     * 是否是群组成员
+     */
+    boolean isMember(String groupId, String clientId);
+
+    /**
+     * 获取客户端加入的群组
+     */
+    Set<String> getClientGroups(String clientId);
+
+    /**
+     * 保存群组信息
+     */
+    void saveGroup(GroupInfo groupInfo);
+
+    /**
+     * 获取群组信息
+     */
+    GroupInfo getGroup(String groupId);
+
+    /**
+     * 添加管理员
+     */
+    boolean addAdministrator(String groupId, String userId);
+
+    /**
+     * 群组是否存在
+     */
+    boolean groupExists(String groupId);
+
+    /**
+     * 获取所有群组
+     */
+    Set<String> getAllGroups();
+
+    /**
+     * 删除群组及其成员关系
+     */
+    void deleteGroup(String groupId);
+}
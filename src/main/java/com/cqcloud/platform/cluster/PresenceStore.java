@@ -0,0 +1,39 @@
+package com.cqcloud.platform.cluster;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 集群在线状态存储：记录客户端所在节点，以租约（TTL）方式维持
+ * @author weimeilayer@gmail.com ✨
+ * @date 💓💕 2024年4月12日 🐬🐇 💓💕
+ */
+public interface PresenceStore {
+
+    /**
+     * 登记客户端所在节点
+     */
+    void register(String clientId, String userId, String nodeId, Duration ttl);
+
+    /**
+     * 续约本节点的客户端
+     */
+    void refresh(String nodeId, Map<String, String> clientUsers, Duration ttl);
+
+    /**
+     * 注销客户端（仅当其仍登记在该节点时）
+     */
+    void unregister(String clientId, String userId, String nodeId);
+
+    /**
+     * 批量查询客户端所在节点，不在线的客户端不出现在结果中
+     */
+    Map<String, String> findNodes(Collection<String> clientIds);
+
+    /**
+     * 查询用户在集群内的在线客户端
+     */
+    Set<String> findUserClients(String userId);
+}
@@ -0,0 +1,280 @@
+package com.cqcloud.platform.cluster;
+
+import com.cqcloud.platform.dto.GroupInfo;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * 基于Redis的群组成员存储
+ * <p>
+ * sse:group:{groupId}:members、sse:client:{clientId}:groups 为集合，
+ * sse:group:{groupId}:info 为哈希，sse:group:{groupId}:admins 为集合，sse:groups 登记所有群组。
+ * 涉及多个键的修改使用管道一次往返完成。
+ * @author weimeilayer@gmail.com ✨
+ * @date 💓💕 2024年4月12日 🐬🐇 💓💕
+ */
+public class RedisMembershipStore implements MembershipStore {
+
+    private static final TypeReference<Map<String, Object>> METADATA_TYPE = new TypeReference<>() {
+    };
+
+    private final StringRedisTemplate redisTemplate;
+    private final ObjectMapper objectMapper;
+    private final String keyPrefix;
+
+    public RedisMembershipStore(StringRedisTemplate redisTemplate, ObjectMapper objectMapper, String keyPrefix) {
+        this.redisTemplate = redisTemplate;
+        this.objectMapper = objectMapper;
+        this.keyPrefix = keyPrefix;
+    }
+
+    @Override
+    public boolean addMember(String groupId, String clientId) {
+        List<Object> results = pipeline(redis -> {
+            redis.sAdd(membersKey(groupId), clientId);
+            redis.sAdd(clientGroupsKey(clientId), groupId);
+        });
+        return asLong(results.get(0)) > 0;
+    }
+
+    @Override
+    public long removeMember(String groupId, String clientId) {
+        List<Object> results = pipeline(redis -> {
+            redis.sRem(membersKey(groupId), clientId);
+            redis.sRem(clientGroupsKey(clientId), groupId);
+            redis.sCard(membersKey(groupId));
+        });
+        return asLong(results.get(0)) > 0 ? asLong(results.get(2)) : -1;
+    }
+
+    @Override
+    public Set<String> removeClients(Collection<String> clientIds) {
+        if (clientIds.isEmpty()) {
+            return Set.of();
+        }
+        List<String> ids = new ArrayList<>(clientIds);
+        List<Object> groupLists = pipeline(redis -> ids.forEach(clientId -> redis.sMembers(clientGroupsKey(clientId))));
+
+        Set<String> affected = new HashSet<>();
+        pipeline(redis -> {
+            for (int i = 0; i < ids.size(); i++) {
+                String clientId = ids.get(i);
+                for (String groupId : asStringSet(groupLists.get(i))) {
+                    redis.sRem(membersKey(groupId), clientId);
+                    affected.add(groupId);
+                }
+                redis.del(clientGroupsKey(clientId));
+            }
+        });
+        return affected;
+    }
+
+    @Override
+    public Set<String> getMembers(String groupId) {
+        Set<String> members = redisTemplate.opsForSet().members(membersKey(groupId));
+        return members != null ? members : Set.of();
+    }
+
+    /**
+     * 单步SSCAN，游标为Redis返回的数字游标
+     */
+    @Override
+    public MemberPage scanMembers(String groupId, String cursor, int count) {
+        String position = cursor != null ? cursor : "0";
+        if (!position.chars().allMatch(Character::isDigit) || position.isEmpty()) {
+            throw new IllegalArgumentException("无效的游标: " + cursor);
+        }
+        RedisSerializer<String> serializer = redisTemplate.getStringSerializer();
+        Object reply = redisTemplate.execute((RedisCallback<Object>) connection -> connection.execute("SSCAN",
+                serializer.serialize(membersKey(groupId)), serializer.serialize(position),
+                serializer.serialize("COUNT"), serializer.serialize(String.valueOf(count))));
+
+        List<?> parts = (List<?>) reply;
+        String next = serializer.deserialize((byte[]) parts.get(0));
+        List<String> members = new ArrayList<>();
+        for (Object member : (List<?>) parts.get(1)) {
+            members.add(serializer.deserialize((byte[]) member));
+        }
+        return new MemberPage(members, "0".equals(next) ? null : next);
+    }
+
+    @Override
+    public long countMembers(String groupId) {
+        Long count = redisTemplate.opsForSet().size(membersKey(groupId));
+        return count != null ? count : 0;
+    }
+
+    @Override
+    public Map<String, Long> countMembers(Collection<String> groupIds) {
+        List<String> ids = new ArrayList<>(groupIds);
+        List<Object> counts = pipeline(redis -> ids.forEach(groupId -> redis.sCard(membersKey(groupId))));
+        Map<String, Long> result = new HashMap<>();
+        for (int i = 0; i < ids.size(); i++) {
+            result.put(ids.get(i), asLong(counts.get(i)));
+        }
+        return result;
+    }
+
+    @Override
+    public boolean isMember(String groupId, String clientId) {
+        return Boolean.TRUE.equals(redisTemplate.opsForSet().isMember(membersKey(groupId), clientId));
+    }
+
+    @Override
+    public Set<String> getClientGroups(String clientId) {
+        Set<String> groups = redisTemplate.opsForSet().members(clientGroupsKey(clientId));
+        return groups != null ? groups : Set.of();
+    }
+
+    @Override
+    public void saveGroup(GroupInfo groupInfo) {
+        String groupId = groupInfo.getGroupId();
+        Map<String, String> fields = new HashMap<>();
+        fields.put("groupId", groupId);
+        putIfNotNull(fields, "groupName", groupInfo.getGroupName());
+        putIfNotNull(fields, "creator", groupInfo.getCreator());
+        if (groupInfo.getCreateTime() != null) {
+            fields.put("createTime", String.valueOf(groupInfo.getCreateTime().getTime()));
+        }
+        if (groupInfo.getMaxMembers() != null) {
+            fields.put("maxMembers", String.valueOf(groupInfo.getMaxMembers()));
+        }
+        if (groupInfo.getMetadata() != null) {
+            fields.put("metadata", writeMetadata(groupInfo.getMetadata()));
+        }
+
+        pipeline(redis -> {
+            redis.del(infoKey(groupId), adminsKey(groupId));
+            redis.hMSet(infoKey(groupId), fields);
+            if (groupInfo.getAdministrators() != null && !groupInfo.getAdministrators().isEmpty()) {
+                redis.sAdd(adminsKey(groupId), groupInfo.getAdministrators().toArray(String[]::new));
+            }
+            redis.sAdd(groupsKey(), groupId);
+        });
+    }
+
+    @Override
+    public GroupInfo getGroup(String groupId) {
+        List<Object> results = pipeline(redis -> {
+            redis.hGetAll(infoKey(groupId));
+            redis.sMembers(adminsKey(groupId));
+        });
+        @SuppressWarnings("unchecked")
+        Map<String, String> fields = (Map<String, String>) results.get(0);
+        if (fields == null || fields.isEmpty()) {
+            return null;
+        }
+        return GroupInfo.builder()
+                .groupId(groupId)
+                .groupName(fields.get("groupName"))
+                .creator(fields.get("creator"))
+                .createTime(fields.containsKey("createTime") ? new Date(Long.parseLong(fields.get("createTime"))) : null)
+                .maxMembers(fields.containsKey("maxMembers") ? Integer.valueOf(fields.get("maxMembers")) : null)
+                .metadata(fields.containsKey("metadata") ? readMetadata(fields.get("metadata")) : new HashMap<>())
+                .administrators(new HashSet<>(asStringSet(results.get(1))))
+                .build();
+    }
+
+    @Override
+    public boolean addAdministrator(String groupId, String userId) {
+        if (!groupExists(groupId)) {
+            return false;
+        }
+        redisTemplate.opsForSet().add(adminsKey(groupId), userId);
+        return true;
+    }
+
+    @Override
+    public boolean groupExists(String groupId) {
+        return Boolean.TRUE.equals(redisTemplate.opsForSet().isMember(groupsKey(), groupId));
+    }
+
+    @Override
+    public Set<String> getAllGroups() {
+        Set<String> groups = redisTemplate.opsForSet().members(groupsKey());
+        return groups != null ? groups : Set.of();
+    }
+
+    @Override
+    public void deleteGroup(String groupId) {
+        Set<String> members = getMembers(groupId);
+        pipeline(redis -> {
+            members.forEach(clientId -> redis.sRem(clientGroupsKey(clientId), groupId));
+            redis.del(membersKey(groupId), infoKey(groupId), adminsKey(groupId));
+            redis.sRem(groupsKey(), groupId);
+        });
+    }
+
+    private List<Object> pipeline(Consumer<StringRedisConnection> commands) {
+        return redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            commands.accept((StringRedisConnection) connection);
+            return null;
+        });
+    }
+
+    private String writeMetadata(Map<String, Object> metadata) {
+        try {
+            return objectMapper.writeValueAsString(metadata);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("群组元数据无法序列化", e);
+        }
+    }
+
+    private Map<String, Object> readMetadata(String json) {
+        try {
+            return objectMapper.readValue(json, METADATA_TYPE);
+        } catch (JsonProcessingException e) {
+            return new HashMap<>();
+        }
+    }
+
+    private static void putIfNotNull(Map<String, String> fields, String name, String value) {
+        if (value != null) {
+            fields.put(name, value);
+        }
+    }
+
+    private static long asLong(Object value) {
+        return value instanceof Number number ? number.longValue() : 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Set<String> asStringSet(Object value) {
+        return value instanceof Set<?> set ? (Set<String>) set : Set.of();
+    }
+
+    private String membersKey(String groupId) {
+        return keyPrefix + "group:" + groupId + ":members";
+    }
+
+    private String infoKey(String groupId) {
+        return keyPrefix + "group:" + groupId + ":info";
+    }
+
+    private String adminsKey(String groupId) {
+        return keyPrefix + "group:" + groupId + ":admins";
+    }
+
+    private String clientGroupsKey(String clientId) {
+        return keyPrefix + "client:" + clientId + ":groups";
+    }
+
+    private String groupsKey() {
+        return keyPrefix + "groups";
+    }
+}
@@ -0,0 +1,115 @@
+package com.cqcloud.platform.cluster;
+
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 基于Redis的在线状态存储
+ * <p>
+ * sse:presence:client:{clientId} 保存客户端所在节点（带TTL的租约），
+ * sse:presence:user:{userId} 保存用户的客户端集合；批量操作使用管道一次往返完成。
+ * @author weimeilayer@gmail.com ✨
+ * @date 💓💕 2024年4月12日 🐬🐇 💓💕
+ */
+public class RedisPresenceStore implements PresenceStore {
+
+    // 仅当租约仍属于本节点时删除，避免客户端重连到其他节点后被误删
+    private static final RedisScript<Long> UNREGISTER_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) else return 0 end",
+            Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final String keyPrefix;
+
+    public RedisPresenceStore(StringRedisTemplate redisTemplate, String keyPrefix) {
+        this.redisTemplate = redisTemplate;
+        this.keyPrefix = keyPrefix;
+    }
+
+    @Override
+    public void register(String clientId, String userId, String nodeId, Duration ttl) {
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection redis = (StringRedisConnection) connection;
+            redis.setEx(clientKey(clientId), ttl.toSeconds(), nodeId);
+            if (userId != null) {
+                redis.sAdd(userKey(userId), clientId);
+                redis.expire(userKey(userId), ttl.toSeconds());
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public void refresh(String nodeId, Map<String, String> clientUsers, Duration ttl) {
+        if (clientUsers.isEmpty()) {
+            return;
+        }
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection redis = (StringRedisConnection) connection;
+            clientUsers.forEach((clientId, userId) -> {
+                redis.setEx(clientKey(clientId), ttl.toSeconds(), nodeId);
+                if (userId != null) {
+                    redis.expire(userKey(userId), ttl.toSeconds());
+                }
+            });
+            return null;
+        });
+    }
+
+    @Override
+    public void unregister(String clientId, String userId, String nodeId) {
+        Long removed = redisTemplate.execute(UNREGISTER_SCRIPT, List.of(clientKey(clientId)), nodeId);
+        if (removed != null && removed > 0 && userId != null) {
+            redisTemplate.opsForSet().remove(userKey(userId), clientId);
+        }
+    }
+
+    @Override
+    public Map<String, String> findNodes(Collection<String> clientIds) {
+        if (clientIds.isEmpty()) {
+            return Map.of();
+        }
+        List<String> ids = new ArrayList<>(clientIds);
+        List<String> keys = ids.stream().map(this::clientKey).toList();
+        List<String> nodes = redisTemplate.opsForValue().multiGet(keys);
+
+        Map<String, String> result = new HashMap<>();
+        if (nodes != null) {
+            for (int i = 0; i < ids.size(); i++) {
+                if (nodes.get(i) != null) {
+                    result.put(ids.get(i), nodes.get(i));
+                }
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public Set<String> findUserClients(String userId) {
+        Set<String> clients = redisTemplate.opsForSet().members(userKey(userId));
+        if (clients == null || clients.isEmpty()) {
+            return Set.of();
+        }
+        // 用户集合中可能残留租约已过期的客户端
+        return Set.copyOf(findNodes(clients).keySet());
+    }
+
+    private String clientKey(String clientId) {
+        return keyPrefix + "presence:client:" + clientId;
+    }
+
+    private String userKey(String userId) {
+        return keyPrefix + "presence:user:" + userId;
+    }
+}
@@ -0,0 +1,76 @@
+package com.cqcloud.platform.codec;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 基于Jackson的默认编码器
+ * <p>
+ * 每个类型的ObjectWriter只解析一次并缓存（序列化器预先确定），
+ * 输出缓冲区按线程复用，超过上限后释放。
+ * @author weimeilayer@gmail.com ✨
+ * @date 💓💕 2024年4月12日 🐬🐇 💓💕
+ */
+public class JacksonPayloadCodec implements PayloadCodec {
+
+    private final ObjectMapper objectMapper;
+    private final int maxRetainedBuffer;
+
+    // 已解析的写入器：type -> ObjectWriter
+    private final Map<Class<?>, ObjectWriter> writers = new ConcurrentHashMap<>();
+
+    // 专用编码器：type -> PayloadEncoder
+    private final Map<Class<?>, PayloadEncoder<?>> encoders = new HashMap<>();
+
+    private final ThreadLocal<StringWriter> buffers = ThreadLocal.withInitial(StringWriter::new);
+
+    public JacksonPayloadCodec(ObjectMapper objectMapper, Collection<PayloadEncoder<?>> encoders,
+                               int maxRetainedBuffer) {
+        this.objectMapper = objectMapper;
+        this.maxRetainedBuffer = maxRetainedBuffer;
+        encoders.forEach(encoder -> this.encoders.put(encoder.getType(), encoder));
+    }
+
+    @Override
+    public String encode(Object payload) {
+        if (payload instanceof String text) {
+            return text;
+        }
+        if (payload == null) {
+            return "null";
+        }
+
+        Class<?> type = payload.getClass();
+        PayloadEncoder<?> encoder = encoders.get(type);
+        if (encoder != null) {
+            return encodeWith(encoder, payload);
+        }
+
+        ObjectWriter writer = writers.computeIfAbsent(type, objectMapper::writerFor);
+        StringWriter buffer = buffers.get();
+        buffer.getBuffer().setLength(0);
+        try {
+            writer.writeValue(buffer, payload);
+        } catch (IOException e) {
+            throw new IllegalStateException("消息序列化失败: " + type.getName(), e);
+        }
+        String encoded = buffer.toString();
+        // 偶发的大消息不长期占用线程缓冲区
+        if (buffer.getBuffer().capacity() > maxRetainedBuffer) {
+            buffers.remove();
+        }
+        return encoded;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> String encodeWith(PayloadEncoder<T> encoder, Object payload) {
+        return encoder.encode((T) payload);
+    }
+}
@@ -0,0 +1,18 @@
+package com.cqcloud.platform.codec;
+
+/**
+ * SSE事件数据编码器
+ * <p>
+ * 事件数据在发送前编码一次为文本，所有连接共享编码结果，不再由消息转换器逐个连接序列化。
+ * 字符串原样返回（与直接发送字符串的效果一致）；二进制格式（如CBOR/Smile）需编码为Base64等文本。
+ * @author weimeilayer@gmail.com ✨
+ * @date 💓💕 2024年4月12日 🐬🐇 💓💕
+ */
+public interface PayloadCodec {
+
+    /**
+     * 编码事件数据
+     * @throws IllegalStateException 编码失败
+     */
+    String encode(Object payload);
+}
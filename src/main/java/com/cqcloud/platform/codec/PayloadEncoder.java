@@ -0,0 +1,19 @@
+package com.cqcloud.platform.codec;
+
+/**
+ * 指定类型的专用编码器，注册为Bean后由默认编码器优先使用（用于热点类型的手写编码）
+ * @author weimeilayer@gmail.com ✨
+ * @date 💓💕 2024年4月12日 🐬🐇 💓💕
+ */
+public interface PayloadEncoder<T> {
+
+    /**
+     * 支持的类型（精确匹配）
+     */
+    Class<T> getType();
+
+    /**
+     * 编码
+     */
+    String encode(T payload);
+}
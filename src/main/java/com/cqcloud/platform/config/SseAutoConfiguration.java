@@ -0,0 +1,73 @@
+package com.cqcloud.platform.config;
+
+import com.cqcloud.platform.handler.GroupSseHandler;
+import com.cqcloud.platform.handler.SseHandler;
+import com.cqcloud.platform.handler.TopicSseHandler;
+import com.cqcloud.platform.service.BroadcastService;
+import com.cqcloud.platform.service.BulkPublishService;
+import com.cqcloud.platform.service.DeliveryAckService;
+import com.cqcloud.platform.service.DeliveryTracer;
+import com.cqcloud.platform.service.GroupMembersManager;
+import com.cqcloud.platform.service.GroupMessageService;
+import com.cqcloud.platform.service.GroupSnapshotService;
+import com.cqcloud.platform.service.LargeGroupFanout;
+import com.cqcloud.platform.service.MemberChangeBatcher;
+import com.cqcloud.platform.service.SseDrainService;
+import com.cqcloud.platform.service.SseHeartbeatService;
+import com.cqcloud.platform.service.SseOutboundWriter;
+import com.cqcloud.platform.service.SseRateLimiter;
+import com.cqcloud.platform.service.SseService;
+import com.cqcloud.platform.service.StateStreamService;
+import com.cqcloud.platform.service.TenantService;
+import com.cqcloud.platform.service.TopicSubscriptionIndex;
+import com.cqcloud.platform.service.WriteStallMonitor;
+import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.autoconfigure.data.redis.RedisAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.context.annotation.Import;
+import org.springframework.context.annotation.ImportRuntimeHints;
+
+/**
+ * SSE自动配置
+ * <p>
+ * 显式导入全部配置、服务和接口，不依赖使用方扫描本包，构建期AOT处理可以直接生成全部Bean定义。
+ * 使用方仍扫描本包时以扫描到的Bean为准，导入被忽略，不会重复注册。
+ * @author weimeilayer@gmail.com ✨
+ * @date 💓💕 2024年4月12日 🐬🐇 💓💕
+ */
+@AutoConfiguration(after = {JacksonAutoConfiguration.class, RedisAutoConfiguration.class})
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@ImportRuntimeHints(SseRuntimeHints.class)
+@Import({
+        // 配置
+        SseConfig.class,
+        SseClusterConfig.class,
+        // 连接与写出
+        SseService.class,
+        SseOutboundWriter.class,
+        WriteStallMonitor.class,
+        SseHeartbeatService.class,
+        SseDrainService.class,
+        SseRateLimiter.class,
+        TenantService.class,
+        // 群组
+        GroupMembersManager.class,
+        GroupMessageService.class,
+        GroupSnapshotService.class,
+        MemberChangeBatcher.class,
+        LargeGroupFanout.class,
+        StateStreamService.class,
+        // 主题、广播与投递
+        TopicSubscriptionIndex.class,
+        BroadcastService.class,
+        BulkPublishService.class,
+        DeliveryAckService.class,
+        DeliveryTracer.class,
+        // 接口
+        SseHandler.class,
+        GroupSseHandler.class,
+        TopicSseHandler.class
+})
+public class SseAutoConfiguration {
+}
@@ -0,0 +1,112 @@
+package com.cqcloud.platform.config;
+
+import com.cqcloud.platform.cluster.ClusterBus;
+import com.cqcloud.platform.cluster.ClusterPresenceService;
+import com.cqcloud.platform.cluster.ClusterRouter;
+import com.cqcloud.platform.cluster.InMemoryClusterBus;
+import com.cqcloud.platform.cluster.InMemoryMembershipStore;
+import com.cqcloud.platform.cluster.InMemoryPresenceStore;
+import com.cqcloud.platform.cluster.JournaledMembershipStore;
+import com.cqcloud.platform.cluster.MembershipJournal;
+import com.cqcloud.platform.cluster.MembershipStore;
+import com.cqcloud.platform.cluster.PresenceStore;
+import com.cqcloud.platform.cluster.RedisClusterBus;
+import com.cqcloud.platform.cluster.RedisMembershipStore;
+import com.cqcloud.platform.cluster.RedisPresenceStore;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import java.nio.file.Path;
+
+/**
+ * 集群配置：sse.cluster.store=memory（默认）或 redis
+ * @author weimeilayer@gmail.com ✨
+ * @date 💓💕 2024年4月12日 🐬🐇 💓💕
+ */
+@Configuration
+public class SseClusterConfig {
+
+    @Configuration
+    @ConditionalOnProperty(prefix = "sse.cluster", name = "store", havingValue = "memory", matchIfMissing = true)
+    static class MemoryStoreConfig {
+
+        @Bean
+        @ConditionalOnMissingBean
+        public PresenceStore presenceStore() {
+            return new InMemoryPresenceStore();
+        }
+
+        /**
+         * 启用群组快照和变更日志时，成员存储的修改同时追加到变更日志
+         */
+        @Bean
+        @ConditionalOnMissingBean
+        public MembershipStore membershipStore(SseProperties sseProperties, ObjectMapper objectMapper) {
+            SseProperties.Snapshot snapshot = sseProperties.getSnapshot();
+            if (snapshot.isEnabled() && snapshot.isChangeLogEnabled()) {
+                Path snapshotFile = Path.of(snapshot.getPath());
+                MembershipJournal journal = new MembershipJournal(
+                        snapshotFile.resolveSibling(snapshotFile.getFileName() + ".log"), objectMapper);
+                return new JournaledMembershipStore(new InMemoryMembershipStore(), journal);
+            }
+            return new InMemoryMembershipStore();
+        }
+
+        @Bean
+        @ConditionalOnMissingBean
+        public ClusterBus clusterBus() {
+            return new InMemoryClusterBus();
+        }
+    }
+
+    @Configuration
+    @ConditionalOnProperty(prefix = "sse.cluster", name = "store", havingValue = "redis")
+    static class RedisStoreConfig {
+
+        @Bean
+        @ConditionalOnMissingBean
+        public PresenceStore presenceStore(StringRedisTemplate stringRedisTemplate, SseProperties sseProperties) {
+            return new RedisPresenceStore(stringRedisTemplate, sseProperties.getCluster().getKeyPrefix());
+        }
+
+        @Bean
+        @ConditionalOnMissingBean
+        public MembershipStore membershipStore(StringRedisTemplate stringRedisTemplate, ObjectMapper objectMapper,
+                                               SseProperties sseProperties) {
+            return new RedisMembershipStore(stringRedisTemplate, objectMapper, sseProperties.getCluster().getKeyPrefix());
+        }
+
+        @Bean
+        @ConditionalOnMissingBean
+        public RedisMessageListenerContainer sseClusterListenerContainer(RedisConnectionFactory connectionFactory) {
+            RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+            container.setConnectionFactory(connectionFactory);
+            return container;
+        }
+
+        @Bean
+        @ConditionalOnMissingBean
+        public ClusterBus clusterBus(StringRedisTemplate stringRedisTemplate,
+                                     RedisMessageListenerContainer sseClusterListenerContainer) {
+            return new RedisClusterBus(stringRedisTemplate, sseClusterListenerContainer);
+        }
+    }
+
+    @Bean
+    public ClusterPresenceService clusterPresenceService(PresenceStore presenceStore, ClusterBus clusterBus,
+                                                         SseProperties sseProperties) {
+        return new ClusterPresenceService(presenceStore, clusterBus, sseProperties);
+    }
+
+    @Bean
+    public ClusterRouter clusterRouter(ClusterBus clusterBus, ClusterPresenceService clusterPresenceService,
+                                       SseProperties sseProperties, ObjectMapper objectMapper) {
+        return new ClusterRouter(clusterBus, clusterPresenceService, sseProperties, objectMapper);
+    }
+}
@@ -1,7 +1,17 @@
 package com.cqcloud.platform.config;
 
+import com.cqcloud.platform.codec.JacksonPayloadCodec;
+import com.cqcloud.platform.codec.PayloadCodec;
+import com.cqcloud.platform.codec.PayloadEncoder;
+import com.cqcloud.platform.filter.SseCompressionFilter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
 import org.springframework.scheduling.annotation.EnableAsync;
 import org.springframework.web.servlet.config.annotation.CorsRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
@@ -13,6 +23,7 @@ import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
  */
 @Configuration
 @EnableAsync
+@EnableConfigurationProperties(SseProperties.class)
 public class SseConfig implements WebMvcConfigurer {
 
     @Override
@@ -30,4 +41,28 @@ public class SseConfig implements WebMvcConfigurer {
         // 可以配置默认的超时时间
         return new SseEmitter(30 * 60 * 1000L);
     }
-}
\ No newline at end of file
+
+    @Bean
+    @ConditionalOnMissingBean
+    public PayloadCodec payloadCodec(ObjectMapper objectMapper, ObjectProvider<PayloadEncoder<?>> payloadEncoders,
+                                     SseProperties sseProperties) {
+        return new JacksonPayloadCodec(objectMapper, payloadEncoders.orderedStream().toList(),
+                sseProperties.getCodec().getMaxRetainedBuffer());
+    }
+
+    @Bean
+    public SseCompressionFilter sseCompressionFilter(SseProperties sseProperties) {
+        return new SseCompressionFilter(sseProperties);
+    }
+
+    @Bean
+    public FilterRegistrationBean<SseCompressionFilter> sseCompressionFilterRegistration(
+            SseCompressionFilter sseCompressionFilter) {
+        FilterRegistrationBean<SseCompressionFilter> registration =
+                new FilterRegistrationBean<>(sseCompressionFilter);
+        registration.addUrlPatterns("/api/sse/*");
+        registration.setAsyncSupported(true);
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 10);
+        return registration;
+    }
+}
@@ -0,0 +1,611 @@
+package com.cqcloud.platform.config;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+
+/**
+ * SSE配置属性
+ * @author weimeilayer@gmail.com ✨
+ * @date 💓💕 2024年4月12日 🐬🐇 💓💕
+ */
+@Data
+@ConfigurationProperties(prefix = "sse")
+public class SseProperties {
+
+    /**
+     * 流压缩配置
+     */
+    private Compression compression = new Compression();
+
+    /**
+     * 增量状态流配置
+     */
+    private Delta delta = new Delta();
+
+    /**
+     * 主题订阅配置
+     */
+    private Topic topic = new Topic();
+
+    /**
+     * 限流配置
+     */
+    private RateLimit rateLimit = new RateLimit();
+
+    /**
+     * 批量发布配置
+     */
+    private Bulk bulk = new Bulk();
+
+    /**
+     * 出站写入配置
+     */
+    private Outbound outbound = new Outbound();
+
+    /**
+     * 异步广播配置
+     */
+    private Broadcast broadcast = new Broadcast();
+
+    /**
+     * 停机排空配置
+     */
+    private Shutdown shutdown = new Shutdown();
+
+    /**
+     * 集群配置
+     */
+    private Cluster cluster = new Cluster();
+
+    /**
+     * 群组成员后台校验配置
+     */
+    private Reconcile reconcile = new Reconcile();
+
+    /**
+     * 消息确认配置
+     */
+    private Ack ack = new Ack();
+
+    /**
+     * 事件数据编码配置
+     */
+    private Codec codec = new Codec();
+
+    /**
+     * 写入阻塞检测配置
+     */
+    private Stall stall = new Stall();
+
+    /**
+     * 投递延迟追踪配置
+     */
+    private Trace trace = new Trace();
+
+    /**
+     * 群组成员变更通知配置
+     */
+    private MemberChange memberChange = new MemberChange();
+
+    /**
+     * 大群组配置
+     */
+    private LargeGroup largeGroup = new LargeGroup();
+
+    /**
+     * 心跳配置
+     */
+    private Heartbeat heartbeat = new Heartbeat();
+
+    /**
+     * 多租户配置
+     */
+    private Tenant tenant = new Tenant();
+
+    /**
+     * 群组状态快照配置
+     */
+    private Snapshot snapshot = new Snapshot();
+
+    @Data
+    public static class Compression {
+        /**
+         * 是否启用压缩（仍需客户端发送Accept-Encoding）
+         */
+        private boolean enabled = false;
+
+        /**
+         * 压缩级别：0-9
+         */
+        private int level = Deflater.BEST_SPEED;
+
+        /**
+         * 每个连接的压缩输出缓冲区大小
+         */
+        private int bufferSize = 512;
+
+        /**
+         * 同时压缩的最大连接数，超过后新连接不压缩
+         */
+        private int maxCompressedStreams = 10000;
+
+        /**
+         * 支持的编码，按优先级排列
+         */
+        private List<String> encodings = new ArrayList<>(List.of("gzip", "deflate"));
+
+        /**
+         * 需要压缩的SSE路径
+         */
+        private List<String> paths = new ArrayList<>(List.of("/api/sse/connect/**", "/api/sse/group/connect"));
+    }
+
+    @Data
+    public static class Delta {
+        /**
+         * 每隔多少个版本强制发送一次全量快照
+         */
+        private int snapshotEvery = 100;
+
+        /**
+         * 距上次快照超过该时长后，下一次更新发送全量快照
+         */
+        private Duration snapshotInterval = Duration.ofMinutes(5);
+
+        /**
+         * 同时保留的状态流数量上限
+         */
+        private int maxStreams = 10000;
+    }
+
+    @Data
+    public static class Topic {
+        /**
+         * 主题解析结果缓存的最大条目数
+         */
+        private int maxCachedTopics = 10000;
+    }
+
+    @Data
+    public static class RateLimit {
+        /**
+         * 是否启用限流
+         */
+        private boolean enabled = false;
+
+        /**
+         * 每个用户的发布速率
+         */
+        private Limit publishPerUser = new Limit(20, 40);
+
+        /**
+         * 每个群组的发布速率
+         */
+        private Limit publishPerGroup = new Limit(100, 200);
+
+        /**
+         * 全局发布速率
+         */
+        private Limit publishGlobal = new Limit(5000, 10000);
+
+        /**
+         * 每个用户（客户端）的连接速率
+         */
+        private Limit connectPerUser = new Limit(1, 5);
+
+        /**
+         * 全局连接速率
+         */
+        private Limit connectGlobal = new Limit(500, 1000);
+
+        /**
+         * 被拒绝连接的最小重连间隔（毫秒）
+         */
+        private long minRetryMillis = 1000;
+    }
+
+    @Data
+    public static class Bulk {
+        /**
+         * 单次批量发布的最大条目数
+         */
+        private int maxItems = 1000;
+    }
+
+    @Data
+    public static class Outbound {
+        /**
+         * 写线程数
+         */
+        private int threads = Math.max(2, Runtime.getRuntime().availableProcessors());
+
+        /**
+         * 每个连接允许积压的最大事件数，超过后丢弃
+         */
+        private int maxQueuedPerConnection = 1000;
+
+        /**
+         * 每次合并写出的最大事件数
+         */
+        private int maxBatch = 64;
+    }
+
+    @Data
+    public static class Broadcast {
+        /**
+         * 已完成广播进度的保留时长
+         */
+        private Duration retention = Duration.ofMinutes(10);
+    }
+
+    @Data
+    public static class Shutdown {
+        /**
+         * 是否在停机时排空连接
+         */
+        private boolean drainEnabled = true;
+
+        /**
+         * 分几批关闭连接
+         */
+        private int waves = 10;
+
+        /**
+         * 所有批次关闭完成的时间窗口
+         */
+        private Duration closeWindow = Duration.ofSeconds(5);
+
+        /**
+         * 客户端最小重连间隔
+         */
+        private Duration minRetry = Duration.ofSeconds(1);
+
+        /**
+         * 客户端重连间隔的随机分布窗口
+         */
+        private Duration reconnectWindow = Duration.ofSeconds(30);
+
+        /**
+         * 排空最长等待时间
+         */
+        private Duration timeout = Duration.ofSeconds(30);
+    }
+
+    @Data
+    public static class Cluster {
+        /**
+         * 是否启用跨节点路由
+         */
+        private boolean enabled = false;
+
+        /**
+         * 在线状态存储：memory/redis
+         */
+        private String store = "memory";
+
+        /**
+         * 节点ID，默认随机生成
+         */
+        private String nodeId;
+
+        /**
+         * Redis键前缀
+         */
+        private String keyPrefix = "sse:";
+
+        /**
+         * 在线租约时长，每1/3时长续约一次
+         */
+        private Duration leaseTtl = Duration.ofSeconds(60);
+
+        /**
+         * 本地近缓存的最大条目数
+         */
+        private int nearCacheSize = 100000;
+
+        /**
+         * 本地近缓存的有效期
+         */
+        private Duration nearCacheTtl = Duration.ofSeconds(30);
+
+        /**
+         * 本地缓存成员列表的最大群组数，按最近使用淘汰
+         */
+        private int membershipCacheSize = 1000;
+
+        /**
+         * 成员列表缓存的有效期，兜底错过的失效通知
+         */
+        private Duration membershipCacheTtl = Duration.ofMinutes(5);
+    }
+
+    @Data
+    public static class Reconcile {
+        /**
+         * 后台校验间隔，加入群组未满该时长的客户端不校验
+         */
+        private Duration sweepInterval = Duration.ofSeconds(30);
+
+        /**
+         * 每次校验的客户端数
+         */
+        private int sliceSize = 1000;
+    }
+
+    @Data
+    public static class Ack {
+        /**
+         * 未确认事件的重发超时
+         */
+        private Duration timeout = Duration.ofSeconds(10);
+
+        /**
+         * 每个连接最多保留的未确认事件数，超过后丢弃最早的事件
+         */
+        private int maxPending = 256;
+
+        /**
+         * 最大发送次数（含首次发送）
+         */
+        private int maxAttempts = 5;
+
+        /**
+         * 断开后保留未确认事件的时长，期间重连会重发
+         */
+        private Duration retention = Duration.ofMinutes(5);
+
+        /**
+         * 单次确认请求最多包含的事件数
+         */
+        private int maxBatch = 500;
+    }
+
+    @Data
+    public static class Codec {
+        /**
+         * 每个线程保留的编码缓冲区上限（字符数），超过后用完即释放
+         */
+        private int maxRetainedBuffer = 64 * 1024;
+    }
+
+    @Data
+    public static class Stall {
+        /**
+         * 是否检测写入阻塞
+         */
+        private boolean enabled = true;
+
+        /**
+         * 单次写入阻塞超过该时长的连接被驱逐
+         */
+        private Duration threshold = Duration.ofSeconds(10);
+
+        /**
+         * 检测间隔
+         */
+        private Duration checkInterval = Duration.ofSeconds(1);
+
+        /**
+         * 驱逐时是否中断阻塞的写线程
+         */
+        private boolean interruptWriter = true;
+    }
+
+    @Data
+    public static class Trace {
+        /**
+         * 是否启用投递延迟追踪
+         */
+        private boolean enabled = true;
+
+        /**
+         * 采样率，0到1之间
+         */
+        private double sampleRate = 0.01;
+
+        /**
+         * 发布到写出超过该时长时记录慢投递日志
+         */
+        private Duration slowThreshold = Duration.ofMillis(500);
+
+        /**
+         * 采样事件保留时长，用于匹配客户端上报的接收时间
+         */
+        private Duration receiptRetention = Duration.ofSeconds(60);
+
+        /**
+         * 最多保留的采样事件数
+         */
+        private int maxRetained = 10000;
+
+        /**
+         * 单次上报最多包含的接收记录数
+         */
+        private int maxReceiptBatch = 500;
+    }
+
+    @Data
+    public static class MemberChange {
+        /**
+         * 合并窗口：窗口内同一群组的加入、离开合并为一个事件，0表示逐个发送
+         */
+        private Duration window = Duration.ofMillis(200);
+
+        /**
+         * 单个群组累积的变更达到该数量时提前发送
+         */
+        private int maxBatch = 1000;
+
+        /**
+         * 是否在成员加入时向群组广播欢迎消息
+         */
+        private boolean welcomeEnabled = true;
+
+        /**
+         * 成员数超过该值的群组不广播欢迎消息，0表示不限制
+         */
+        private int welcomeMaxMembers = 100;
+    }
+
+    @Data
+    public static class LargeGroup {
+        /**
+         * 成员数达到该值的群组按大群组扇出：成员快照分片后由分片写线程并行写出，0表示不启用
+         */
+        private int threshold = 1000;
+
+        /**
+         * 分片写线程数，同一客户端固定由同一分片写出以保持顺序
+         */
+        private int shards = Math.max(2, Runtime.getRuntime().availableProcessors());
+
+        /**
+         * 每个分片写线程最多排队的扇出任务数，写线程跟不上时超出部分丢弃并计入 rejected
+         */
+        private int queueCapacity = 1000;
+
+        /**
+         * 大群组成员变更事件的采样率，0表示不发送，1表示全部发送
+         */
+        private double rosterSampleRate = 0;
+    }
+
+    @Data
+    public static class Heartbeat {
+        /**
+         * 是否向空闲连接发送注释帧心跳，避免代理关闭空闲连接
+         */
+        private boolean enabled = true;
+
+        /**
+         * 连接超过该时长没有任何写出时发送心跳，有消息写出的连接不发送
+         */
+        private Duration idleInterval = Duration.ofSeconds(20);
+
+        /**
+         * 检查间隔，每次检查批量发送给所有空闲连接
+         */
+        private Duration checkInterval = Duration.ofSeconds(5);
+
+        /**
+         * 每次检查最多发送的心跳数，其余留到下次检查
+         */
+        private int maxPerTick = 50000;
+    }
+
+    @Data
+    public static class Tenant {
+        /**
+         * 是否启用多租户隔离
+         */
+        private boolean enabled = false;
+
+        /**
+         * 租户ID所在的请求属性（由上游认证过滤器设置），优先于请求头
+         */
+        private String attribute = "sse.tenantId";
+
+        /**
+         * 租户ID所在的请求头，只接受默认租户和 quotas 中配置的租户
+         */
+        private String header = "X-Tenant-Id";
+
+        /**
+         * 请求未携带租户ID时使用的租户
+         */
+        private String defaultTenant = "default";
+
+        /**
+         * 租户数上限，超过后新租户的请求被拒绝
+         */
+        private int maxTenants = 1000;
+
+        /**
+         * 默认配额
+         */
+        private Quota quota = new Quota(2, 100000, 0, new Limit(0, 0));
+
+        /**
+         * 按租户覆盖的配额：tenantId -> quota，未设置的项使用默认配额；
+         * 同时是请求头可以指定的租户清单，不需要覆盖配额的租户配置为空对象即可
+         */
+        private Map<String, Quota> quotas = new HashMap<>();
+    }
+
+    @Data
+    public static class Snapshot {
+        /**
+         * 是否定期保存群组和成员关系快照，启动时恢复（仅sse.cluster.store=memory）
+         */
+        private boolean enabled = false;
+
+        /**
+         * 快照文件路径，变更日志写在同目录的 .log 文件中
+         */
+        private String path = "sse-data/groups.snapshot";
+
+        /**
+         * 快照间隔，每次快照后截断变更日志
+         */
+        private Duration interval = Duration.ofMinutes(1);
+
+        /**
+         * 是否记录增量变更日志，启动时在快照之上重放，恢复到停止前的最后状态
+         */
+        private boolean changeLogEnabled = false;
+
+        /**
+         * 恢复的客户端等待重连的时长，超时未重连的由后台校验移除
+         */
+        private Duration restoreGrace = Duration.ofMinutes(2);
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Quota {
+        /**
+         * 发送线程数，连接的出站写出和群组扇出都在租户自己的线程中执行
+         */
+        private Integer threads;
+
+        /**
+         * 发送队列容量，队列满时拒绝新的发送
+         */
+        private Integer queueCapacity;
+
+        /**
+         * 连接数上限，0表示不限制
+         */
+        private Integer maxConnections;
+
+        /**
+         * 发布速率
+         */
+        private Limit publishRate;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Limit {
+        /**
+         * 每秒补充的令牌数，小于等于0表示不限制
+         */
+        private double rate;
+
+        /**
+         * 突发容量
+         */
+        private int burst;
+    }
+}
@@ -0,0 +1,66 @@
+package com.cqcloud.platform.config;
+
+import com.cqcloud.platform.cluster.ClusterRouter;
+import com.cqcloud.platform.dto.AckRequest;
+import com.cqcloud.platform.dto.ApiResponse;
+import com.cqcloud.platform.dto.BroadcastStatus;
+import com.cqcloud.platform.dto.BulkPublishItem;
+import com.cqcloud.platform.dto.BulkPublishRequest;
+import com.cqcloud.platform.dto.BulkPublishResult;
+import com.cqcloud.platform.dto.ClientInfo;
+import com.cqcloud.platform.dto.ConnectResponse;
+import com.cqcloud.platform.dto.ConnectionQuery;
+import com.cqcloud.platform.dto.GroupEvent;
+import com.cqcloud.platform.dto.GroupInfo;
+import com.cqcloud.platform.dto.GroupMemberChange;
+import com.cqcloud.platform.dto.GroupsMessageRequest;
+import com.cqcloud.platform.dto.MessageRequest;
+import com.cqcloud.platform.dto.NotificationMessage;
+import com.cqcloud.platform.dto.ReceiptRequest;
+import com.cqcloud.platform.dto.SseEvent;
+import com.cqcloud.platform.dto.SseMessage;
+import com.cqcloud.platform.dto.StateDelta;
+import org.springframework.aot.hint.BindingReflectionHintsRegistrar;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+
+/**
+ * 原生镜像运行时提示
+ * <p>
+ * 请求体、响应体、SSE事件数据和跨节点消息都由Jackson通过反射读写，
+ * 原生镜像中需要预先登记这些类型的构造器和属性访问方法（属性类型递归登记）。
+ * 新增经Jackson序列化的类型时需同步加入此处。
+ * @author weimeilayer@gmail.com ✨
+ * @date 💓💕 2024年4月12日 🐬🐇 💓💕
+ */
+public class SseRuntimeHints implements RuntimeHintsRegistrar {
+
+    private static final Class<?>[] BINDING_TYPES = {
+            AckRequest.class,
+            ApiResponse.class,
+            BroadcastStatus.class,
+            BulkPublishItem.class,
+            BulkPublishRequest.class,
+            BulkPublishResult.class,
+            ClientInfo.class,
+            ConnectResponse.class,
+            ConnectionQuery.class,
+            GroupEvent.class,
+            GroupInfo.class,
+            GroupMemberChange.class,
+            GroupsMessageRequest.class,
+            MessageRequest.class,
+            NotificationMessage.class,
+            ReceiptRequest.class,
+            ReceiptRequest.Receipt.class,
+            SseEvent.class,
+            SseMessage.class,
+            StateDelta.class,
+            ClusterRouter.RoutedEvent.class
+    };
+
+    @Override
+    public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+        new BindingReflectionHintsRegistrar().registerReflectionHints(hints.reflection(), BINDING_TYPES);
+    }
+}
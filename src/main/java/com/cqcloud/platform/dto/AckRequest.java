@@ -0,0 +1,29 @@
+package com.cqcloud.platform.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * 消息确认请求
+ * @author weimeilayer@gmail.com ✨
+ * @date 💓💕 2024年4月12日 🐬🐇 💓💕
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class AckRequest {
+    /**
+     * 客户端ID（连接时ack_mode事件中下发），为空时按当前会话计算
+     */
+    private String clientId;
+
+    /**
+     * 已收到的事件ID
+     */
+    private List<String> eventIds;
+}
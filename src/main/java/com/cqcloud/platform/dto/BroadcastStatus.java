@@ -0,0 +1,54 @@
+package com.cqcloud.platform.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * 广播进度
+ * @author weimeilayer@gmail.com ✨
+ * @date 💓💕 2024年4月12日 🐬🐇 💓💕
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BroadcastStatus {
+    /**
+     * 广播ID
+     */
+    private String broadcastId;
+
+    /**
+     * 目标连接数
+     */
+    private int total;
+
+    /**
+     * 成功数
+     */
+    private int delivered;
+
+    /**
+     * 失败数
+     */
+    private int failed;
+
+    /**
+     * 是否已完成
+     */
+    private boolean completed;
+
+    /**
+     * 开始时间
+     */
+    private LocalDateTime startTime;
+
+    /**
+     * 完成时间
+     */
+    private LocalDateTime completeTime;
+}
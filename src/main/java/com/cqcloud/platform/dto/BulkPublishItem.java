@@ -0,0 +1,32 @@
+package com.cqcloud.platform.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 批量发布条目
+ * @author weimeilayer@gmail.com ✨
+ * @date 💓💕 2024年4月12日 🐬🐇 💓💕
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkPublishItem {
+    /**
+     * 目标类型：CLIENT/USER/GROUP/TOPIC
+     */
+    private String targetType;
+
+    /**
+     * 目标ID（客户端ID/用户ID/群组ID/主题）
+     */
+    private String targetId;
+
+    /**
+     * 消息内容
+     */
+    private MessageRequest message;
+}
@@ -0,0 +1,50 @@
+package com.cqcloud.platform.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 批量发布单条结果
+ * @author weimeilayer@gmail.com ✨
+ * @date 💓💕 2024年4月12日 🐬🐇 💓💕
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkPublishResult {
+    /**
+     * 条目序号
+     */
+    private int index;
+
+    /**
+     * 是否成功
+     */
+    private boolean success;
+
+    /**
+     * 消息ID
+     */
+    private String messageId;
+
+    /**
+     * 成功写出的连接数
+     */
+    private int delivered;
+
+    /**
+     * 失败原因
+     */
+    private String error;
+
+    public static BulkPublishResult failure(int index, String error) {
+        return BulkPublishResult.builder()
+                .index(index)
+                .success(false)
+                .error(error)
+                .build();
+    }
+}
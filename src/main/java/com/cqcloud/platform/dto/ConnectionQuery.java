@@ -0,0 +1,57 @@
+package com.cqcloud.platform.dto;
+
+import lombok.Data;
+import org.springframework.format.annotation.DateTimeFormat;
+
+import java.time.LocalDateTime;
+
+/**
+ * 连接列表分页查询条件
+ * @author weimeilayer@gmail.com ✨
+ * @date 💓💕 2024年4月12日 🐬🐇 💓💕
+ */
+@Data
+public class ConnectionQuery {
+    /**
+     * 上一页返回的游标，首页为空
+     */
+    private String cursor;
+
+    /**
+     * 每页数量
+     */
+    private int limit = 100;
+
+    /**
+     * 按用户过滤
+     */
+    private String userId;
+
+    /**
+     * 按群组过滤
+     */
+    private String groupId;
+
+    /**
+     * 连接时间不早于
+     */
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+    private LocalDateTime connectedAfter;
+
+    /**
+     * 连接时间早于
+     */
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+    private LocalDateTime connectedBefore;
+
+    /**
+     * 连接时间是否在查询范围内
+     */
+    public boolean matchesConnectTime(LocalDateTime connectTime) {
+        if (connectTime == null) {
+            return connectedAfter == null && connectedBefore == null;
+        }
+        return (connectedAfter == null || !connectTime.isBefore(connectedAfter))
+                && (connectedBefore == null || connectTime.isBefore(connectedBefore));
+    }
+}
@@ -0,0 +1,40 @@
+package com.cqcloud.platform.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 合并后的群组成员变更
+ * @author weimeilayer@gmail.com ✨
+ * @date 💓💕 2024年4月12日 🐬🐇 💓💕
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class GroupMemberChange {
+    /**
+     * 群组ID
+     */
+    private String groupId;
+
+    /**
+     * 窗口内加入的成员
+     */
+    private List<GroupEvent> joined;
+
+    /**
+     * 窗口内离开的成员
+     */
+    private List<GroupEvent> left;
+
+    /**
+     * 事件时间
+     */
+    private LocalDateTime timestamp;
+}
@@ -0,0 +1,29 @@
+package com.cqcloud.platform.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * 多群组消息请求
+ * @author weimeilayer@gmail.com ✨
+ * @date 💓💕 2024年4月12日 🐬🐇 💓💕
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class GroupsMessageRequest {
+    /**
+     * 目标群组
+     */
+    private List<String> groupIds;
+
+    /**
+     * 消息内容
+     */
+    private MessageRequest message;
+}
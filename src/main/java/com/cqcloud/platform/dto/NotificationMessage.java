@@ -1,5 +1,6 @@
 package com.cqcloud.platform.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -53,6 +54,17 @@ public class NotificationMessage {
      */
     private String groupId;
 
+    /**
+     * 主题（如果是主题消息）
+     */
+    private String topic;
+
+    /**
+     * 来源频道（group:xxx、topic:xxx），多路复用连接据此区分消息来源
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String channel;
+
     /**
      * 业务数据
      */
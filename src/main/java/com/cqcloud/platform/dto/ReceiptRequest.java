@@ -0,0 +1,39 @@
+package com.cqcloud.platform.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * 客户端批量上报的事件接收时间
+ * @author weimeilayer@gmail.com ✨
+ * @date 💓💕 2024年4月12日 🐬🐇 💓💕
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReceiptRequest {
+    /**
+     * 接收记录
+     */
+    private List<Receipt> receipts;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Receipt {
+        /**
+         * 事件ID
+         */
+        private String eventId;
+
+        /**
+         * 客户端收到事件的时间（毫秒时间戳）
+         */
+        private long receivedAt;
+    }
+}
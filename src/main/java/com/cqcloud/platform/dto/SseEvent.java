@@ -1,5 +1,6 @@
 package com.cqcloud.platform.dto;
 
+import com.cqcloud.platform.codec.PayloadCodec;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -31,6 +32,19 @@ public class SseEvent {
         if (comment != null) builder.comment(comment);
         return builder;
     }
+
+    /**
+     * 数据预先编码为文本，构建的事件帧可被多个连接共享而不重复序列化
+     */
+    public SseEmitter.SseEventBuilder toSseEventBuilder(PayloadCodec codec) {
+        SseEmitter.SseEventBuilder builder = SseEmitter.event();
+        if (id != null) builder.id(id);
+        if (event != null) builder.name(event);
+        if (data != null) builder.data(codec.encode(data));
+        if (retry != null) builder.reconnectTime(retry);
+        if (comment != null) builder.comment(comment);
+        return builder;
+    }
 }
 
 
@@ -0,0 +1,49 @@
+package com.cqcloud.platform.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 状态流事件（全量快照或增量补丁）
+ * @author weimeilayer@gmail.com ✨
+ * @date 💓💕 2024年4月12日 🐬🐇 💓💕
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class StateDelta {
+    /**
+     * 来源频道（group:xxx、client:xxx）
+     */
+    private String channel;
+
+    /**
+     * 状态流标识
+     */
+    private String streamKey;
+
+    /**
+     * 当前版本
+     */
+    private Long version;
+
+    /**
+     * 补丁基于的版本（仅补丁）
+     */
+    private Long baseVersion;
+
+    /**
+     * 全量状态（仅快照）
+     */
+    private Object data;
+
+    /**
+     * JSON Patch操作列表（仅补丁）
+     */
+    private Object patch;
+}
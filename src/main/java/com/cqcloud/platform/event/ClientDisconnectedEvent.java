@@ -0,0 +1,24 @@
+package com.cqcloud.platform.event;
+
+import lombok.Getter;
+import org.springframework.context.ApplicationEvent;
+
+/**
+ * 客户端连接断开事件
+ * <p>
+ * 连接从注册表中移除时发布一次；同一客户端重连替换旧连接时，旧连接的关闭不会发布该事件。
+ * @author weimeilayer@gmail.com ✨
+ * @date 💓💕 2024年4月12日 🐬🐇 💓💕
+ */
+@Getter
+public class ClientDisconnectedEvent extends ApplicationEvent {
+
+    private final String clientId;
+    private final String userId;
+
+    public ClientDisconnectedEvent(Object source, String clientId, String userId) {
+        super(source);
+        this.clientId = clientId;
+        this.userId = userId;
+    }
+}
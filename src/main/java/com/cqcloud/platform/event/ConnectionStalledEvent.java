@@ -0,0 +1,31 @@
+package com.cqcloud.platform.event;
+
+import lombok.Getter;
+import org.springframework.context.ApplicationEvent;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+/**
+ * 连接写入阻塞事件
+ * <p>
+ * 连接的一次写入阻塞超过阈值被驱逐时发布：此时写线程仍阻塞在该连接上，
+ * 监听方只应从注册表中移除连接、释放缓冲，不能在监听线程中关闭emitter。
+ * @author weimeilayer@gmail.com ✨
+ * @date 💓💕 2024年4月12日 🐬🐇 💓💕
+ */
+@Getter
+public class ConnectionStalledEvent extends ApplicationEvent {
+
+    /**
+     * 客户端ID，无法确定时为null
+     */
+    private final String clientId;
+    private final SseEmitter emitter;
+    private final long blockedMillis;
+
+    public ConnectionStalledEvent(Object source, String clientId, SseEmitter emitter, long blockedMillis) {
+        super(source);
+        this.clientId = clientId;
+        this.emitter = emitter;
+        this.blockedMillis = blockedMillis;
+    }
+}
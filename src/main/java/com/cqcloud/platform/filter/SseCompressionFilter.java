@@ -0,0 +1,386 @@
+package com.cqcloud.platform.filter;
+
+import com.cqcloud.platform.config.SseProperties;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * SSE流压缩过滤器
+ * <p>
+ * 每个连接持有独立的Deflater，字典在事件之间复用；每次事件发送后的flush
+ * 使用SYNC_FLUSH，保证客户端立即收到完整事件。
+ * @author weimeilayer@gmail.com ✨
+ * @date 💓💕 2024年4月12日 🐬🐇 💓💕
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class SseCompressionFilter extends OncePerRequestFilter {
+
+    /**
+     * zlib默认参数（windowBits=15, memLevel=8）下单个Deflater的内存估算
+     */
+    private static final long DEFLATER_MEMORY_ESTIMATE = 262 * 1024L;
+
+    private final SseProperties properties;
+    private final AntPathMatcher pathMatcher = new AntPathMatcher();
+
+    private final AtomicInteger activeStreams = new AtomicInteger();
+    private final LongAdder compressedStreams = new LongAdder();
+    private final LongAdder skippedStreams = new LongAdder();
+    private final LongAdder bytesIn = new LongAdder();
+    private final LongAdder bytesOut = new LongAdder();
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        SseProperties.Compression compression = properties.getCompression();
+        if (!compression.isEnabled()) {
+            return true;
+        }
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        return compression.getPaths().stream().noneMatch(pattern -> pathMatcher.match(pattern, path));
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        String encoding = negotiateEncoding(request.getHeader(HttpHeaders.ACCEPT_ENCODING));
+        if (encoding == null || !acquireSlot()) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        CompressingResponse compressingResponse = new CompressingResponse(response, encoding);
+        compressedStreams.increment();
+
+        try {
+            filterChain.doFilter(request, compressingResponse);
+        } finally {
+            if (request.isAsyncStarted()) {
+                request.getAsyncContext().addListener(new ReleaseListener(compressingResponse));
+            } else {
+                compressingResponse.release();
+            }
+        }
+    }
+
+    /**
+     * 获取压缩统计信息
+     */
+    public Map<String, Object> getStatistics() {
+        SseProperties.Compression compression = properties.getCompression();
+        int active = activeStreams.get();
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", compression.isEnabled());
+        stats.put("activeStreams", active);
+        stats.put("maxCompressedStreams", compression.getMaxCompressedStreams());
+        stats.put("compressedStreams", compressedStreams.sum());
+        stats.put("skippedStreams", skippedStreams.sum());
+        stats.put("bytesIn", bytesIn.sum());
+        stats.put("bytesOut", bytesOut.sum());
+        stats.put("estimatedMemoryBytes", active * (DEFLATER_MEMORY_ESTIMATE + compression.getBufferSize()));
+        return stats;
+    }
+
+    /**
+     * 占用一个压缩名额，超过上限时不压缩
+     */
+    private boolean acquireSlot() {
+        int max = properties.getCompression().getMaxCompressedStreams();
+        while (true) {
+            int current = activeStreams.get();
+            if (current >= max) {
+                skippedStreams.increment();
+                return false;
+            }
+            if (activeStreams.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 根据Accept-Encoding选择编码
+     */
+    private String negotiateEncoding(String acceptEncoding) {
+        if (acceptEncoding == null || acceptEncoding.isBlank()) {
+            return null;
+        }
+        Map<String, Boolean> accepted = new HashMap<>();
+        for (String token : acceptEncoding.split(",")) {
+            String[] parts = token.trim().split(";");
+            String name = parts[0].trim().toLowerCase(Locale.ROOT);
+            boolean disabled = false;
+            for (int i = 1; i < parts.length; i++) {
+                String param = parts[i].trim().replace(" ", "");
+                if (param.equals("q=0") || param.matches("q=0\\.0{0,3}")) {
+                    disabled = true;
+                }
+            }
+            accepted.put(name, !disabled);
+        }
+        for (String encoding : properties.getCompression().getEncodings()) {
+            if (Boolean.TRUE.equals(accepted.get(encoding))) {
+                return encoding;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 异步请求结束时释放压缩资源
+     */
+    private record ReleaseListener(CompressingResponse response) implements AsyncListener {
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            response.release();
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            response.release();
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            response.release();
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            event.getAsyncContext().addListener(this);
+        }
+    }
+
+    /**
+     * 压缩响应包装，首次获取输出流时才创建Deflater并写出编码头
+     */
+    private class CompressingResponse extends HttpServletResponseWrapper {
+
+        private final String encoding;
+        private final AtomicBoolean released = new AtomicBoolean();
+        private Deflater deflater;
+        private CompressingOutputStream outputStream;
+        private PrintWriter writer;
+
+        CompressingResponse(HttpServletResponse response, String encoding) {
+            super(response);
+            this.encoding = encoding;
+        }
+
+        @Override
+        public synchronized ServletOutputStream getOutputStream() throws IOException {
+            if (outputStream == null) {
+                if (released.get()) {
+                    return super.getOutputStream();
+                }
+                HttpServletResponse response = (HttpServletResponse) getResponse();
+                response.setHeader(HttpHeaders.CONTENT_ENCODING, encoding);
+                response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+
+                SseProperties.Compression compression = properties.getCompression();
+                ServletOutputStream delegate = response.getOutputStream();
+                OutputStream target = new CountingOutputStream(delegate);
+                DeflaterOutputStream compressor;
+                if ("gzip".equals(encoding)) {
+                    GzipStream gzip = new GzipStream(target, compression.getBufferSize(), compression.getLevel());
+                    deflater = gzip.deflater();
+                    compressor = gzip;
+                } else {
+                    deflater = new Deflater(compression.getLevel());
+                    compressor = new DeflaterOutputStream(target, deflater, compression.getBufferSize(), true);
+                }
+                outputStream = new CompressingOutputStream(delegate, compressor);
+            }
+            return outputStream;
+        }
+
+        @Override
+        public synchronized PrintWriter getWriter() throws IOException {
+            if (writer == null) {
+                String characterEncoding = getCharacterEncoding();
+                Charset charset = characterEncoding != null ? Charset.forName(characterEncoding) : StandardCharsets.UTF_8;
+                writer = new PrintWriter(new OutputStreamWriter(getOutputStream(), charset));
+            }
+            return writer;
+        }
+
+        @Override
+        public synchronized void flushBuffer() throws IOException {
+            if (writer != null) {
+                writer.flush();
+            }
+            if (outputStream != null) {
+                outputStream.flush();
+            }
+            super.flushBuffer();
+        }
+
+        @Override
+        public void setContentLength(int len) {
+            // 压缩后长度未知
+        }
+
+        @Override
+        public void setContentLengthLong(long len) {
+            // 压缩后长度未知
+        }
+
+        @Override
+        public void setHeader(String name, String value) {
+            if (!HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(name)) {
+                super.setHeader(name, value);
+            }
+        }
+
+        @Override
+        public void addHeader(String name, String value) {
+            if (!HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(name)) {
+                super.addHeader(name, value);
+            }
+        }
+
+        /**
+         * 结束压缩流并释放Deflater本地内存
+         */
+        void release() {
+            if (!released.compareAndSet(false, true)) {
+                return;
+            }
+            CompressingOutputStream stream;
+            synchronized (this) {
+                stream = outputStream;
+            }
+            if (stream == null) {
+                activeStreams.decrementAndGet();
+                return;
+            }
+            try {
+                stream.finish();
+            } catch (IOException | RuntimeException e) {
+                log.debug("结束压缩流失败: {}", e.getMessage());
+            } finally {
+                deflater.end();
+                activeStreams.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * 可访问内部Deflater的GZIP输出流
+     */
+    private static class GzipStream extends GZIPOutputStream {
+
+        GzipStream(OutputStream out, int size, int level) throws IOException {
+            super(out, size, true);
+            def.setLevel(level);
+        }
+
+        Deflater deflater() {
+            return def;
+        }
+    }
+
+    /**
+     * 写入压缩器的Servlet输出流
+     */
+    private class CompressingOutputStream extends ServletOutputStream {
+
+        private final ServletOutputStream delegate;
+        private final DeflaterOutputStream compressor;
+
+        CompressingOutputStream(ServletOutputStream delegate, DeflaterOutputStream compressor) {
+            this.delegate = delegate;
+            this.compressor = compressor;
+        }
+
+        @Override
+        public synchronized void write(int b) throws IOException {
+            compressor.write(b);
+            bytesIn.increment();
+        }
+
+        @Override
+        public synchronized void write(byte[] b, int off, int len) throws IOException {
+            compressor.write(b, off, len);
+            bytesIn.add(len);
+        }
+
+        @Override
+        public synchronized void flush() throws IOException {
+            // syncFlush=true，每个事件都以完整的压缩块发出
+            compressor.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+
+        synchronized void finish() throws IOException {
+            compressor.finish();
+            compressor.flush();
+        }
+
+        @Override
+        public boolean isReady() {
+            return delegate.isReady();
+        }
+
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+            delegate.setWriteListener(writeListener);
+        }
+    }
+
+    /**
+     * 统计压缩后写出字节数
+     */
+    private class CountingOutputStream extends FilterOutputStream {
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            bytesOut.increment();
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            bytesOut.add(len);
+        }
+    }
+}
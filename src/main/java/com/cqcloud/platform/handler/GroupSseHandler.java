@@ -1,17 +1,45 @@
 package com.cqcloud.platform.handler;
 
+import com.cqcloud.platform.cluster.ClusterPresenceService;
+import com.cqcloud.platform.cluster.MemberPage;
+import com.cqcloud.platform.config.SseProperties;
 import com.cqcloud.platform.dto.*;
+import com.cqcloud.platform.service.BulkPublishService;
+import com.cqcloud.platform.service.DeliveryAckService;
+import com.cqcloud.platform.service.DeliveryTracer;
+import com.cqcloud.platform.service.GroupExistsException;
+import com.cqcloud.platform.service.GroupFullException;
 import com.cqcloud.platform.service.GroupMembersManager;
 import com.cqcloud.platform.service.GroupMessageService;
+import com.cqcloud.platform.service.GroupSnapshotService;
+import com.cqcloud.platform.service.LargeGroupFanout;
+import com.cqcloud.platform.service.MemberChangeBatcher;
+import com.cqcloud.platform.service.MessageFilter;
+import com.cqcloud.platform.service.SseDrainService;
+import com.cqcloud.platform.service.SseRateLimiter;
+import com.cqcloud.platform.service.StateStreamLimitException;
+import com.cqcloud.platform.service.StateStreamService;
+import com.cqcloud.platform.service.TenantService;
+import com.cqcloud.platform.util.CursorPageWriter;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
@@ -27,53 +55,160 @@ import java.util.UUID;
 @RequiredArgsConstructor
 public class GroupSseHandler {
 
+    // 统计接口最多返回的群组数
+    private static final int MAX_TOP_GROUPS = 100;
+
     private final GroupMembersManager groupMembersManager;
     private final GroupMessageService groupMessageService;
+    private final StateStreamService stateStreamService;
+    private final SseRateLimiter sseRateLimiter;
+    private final BulkPublishService bulkPublishService;
+    private final SseDrainService sseDrainService;
+    private final ClusterPresenceService clusterPresenceService;
+    private final DeliveryAckService deliveryAckService;
+    private final DeliveryTracer deliveryTracer;
+    private final MemberChangeBatcher memberChangeBatcher;
+    private final LargeGroupFanout largeGroupFanout;
+    private final GroupSnapshotService groupSnapshotService;
+    private final TenantService tenantService;
+    private final SseProperties sseProperties;
+    private final ObjectMapper objectMapper;
 
     /**
-     * 连接SSE并加入群组
+     * 连接SSE并加入群组，群组人数已满或属于其他租户时下发group_full/group_forbidden事件后关闭连接
+     * @param filter 可选的消息过滤表达式，如 type in ('chat') and extra.region == 'east'
+     * @param ack    是否启用确认模式：未确认的消息超时或重连后重发
      */
     @GetMapping(value = "/connect", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
     public SseEmitter connectAndJoinGroup(
             @RequestParam String userId,
             @RequestParam String groupId,
-            HttpServletRequest request) {
+            @RequestParam(required = false) String filter,
+            @RequestParam(defaultValue = "false") boolean ack,
+            HttpServletRequest request,
+            HttpServletResponse response) {
+
+        SseEmitter rejected = admit(userId, response);
+        if (rejected != null) {
+            return rejected;
+        }
 
+        String tenantId = tenantService.resolve(request);
         String clientId = generateClientId(request, userId);
+        SseEmitter emitter = openStream(clientId, userId, tenantId, compileFilter(filter), ack, false);
+        if (emitter == null) {
+            return tenantService.rejectConnection(tenantId);
+        }
 
-        // 创建SSE连接
-        SseEmitter emitter = new SseEmitter(30 * 60 * 1000L);
+        // 加入群组
+        if (subscribeGroup(clientId, userId, groupId) != null) {
+            groupMessageService.removeClient(clientId);
+        }
 
-        // 添加到消息服务
-        groupMessageService.addClientConnection(clientId, userId, emitter);
+        return emitter;
+    }
 
-        // 加入群组
-        boolean joined = groupMembersManager.joinGroup(clientId, userId, groupId);
+    /**
+     * 打开多路复用连接：一个连接订阅多个群组，之后通过订阅接口动态增减
+     * <p>
+     * 连接后先下发stream_open事件（含clientId），事件数据中的channel（group:xxx、topic:xxx）标识来源。
+     * 无法加入的群组下发group_full/group_forbidden事件，连接保持。
+     * @param groupIds 可选的初始订阅群组
+     */
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter openMultiplexedStream(
+            @RequestParam String userId,
+            @RequestParam(required = false) List<String> groupIds,
+            @RequestParam(required = false) String filter,
+            @RequestParam(defaultValue = "false") boolean ack,
+            HttpServletRequest request,
+            HttpServletResponse response) {
+
+        SseEmitter rejected = admit(userId, response);
+        if (rejected != null) {
+            return rejected;
+        }
 
-        if (joined) {
-            // 发送加入事件
-            GroupEvent joinEvent = GroupEvent.join(clientId, userId, groupId);
-            groupMessageService.sendMemberChangeEvent(groupId, joinEvent);
-
-            // 发送欢迎消息
-            NotificationMessage welcomeMsg = NotificationMessage.builder()
-                    .type("welcome")
-                    .title("欢迎加入群组")
-                    .content(userId + " 加入了群组")
-                    .sender("system")
-                    .groupId(groupId)
-                    .createdAt(LocalDateTime.now())
-                    .build();
-
-            groupMessageService.sendToGroup(groupId, welcomeMsg);
+        String tenantId = tenantService.resolve(request);
+        String clientId = generateClientId(request, userId);
+        SseEmitter emitter = openStream(clientId, userId, tenantId, compileFilter(filter), ack, true);
+        if (emitter == null) {
+            return tenantService.rejectConnection(tenantId);
+        }
 
-            log.info("用户加入群组成功: userId={}, groupId={}, clientId={}",
-                    userId, groupId, clientId);
+        if (groupIds != null) {
+            groupIds.forEach(groupId -> subscribeGroup(clientId, userId, groupId));
         }
 
         return emitter;
     }
 
+    /**
+     * 在已有连接上订阅群组，有群组无法加入时返回409并列出被拒绝的群组及原因
+     */
+    @PostMapping("/stream/{clientId}/subscribe")
+    public ResponseEntity<ApiResponse> subscribeGroups(
+            @PathVariable String clientId,
+            @RequestParam String userId,
+            @RequestParam List<String> groupIds) {
+
+        ResponseEntity<ApiResponse> invalid = checkStreamOwner(clientId, userId);
+        if (invalid != null) {
+            return invalid;
+        }
+        Map<String, String> rejected = new LinkedHashMap<>();
+        groupIds.forEach(groupId -> {
+            String reason = subscribeGroup(clientId, userId, groupId);
+            if (reason != null) {
+                rejected.put(groupId, reason);
+            }
+        });
+
+        if (!rejected.isEmpty()) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(ApiResponse.builder()
+                            .success(false)
+                            .message("部分群组无法加入")
+                            .data(Map.of(
+                                    "clientId", clientId,
+                                    "groups", groupMembersManager.getClientGroups(clientId),
+                                    "rejected", rejected
+                            ))
+                            .timestamp(System.currentTimeMillis())
+                            .build());
+        }
+
+        return ResponseEntity.ok(ApiResponse.success(Map.of(
+                "clientId", clientId,
+                "groups", groupMembersManager.getClientGroups(clientId)
+        )));
+    }
+
+    /**
+     * 在已有连接上取消订阅群组，连接保持
+     */
+    @PostMapping("/stream/{clientId}/unsubscribe")
+    public ResponseEntity<ApiResponse> unsubscribeGroups(
+            @PathVariable String clientId,
+            @RequestParam String userId,
+            @RequestParam List<String> groupIds) {
+
+        ResponseEntity<ApiResponse> invalid = checkStreamOwner(clientId, userId);
+        if (invalid != null) {
+            return invalid;
+        }
+        groupIds.forEach(groupId -> {
+            if (groupMembersManager.leaveGroup(clientId, groupId)) {
+                memberChangeBatcher.record(GroupEvent.leave(clientId, userId, groupId));
+            }
+        });
+
+        return ResponseEntity.ok(ApiResponse.success(Map.of(
+                "clientId", clientId,
+                "groups", groupMembersManager.getClientGroups(clientId)
+        )));
+    }
+
     /**
      * 发送群组消息
      */
@@ -81,7 +216,18 @@ public class GroupSseHandler {
     public ResponseEntity<ApiResponse> sendGroupMessage(
             @PathVariable String groupId,
             @RequestParam String userId,
-            @RequestBody MessageRequest messageRequest) {
+            @RequestBody MessageRequest messageRequest,
+            HttpServletRequest request) {
+
+        long retryAfter = sseRateLimiter.tryPublish(userId, groupId);
+        if (retryAfter > 0) {
+            return tooManyRequests(retryAfter);
+        }
+        String tenantId = tenantService.resolve(request);
+        ResponseEntity<ApiResponse> denied = checkTenantPublish(tenantId, List.of(groupId));
+        if (denied != null) {
+            return denied;
+        }
 
         NotificationMessage message = NotificationMessage.builder()
                 .id(UUID.randomUUID().toString())
@@ -94,27 +240,259 @@ public class GroupSseHandler {
                 .extra(messageRequest.getExtra())
                 .build();
 
-        groupMessageService.sendToGroup(groupId, message);
+        // 启用多租户时在租户的发送线程池中扇出
+        if (!tenantService.execute(tenantId, () -> groupMessageService.sendToGroup(groupId, message))) {
+            return tenantBusy();
+        }
 
         return ResponseEntity.ok(ApiResponse.success("消息发送成功"));
     }
 
     /**
-     * 获取群组成员
+     * 发送消息到多个群组，同时在多个群组中的成员只收到一次
+     */
+    @PostMapping("/send")
+    public ResponseEntity<ApiResponse> sendToGroups(
+            @RequestParam String userId,
+            @RequestBody GroupsMessageRequest groupsRequest,
+            HttpServletRequest request) {
+
+        if (groupsRequest.getGroupIds() == null || groupsRequest.getGroupIds().isEmpty()
+                || groupsRequest.getMessage() == null) {
+            return ResponseEntity.badRequest()
+                    .body(ApiResponse.error("群组和消息内容不能为空"));
+        }
+
+        long retryAfter = sseRateLimiter.tryPublish(userId, null);
+        if (retryAfter > 0) {
+            return tooManyRequests(retryAfter);
+        }
+        String tenantId = tenantService.resolve(request);
+        ResponseEntity<ApiResponse> denied = checkTenantPublish(tenantId, groupsRequest.getGroupIds());
+        if (denied != null) {
+            return denied;
+        }
+
+        MessageRequest messageRequest = groupsRequest.getMessage();
+        NotificationMessage message = NotificationMessage.builder()
+                .id(UUID.randomUUID().toString())
+                .type(messageRequest.getType() != null ? messageRequest.getType() : "chat")
+                .title(messageRequest.getTitle())
+                .content(messageRequest.getContent())
+                .sender(userId)
+                .createdAt(LocalDateTime.now())
+                .extra(messageRequest.getExtra())
+                .build();
+
+        // 启用多租户时在租户的发送线程池中异步扇出，不返回送达数
+        if (tenantId != null) {
+            if (!tenantService.execute(tenantId, () -> groupMessageService.sendToGroups(groupsRequest.getGroupIds(), message))) {
+                return tenantBusy();
+            }
+            return ResponseEntity.accepted().body(ApiResponse.success(Map.of("messageId", message.getId())));
+        }
+
+        int delivered = groupMessageService.sendToGroups(groupsRequest.getGroupIds(), message);
+
+        return ResponseEntity.ok(ApiResponse.success(Map.of(
+                "messageId", message.getId(),
+                "delivered", delivered
+        )));
+    }
+
+    /**
+     * 批量确认已收到的事件，只能确认本用户自己的连接（连接不存在返回404，属于其他用户返回403）
+     */
+    @PostMapping("/ack")
+    public ResponseEntity<ApiResponse> acknowledge(
+            @RequestParam String userId,
+            @RequestBody AckRequest ackRequest,
+            HttpServletRequest request) {
+
+        if (ackRequest.getEventIds() == null || ackRequest.getEventIds().isEmpty()) {
+            return ResponseEntity.badRequest()
+                    .body(ApiResponse.error("事件ID不能为空"));
+        }
+        String clientId = ackRequest.getClientId() != null
+                ? ackRequest.getClientId() : generateClientId(request, userId);
+
+        // 只能确认自己连接上的事件，否则任何人都能清掉其他客户端待重发的事件
+        ResponseEntity<ApiResponse> invalid = checkStreamOwner(clientId, userId);
+        if (invalid != null) {
+            return invalid;
+        }
+
+        try {
+            int acked = deliveryAckService.acknowledge(clientId, ackRequest.getEventIds());
+            return ResponseEntity.ok(ApiResponse.success(Map.of(
+                    "acked", acked,
+                    "pending", deliveryAckService.getPendingCount(clientId)
+            )));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(ApiResponse.error(e.getMessage()));
+        }
+    }
+
+    /**
+     * 获取消息确认统计信息
+     */
+    @GetMapping("/ack/statistics")
+    public ResponseEntity<ApiResponse> getAckStatistics() {
+        return ResponseEntity.ok(ApiResponse.success(deliveryAckService.getStatistics()));
+    }
+
+    /**
+     * 上报事件接收时间（批量），用于统计客户端侧的投递延迟
+     */
+    @PostMapping("/trace/receipts")
+    public ResponseEntity<ApiResponse> reportReceipts(@RequestBody ReceiptRequest receiptRequest) {
+        if (receiptRequest.getReceipts() == null || receiptRequest.getReceipts().isEmpty()) {
+            return ResponseEntity.badRequest()
+                    .body(ApiResponse.error("接收记录不能为空"));
+        }
+        try {
+            int matched = deliveryTracer.acceptReceipts(receiptRequest.getReceipts());
+            return ResponseEntity.ok(ApiResponse.success(Map.of("matched", matched)));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(ApiResponse.error(e.getMessage()));
+        }
+    }
+
+    /**
+     * 获取投递延迟统计信息
+     */
+    @GetMapping("/trace/statistics")
+    public ResponseEntity<ApiResponse> getTraceStatistics() {
+        return ResponseEntity.ok(ApiResponse.success(deliveryTracer.getStatistics()));
+    }
+
+    /**
+     * 批量发布：一次请求发送多条消息到多个目标（CLIENT/USER/GROUP/TOPIC）
+     */
+    @PostMapping("/bulk/send")
+    public ResponseEntity<ApiResponse> bulkSend(
+            @RequestParam String userId,
+            @RequestBody BulkPublishRequest bulkRequest,
+            HttpServletRequest request) {
+
+        String tenantId = tenantService.resolve(request);
+        if (tenantId != null && bulkRequest.getItems() != null) {
+            List<String> groupIds = bulkRequest.getItems().stream()
+                    .filter(item -> "GROUP".equalsIgnoreCase(item.getTargetType()) && item.getTargetId() != null)
+                    .map(BulkPublishItem::getTargetId)
+                    .distinct()
+                    .toList();
+            ResponseEntity<ApiResponse> denied = checkTenantPublish(tenantId, groupIds);
+            if (denied != null) {
+                return denied;
+            }
+        }
+
+        try {
+            List<BulkPublishResult> results = bulkPublishService.publish(userId, tenantId, bulkRequest.getItems());
+            return ResponseEntity.ok(ApiResponse.success(results));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(ApiResponse.error(e.getMessage()));
+        }
+    }
+
+    /**
+     * 发布群组状态（增量推送），状态流数量已达上限时返回503
+     */
+    @PostMapping("/{groupId}/state/{streamKey}")
+    public ResponseEntity<ApiResponse> publishGroupState(
+            @PathVariable String groupId,
+            @PathVariable String streamKey,
+            @RequestBody Object state) {
+
+        try {
+            stateStreamService.publishToGroup(groupId, streamKey, state);
+        } catch (StateStreamLimitException e) {
+            log.warn("状态流数量已达上限，拒绝发布: groupId={}, streamKey={}, maxStreams={}",
+                    groupId, streamKey, e.getMaxStreams());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .body(ApiResponse.error("状态流数量已达上限，请稍后重试"));
+        }
+
+        return ResponseEntity.ok(ApiResponse.success("状态发布成功"));
+    }
+
+    /**
+     * 分页获取群组成员
+     * @param cursor     上一页返回的nextCursor，首页不传
+     * @param onlineOnly 只返回在线成员（本页内过滤，页面可能不足limit条）
      */
     @GetMapping("/{groupId}/members")
-    public ResponseEntity<ApiResponse> getGroupMembers(@PathVariable String groupId) {
-        Set<String> members = groupMembersManager.getGroupMembers(groupId);
-        Set<String> onlineMembers = groupMessageService.getOnlineGroupMembers(groupId);
-
-        Map<String, Object> result = Map.of(
-                "totalMembers", members.size(),
-                "onlineMembers", onlineMembers.size(),
-                "members", members,
-                "onlineMembers", onlineMembers
+    public ResponseEntity<StreamingResponseBody> getGroupMembers(
+            @PathVariable String groupId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "100") int limit,
+            @RequestParam(defaultValue = "false") boolean onlineOnly) {
+
+        MemberPage page;
+        try {
+            page = groupMembersManager.scanGroupMembers(groupId, cursor, CursorPageWriter.clampLimit(limit));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+        Set<String> online = clusterPresenceService.filterOnline(page.members());
+
+        Map<String, Object> summary = Map.of(
+                "groupId", groupId,
+                "totalMembers", groupMembersManager.getGroupMemberCount(groupId)
         );
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(CursorPageWriter.writePage(objectMapper, summary, page.members().stream()
+                        .filter(clientId -> !onlineOnly || online.contains(clientId))
+                        .map(clientId -> Map.of("clientId", clientId, "online", online.contains(clientId)))
+                        .iterator(), page.nextCursor()));
+    }
+
+    /**
+     * 分页获取本节点连接，可按用户、群组、连接时间过滤
+     */
+    @GetMapping("/connections")
+    public ResponseEntity<StreamingResponseBody> getConnections(ConnectionQuery query) {
+        Map<String, Object> summary = Map.of("onlineClients", groupMessageService.getOnlineClientCount());
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(CursorPageWriter.streamPage(objectMapper, summary, groupMessageService.listConnections(query),
+                        CursorPageWriter.clampLimit(query.getLimit()), ClientInfo::getClientId));
+    }
+
+    /**
+     * 创建群组
+     * @param maxMembers 人数上限，不传表示不限制
+     */
+    @PostMapping("/{groupId}/create")
+    public ResponseEntity<ApiResponse> createGroup(
+            @PathVariable String groupId,
+            @RequestParam String userId,
+            @RequestParam(required = false) String groupName,
+            @RequestParam(required = false) Integer maxMembers,
+            HttpServletRequest request) {
+
+        if (maxMembers != null && maxMembers <= 0) {
+            return ResponseEntity.badRequest()
+                    .body(ApiResponse.error("人数上限必须大于0"));
+        }
+        String tenantId = tenantService.resolve(request);
+        Map<String, Object> metadata = new HashMap<>();
+        if (tenantId != null) {
+            metadata.put(TenantService.TENANT_METADATA_KEY, tenantId);
+        }
 
-        return ResponseEntity.ok(ApiResponse.success(result));
+        try {
+            return ResponseEntity.ok(ApiResponse.success(groupMembersManager.createGroup(
+                    groupId, userId, groupName != null ? groupName : groupId, maxMembers, metadata)));
+        } catch (GroupExistsException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(ApiResponse.error("群组已存在"));
+        }
     }
 
     /**
@@ -133,8 +511,7 @@ public class GroupSseHandler {
 
             if (left) {
                 // 发送离开事件
-                GroupEvent leaveEvent = GroupEvent.leave(clientId, userId, groupId);
-                groupMessageService.sendMemberChangeEvent(groupId, leaveEvent);
+                memberChangeBatcher.record(GroupEvent.leave(clientId, userId, groupId));
 
                 // 移除客户端连接
                 groupMessageService.removeClient(clientId);
@@ -149,15 +526,217 @@ public class GroupSseHandler {
 
     /**
      * 获取群组统计信息
+     * @param top 返回人数最多的群组个数
      */
     @GetMapping("/statistics")
-    public ResponseEntity<ApiResponse> getStatistics() {
-        Map<String, Object> stats = groupMembersManager.getGroupStatistics();
-        stats.put("onlineClients", groupMessageService.getOnlineClients().size());
+    public ResponseEntity<ApiResponse> getStatistics(@RequestParam(defaultValue = "10") int top) {
+        Map<String, Object> stats = groupMembersManager.getGroupStatistics(Math.max(1, Math.min(top, MAX_TOP_GROUPS)));
+        stats.put("onlineClients", groupMessageService.getOnlineClientCount());
+        stats.put("memberChange", memberChangeBatcher.getStatistics());
+        stats.put("largeGroup", largeGroupFanout.getStatistics());
 
         return ResponseEntity.ok(ApiResponse.success(stats));
     }
 
+    /**
+     * 获取集群在线状态统计信息
+     */
+    @GetMapping("/cluster/statistics")
+    public ResponseEntity<ApiResponse> getClusterStatistics() {
+        return ResponseEntity.ok(ApiResponse.success(clusterPresenceService.getStatistics()));
+    }
+
+    /**
+     * 获取群组快照统计信息
+     */
+    @GetMapping("/snapshot/statistics")
+    public ResponseEntity<ApiResponse> getSnapshotStatistics() {
+        return ResponseEntity.ok(ApiResponse.success(groupSnapshotService.getStatistics()));
+    }
+
+    /**
+     * 连接准入：停机排空或限流时返回拒绝用的连接
+     */
+    private SseEmitter admit(String userId, HttpServletResponse response) {
+        // 停机排空中，让客户端按随机间隔重连到其他节点
+        if (sseDrainService.isDraining()) {
+            return sseDrainService.rejectConnection();
+        }
+
+        long retryAfter = sseRateLimiter.tryConnect(userId);
+        if (retryAfter > 0) {
+            log.warn("群组连接被限流: userId={}, retry={}ms", userId, retryAfter);
+            response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf((retryAfter + 999) / 1000));
+            return sseRateLimiter.rejectConnection(retryAfter);
+        }
+        return null;
+    }
+
+    /**
+     * 编译消息过滤器
+     */
+    private static MessageFilter compileFilter(String filter) {
+        if (filter == null || filter.isBlank()) {
+            return null;
+        }
+        try {
+            return MessageFilter.compile(filter);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    /**
+     * 创建SSE连接并登记到消息服务
+     * @param multiplexed 是否为多路复用连接（先下发stream_open事件）
+     */
+    private SseEmitter openStream(String clientId, String userId, String tenantId, MessageFilter messageFilter,
+                                  boolean ack, boolean multiplexed) {
+        SseEmitter emitter = new SseEmitter(30 * 60 * 1000L);
+        if (!tenantService.register(tenantId, clientId, emitter)) {
+            return null;
+        }
+        groupMessageService.addClientConnection(clientId, userId, emitter);
+        groupMessageService.setClientFilter(clientId, messageFilter);
+
+        if (multiplexed) {
+            groupMessageService.sendToClient(clientId, SseEvent.builder()
+                    .event("stream_open")
+                    .data(Map.of("clientId", clientId))
+                    .build());
+        }
+
+        // 确认模式：下发clientId供客户端确认，并重发上次连接未确认的事件
+        if (ack) {
+            groupMessageService.sendToClient(clientId, SseEvent.builder()
+                    .event("ack_mode")
+                    .data(Map.of(
+                            "clientId", clientId,
+                            "timeout", sseProperties.getAck().getTimeout().toMillis()
+                    ))
+                    .build());
+        }
+        deliveryAckService.onConnect(clientId, ack);
+        return emitter;
+    }
+
+    /**
+     * 加入群组：通知成员（按窗口合并）、发送欢迎消息和群组状态快照
+     * @return 无法加入的原因（group_full、group_forbidden），已向连接下发同名事件；加入成功为null
+     */
+    private String subscribeGroup(String clientId, String userId, String groupId) {
+        if (!tenantService.claimGroup(tenantService.tenantOf(clientId), groupId, userId)) {
+            groupMessageService.sendToClient(clientId, SseEvent.builder()
+                    .event("group_forbidden")
+                    .data(Map.of(
+                            "groupId", groupId,
+                            "message", "群组属于其他租户"
+                    ))
+                    .build());
+            return "group_forbidden";
+        }
+
+        boolean joined;
+        try {
+            joined = groupMembersManager.joinGroup(clientId, userId, groupId);
+        } catch (GroupFullException e) {
+            groupMessageService.sendToClient(clientId, SseEvent.builder()
+                    .event("group_full")
+                    .data(Map.of(
+                            "groupId", groupId,
+                            "maxMembers", e.getMaxMembers(),
+                            "message", "群组人数已达上限"
+                    ))
+                    .build());
+            return "group_full";
+        }
+
+        if (joined) {
+            // 记录加入事件，窗口结束时合并发送
+            memberChangeBatcher.record(GroupEvent.join(clientId, userId, groupId));
+
+            if (shouldWelcome(groupId)) {
+                sendWelcome(userId, groupId);
+            }
+
+            log.info("用户加入群组成功: userId={}, groupId={}, clientId={}",
+                    userId, groupId, clientId);
+        }
+
+        // 发送群组状态流的全量快照
+        stateStreamService.sendSnapshots(clientId, groupId);
+        return null;
+    }
+
+    /**
+     * 大群组逐个广播欢迎消息的写出量随人数平方增长，超过上限的群组不发送
+     */
+    private boolean shouldWelcome(String groupId) {
+        SseProperties.MemberChange memberChange = sseProperties.getMemberChange();
+        if (!memberChange.isWelcomeEnabled()) {
+            return false;
+        }
+        return memberChange.getWelcomeMaxMembers() <= 0
+                || groupMembersManager.getGroupMemberCount(groupId) <= memberChange.getWelcomeMaxMembers();
+    }
+
+    private void sendWelcome(String userId, String groupId) {
+        NotificationMessage welcomeMsg = NotificationMessage.builder()
+                .type("welcome")
+                .title("欢迎加入群组")
+                .content(userId + " 加入了群组")
+                .sender("system")
+                .groupId(groupId)
+                .createdAt(LocalDateTime.now())
+                .build();
+
+        groupMessageService.sendToGroup(groupId, welcomeMsg);
+    }
+
+    /**
+     * 校验连接存在且属于该用户
+     */
+    private ResponseEntity<ApiResponse> checkStreamOwner(String clientId, String userId) {
+        String owner = groupMessageService.getClientUserId(clientId);
+        if (owner == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(ApiResponse.error("连接不存在或已断开"));
+        }
+        if (!owner.equals(userId)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .body(ApiResponse.error("无权操作该连接"));
+        }
+        return null;
+    }
+
+    /**
+     * 租户发布检查：租户发布速率和群组归属
+     */
+    private ResponseEntity<ApiResponse> checkTenantPublish(String tenantId, Collection<String> groupIds) {
+        long retryAfter = tenantService.tryPublish(tenantId);
+        if (retryAfter > 0) {
+            return tooManyRequests(retryAfter);
+        }
+        for (String groupId : groupIds) {
+            if (!tenantService.canAccessGroup(tenantId, groupId)) {
+                return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                        .body(ApiResponse.error("群组属于其他租户: " + groupId));
+            }
+        }
+        return null;
+    }
+
+    private ResponseEntity<ApiResponse> tenantBusy() {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .body(ApiResponse.error("租户发送队列已满，请稍后重试"));
+    }
+
+    private ResponseEntity<ApiResponse> tooManyRequests(long retryAfterMillis) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf((retryAfterMillis + 999) / 1000))
+                .body(ApiResponse.error("请求过于频繁，请稍后重试"));
+    }
+
     /**
      * 生成客户端ID
      */
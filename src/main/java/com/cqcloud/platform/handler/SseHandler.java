@@ -1,19 +1,43 @@
 package com.cqcloud.platform.handler;
 
+import com.cqcloud.platform.codec.PayloadCodec;
 import com.cqcloud.platform.dto.ApiResponse;
+import com.cqcloud.platform.dto.BroadcastStatus;
 import com.cqcloud.platform.dto.ConnectResponse;
 import com.cqcloud.platform.dto.MessageRequest;
 import com.cqcloud.platform.dto.SseEvent;
+import com.cqcloud.platform.event.ConnectionStalledEvent;
+import com.cqcloud.platform.filter.SseCompressionFilter;
+import com.cqcloud.platform.service.BroadcastService;
+import com.cqcloud.platform.service.DeliveryTracer;
+import com.cqcloud.platform.service.SseConnectionProvider;
+import com.cqcloud.platform.service.SseDrainService;
+import com.cqcloud.platform.service.SseHeartbeatService;
+import com.cqcloud.platform.service.SseOutboundWriter;
+import com.cqcloud.platform.service.SseRateLimiter;
+import com.cqcloud.platform.service.TenantService;
+import com.cqcloud.platform.service.WriteStallMonitor;
+import com.cqcloud.platform.util.CursorPageWriter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.io.IOException;
 import java.time.LocalDateTime;
+import java.util.HashMap;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
 
 /**
  * SSE处理
@@ -23,9 +47,23 @@ import java.util.concurrent.ConcurrentHashMap;
 @Slf4j
 @RestController
 @RequestMapping("/api/sse")
-public class SseHandler  {
-
-	private final Map<String, SseEmitter> emitters = new ConcurrentHashMap<>();
+@RequiredArgsConstructor
+public class SseHandler implements SseConnectionProvider {
+
+	private final SseCompressionFilter sseCompressionFilter;
+	private final SseRateLimiter sseRateLimiter;
+	private final SseOutboundWriter sseOutboundWriter;
+	private final BroadcastService broadcastService;
+	private final SseDrainService sseDrainService;
+	private final PayloadCodec payloadCodec;
+	private final WriteStallMonitor writeStallMonitor;
+	private final ObjectMapper objectMapper;
+	private final DeliveryTracer deliveryTracer;
+	private final SseHeartbeatService sseHeartbeatService;
+	private final TenantService tenantService;
+
+	// 按客户端ID排序，支持游标分页
+	private final ConcurrentNavigableMap<String, SseEmitter> emitters = new ConcurrentSkipListMap<>();
 
 	/**
 	 * 创建SSE连接
@@ -34,26 +72,49 @@ public class SseHandler  {
 	 */
 	@GetMapping(value = "/connect/{clientId}", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
 	public SseEmitter connect(@PathVariable String clientId,
-							  @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+							  @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId,
+							  HttpServletRequest request,
+							  HttpServletResponse response) {
 
 		log.info("SSE连接请求: clientId={}, lastEventId={}", clientId, lastEventId);
 
+		// 停机排空中，让客户端按随机间隔重连到其他节点
+		if (sseDrainService.isDraining()) {
+			return sseDrainService.rejectConnection();
+		}
+
+		// 连接准入
+		long retryAfter = sseRateLimiter.tryConnect(clientId);
+		if (retryAfter > 0) {
+			log.warn("SSE连接被限流: clientId={}, retry={}ms", clientId, retryAfter);
+			response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf((retryAfter + 999) / 1000));
+			return sseRateLimiter.rejectConnection(retryAfter);
+		}
+
 		// 设置连接超时（建议设置为30分钟到1小时）
 		SseEmitter emitter = new SseEmitter(30 * 60 * 1000L);
 
+		// 租户连接数上限
+		String tenantId = tenantService.resolve(request);
+		if (!tenantService.register(tenantId, clientId, emitter)) {
+			return tenantService.rejectConnection(tenantId);
+		}
+
 		// 存储连接
 		emitters.put(clientId, emitter);
 
 		try {
 			// 发送连接成功事件
+			ConnectResponse connectResponse = new ConnectResponse("连接成功", LocalDateTime.now());
+			connectResponse.setHeartbeatInterval(sseHeartbeatService.getIdleIntervalMillis());
 			SseEvent connectEvent = SseEvent.builder()
 					.event("connect")
 					.id(generateEventId())
-					.data(new ConnectResponse("连接成功", LocalDateTime.now()))
+					.data(connectResponse)
 					.retry(5000L) // 重连时间
 					.build();
 
-			emitter.send(connectEvent);
+			emitter.send(SseEmitter.event().data(payloadCodec.encode(connectEvent)));
 
 			// 如果有上次最后的事件ID，发送错过的消息
 			if (lastEventId != null) {
@@ -63,6 +124,7 @@ public class SseHandler  {
 		} catch (IOException e) {
 			log.error("SSE连接初始化失败", e);
 			emitters.remove(clientId);
+			tenantService.unregister(clientId, emitter);
 			emitter.completeWithError(e);
 			return emitter;
 		}
@@ -70,7 +132,9 @@ public class SseHandler  {
 		// 设置完成回调
 		emitter.onCompletion(() -> {
 			log.info("SSE连接完成: clientId={}", clientId);
-			emitters.remove(clientId);
+			emitters.remove(clientId, emitter);
+			sseOutboundWriter.release(emitter);
+			tenantService.unregister(clientId, emitter);
 			notifyConnectionStatus(clientId, false);
 		});
 
@@ -83,7 +147,9 @@ public class SseHandler  {
 		// 设置错误回调
 		emitter.onError((ex) -> {
 			log.error("SSE连接错误: clientId={}", clientId, ex);
-			emitters.remove(clientId);
+			emitters.remove(clientId, emitter);
+			sseOutboundWriter.release(emitter);
+			tenantService.unregister(clientId, emitter);
 		});
 
 		// 通知连接状态
@@ -97,10 +163,24 @@ public class SseHandler  {
 	 */
 	@PostMapping("/send/{clientId}")
 	public ResponseEntity<ApiResponse> sendMessage(@PathVariable String clientId,
-												   @RequestBody MessageRequest request) {
+												   @RequestParam(required = false) String userId,
+												   @RequestBody MessageRequest request,
+												   HttpServletRequest httpRequest) {
+		// 未携带用户ID的请求按来源地址限流
+		long retryAfter = sseRateLimiter.tryPublish(SseRateLimiter.publisherKey(userId, httpRequest), null);
+		if (retryAfter > 0) {
+			return tooManyRequests(retryAfter);
+		}
+		String tenantId = tenantService.resolve(httpRequest);
+		retryAfter = tenantService.tryPublish(tenantId);
+		if (retryAfter > 0) {
+			return tooManyRequests(retryAfter);
+		}
+
 		try {
 			SseEmitter emitter = emitters.get(clientId);
-			if (emitter == null) {
+			// 其他租户的连接按不存在处理
+			if (emitter == null || (tenantId != null && !tenantId.equals(tenantService.tenantOf(clientId)))) {
 				return ResponseEntity.status(404)
 						.body(ApiResponse.error("客户端未连接"));
 			}
@@ -111,7 +191,8 @@ public class SseHandler  {
 					.data(request.getContent())
 					.build();
 
-			emitter.send(event);
+			writeStallMonitor.write(clientId, emitter,
+					() -> emitter.send(SseEmitter.event().data(payloadCodec.encode(event))));
 
 			// 记录发送成功
 			recordMessageSent(clientId, "message");
@@ -126,43 +207,74 @@ public class SseHandler  {
 	}
 
 	/**
-	 * 广播消息给所有客户端
+	 * 广播消息给所有客户端，启用多租户时只广播给本租户的连接
 	 */
 	@PostMapping("/broadcast")
-	public ResponseEntity<ApiResponse> broadcast(@RequestBody MessageRequest request) {
-		int successCount = 0;
-		int failCount = 0;
-
-		for (Map.Entry<String, SseEmitter> entry : emitters.entrySet()) {
-			try {
-				SseEvent event = SseEvent.builder()
-						.event("broadcast")
-						.id(generateEventId())
-						.data(request.getContent())
-						.build();
-
-				entry.getValue().send(event);
-				successCount++;
-			} catch (IOException e) {
-				log.error("广播消息失败: clientId={}", entry.getKey(), e);
-				emitters.remove(entry.getKey());
-				failCount++;
-			}
+	public ResponseEntity<ApiResponse> broadcast(@RequestParam(required = false) String userId,
+												 @RequestBody MessageRequest request,
+												 HttpServletRequest httpRequest) {
+		// 未携带用户ID的请求按来源地址限流
+		long retryAfter = sseRateLimiter.tryPublish(SseRateLimiter.publisherKey(userId, httpRequest), null);
+		if (retryAfter > 0) {
+			return tooManyRequests(retryAfter);
+		}
+		String tenantId = tenantService.resolve(httpRequest);
+		retryAfter = tenantService.tryPublish(tenantId);
+		if (retryAfter > 0) {
+			return tooManyRequests(retryAfter);
 		}
 
-		return ResponseEntity.ok(ApiResponse.success(
-				String.format("广播完成，成功: %d, 失败: %d", successCount, failCount)
+		SseEvent event = SseEvent.builder()
+				.event("broadcast")
+				.id(generateEventId())
+				.data(request.getContent())
+				.build();
+
+		// 入队后立即返回，由出站写入器异步投递
+		DeliveryTracer.Trace trace = deliveryTracer.start(event.getId());
+		SseEmitter.SseEventBuilder encoded = SseEmitter.event().data(payloadCodec.encode(event));
+		deliveryTracer.encoded(trace);
+		Map<String, SseEmitter> targets = tenantId == null ? Map.copyOf(emitters) : tenantConnections(tenantId);
+		String broadcastId = broadcastService.broadcast(
+				targets,
+				encoded,
+				trace,
+				(clientId, emitter) -> {
+					log.error("广播消息失败: clientId={}", clientId);
+					emitters.remove(clientId, emitter);
+				},
+				null);
+
+		return ResponseEntity.accepted().body(ApiResponse.success(
+				Map.of("broadcastId", broadcastId, "total", targets.size())
 		));
 	}
 
 	/**
-	 * 获取活跃连接列表
+	 * 查询广播进度
+	 */
+	@GetMapping("/broadcast/{broadcastId}")
+	public ResponseEntity<ApiResponse> getBroadcastStatus(@PathVariable String broadcastId) {
+		BroadcastStatus status = broadcastService.getStatus(broadcastId);
+		if (status == null) {
+			return ResponseEntity.status(404)
+					.body(ApiResponse.error("广播不存在"));
+		}
+		return ResponseEntity.ok(ApiResponse.success(status));
+	}
+
+	/**
+	 * 分页获取活跃连接列表
+	 * @param cursor 上一页返回的nextCursor，首页不传
 	 */
 	@GetMapping("/connections")
-	public ResponseEntity<ApiResponse> getActiveConnections() {
-		return ResponseEntity.ok(ApiResponse.success(
-				emitters.keySet().stream().toList()
-		));
+	public ResponseEntity<StreamingResponseBody> getActiveConnections(@RequestParam(required = false) String cursor,
+																	  @RequestParam(defaultValue = "100") int limit) {
+		Map<String, SseEmitter> page = cursor != null ? emitters.tailMap(cursor, false) : emitters;
+		return ResponseEntity.ok()
+				.contentType(MediaType.APPLICATION_JSON)
+				.body(CursorPageWriter.streamPage(objectMapper, Map.of("total", emitters.size()),
+						page.keySet().iterator(), CursorPageWriter.clampLimit(limit), clientId -> clientId));
 	}
 
 	/**
@@ -179,6 +291,83 @@ public class SseHandler  {
 				.body(ApiResponse.error("连接不存在"));
 	}
 
+	/**
+	 * 获取流压缩统计信息
+	 */
+	@GetMapping("/compression/statistics")
+	public ResponseEntity<ApiResponse> getCompressionStatistics() {
+		return ResponseEntity.ok(ApiResponse.success(sseCompressionFilter.getStatistics()));
+	}
+
+	/**
+	 * 获取出站写入统计信息
+	 */
+	@GetMapping("/outbound/statistics")
+	public ResponseEntity<ApiResponse> getOutboundStatistics() {
+		return ResponseEntity.ok(ApiResponse.success(sseOutboundWriter.getStatistics()));
+	}
+
+	/**
+	 * 获取写入阻塞统计信息
+	 */
+	@GetMapping("/stall/statistics")
+	public ResponseEntity<ApiResponse> getStallStatistics() {
+		return ResponseEntity.ok(ApiResponse.success(writeStallMonitor.getStatistics()));
+	}
+
+	/**
+	 * 获取心跳统计信息
+	 */
+	@GetMapping("/heartbeat/statistics")
+	public ResponseEntity<ApiResponse> getHeartbeatStatistics() {
+		return ResponseEntity.ok(ApiResponse.success(sseHeartbeatService.getStatistics()));
+	}
+
+	/**
+	 * 获取各租户统计信息
+	 */
+	@GetMapping("/tenant/statistics")
+	public ResponseEntity<ApiResponse> getTenantStatistics() {
+		return ResponseEntity.ok(ApiResponse.success(tenantService.getStatistics()));
+	}
+
+	/**
+	 * 获取限流统计信息
+	 */
+	@GetMapping("/rate-limit/statistics")
+	public ResponseEntity<ApiResponse> getRateLimitStatistics() {
+		return ResponseEntity.ok(ApiResponse.success(sseRateLimiter.getStatistics()));
+	}
+
+	private ResponseEntity<ApiResponse> tooManyRequests(long retryAfterMillis) {
+		return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+				.header(HttpHeaders.RETRY_AFTER, String.valueOf((retryAfterMillis + 999) / 1000))
+				.body(ApiResponse.error("请求过于频繁，请稍后重试"));
+	}
+
+	/**
+	 * 写入阻塞被驱逐的连接：从注册表移除
+	 */
+	@EventListener
+	public void onConnectionStalled(ConnectionStalledEvent event) {
+		emitters.values().remove(event.getEmitter());
+	}
+
+	@Override
+	public Map<String, SseEmitter> getConnections() {
+		return Map.copyOf(emitters);
+	}
+
+	private Map<String, SseEmitter> tenantConnections(String tenantId) {
+		Map<String, SseEmitter> connections = new HashMap<>();
+		emitters.forEach((clientId, emitter) -> {
+			if (tenantId.equals(tenantService.tenantOf(clientId))) {
+				connections.put(clientId, emitter);
+			}
+		});
+		return connections;
+	}
+
 	private void sendMissedMessages(String clientId, String lastEventId, SseEmitter emitter) {
 		// 从数据库或缓存中获取错过的消息
 		//List<Message> missedMessages = messageService.getMessagesAfter(lastEventId);
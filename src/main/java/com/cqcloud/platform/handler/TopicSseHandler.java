@@ -0,0 +1,161 @@
+package com.cqcloud.platform.handler;
+
+import com.cqcloud.platform.dto.ApiResponse;
+import com.cqcloud.platform.dto.MessageRequest;
+import com.cqcloud.platform.dto.NotificationMessage;
+import com.cqcloud.platform.service.GroupMessageService;
+import com.cqcloud.platform.service.SseRateLimiter;
+import com.cqcloud.platform.service.TenantService;
+import com.cqcloud.platform.service.TopicSubscriptionIndex;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * 主题订阅SSE处理
+ * @author weimeilayer@gmail.com ✨
+ * @date 💓💕 2024年4月12日 🐬🐇 💓💕
+ */
+@Slf4j
+@RestController
+@RequestMapping("/api/sse/topic")
+@RequiredArgsConstructor
+public class TopicSseHandler {
+
+    private final TopicSubscriptionIndex topicSubscriptionIndex;
+    private final GroupMessageService groupMessageService;
+    private final SseRateLimiter sseRateLimiter;
+    private final TenantService tenantService;
+
+    /**
+     * 订阅主题，支持通配符：* 匹配一段，# 匹配零或多段
+     * <p>
+     * 只能操作本用户自己的连接（连接不存在返回404，属于其他用户返回403）
+     */
+    @PostMapping("/subscribe")
+    public ResponseEntity<ApiResponse> subscribe(
+            @RequestParam String clientId,
+            @RequestParam String userId,
+            @RequestParam String pattern) {
+
+        ResponseEntity<ApiResponse> invalid = checkStreamOwner(clientId, userId);
+        if (invalid != null) {
+            return invalid;
+        }
+
+        try {
+            topicSubscriptionIndex.subscribe(clientId, pattern);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(ApiResponse.error(e.getMessage()));
+        }
+
+        return ResponseEntity.ok(ApiResponse.success("订阅成功"));
+    }
+
+    /**
+     * 取消订阅，只能操作本用户自己的连接
+     */
+    @PostMapping("/unsubscribe")
+    public ResponseEntity<ApiResponse> unsubscribe(
+            @RequestParam String clientId,
+            @RequestParam String userId,
+            @RequestParam String pattern) {
+
+        ResponseEntity<ApiResponse> invalid = checkStreamOwner(clientId, userId);
+        if (invalid != null) {
+            return invalid;
+        }
+
+        if (topicSubscriptionIndex.unsubscribe(clientId, pattern)) {
+            return ResponseEntity.ok(ApiResponse.success("取消订阅成功"));
+        }
+
+        return ResponseEntity.badRequest()
+                .body(ApiResponse.error("订阅不存在"));
+    }
+
+    /**
+     * 获取客户端订阅
+     */
+    @GetMapping("/subscriptions/{clientId}")
+    public ResponseEntity<ApiResponse> getSubscriptions(@PathVariable String clientId) {
+        return ResponseEntity.ok(ApiResponse.success(
+                topicSubscriptionIndex.getClientSubscriptions(clientId)
+        ));
+    }
+
+    /**
+     * 发布主题消息
+     */
+    @PostMapping("/{topic}/send")
+    public ResponseEntity<ApiResponse> publish(
+            @PathVariable String topic,
+            @RequestParam String userId,
+            @RequestBody MessageRequest messageRequest,
+            HttpServletRequest request) {
+
+        String tenantId = tenantService.resolve(request);
+        long retryAfter = sseRateLimiter.tryPublish(userId, null);
+        if (retryAfter == 0) {
+            retryAfter = tenantService.tryPublish(tenantId);
+        }
+        if (retryAfter > 0) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf((retryAfter + 999) / 1000))
+                    .body(ApiResponse.error("请求过于频繁，请稍后重试"));
+        }
+
+        NotificationMessage message = NotificationMessage.builder()
+                .id(UUID.randomUUID().toString())
+                .type("topic")
+                .title(messageRequest.getTitle())
+                .content(messageRequest.getContent())
+                .sender(userId)
+                .topic(topic)
+                .createdAt(LocalDateTime.now())
+                .extra(messageRequest.getExtra())
+                .build();
+
+        try {
+            // 启用多租户时只投递给本租户的订阅者
+            int delivered = groupMessageService.publishToTopic(topic, message, tenantId);
+            return ResponseEntity.ok(ApiResponse.success(Map.of("delivered", delivered)));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(ApiResponse.error(e.getMessage()));
+        }
+    }
+
+    /**
+     * 获取订阅统计信息
+     */
+    @GetMapping("/statistics")
+    public ResponseEntity<ApiResponse> getStatistics() {
+        return ResponseEntity.ok(ApiResponse.success(topicSubscriptionIndex.getStatistics()));
+    }
+
+    /**
+     * 校验连接存在且属于该用户
+     */
+    private ResponseEntity<ApiResponse> checkStreamOwner(String clientId, String userId) {
+        String owner = groupMessageService.getClientUserId(clientId);
+        if (owner == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(ApiResponse.error("连接不存在或已断开"));
+        }
+        if (!owner.equals(userId)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .body(ApiResponse.error("无权操作该连接"));
+        }
+        return null;
+    }
+}
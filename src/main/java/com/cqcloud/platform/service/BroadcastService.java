@@ -0,0 +1,167 @@
+package com.cqcloud.platform.service;
+
+import com.cqcloud.platform.config.SseProperties;
+import com.cqcloud.platform.dto.BroadcastStatus;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * 异步广播服务
+ * <p>
+ * 广播只负责入队并立即返回广播ID，由出站写入器异步投递；
+ * 进度可按ID查询，也可通过完成回调获取。
+ * @author weimeilayer@gmail.com ✨
+ * @date 💓💕 2024年4月12日 🐬🐇 💓💕
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class BroadcastService {
+
+    private final SseOutboundWriter sseOutboundWriter;
+    private final SseProperties sseProperties;
+
+    // 广播进度：broadcastId -> tracker
+    private final Map<String, BroadcastTracker> broadcasts = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService cleanupExecutor =
+            Executors.newSingleThreadScheduledExecutor();
+
+    @PostConstruct
+    public void init() {
+        cleanupExecutor.scheduleAtFixedRate(this::cleanupExpired, 60, 60, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        cleanupExecutor.shutdown();
+    }
+
+    /**
+     * 异步广播
+     * @param targets    目标连接：clientId -> emitter
+     * @param event      广播事件（构建一次，所有连接共享）
+     * @param onFailure  单个连接写入失败时回调（clientId, emitter），可为空
+     * @param onComplete 全部投递结束后回调，可为空
+     * @return 广播ID
+     */
+    public String broadcast(Map<String, SseEmitter> targets, SseEmitter.SseEventBuilder event,
+                            BiConsumer<String, SseEmitter> onFailure,
+                            Consumer<BroadcastStatus> onComplete) {
+        return broadcast(targets, event, null, onFailure, onComplete);
+    }
+
+    /**
+     * 异步广播，采样事件记录排队和写出延迟
+     * @param trace 追踪对象，未采样时为null
+     */
+    public String broadcast(Map<String, SseEmitter> targets, SseEmitter.SseEventBuilder event,
+                            DeliveryTracer.Trace trace,
+                            BiConsumer<String, SseEmitter> onFailure,
+                            Consumer<BroadcastStatus> onComplete) {
+        String broadcastId = UUID.randomUUID().toString();
+        BroadcastTracker tracker = new BroadcastTracker(broadcastId, targets.size(), onComplete);
+        broadcasts.put(broadcastId, tracker);
+
+        Set<ResponseBodyEmitter.DataWithMediaType> frames = event.build();
+
+        targets.forEach((clientId, emitter) ->
+                sseOutboundWriter.enqueue(emitter, frames, trace, success -> {
+                    if (!success && onFailure != null) {
+                        onFailure.accept(clientId, emitter);
+                    }
+                    tracker.record(success);
+                }));
+
+        tracker.checkCompleted();
+        log.debug("广播已入队: broadcastId={}, total={}", broadcastId, targets.size());
+        return broadcastId;
+    }
+
+    /**
+     * 查询广播进度
+     */
+    public BroadcastStatus getStatus(String broadcastId) {
+        BroadcastTracker tracker = broadcasts.get(broadcastId);
+        return tracker != null ? tracker.toStatus() : null;
+    }
+
+    /**
+     * 清理过期的已完成广播
+     */
+    private void cleanupExpired() {
+        LocalDateTime threshold = LocalDateTime.now().minus(sseProperties.getBroadcast().getRetention());
+        broadcasts.values().removeIf(tracker ->
+                tracker.completeTime != null && tracker.completeTime.isBefore(threshold));
+    }
+
+    /**
+     * 单次广播的进度
+     */
+    private static class BroadcastTracker {
+
+        private final String broadcastId;
+        private final int total;
+        private final Consumer<BroadcastStatus> onComplete;
+        private final AtomicInteger delivered = new AtomicInteger();
+        private final AtomicInteger failed = new AtomicInteger();
+        private final AtomicBoolean completed = new AtomicBoolean();
+        private final LocalDateTime startTime = LocalDateTime.now();
+        private volatile LocalDateTime completeTime;
+
+        BroadcastTracker(String broadcastId, int total, Consumer<BroadcastStatus> onComplete) {
+            this.broadcastId = broadcastId;
+            this.total = total;
+            this.onComplete = onComplete;
+        }
+
+        void record(boolean success) {
+            (success ? delivered : failed).incrementAndGet();
+            checkCompleted();
+        }
+
+        void checkCompleted() {
+            if (delivered.get() + failed.get() < total || !completed.compareAndSet(false, true)) {
+                return;
+            }
+            completeTime = LocalDateTime.now();
+            if (onComplete != null) {
+                try {
+                    onComplete.accept(toStatus());
+                } catch (RuntimeException e) {
+                    log.warn("广播完成回调异常: broadcastId={}", broadcastId, e);
+                }
+            }
+        }
+
+        BroadcastStatus toStatus() {
+            return BroadcastStatus.builder()
+                    .broadcastId(broadcastId)
+                    .total(total)
+                    .delivered(delivered.get())
+                    .failed(failed.get())
+                    .completed(completed.get())
+                    .startTime(startTime)
+                    .completeTime(completeTime)
+                    .build();
+        }
+    }
+}
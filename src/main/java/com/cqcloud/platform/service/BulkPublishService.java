@@ -0,0 +1,228 @@
+package com.cqcloud.platform.service;
+
+import com.cqcloud.platform.codec.PayloadCodec;
+import com.cqcloud.platform.config.SseProperties;
+import com.cqcloud.platform.dto.BulkPublishItem;
+import com.cqcloud.platform.dto.BulkPublishResult;
+import com.cqcloud.platform.dto.MessageRequest;
+import com.cqcloud.platform.dto.NotificationMessage;
+import com.cqcloud.platform.dto.SseEvent;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * 批量发布服务
+ * <p>
+ * 一次调用发布多条消息到多个目标：先解析每条消息的接收连接，再按连接归并，
+ * 每个连接只做一次合并写出和一次flush。
+ * @author weimeilayer@gmail.com ✨
+ * @date 💓💕 2024年4月12日 🐬🐇 💓💕
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class BulkPublishService {
+
+    private final GroupMembersManager groupMembersManager;
+    private final GroupMessageService groupMessageService;
+    private final TopicSubscriptionIndex topicSubscriptionIndex;
+    private final SseRateLimiter sseRateLimiter;
+    private final DeliveryAckService deliveryAckService;
+    private final PayloadCodec payloadCodec;
+    private final SseProperties sseProperties;
+    private final TenantService tenantService;
+
+    /**
+     * 批量发布
+     * @param sender 发布者
+     * @param items  发布条目
+     * @return 按条目顺序的发布结果
+     */
+    public List<BulkPublishResult> publish(String sender, List<BulkPublishItem> items) {
+        return publish(sender, null, items);
+    }
+
+    /**
+     * 租户内批量发布：只投递给该租户的连接，其他租户的客户端按未连接处理
+     * @param tenantId 发布者所属租户，为null时不按租户过滤
+     */
+    public List<BulkPublishResult> publish(String sender, String tenantId, List<BulkPublishItem> items) {
+        if (items == null || items.isEmpty()) {
+            return Collections.emptyList();
+        }
+        int maxItems = sseProperties.getBulk().getMaxItems();
+        if (items.size() > maxItems) {
+            throw new IllegalArgumentException("批量发布条目数超过上限: " + maxItems);
+        }
+
+        BulkPublishResult[] results = new BulkPublishResult[items.size()];
+
+        // 按连接归并：clientId -> 该连接要写出的帧和对应条目
+        Map<String, PendingWrite> pendingWrites = new LinkedHashMap<>();
+
+        for (int index = 0; index < items.size(); index++) {
+            BulkPublishItem item = items.get(index);
+            String error = validate(item);
+            if (error != null) {
+                results[index] = BulkPublishResult.failure(index, error);
+                continue;
+            }
+
+            String targetType = item.getTargetType().toUpperCase(Locale.ROOT);
+            String groupId = "GROUP".equals(targetType) ? item.getTargetId() : null;
+            if (sseRateLimiter.tryPublish(sender, groupId) > 0) {
+                results[index] = BulkPublishResult.failure(index, "请求过于频繁，请稍后重试");
+                continue;
+            }
+
+            NotificationMessage message = buildMessage(sender, targetType, item.getTargetId(), item.getMessage());
+            Set<String> recipients;
+            try {
+                recipients = resolveRecipients(targetType, item.getTargetId(), tenantId);
+            } catch (IllegalArgumentException e) {
+                results[index] = BulkPublishResult.failure(index, e.getMessage());
+                continue;
+            }
+
+            // 每条消息的事件帧只构建一次，所有连接共享
+            Set<ResponseBodyEmitter.DataWithMediaType> frame = SseEvent.builder()
+                    .event(eventName(targetType))
+                    .id(message.getId())
+                    .data(message)
+                    .build()
+                    .toSseEventBuilder(payloadCodec)
+                    .build();
+
+            for (String clientId : recipients) {
+                if (groupMessageService.accepts(clientId, message)) {
+                    pendingWrites.computeIfAbsent(clientId, k -> new PendingWrite()).add(index, frame);
+                    if (deliveryAckService.isAckMode(clientId)) {
+                        deliveryAckService.track(clientId, message.getId(), frame);
+                    }
+                }
+            }
+            results[index] = BulkPublishResult.builder()
+                    .index(index)
+                    .success(true)
+                    .messageId(message.getId())
+                    .build();
+        }
+
+        // 每个连接一次合并写出
+        int[] delivered = new int[items.size()];
+        pendingWrites.forEach((clientId, pending) -> {
+            if (groupMessageService.sendFrames(clientId, pending.frames)) {
+                pending.indexes.forEach(index -> delivered[index]++);
+            }
+        });
+
+        List<BulkPublishResult> resultList = new ArrayList<>(results.length);
+        for (int index = 0; index < results.length; index++) {
+            BulkPublishResult result = results[index];
+            if (result.isSuccess()) {
+                result.setDelivered(delivered[index]);
+            }
+            resultList.add(result);
+        }
+
+        log.debug("批量发布完成: items={}, connections={}", items.size(), pendingWrites.size());
+        return resultList;
+    }
+
+    private String validate(BulkPublishItem item) {
+        if (item == null || item.getTargetType() == null || item.getTargetId() == null) {
+            return "目标类型和目标ID不能为空";
+        }
+        if (item.getMessage() == null) {
+            return "消息内容不能为空";
+        }
+        return switch (item.getTargetType().toUpperCase(Locale.ROOT)) {
+            case "CLIENT", "USER", "GROUP", "TOPIC" -> null;
+            default -> "不支持的目标类型: " + item.getTargetType();
+        };
+    }
+
+    /**
+     * 解析接收连接，指定租户时去掉其他租户的连接
+     * @throws IllegalArgumentException 目标客户端未连接或属于其他租户
+     */
+    private Set<String> resolveRecipients(String targetType, String targetId, String tenantId) {
+        if ("CLIENT".equals(targetType)) {
+            // 与单发接口一致，其他租户的连接按不存在处理
+            if (groupMessageService.getClientEmitter(targetId) == null || !inTenant(targetId, tenantId)) {
+                throw new IllegalArgumentException("客户端未连接: " + targetId);
+            }
+            return Set.of(targetId);
+        }
+        Set<String> recipients = switch (targetType) {
+            case "USER" -> groupMessageService.getUserClients(targetId);
+            case "GROUP" -> groupMembersManager.getGroupMembers(targetId);
+            case "TOPIC" -> topicSubscriptionIndex.match(targetId);
+            default -> Collections.emptySet();
+        };
+        if (tenantId == null) {
+            return recipients;
+        }
+        Set<String> visible = new LinkedHashSet<>();
+        for (String clientId : recipients) {
+            if (inTenant(clientId, tenantId)) {
+                visible.add(clientId);
+            }
+        }
+        return visible;
+    }
+
+    private boolean inTenant(String clientId, String tenantId) {
+        return tenantId == null || tenantId.equals(tenantService.tenantOf(clientId));
+    }
+
+    private static String eventName(String targetType) {
+        return switch (targetType) {
+            case "GROUP" -> "group_message";
+            case "TOPIC" -> "topic_message";
+            default -> "message";
+        };
+    }
+
+    private static NotificationMessage buildMessage(String sender, String targetType, String targetId,
+                                                    MessageRequest request) {
+        return NotificationMessage.builder()
+                .id(UUID.randomUUID().toString())
+                .type(request.getType() != null ? request.getType() : "chat")
+                .title(request.getTitle())
+                .content(request.getContent())
+                .sender(sender)
+                .receiver("CLIENT".equals(targetType) || "USER".equals(targetType) ? targetId : null)
+                .groupId("GROUP".equals(targetType) ? targetId : null)
+                .topic("TOPIC".equals(targetType) ? targetId : null)
+                .createdAt(LocalDateTime.now())
+                .extra(request.getExtra())
+                .build();
+    }
+
+    /**
+     * 单个连接待写出的内容
+     */
+    private static class PendingWrite {
+        private final Set<ResponseBodyEmitter.DataWithMediaType> frames = new LinkedHashSet<>();
+        private final List<Integer> indexes = new ArrayList<>();
+
+        void add(int index, Set<ResponseBodyEmitter.DataWithMediaType> frame) {
+            frames.addAll(frame);
+            indexes.add(index);
+        }
+    }
+}
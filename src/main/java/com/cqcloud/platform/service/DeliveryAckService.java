@@ -0,0 +1,295 @@
+package com.cqcloud.platform.service;
+
+import com.cqcloud.platform.config.SseProperties;
+import com.cqcloud.platform.event.ClientDisconnectedEvent;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiPredicate;
+
+/**
+ * 消息确认服务（至少一次送达）
+ * <p>
+ * 以确认模式连接的客户端，每个连接维护一个有上限的未确认事件窗口：
+ * 客户端通过批量确认接口按事件ID确认，超时未确认的事件按原ID重发，
+ * 断开后窗口保留一段时间，重连时立即重发全部未确认事件。
+ * @author weimeilayer@gmail.com ✨
+ * @date 💓💕 2024年4月12日 🐬🐇 💓💕
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class DeliveryAckService {
+
+    private final SseProperties sseProperties;
+
+    // 确认窗口：clientId -> AckWindow
+    private final Map<String, AckWindow> windows = new ConcurrentHashMap<>();
+
+    private final LongAdder tracked = new LongAdder();
+    private final LongAdder acked = new LongAdder();
+    private final LongAdder resent = new LongAdder();
+    private final LongAdder expired = new LongAdder();
+    private final LongAdder overflowed = new LongAdder();
+
+    // 重发回调：(clientId, 事件帧) -> 是否写出
+    private volatile BiPredicate<String, Set<ResponseBodyEmitter.DataWithMediaType>> redelivery = (clientId, frames) -> false;
+
+    private ScheduledExecutorService scheduler;
+
+    @PostConstruct
+    public void init() {
+        long intervalMillis = Math.max(100, sseProperties.getAck().getTimeout().toMillis() / 2);
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "sse-ack");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::resendExpired, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * 设置重发回调
+     */
+    public void setRedelivery(BiPredicate<String, Set<ResponseBodyEmitter.DataWithMediaType>> redelivery) {
+        this.redelivery = redelivery;
+    }
+
+    /**
+     * 客户端连接：确认模式下建立（或恢复）窗口并重发未确认事件，否则移除窗口
+     */
+    public void onConnect(String clientId, boolean ackMode) {
+        if (!ackMode) {
+            windows.remove(clientId);
+            return;
+        }
+        AckWindow window = windows.computeIfAbsent(clientId, k -> new AckWindow());
+        List<Pending> pending = window.reconnect();
+        if (!pending.isEmpty()) {
+            log.info("重连后重发未确认事件: clientId={}, count={}", clientId, pending.size());
+            pending.forEach(item -> resend(clientId, window, item));
+        }
+    }
+
+    /**
+     * 连接断开后保留窗口，等待重连
+     */
+    @EventListener
+    public void onClientDisconnected(ClientDisconnectedEvent event) {
+        AckWindow window = windows.get(event.getClientId());
+        if (window != null) {
+            window.disconnect();
+        }
+    }
+
+    /**
+     * 客户端是否为确认模式
+     */
+    public boolean isAckMode(String clientId) {
+        return windows.containsKey(clientId);
+    }
+
+    /**
+     * 记录已写出待确认的事件
+     */
+    public void track(String clientId, String eventId, Set<ResponseBodyEmitter.DataWithMediaType> frames) {
+        AckWindow window = windows.get(clientId);
+        if (window == null) {
+            return;
+        }
+        tracked.increment();
+        if (window.add(eventId, frames, sseProperties.getAck().getMaxPending())) {
+            overflowed.increment();
+            log.warn("未确认事件超过上限，丢弃最早的事件: clientId={}", clientId);
+        }
+    }
+
+    /**
+     * 批量确认
+     * @return 实际确认的事件数
+     */
+    public int acknowledge(String clientId, Collection<String> eventIds) {
+        int maxBatch = sseProperties.getAck().getMaxBatch();
+        if (eventIds.size() > maxBatch) {
+            throw new IllegalArgumentException("单次确认的事件数超过上限: " + maxBatch);
+        }
+        AckWindow window = windows.get(clientId);
+        if (window == null) {
+            return 0;
+        }
+        int count = window.remove(eventIds);
+        acked.add(count);
+        return count;
+    }
+
+    /**
+     * 客户端当前未确认的事件数
+     */
+    public int getPendingCount(String clientId) {
+        AckWindow window = windows.get(clientId);
+        return window != null ? window.size() : 0;
+    }
+
+    /**
+     * 获取确认统计信息
+     */
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("windows", windows.size());
+        stats.put("pending", windows.values().stream().mapToInt(AckWindow::size).sum());
+        stats.put("tracked", tracked.sum());
+        stats.put("acked", acked.sum());
+        stats.put("resent", resent.sum());
+        stats.put("expired", expired.sum());
+        stats.put("overflowed", overflowed.sum());
+        return stats;
+    }
+
+    /**
+     * 重发超时未确认的事件，清理断开过久的窗口
+     */
+    private void resendExpired() {
+        try {
+            SseProperties.Ack ack = sseProperties.getAck();
+            long now = System.currentTimeMillis();
+            long sentBefore = now - ack.getTimeout().toMillis();
+            long disconnectedBefore = now - ack.getRetention().toMillis();
+
+            windows.forEach((clientId, window) -> {
+                if (window.isDisconnectedBefore(disconnectedBefore)) {
+                    windows.remove(clientId, window);
+                    expired.add(window.size());
+                    return;
+                }
+                for (Pending item : window.due(sentBefore)) {
+                    if (item.attempts >= ack.getMaxAttempts()) {
+                        window.remove(List.of(item.eventId));
+                        expired.increment();
+                        log.warn("事件多次重发仍未确认，放弃: clientId={}, eventId={}", clientId, item.eventId);
+                    } else {
+                        resend(clientId, window, item);
+                    }
+                }
+            });
+        } catch (RuntimeException e) {
+            log.warn("重发未确认事件失败", e);
+        }
+    }
+
+    private void resend(String clientId, AckWindow window, Pending item) {
+        window.markSent(item);
+        if (redelivery.test(clientId, item.frames)) {
+            resent.increment();
+        }
+    }
+
+    /**
+     * 未确认事件
+     */
+    private static class Pending {
+        private final String eventId;
+        private final Set<ResponseBodyEmitter.DataWithMediaType> frames;
+        private long sentAt;
+        private int attempts;
+
+        Pending(String eventId, Set<ResponseBodyEmitter.DataWithMediaType> frames) {
+            this.eventId = eventId;
+            this.frames = frames;
+            this.sentAt = System.currentTimeMillis();
+            this.attempts = 1;
+        }
+    }
+
+    /**
+     * 单个连接的未确认事件窗口，按发送顺序排列
+     */
+    private static class AckWindow {
+
+        private final LinkedHashMap<String, Pending> pending = new LinkedHashMap<>();
+
+        // 断开时间，0表示在线
+        private long disconnectedAt;
+
+        /**
+         * @return true表示超过上限丢弃了最早的事件
+         */
+        synchronized boolean add(String eventId, Set<ResponseBodyEmitter.DataWithMediaType> frames, int maxPending) {
+            pending.put(eventId, new Pending(eventId, frames));
+            if (pending.size() > maxPending) {
+                Iterator<String> iterator = pending.keySet().iterator();
+                iterator.next();
+                iterator.remove();
+                return true;
+            }
+            return false;
+        }
+
+        synchronized int remove(Collection<String> eventIds) {
+            int count = 0;
+            for (String eventId : eventIds) {
+                if (pending.remove(eventId) != null) {
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        synchronized List<Pending> due(long sentBefore) {
+            if (disconnectedAt > 0) {
+                return List.of();
+            }
+            List<Pending> due = new ArrayList<>();
+            for (Pending item : pending.values()) {
+                if (item.sentAt < sentBefore) {
+                    due.add(item);
+                }
+            }
+            return due;
+        }
+
+        synchronized void markSent(Pending item) {
+            item.sentAt = System.currentTimeMillis();
+            item.attempts++;
+        }
+
+        synchronized List<Pending> reconnect() {
+            disconnectedAt = 0;
+            return new ArrayList<>(pending.values());
+        }
+
+        synchronized void disconnect() {
+            disconnectedAt = System.currentTimeMillis();
+        }
+
+        synchronized boolean isDisconnectedBefore(long time) {
+            return disconnectedAt > 0 && disconnectedAt < time;
+        }
+
+        synchronized int size() {
+            return pending.size();
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package com.cqcloud.platform.service;
+
+import com.cqcloud.platform.config.SseProperties;
+import com.cqcloud.platform.dto.ReceiptRequest;
+import com.cqcloud.platform.util.LatencyHistogram;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 投递延迟追踪服务
+ * <p>
+ * 按采样率为事件打点：发布、编码完成、入队、出队、写出，以及客户端上报的接收时间，
+ * 各阶段延迟计入直方图；发布到写出超过阈值时记录一次慢投递日志，列出各阶段耗时。
+ * 未采样的事件追踪对象为null，各打点方法直接返回。
+ * @author weimeilayer@gmail.com ✨
+ * @date 💓💕 2024年4月12日 🐬🐇 💓💕
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class DeliveryTracer {
+
+    private final SseProperties sseProperties;
+
+    private final LatencyHistogram encode = new LatencyHistogram();
+    private final LatencyHistogram queue = new LatencyHistogram();
+    private final LatencyHistogram write = new LatencyHistogram();
+    private final LatencyHistogram publishToWrite = new LatencyHistogram();
+    private final LatencyHistogram receipt = new LatencyHistogram();
+
+    // 等待客户端上报的采样事件：eventId -> trace
+    private final Map<String, Trace> retained = new ConcurrentHashMap<>();
+
+    private ScheduledExecutorService scheduler;
+
+    @PostConstruct
+    public void init() {
+        long intervalMillis = Math.max(1000, sseProperties.getTrace().getReceiptRetention().toMillis() / 2);
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "sse-trace");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::purgeExpired, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * 发布时打点
+     * @return 追踪对象，未采样时为null
+     */
+    public Trace start(String eventId) {
+        SseProperties.Trace config = sseProperties.getTrace();
+        if (!config.isEnabled() || ThreadLocalRandom.current().nextDouble() >= config.getSampleRate()) {
+            return null;
+        }
+        Trace trace = new Trace(eventId);
+        if (eventId != null && retained.size() < config.getMaxRetained()) {
+            retained.put(eventId, trace);
+        }
+        return trace;
+    }
+
+    /**
+     * 事件编码完成
+     */
+    public void encoded(Trace trace) {
+        if (trace == null) {
+            return;
+        }
+        trace.encodedNanos = System.nanoTime();
+        encode.record(trace.encodedNanos - trace.publishedNanos);
+    }
+
+    /**
+     * 出站队列出队
+     * @param enqueuedNanos 入队时间
+     */
+    public void dequeued(Trace trace, long enqueuedNanos) {
+        if (trace == null) {
+            return;
+        }
+        long queuedNanos = System.nanoTime() - enqueuedNanos;
+        trace.maxQueueNanos = Math.max(trace.maxQueueNanos, queuedNanos);
+        queue.record(queuedNanos);
+    }
+
+    /**
+     * 写出一个连接
+     * @param clientId       客户端ID，未知时为null
+     * @param writeStartNanos 开始写出的时间
+     */
+    public void written(Trace trace, String clientId, long writeStartNanos) {
+        if (trace == null) {
+            return;
+        }
+        long now = System.nanoTime();
+        long writeNanos = now - writeStartNanos;
+        long totalNanos = now - trace.publishedNanos;
+        write.record(writeNanos);
+        publishToWrite.record(totalNanos);
+
+        // 每个事件只记录第一个慢连接
+        if (totalNanos > sseProperties.getTrace().getSlowThreshold().toNanos() && trace.slowLogged.compareAndSet(false, true)) {
+            log.warn("慢投递: eventId={}, clientId={}, totalMs={}, encodeMs={}, queueMs={}, writeMs={}",
+                    trace.eventId, clientId, toMillis(totalNanos),
+                    trace.encodedNanos > 0 ? toMillis(trace.encodedNanos - trace.publishedNanos) : null,
+                    toMillis(trace.maxQueueNanos), toMillis(writeNanos));
+        }
+    }
+
+    /**
+     * 客户端批量上报接收时间，只匹配仍保留的采样事件
+     * @return 匹配的记录数
+     */
+    public int acceptReceipts(Collection<ReceiptRequest.Receipt> receipts) {
+        int maxBatch = sseProperties.getTrace().getMaxReceiptBatch();
+        if (receipts.size() > maxBatch) {
+            throw new IllegalArgumentException("单次上报的记录数超过上限: " + maxBatch);
+        }
+        int matched = 0;
+        for (ReceiptRequest.Receipt item : receipts) {
+            Trace trace = item.getEventId() != null ? retained.remove(item.getEventId()) : null;
+            if (trace != null) {
+                // 按墙上时钟计算，客户端时钟偏差可能导致负值
+                receipt.record(TimeUnit.MILLISECONDS.toNanos(Math.max(0, item.getReceivedAt() - trace.publishedAtMillis)));
+                matched++;
+            }
+        }
+        return matched;
+    }
+
+    /**
+     * 获取各阶段延迟统计
+     */
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", sseProperties.getTrace().isEnabled());
+        stats.put("sampleRate", sseProperties.getTrace().getSampleRate());
+        stats.put("retained", retained.size());
+        stats.put("encode", encode.snapshot());
+        stats.put("queue", queue.snapshot());
+        stats.put("write", write.snapshot());
+        stats.put("publishToWrite", publishToWrite.snapshot());
+        stats.put("receipt", receipt.snapshot());
+        return stats;
+    }
+
+    private void purgeExpired() {
+        long expiredBefore = System.currentTimeMillis() - sseProperties.getTrace().getReceiptRetention().toMillis();
+        retained.values().removeIf(trace -> trace.publishedAtMillis < expiredBefore);
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+
+    /**
+     * 单个采样事件的打点记录
+     */
+    public static class Trace {
+        private final String eventId;
+        private final long publishedNanos = System.nanoTime();
+        private final long publishedAtMillis = System.currentTimeMillis();
+        private final AtomicBoolean slowLogged = new AtomicBoolean();
+        private volatile long encodedNanos;
+        private volatile long maxQueueNanos;
+
+        Trace(String eventId) {
+            this.eventId = eventId;
+        }
+    }
+}
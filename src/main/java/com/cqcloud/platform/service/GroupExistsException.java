@@ -0,0 +1,19 @@
+package com.cqcloud.platform.service;
+
+import lombok.Getter;
+
+/**
+ * 群组已存在，拒绝重复创建
+ * @author weimeilayer@gmail.com ✨
+ * @date 💓💕 2024年4月12日 🐬🐇 💓💕
+ */
+@Getter
+public class GroupExistsException extends RuntimeException {
+
+    private final String groupId;
+
+    public GroupExistsException(String groupId) {
+        super("群组已存在: groupId=" + groupId);
+        this.groupId = groupId;
+    }
+}
@@ -0,0 +1,21 @@
+package com.cqcloud.platform.service;
+
+import lombok.Getter;
+
+/**
+ * 群组人数已达上限，拒绝加入
+ * @author weimeilayer@gmail.com ✨
+ * @date 💓💕 2024年4月12日 🐬🐇 💓💕
+ */
+@Getter
+public class GroupFullException extends RuntimeException {
+
+    private final String groupId;
+    private final int maxMembers;
+
+    public GroupFullException(String groupId, int maxMembers) {
+        super("群组人数已达上限: groupId=" + groupId + ", maxMembers=" + maxMembers);
+        this.groupId = groupId;
+        this.maxMembers = maxMembers;
+    }
+}
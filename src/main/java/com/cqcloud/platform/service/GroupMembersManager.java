@@ -1,52 +1,133 @@
 package com.cqcloud.platform.service;
 
 
+import com.cqcloud.platform.cluster.ClusterBus;
+import com.cqcloud.platform.cluster.ClusterPresenceService;
+import com.cqcloud.platform.cluster.MemberPage;
+import com.cqcloud.platform.cluster.MembershipStore;
+import com.cqcloud.platform.config.SseProperties;
 import com.cqcloud.platform.dto.GroupInfo;
+import com.cqcloud.platform.event.ClientDisconnectedEvent;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.stream.Collectors;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
 /**
  * 群组成员管理服务
+ * <p>
+ * 成员关系保存在 {@link MembershipStore} 中（sse.cluster.store=redis 时各节点共享）。
+ * 群组成员列表在首次扇出时才加载到本地，按最近使用保留有限个群组；
+ * 本节点的修改直接写穿到缓存，其他节点的修改通过发布/订阅失效对应群组。
+ * 连接断开事件按客户端的群组索引增量移除成员关系，后台校验分批补偿丢失的事件。
+ * 群组人数统计随加入、离开增量维护，其他节点修改的群组在查询统计时批量重新计数。
+ * 大群组扇出使用缓存条目上按分片预先划分的成员数组快照，成员变化时失效重建。
+ * 启用群组快照时，启动时先从 {@link GroupSnapshotService} 恢复群组和成员关系。
  * @author weimeilayer@gmail.com ✨
  * @date 💓💕 2024年4月12日 🐬🐇 💓💕
  */
 @Slf4j
 @Service
+@RequiredArgsConstructor
 public class GroupMembersManager {
 
-    // 存储群组成员：groupId -> Set<clientId>
-    private final Map<String, Set<String>> groupMembers = new ConcurrentHashMap<>();
+    private static final String INVALIDATE_SEPARATOR = "|";
 
-    // 存储客户端所属群组：clientId -> Set<groupId>
-    private final Map<String, Set<String>> clientGroups = new ConcurrentHashMap<>();
+    private final MembershipStore membershipStore;
+    private final ClusterBus clusterBus;
+    private final ClusterPresenceService clusterPresenceService;
+    private final SseProperties sseProperties;
+    private final ObjectProvider<GroupMessageService> groupMessageService;
+    private final GroupSnapshotService groupSnapshotService;
 
-    // 存储群组信息：groupId -> GroupInfo
-    private final Map<String, GroupInfo> groupInfos = new ConcurrentHashMap<>();
+    // 成员列表缓存：groupId -> CachedMembers，按访问顺序淘汰
+    private Map<String, CachedMembers> memberCache;
 
+    // 缓存代数，加载期间发生修改时不缓存加载结果
+    private final AtomicLong generation = new AtomicLong();
 
+    // 经本节点加入群组的客户端：clientId -> 加入时间
+    private final Map<String, Long> localClients = new ConcurrentHashMap<>();
+
+    // 群组人数统计
+    private final GroupSizeStatistics groupSizes = new GroupSizeStatistics();
+
+    // 其他节点修改过、人数待重新计数的群组
+    private final Set<String> dirtyGroups = ConcurrentHashMap.newKeySet();
+
+    // 后台校验游标，跨多次校验逐批推进
+    private Iterator<Map.Entry<String, Long>> verifyCursor;
+
+    private ScheduledExecutorService verifyExecutor;
+
+    private String invalidateChannel;
+
+    @PostConstruct
+    public void init() {
+        int maxGroups = sseProperties.getCluster().getMembershipCacheSize();
+        memberCache = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedMembers> eldest) {
+                return size() > maxGroups;
+            }
+        });
+        invalidateChannel = sseProperties.getCluster().getKeyPrefix() + "membership:invalidate";
+        clusterBus.subscribe(invalidateChannel, this::onInvalidate);
+
+        // 接受连接之前批量恢复快照，恢复的客户端在宽限期内重连只需重新绑定连接
+        Set<String> restored = groupSnapshotService.restore();
+        long keepUntil = System.currentTimeMillis() + sseProperties.getSnapshot().getRestoreGrace().toMillis();
+        restored.forEach(clientId -> localClients.put(clientId, keepUntil));
+
+        // 启动时按存储中已有的群组初始化一次统计
+        membershipStore.countMembers(membershipStore.getAllGroups()).forEach(groupSizes::set);
+
+        long intervalMillis = sseProperties.getReconcile().getSweepInterval().toMillis();
+        verifyExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "sse-group-verify");
+            thread.setDaemon(true);
+            return thread;
+        });
+        verifyExecutor.scheduleWithFixedDelay(this::verifySlice, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        verifyExecutor.shutdownNow();
+    }
 
     /**
      * 加入群组
+     * <p>
+     * 群组设置了 maxMembers 时按当前人数检查上限；多节点并发加入时人数以存储为准，可能短暂略超上限。
+     * @throws GroupFullException 群组人数已达上限
      */
     public synchronized boolean joinGroup(String clientId, String userId, String groupId) {
-        if (!isGroupExists(groupId)) {
+        GroupInfo groupInfo = membershipStore.getGroup(groupId);
+        if (groupInfo == null) {
             // 如果群组不存在，自动创建
             createGroup(groupId, userId, "自动创建群组");
+        } else if (isFull(groupInfo, clientId)) {
+            log.warn("群组人数已达上限，拒绝加入: userId={}, clientId={}, groupId={}, maxMembers={}",
+                    userId, clientId, groupId, groupInfo.getMaxMembers());
+            throw new GroupFullException(groupId, groupInfo.getMaxMembers());
         }
 
-        // 添加到群组成员
-        Set<String> members = groupMembers.computeIfAbsent(groupId,
-                k -> ConcurrentHashMap.newKeySet());
-
-        if (members.add(clientId)) {
-            // 添加到客户端群组列表
-            clientGroups.computeIfAbsent(clientId,
-                            k -> ConcurrentHashMap.newKeySet())
-                    .add(groupId);
+        localClients.put(clientId, System.currentTimeMillis());
+        if (membershipStore.addMember(groupId, clientId)) {
+            updateCache(groupId, members -> members.add(clientId));
+            groupSizes.add(groupId, 1);
 
             log.info("用户加入群组: userId={}, clientId={}, groupId={}",
                     userId, clientId, groupId);
@@ -56,32 +137,34 @@ public class GroupMembersManager {
         return false;
     }
 
+    private boolean isFull(GroupInfo groupInfo, String clientId) {
+        Integer maxMembers = groupInfo.getMaxMembers();
+        return maxMembers != null && maxMembers > 0
+                && getGroupMemberCount(groupInfo.getGroupId()) >= maxMembers
+                && !isMemberInGroup(clientId, groupInfo.getGroupId());
+    }
+
     /**
      * 离开群组
      */
     public synchronized boolean leaveGroup(String clientId, String groupId) {
-        Set<String> members = groupMembers.get(groupId);
-        if (members != null) {
-            boolean removed = members.remove(clientId);
-
-            if (removed) {
-                // 从客户端群组列表中移除
-                Set<String> groups = clientGroups.get(clientId);
-                if (groups != null) {
-                    groups.remove(groupId);
-                }
-
-                // 如果群组为空，清理群组
-                if (members.isEmpty()) {
-                    groupMembers.remove(groupId);
-                    groupInfos.remove(groupId);
-                }
-
-                log.info("用户离开群组: clientId={}, groupId={}", clientId, groupId);
-                return true;
-            }
+        long remaining = membershipStore.removeMember(groupId, clientId);
+        if (remaining < 0) {
+            return false;
         }
-        return false;
+        updateCache(groupId, members -> members.remove(clientId));
+
+        // 如果群组为空，清理群组
+        if (remaining == 0) {
+            membershipStore.deleteGroup(groupId);
+            evict(groupId);
+            groupSizes.remove(groupId);
+        } else {
+            groupSizes.set(groupId, remaining);
+        }
+
+        log.info("用户离开群组: clientId={}, groupId={}", clientId, groupId);
+        return true;
     }
 
     /**
@@ -97,78 +180,140 @@ public class GroupMembersManager {
         return leaveGroup(clientId, groupId);
     }
 
+    /**
+     * 分页遍历群组成员，直接读存储不经过缓存
+     */
+    public MemberPage scanGroupMembers(String groupId, String cursor, int count) {
+        return membershipStore.scanMembers(groupId, cursor, count);
+    }
+
     /**
      * 获取群组成员
      */
     public Set<String> getGroupMembers(String groupId) {
-        Set<String> members = groupMembers.get(groupId);
-        return members != null ? new HashSet<>(members) : Collections.emptySet();
+        return new HashSet<>(loadMembers(groupId));
+    }
+
+    /**
+     * 遍历群组成员，不复制成员集合
+     */
+    public void forEachGroupMember(String groupId, Consumer<String> action) {
+        loadMembers(groupId).forEach(action);
+    }
+
+    /**
+     * 按分片划分的成员数组快照，供大群组扇出使用
+     * <p>
+     * 缓存的群组在成员变化前复用同一份快照；返回的数组不可修改。
+     * @param shards 分片数，第i个数组为 {@link LargeGroupFanout#shardOf} 等于i的成员
+     */
+    public String[][] getShardedMembers(String groupId, int shards) {
+        Set<String> members = loadMembers(groupId);
+        CachedMembers cached = memberCache.get(groupId);
+        if (cached != null && cached.members() == members) {
+            return cached.sharded(shards);
+        }
+        return shard(members, shards);
     }
 
     /**
      * 获取客户端加入的群组
      */
     public Set<String> getClientGroups(String clientId) {
-        Set<String> groups = clientGroups.get(clientId);
-        return groups != null ? new HashSet<>(groups) : Collections.emptySet();
+        return new HashSet<>(membershipStore.getClientGroups(clientId));
     }
 
     /**
      * 获取群组成员数量
      */
     public int getGroupMemberCount(String groupId) {
-        Set<String> members = groupMembers.get(groupId);
-        return members != null ? members.size() : 0;
+        CachedMembers cached = cachedEntry(groupId);
+        return cached != null ? cached.members().size() : (int) membershipStore.countMembers(groupId);
     }
 
     /**
      * 判断用户是否在群组中
      */
     public boolean isMemberInGroup(String clientId, String groupId) {
-        Set<String> members = groupMembers.get(groupId);
-        return members != null && members.contains(clientId);
+        CachedMembers cached = cachedEntry(groupId);
+        return cached != null ? cached.members().contains(clientId) : membershipStore.isMember(groupId, clientId);
     }
 
     /**
      * 创建群组
+     * @throws GroupExistsException 群组已存在
      */
     public synchronized void createGroup(String groupId, String creator, String groupName) {
+        createGroup(groupId, creator, groupName, null);
+    }
+
+    /**
+     * 创建群组
+     * @param maxMembers 人数上限，null或不大于0表示不限制
+     * @throws GroupExistsException 群组已存在
+     */
+    public synchronized void createGroup(String groupId, String creator, String groupName, Integer maxMembers) {
+        createGroup(groupId, creator, groupName, maxMembers, new HashMap<>());
+    }
+
+    /**
+     * 群组不存在时创建，返回已有或新建的群组信息
+     */
+    public synchronized GroupInfo getOrCreateGroup(String groupId, String creator, Map<String, Object> metadata) {
+        GroupInfo groupInfo = membershipStore.getGroup(groupId);
+        if (groupInfo != null) {
+            return groupInfo;
+        }
+        return createGroup(groupId, creator, "自动创建群组", null, new HashMap<>(metadata));
+    }
+
+    /**
+     * 创建群组，检查与保存在同一把锁内完成，并发创建同一群组只有一个成功
+     * @param maxMembers 人数上限，null或不大于0表示不限制
+     * @param metadata   群组元数据
+     * @throws GroupExistsException 群组已存在
+     */
+    public synchronized GroupInfo createGroup(String groupId, String creator, String groupName, Integer maxMembers,
+                                              Map<String, Object> metadata) {
+        if (membershipStore.groupExists(groupId)) {
+            throw new GroupExistsException(groupId);
+        }
         GroupInfo groupInfo = GroupInfo.builder()
                 .groupId(groupId)
                 .groupName(groupName)
                 .creator(creator)
                 .createTime(new Date())
+                .maxMembers(maxMembers)
                 .administrators(new HashSet<>(Arrays.asList(creator)))
-                .metadata(new HashMap<>())
+                .metadata(metadata)
                 .build();
 
-        groupInfos.put(groupId, groupInfo);
+        membershipStore.saveGroup(groupInfo);
+        groupSizes.add(groupId, 0);
 
-        // 初始化成员集合
-        groupMembers.put(groupId, ConcurrentHashMap.newKeySet());
-
-        log.info("创建群组: groupId={}, creator={}", groupId, creator);
+        log.info("创建群组: groupId={}, creator={}, maxMembers={}", groupId, creator, maxMembers);
+        return groupInfo;
     }
 
     /**
      * 获取群组信息
      */
     public GroupInfo getGroupInfo(String groupId) {
-        return groupInfos.get(groupId);
+        return membershipStore.getGroup(groupId);
     }
 
     /**
      * 获取所有群组
      */
     public List<String> getAllGroups() {
-        return new ArrayList<>(groupMembers.keySet());
+        return new ArrayList<>(membershipStore.getAllGroups());
     }
 
     /**
      * 解散群组
      */
     public synchronized boolean disbandGroup(String groupId, String operator) {
-        GroupInfo groupInfo = groupInfos.get(groupId);
+        GroupInfo groupInfo = membershipStore.getGroup(groupId);
         if (groupInfo == null) {
             return false;
         }
@@ -180,20 +325,10 @@ public class GroupMembersManager {
             return false;
         }
 
-        // 清理所有成员的群组记录
-        Set<String> members = groupMembers.get(groupId);
-        if (members != null) {
-            members.forEach(clientId -> {
-                Set<String> groups = clientGroups.get(clientId);
-                if (groups != null) {
-                    groups.remove(groupId);
-                }
-            });
-        }
-
-        // 删除群组
-        groupMembers.remove(groupId);
-        groupInfos.remove(groupId);
+        // 删除群组及所有成员的群组记录
+        membershipStore.deleteGroup(groupId);
+        evict(groupId);
+        groupSizes.remove(groupId);
 
         log.info("解散群组: groupId={}, operator={}", groupId, operator);
         return true;
@@ -203,74 +338,264 @@ public class GroupMembersManager {
      * 添加管理员
      */
     public synchronized boolean addAdministrator(String groupId, String userId, String operator) {
-        GroupInfo groupInfo = groupInfos.get(groupId);
-        if (groupInfo == null) {
-            return false;
-        }
-
         // 检查操作者权限
-        if (!groupInfo.getAdministrators().contains(operator)) {
+        if (!isGroupAdmin(groupId, operator)) {
             log.warn("无权限添加管理员: operator={}", operator);
             return false;
         }
 
-        groupInfo.getAdministrators().add(userId);
-        return true;
+        return membershipStore.addAdministrator(groupId, userId);
     }
 
     /**
      * 群组是否存在
      */
     public boolean isGroupExists(String groupId) {
-        return groupMembers.containsKey(groupId);
+        return cachedEntry(groupId) != null || membershipStore.groupExists(groupId);
     }
 
     /**
      * 是否是群组管理员
      */
     public boolean isGroupAdmin(String groupId, String userId) {
-        GroupInfo groupInfo = groupInfos.get(groupId);
+        GroupInfo groupInfo = membershipStore.getGroup(groupId);
         return groupInfo != null && groupInfo.getAdministrators().contains(userId);
     }
 
     /**
      * 获取群组统计信息
+     * @param top 返回人数最多的群组个数
      */
-    public Map<String, Object> getGroupStatistics() {
-        Map<String, Object> stats = new HashMap<>();
-        stats.put("totalGroups", groupMembers.size());
-
-        int totalMembers = groupMembers.values().stream()
-                .mapToInt(Set::size)
-                .sum();
-        stats.put("totalMembers", totalMembers);
+    public Map<String, Object> getGroupStatistics(int top) {
+        refreshDirtyGroups();
 
-        Map<String, Integer> groupSizes = groupMembers.entrySet().stream()
-                .collect(Collectors.toMap(
-                        Map.Entry::getKey,
-                        entry -> entry.getValue().size()
-                ));
-        stats.put("groupSizes", groupSizes);
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("totalGroups", groupSizes.getTotalGroups());
+        stats.put("totalMembers", groupSizes.getTotalMembers());
+        stats.put("topGroups", groupSizes.topGroups(top));
+        stats.put("sizeHistogram", groupSizes.histogram());
+        stats.put("cachedGroups", memberCache.size());
 
         return stats;
     }
 
     /**
-     * 清理无效连接
+     * 批量重新计数其他节点修改过的群组
      */
-    public synchronized void cleanupInvalidClients(Set<String> validClients) {
-        // 清理客户端群组映射
-        clientGroups.entrySet().removeIf(entry -> !validClients.contains(entry.getKey()));
-
-        // 清理群组成员
-        groupMembers.forEach((groupId, members) -> {
-            members.removeIf(clientId -> !validClients.contains(clientId));
-
-            // 如果群组为空，删除群组
-            if (members.isEmpty()) {
-                groupMembers.remove(groupId);
-                groupInfos.remove(groupId);
+    private void refreshDirtyGroups() {
+        if (dirtyGroups.isEmpty()) {
+            return;
+        }
+        List<String> groups = new ArrayList<>(dirtyGroups);
+        dirtyGroups.removeAll(groups);
+        membershipStore.countMembers(groups).forEach((groupId, size) -> {
+            if (size > 0) {
+                groupSizes.set(groupId, size);
+            } else if (membershipStore.groupExists(groupId)) {
+                groupSizes.set(groupId, 0);
+            } else {
+                groupSizes.remove(groupId);
             }
         });
     }
-}
\ No newline at end of file
+
+    /**
+     * 清理无效连接（仅清理经本节点加入的客户端）
+     * <p>
+     * 逐个客户端按其群组索引移除，不扫描所有群组；只在检查和删除空群组时短暂持有锁。
+     */
+    public void cleanupInvalidClients(Set<String> validClients) {
+        List<String> invalidClients = new ArrayList<>();
+        localClients.keySet().forEach(clientId -> {
+            if (!validClients.contains(clientId)) {
+                invalidClients.add(clientId);
+            }
+        });
+        invalidClients.forEach(this::removeClientMemberships);
+    }
+
+    /**
+     * 连接断开时移除客户端的全部成员关系
+     */
+    @EventListener
+    public void onClientDisconnected(ClientDisconnectedEvent event) {
+        removeClientMemberships(event.getClientId());
+    }
+
+    /**
+     * 按客户端所属群组索引移除成员关系，耗时只与该客户端加入的群组数相关
+     * <p>
+     * 移除成员不加锁；随后在锁内重新计数，仍为空的群组才删除，并发加入的成员不会随群组一起丢失。
+     */
+    private void removeClientMemberships(String clientId) {
+        localClients.remove(clientId);
+        Set<String> affectedGroups = membershipStore.removeClients(List.of(clientId));
+        if (affectedGroups.isEmpty()) {
+            return;
+        }
+        // 计数和删除空群组与 joinGroup 持有同一把锁，避免删掉刚有成员加入的群组
+        synchronized (this) {
+            membershipStore.countMembers(affectedGroups).forEach((groupId, size) -> {
+                if (size == 0) {
+                    // 如果群组为空，删除群组
+                    membershipStore.deleteGroup(groupId);
+                    evict(groupId);
+                    groupSizes.remove(groupId);
+                } else {
+                    updateCache(groupId, members -> members.remove(clientId));
+                    groupSizes.set(groupId, size);
+                }
+            });
+        }
+        log.debug("移除断开客户端的群组成员关系: clientId={}, groups={}", clientId, affectedGroups.size());
+    }
+
+    /**
+     * 后台校验：每次只检查一批经本节点加入的客户端，补偿丢失的断开事件
+     */
+    private void verifySlice() {
+        try {
+            GroupMessageService registry = groupMessageService.getIfAvailable();
+            if (registry == null) {
+                return;
+            }
+            SseProperties.Reconcile reconcile = sseProperties.getReconcile();
+            long joinedBefore = System.currentTimeMillis() - reconcile.getSweepInterval().toMillis();
+            if (verifyCursor == null || !verifyCursor.hasNext()) {
+                verifyCursor = localClients.entrySet().iterator();
+            }
+
+            List<String> stale = new ArrayList<>();
+            for (int checked = 0; checked < reconcile.getSliceSize() && verifyCursor.hasNext(); checked++) {
+                Map.Entry<String, Long> entry = verifyCursor.next();
+                // 刚加入的客户端可能尚未登记连接，跳过
+                if (entry.getValue() < joinedBefore && !registry.isConnected(entry.getKey())) {
+                    stale.add(entry.getKey());
+                }
+            }
+            if (!stale.isEmpty()) {
+                log.info("后台校验移除无效客户端: count={}", stale.size());
+                stale.forEach(this::removeClientMemberships);
+            }
+        } catch (RuntimeException e) {
+            log.warn("群组成员后台校验失败", e);
+        }
+    }
+
+    /**
+     * 懒加载群组成员：命中缓存直接返回，否则从存储加载并缓存
+     */
+    private Set<String> loadMembers(String groupId) {
+        CachedMembers cached = cachedEntry(groupId);
+        if (cached != null) {
+            return cached.members();
+        }
+
+        long expected = generation.get();
+        Set<String> members = ConcurrentHashMap.newKeySet();
+        members.addAll(membershipStore.getMembers(groupId));
+
+        // 加载期间有修改时不缓存，避免缓存过期结果
+        if (generation.get() == expected) {
+            long expiresAt = System.currentTimeMillis() + sseProperties.getCluster().getMembershipCacheTtl().toMillis();
+            memberCache.put(groupId, new CachedMembers(members, expiresAt));
+            if (generation.get() != expected) {
+                memberCache.remove(groupId);
+            }
+        }
+        return members;
+    }
+
+    private CachedMembers cachedEntry(String groupId) {
+        CachedMembers cached = memberCache.get(groupId);
+        if (cached != null && cached.expiresAt() <= System.currentTimeMillis()) {
+            memberCache.remove(groupId);
+            return null;
+        }
+        return cached;
+    }
+
+    /**
+     * 写穿本地缓存并通知其他节点失效
+     */
+    private void updateCache(String groupId, Consumer<Set<String>> update) {
+        generation.incrementAndGet();
+        CachedMembers cached = memberCache.get(groupId);
+        if (cached != null) {
+            cached.update(update);
+        }
+        publishInvalidate(groupId);
+    }
+
+    private void evict(String groupId) {
+        generation.incrementAndGet();
+        memberCache.remove(groupId);
+        publishInvalidate(groupId);
+    }
+
+    private void publishInvalidate(String groupId) {
+        try {
+            clusterBus.publish(invalidateChannel, clusterPresenceService.getNodeId() + INVALIDATE_SEPARATOR + groupId);
+        } catch (RuntimeException e) {
+            log.warn("发布成员变更通知失败: groupId={}", groupId, e);
+        }
+    }
+
+    private void onInvalidate(String message) {
+        int index = message.indexOf(INVALIDATE_SEPARATOR);
+        if (index < 0 || message.substring(0, index).equals(clusterPresenceService.getNodeId())) {
+            return;
+        }
+        String groupId = message.substring(index + 1);
+        generation.incrementAndGet();
+        memberCache.remove(groupId);
+        dirtyGroups.add(groupId);
+    }
+
+    private static String[][] shard(Collection<String> members, int shards) {
+        List<List<String>> parts = new ArrayList<>(shards);
+        for (int i = 0; i < shards; i++) {
+            parts.add(new ArrayList<>());
+        }
+        members.forEach(clientId -> parts.get(LargeGroupFanout.shardOf(clientId, shards)).add(clientId));
+        String[][] sharded = new String[shards][];
+        for (int i = 0; i < shards; i++) {
+            sharded[i] = parts.get(i).toArray(String[]::new);
+        }
+        return sharded;
+    }
+
+    /**
+     * 缓存的群组成员，修改与快照构建互斥，修改后快照失效
+     */
+    private static final class CachedMembers {
+        private final Set<String> members;
+        private final long expiresAt;
+        private String[][] sharded;
+
+        CachedMembers(Set<String> members, long expiresAt) {
+            this.members = members;
+            this.expiresAt = expiresAt;
+        }
+
+        Set<String> members() {
+            return members;
+        }
+
+        long expiresAt() {
+            return expiresAt;
+        }
+
+        synchronized void update(Consumer<Set<String>> update) {
+            update.accept(members);
+            sharded = null;
+        }
+
+        synchronized String[][] sharded(int shards) {
+            if (sharded == null || sharded.length != shards) {
+                sharded = shard(members, shards);
+            }
+            return sharded;
+        }
+    }
+}
@@ -1,19 +1,45 @@
 package com.cqcloud.platform.service;
 
+import com.cqcloud.platform.cluster.ClusterPresenceService;
+import com.cqcloud.platform.cluster.ClusterRouter;
+import com.cqcloud.platform.codec.PayloadCodec;
+import com.cqcloud.platform.dto.ClientInfo;
+import com.cqcloud.platform.dto.ConnectionQuery;
 import com.cqcloud.platform.dto.GroupEvent;
+import com.cqcloud.platform.dto.GroupMemberChange;
 import com.cqcloud.platform.dto.NotificationMessage;
 import com.cqcloud.platform.dto.SseEvent;
+import com.cqcloud.platform.event.ClientDisconnectedEvent;
+import com.cqcloud.platform.event.ConnectionStalledEvent;
+import com.cqcloud.platform.util.OpenAddressingSet;
+import com.cqcloud.platform.util.SseFrames;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.io.IOException;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Objects;
 import java.util.Set;
+import java.util.TreeSet;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
 
 /**
  * 群组消息服务
@@ -23,23 +49,59 @@ import java.util.concurrent.ConcurrentHashMap;
 @Slf4j
 @Service
 @RequiredArgsConstructor
-public class GroupMessageService {
+public class GroupMessageService implements SseConnectionProvider {
+
+    // 多群组发送时复用的去重集合
+    private static final ThreadLocal<OpenAddressingSet> RECIPIENTS = ThreadLocal.withInitial(OpenAddressingSet::new);
+    private static final int MAX_RETAINED_CAPACITY = 1 << 16;
+
+    // 事件来源频道前缀
+    private static final String GROUP_CHANNEL = "group:";
+    private static final String TOPIC_CHANNEL = "topic:";
 
     private final GroupMembersManager groupMembersManager;
+    private final TopicSubscriptionIndex topicSubscriptionIndex;
+    private final ClusterPresenceService clusterPresenceService;
+    private final ClusterRouter clusterRouter;
+    private final PayloadCodec payloadCodec;
+    private final ApplicationEventPublisher eventPublisher;
+    private final DeliveryAckService deliveryAckService;
+    private final WriteStallMonitor writeStallMonitor;
+    private final DeliveryTracer deliveryTracer;
+    private final LargeGroupFanout largeGroupFanout;
+    private final TenantService tenantService;
+    private final AtomicLong lastEventId = new AtomicLong();
     private final Map<String, SseEmitter> sseEmitters = new ConcurrentHashMap<>();
     private final Map<String, String> clientToUser = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> userClients = new ConcurrentHashMap<>();
+    private final Map<String, MessageFilter> clientFilters = new ConcurrentHashMap<>();
+
+    // 按客户端ID排序的连接时间索引，供分页查询使用
+    private final ConcurrentNavigableMap<String, LocalDateTime> connectTimes = new ConcurrentSkipListMap<>();
+
+    @PostConstruct
+    public void init() {
+        clusterRouter.setLocalDelivery(this::deliverRouted);
+        deliveryAckService.setRedelivery(this::sendFrames);
+    }
 
     /**
      * 发送消息到群组
+     * <p>
+     * 大群组由分片写线程并行写出，本方法不等待写出完成。
      */
     public void sendToGroup(String groupId, NotificationMessage message) {
-        Set<String> members = groupMembersManager.getGroupMembers(groupId);
-
-        if (members == null || members.isEmpty()) {
+        int memberCount = groupMembersManager.getGroupMemberCount(groupId);
+        if (memberCount == 0) {
             log.warn("群组为空或不存在: groupId={}", groupId);
             return;
         }
 
+        // 标记消息来源，多路复用连接据此区分群组
+        if (message.getChannel() == null) {
+            message.setChannel(GROUP_CHANNEL + groupId);
+        }
+
         // 构建群组消息事件
         SseEvent sseEvent = SseEvent.builder()
                 .event("group_message")
@@ -47,61 +109,252 @@ public class GroupMessageService {
                 .id(generateEventId())
                 .build();
 
-        // 发送给所有成员
-        members.forEach(clientId -> {
-            SseEmitter emitter = sseEmitters.get(clientId);
-            if (emitter != null) {
-                try {
-                    emitter.send(sseEvent.toSseEventBuilder());
-                    log.debug("发送群组消息成功: groupId={}, clientId={}", groupId, clientId);
-                } catch (IOException e) {
-                    log.error("发送群组消息失败: clientId={}", clientId, e);
-                    removeClient(clientId);
+        DeliveryTracer.Trace trace = deliveryTracer.start(sseEvent.getId());
+        Set<ResponseBodyEmitter.DataWithMediaType> frames = sseEvent.toSseEventBuilder(payloadCodec).build();
+        deliveryTracer.encoded(trace);
+
+        if (largeGroupFanout.isLarge(memberCount)) {
+            Set<ResponseBodyEmitter.DataWithMediaType> encoded = SseFrames.preEncode(frames);
+            fanOutLarge(groupId, sseEvent, message, trace,
+                    clientId -> accepts(clientId, message) && sendMessage(clientId, sseEvent.getId(), encoded, trace));
+            return;
+        }
+
+        // 发送给所有成员，不在本节点的成员路由到其所在节点
+        List<String> remoteMembers = new ArrayList<>();
+        groupMembersManager.forEachGroupMember(groupId, clientId -> {
+            if (!sseEmitters.containsKey(clientId)) {
+                remoteMembers.add(clientId);
+            } else if (accepts(clientId, message) && sendMessage(clientId, sseEvent.getId(), frames, trace)) {
+                log.debug("发送群组消息成功: groupId={}, clientId={}", groupId, clientId);
+            }
+        });
+        clusterRouter.route(remoteMembers, sseEvent.getEvent(), sseEvent.getId(), message);
+    }
+
+    /**
+     * 大群组扇出：成员快照按分片由分片写线程写出，各分片把不在本节点的成员路由到其所在节点
+     * @param message 需要跨节点路由的消息，为null时不路由
+     * @param writer  写出一个本地连接
+     */
+    private void fanOutLarge(String groupId, SseEvent sseEvent, NotificationMessage message,
+                             DeliveryTracer.Trace trace, Predicate<String> writer) {
+        String[][] shards = groupMembersManager.getShardedMembers(groupId, largeGroupFanout.getShardCount());
+        long enqueuedNanos = System.nanoTime();
+        largeGroupFanout.fanOut(shards, members -> {
+            deliveryTracer.dequeued(trace, enqueuedNanos);
+            List<String> remoteMembers = new ArrayList<>();
+            for (String clientId : members) {
+                if (!sseEmitters.containsKey(clientId)) {
+                    remoteMembers.add(clientId);
+                } else {
+                    writer.test(clientId);
                 }
             }
+            if (message != null) {
+                clusterRouter.route(remoteMembers, sseEvent.getEvent(), sseEvent.getId(), message);
+            }
         });
     }
 
     /**
-     * 发送群组成员变更事件
+     * 投递其他节点路由过来的消息
+     */
+    private void deliverRouted(ClusterRouter.RoutedEvent routed) {
+        Set<ResponseBodyEmitter.DataWithMediaType> frames = SseEvent.builder()
+                .event(routed.event())
+                .data(routed.message())
+                .id(routed.id())
+                .build()
+                .toSseEventBuilder(payloadCodec)
+                .build();
+        for (String clientId : routed.clientIds()) {
+            if (accepts(clientId, routed.message())) {
+                sendMessage(clientId, routed.id(), frames);
+            }
+        }
+    }
+
+    /**
+     * 发送消息到主题的所有订阅者
      */
-    public void sendMemberChangeEvent(String groupId, GroupEvent groupEvent) {
-        Set<String> members = groupMembersManager.getGroupMembers(groupId);
+    public int publishToTopic(String topic, NotificationMessage message) {
+        return publishToTopic(topic, message, null);
+    }
 
-        if (members == null) {
-            return;
+    /**
+     * 发送消息到主题中属于该租户的订阅者
+     * @param tenantId 发布者所属租户，为null时不按租户过滤
+     */
+    public int publishToTopic(String topic, NotificationMessage message, String tenantId) {
+        Set<String> subscribers = topicSubscriptionIndex.match(topic);
+        if (subscribers.isEmpty()) {
+            log.debug("主题无订阅者: topic={}", topic);
+            return 0;
+        }
+
+        if (message.getChannel() == null) {
+            message.setChannel(TOPIC_CHANNEL + topic);
         }
 
-        // 构建成员变更事件
         SseEvent sseEvent = SseEvent.builder()
-                .event("group_member_change")
-                .data(groupEvent)
+                .event("topic_message")
+                .data(message)
                 .id(generateEventId())
                 .build();
 
-        // 发送给所有成员
-        members.forEach(clientId -> {
-            SseEmitter emitter = sseEmitters.get(clientId);
-            if (emitter != null) {
-                try {
-                    emitter.send(sseEvent.toSseEventBuilder());
-                } catch (IOException e) {
-                    log.error("发送成员变更事件失败", e);
-                    removeClient(clientId);
-                }
+        DeliveryTracer.Trace trace = deliveryTracer.start(sseEvent.getId());
+        Set<ResponseBodyEmitter.DataWithMediaType> frames = sseEvent.toSseEventBuilder(payloadCodec).build();
+        deliveryTracer.encoded(trace);
+
+        int delivered = 0;
+        for (String clientId : subscribers) {
+            // 其他租户的订阅者收不到
+            if (tenantId != null && !tenantId.equals(tenantService.tenantOf(clientId))) {
+                continue;
             }
-        });
+            if (accepts(clientId, message) && sendMessage(clientId, sseEvent.getId(), frames, trace)) {
+                delivered++;
+            }
+        }
+        return delivered;
+    }
+
+    /**
+     * 发送事件给指定客户端
+     */
+    public boolean sendToClient(String clientId, SseEvent sseEvent) {
+        SseEmitter emitter = sseEmitters.get(clientId);
+        if (emitter == null) {
+            return false;
+        }
+        try {
+            writeStallMonitor.write(clientId, emitter, () -> emitter.send(sseEvent.toSseEventBuilder(payloadCodec)));
+            return true;
+        } catch (IOException e) {
+            log.error("发送消息失败: clientId={}", clientId, e);
+            removeClient(clientId, emitter);
+            return false;
+        }
     }
 
     /**
-     * 广播消息到所有群组
+     * 写出消息事件；确认模式的连接先登记为待确认，写出失败时保留到重连后重发
      */
-    public void broadcastToAllGroups(NotificationMessage message) {
-        Set<String> allGroups = new HashSet<>(groupMembersManager.getAllGroups());
+    public boolean sendMessage(String clientId, String eventId, Set<ResponseBodyEmitter.DataWithMediaType> frames) {
+        return sendMessage(clientId, eventId, frames, null);
+    }
 
-        allGroups.forEach(groupId -> {
-            sendToGroup(groupId, message);
-        });
+    private boolean sendMessage(String clientId, String eventId, Set<ResponseBodyEmitter.DataWithMediaType> frames,
+                                DeliveryTracer.Trace trace) {
+        if (deliveryAckService.isAckMode(clientId)) {
+            deliveryAckService.track(clientId, eventId, frames);
+        }
+        return sendFrames(clientId, frames, trace);
+    }
+
+    /**
+     * 一次写出多个预先构建的事件帧，只flush一次
+     */
+    public boolean sendFrames(String clientId, Set<ResponseBodyEmitter.DataWithMediaType> frames) {
+        return sendFrames(clientId, frames, null);
+    }
+
+    private boolean sendFrames(String clientId, Set<ResponseBodyEmitter.DataWithMediaType> frames,
+                               DeliveryTracer.Trace trace) {
+        SseEmitter emitter = sseEmitters.get(clientId);
+        if (emitter == null) {
+            return false;
+        }
+        try {
+            long writeStart = System.nanoTime();
+            writeStallMonitor.write(clientId, emitter, () -> emitter.send(frames));
+            deliveryTracer.written(trace, clientId, writeStart);
+            return true;
+        } catch (IOException e) {
+            log.error("发送消息失败: clientId={}", clientId, e);
+            removeClient(clientId, emitter);
+            return false;
+        }
+    }
+
+    /**
+     * 发送群组成员变更事件
+     * @param change 单个变更 {@link GroupEvent} 或合并后的 {@link GroupMemberChange}
+     */
+    public void sendMemberChangeEvent(String groupId, Object change) {
+        // 构建成员变更事件，所有成员共享同一份事件帧
+        SseEvent sseEvent = SseEvent.builder()
+                .event("group_member_change")
+                .data(change)
+                .id(generateEventId())
+                .build();
+        Set<ResponseBodyEmitter.DataWithMediaType> frames = sseEvent.toSseEventBuilder(payloadCodec).build();
+
+        if (largeGroupFanout.isLarge(groupMembersManager.getGroupMemberCount(groupId))) {
+            Set<ResponseBodyEmitter.DataWithMediaType> encoded = SseFrames.preEncode(frames);
+            fanOutLarge(groupId, sseEvent, null, null, clientId -> sendFrames(clientId, encoded));
+            return;
+        }
+
+        // 发送给本节点的所有成员
+        groupMembersManager.forEachGroupMember(groupId, clientId -> sendFrames(clientId, frames));
+    }
+
+    /**
+     * 广播消息到所有群组，同时在多个群组中的客户端只收到一次
+     */
+    public int broadcastToAllGroups(NotificationMessage message) {
+        return sendToGroups(groupMembersManager.getAllGroups(), message);
+    }
+
+    /**
+     * 发送消息到多个群组
+     * <p>
+     * 先求所有群组成员的并集，每个连接只写出一次；事件只序列化一次，所有连接共享。
+     * @return 本节点送达的连接数
+     */
+    public int sendToGroups(Collection<String> groupIds, NotificationMessage message) {
+        OpenAddressingSet recipients = RECIPIENTS.get();
+        try {
+            for (String groupId : groupIds) {
+                groupMembersManager.forEachGroupMember(groupId, recipients::add);
+            }
+            if (recipients.isEmpty()) {
+                log.debug("群组均为空或不存在: groups={}", groupIds.size());
+                return 0;
+            }
+
+            SseEvent sseEvent = SseEvent.builder()
+                    .event("group_message")
+                    .data(message)
+                    .id(generateEventId())
+                    .build();
+            DeliveryTracer.Trace trace = deliveryTracer.start(sseEvent.getId());
+            Set<ResponseBodyEmitter.DataWithMediaType> frames = sseEvent.toSseEventBuilder(payloadCodec).build();
+            deliveryTracer.encoded(trace);
+
+            int[] delivered = new int[1];
+            List<String> remoteMembers = new ArrayList<>();
+            recipients.forEach(clientId -> {
+                if (!sseEmitters.containsKey(clientId)) {
+                    remoteMembers.add(clientId);
+                } else if (accepts(clientId, message) && sendMessage(clientId, sseEvent.getId(), frames, trace)) {
+                    delivered[0]++;
+                }
+            });
+            clusterRouter.route(remoteMembers, sseEvent.getEvent(), sseEvent.getId(), message);
+
+            log.debug("多群组消息发送完成: groups={}, recipients={}, delivered={}",
+                    groupIds.size(), recipients.size(), delivered[0]);
+            return delivered[0];
+        } finally {
+            recipients.clear();
+            // 超大集合用完后释放，避免线程长期占用内存
+            if (recipients.capacity() > MAX_RETAINED_CAPACITY) {
+                RECIPIENTS.remove();
+            }
+        }
     }
 
     /**
@@ -122,46 +375,123 @@ public class GroupMessageService {
     }
 
     /**
-     * 获取群组在线成员
+     * 获取群组在线成员（启用集群时包含其他节点上的成员）
      */
     public Set<String> getOnlineGroupMembers(String groupId) {
-        Set<String> allMembers = groupMembersManager.getGroupMembers(groupId);
-        Set<String> onlineMembers = ConcurrentHashMap.newKeySet();
-
-        allMembers.forEach(clientId -> {
-            if (sseEmitters.containsKey(clientId)) {
-                onlineMembers.add(clientId);
-            }
-        });
-
-        return onlineMembers;
+        return clusterPresenceService.filterOnline(groupMembersManager.getGroupMembers(groupId));
     }
 
     /**
      * 添加客户端连接
      */
     public void addClientConnection(String clientId, String userId, SseEmitter emitter) {
-        sseEmitters.put(clientId, emitter);
+        SseEmitter oldEmitter = sseEmitters.put(clientId, emitter);
         clientToUser.put(clientId, userId);
+        userClients.computeIfAbsent(userId, k -> ConcurrentHashMap.newKeySet()).add(clientId);
+        connectTimes.put(clientId, LocalDateTime.now());
+        clusterPresenceService.onConnect(clientId, userId);
+
+        // 同一客户端重连：关闭旧连接，旧连接的回调不会移除新连接
+        if (oldEmitter != null && oldEmitter != emitter) {
+            try {
+                oldEmitter.complete();
+            } catch (Exception e) {
+                // 忽略异常
+            }
+        }
 
         // 设置回调
-        emitter.onCompletion(() -> removeClient(clientId));
-        emitter.onTimeout(() -> removeClient(clientId));
+        emitter.onCompletion(() -> removeClient(clientId, emitter));
+        emitter.onTimeout(() -> removeClient(clientId, emitter));
+        emitter.onError(ex -> removeClient(clientId, emitter));
+    }
+
+    /**
+     * 设置客户端消息过滤器，null表示接收全部消息
+     */
+    public void setClientFilter(String clientId, MessageFilter filter) {
+        if (filter == null) {
+            clientFilters.remove(clientId);
+        } else {
+            clientFilters.put(clientId, filter);
+        }
+    }
+
+    /**
+     * 客户端过滤器是否接收该消息
+     */
+    public boolean accepts(String clientId, NotificationMessage message) {
+        MessageFilter filter = clientFilters.get(clientId);
+        return filter == null || filter.test(message);
     }
 
     /**
      * 移除客户端
      */
     public void removeClient(String clientId) {
-        SseEmitter emitter = sseEmitters.remove(clientId);
+        SseEmitter emitter = sseEmitters.get(clientId);
         if (emitter != null) {
-            try {
-                emitter.complete();
-            } catch (Exception e) {
-                // 忽略异常
-            }
+            removeClient(clientId, emitter);
         }
-        clientToUser.remove(clientId);
+    }
+
+    /**
+     * 移除客户端的指定连接，连接已被重连替换时不做任何事
+     */
+    private void removeClient(String clientId, SseEmitter emitter) {
+        if (!sseEmitters.remove(clientId, emitter)) {
+            return;
+        }
+        try {
+            emitter.complete();
+        } catch (Exception e) {
+            // 忽略异常
+        }
+        unregisterClient(clientId);
+    }
+
+    /**
+     * 写入阻塞被驱逐的连接：只从注册表移除，由阻塞的写线程返回后关闭
+     */
+    @EventListener
+    public void onConnectionStalled(ConnectionStalledEvent event) {
+        String clientId = event.getClientId();
+        if (clientId != null && sseEmitters.remove(clientId, event.getEmitter())) {
+            unregisterClient(clientId);
+        }
+    }
+
+    /**
+     * 清理已移除连接的客户端状态并发布断开事件
+     */
+    private void unregisterClient(String clientId) {
+        String userId = clientToUser.remove(clientId);
+        if (userId != null) {
+            userClients.computeIfPresent(userId, (key, clients) -> {
+                clients.remove(clientId);
+                return clients.isEmpty() ? null : clients;
+            });
+        }
+        clientFilters.remove(clientId);
+        connectTimes.remove(clientId);
+        topicSubscriptionIndex.unsubscribeAll(clientId);
+        clusterPresenceService.onDisconnect(clientId);
+
+        eventPublisher.publishEvent(new ClientDisconnectedEvent(this, clientId, userId));
+    }
+
+    /**
+     * 获取客户端所属用户，未连接时返回null
+     */
+    public String getClientUserId(String clientId) {
+        return clientToUser.get(clientId);
+    }
+
+    /**
+     * 客户端是否连接在本节点
+     */
+    public boolean isConnected(String clientId) {
+        return sseEmitters.containsKey(clientId);
     }
 
     /**
@@ -171,6 +501,19 @@ public class GroupMessageService {
         return sseEmitters.get(clientId);
     }
 
+    /**
+     * 获取用户的在线客户端（支持多设备）
+     */
+    public Set<String> getUserClients(String userId) {
+        Set<String> clients = userClients.get(userId);
+        return clients != null ? new HashSet<>(clients) : Collections.emptySet();
+    }
+
+    @Override
+    public Map<String, SseEmitter> getConnections() {
+        return Map.copyOf(sseEmitters);
+    }
+
     /**
      * 获取所有在线客户端
      */
@@ -178,10 +521,48 @@ public class GroupMessageService {
         return sseEmitters.keySet();
     }
 
+    /**
+     * 按客户端ID有序遍历本节点连接，从游标之后开始，过滤条件在遍历时逐个判断
+     */
+    public Iterator<ClientInfo> listConnections(ConnectionQuery query) {
+        NavigableSet<String> clientIds = query.getUserId() != null
+                ? new TreeSet<>(userClients.getOrDefault(query.getUserId(), Set.of()))
+                : connectTimes.navigableKeySet();
+        if (query.getCursor() != null) {
+            clientIds = clientIds.tailSet(query.getCursor(), false);
+        }
+        return clientIds.stream()
+                .map(clientId -> {
+                    LocalDateTime connectTime = connectTimes.get(clientId);
+                    if (connectTime == null || !query.matchesConnectTime(connectTime)) {
+                        return null;
+                    }
+                    return ClientInfo.builder()
+                            .clientId(clientId)
+                            .userId(clientToUser.get(clientId))
+                            .connectTime(connectTime)
+                            .online(true)
+                            .build();
+                })
+                .filter(Objects::nonNull)
+                .filter(info -> query.getGroupId() == null
+                        || groupMembersManager.isMemberInGroup(info.getClientId(), query.getGroupId()))
+                .iterator();
+    }
+
+    /**
+     * 获取在线客户端数
+     */
+    public int getOnlineClientCount() {
+        return sseEmitters.size();
+    }
+
     /**
      * 生成事件ID
      */
     private String generateEventId() {
-        return String.valueOf(System.currentTimeMillis());
+        // 保持毫秒时间戳格式，同一毫秒内递增，确认模式按事件ID区分事件
+        long now = System.currentTimeMillis();
+        return String.valueOf(lastEventId.updateAndGet(last -> Math.max(last + 1, now)));
     }
 }
\ No newline at end of file
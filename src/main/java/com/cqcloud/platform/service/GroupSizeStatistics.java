@@ -0,0 +1,130 @@
+package com.cqcloud.platform.service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 群组规模统计
+ * <p>
+ * 成员加入、离开时增量更新各群组人数、总数和人数分布直方图，
+ * 查询时不再遍历存储中的全部群组，也不返回完整的群组人数表。
+ * @author weimeilayer@gmail.com ✨
+ * @date 💓💕 2024年4月12日 🐬🐇 💓💕
+ */
+public class GroupSizeStatistics {
+
+    // 直方图各区间的上限（含），最后一个区间无上限
+    private static final long[] BUCKET_BOUNDS = {0, 1, 10, 100, 1_000, 10_000, 100_000};
+
+    private static final String[] BUCKET_LABELS = {
+            "0", "1", "2-10", "11-100", "101-1000", "1001-10000", "10001-100000", ">100000"
+    };
+
+    // 群组人数：groupId -> members
+    private final Map<String, Long> sizes = new ConcurrentHashMap<>();
+
+    private final LongAdder totalGroups = new LongAdder();
+    private final LongAdder totalMembers = new LongAdder();
+    private final LongAdder[] buckets = new LongAdder[BUCKET_LABELS.length];
+
+    public GroupSizeStatistics() {
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * 群组人数增减
+     */
+    public void add(String groupId, long delta) {
+        sizes.compute(groupId, (key, current) -> transition(current, Math.max(0, (current != null ? current : 0) + delta)));
+    }
+
+    /**
+     * 以存储返回的人数为准更新群组人数
+     */
+    public void set(String groupId, long size) {
+        sizes.compute(groupId, (key, current) -> transition(current, size));
+    }
+
+    /**
+     * 移除群组
+     */
+    public void remove(String groupId) {
+        sizes.compute(groupId, (key, current) -> transition(current, null));
+    }
+
+    public long getTotalGroups() {
+        return totalGroups.sum();
+    }
+
+    public long getTotalMembers() {
+        return totalMembers.sum();
+    }
+
+    /**
+     * 人数最多的前N个群组，按人数降序
+     */
+    public List<Map<String, Object>> topGroups(int limit) {
+        PriorityQueue<Map.Entry<String, Long>> top = new PriorityQueue<>(limit + 1, Map.Entry.comparingByValue());
+        for (Map.Entry<String, Long> entry : sizes.entrySet()) {
+            if (top.size() < limit) {
+                top.offer(Map.entry(entry.getKey(), entry.getValue()));
+            } else if (entry.getValue() > top.peek().getValue()) {
+                top.poll();
+                top.offer(Map.entry(entry.getKey(), entry.getValue()));
+            }
+        }
+
+        List<Map.Entry<String, Long>> sorted = new ArrayList<>(top);
+        sorted.sort(Map.Entry.<String, Long>comparingByValue(Comparator.reverseOrder()));
+        List<Map<String, Object>> result = new ArrayList<>(sorted.size());
+        sorted.forEach(entry -> result.add(Map.of("groupId", entry.getKey(), "members", entry.getValue())));
+        return result;
+    }
+
+    /**
+     * 群组人数分布：区间 -> 群组数
+     */
+    public Map<String, Long> histogram() {
+        Map<String, Long> histogram = new LinkedHashMap<>();
+        for (int i = 0; i < buckets.length; i++) {
+            histogram.put(BUCKET_LABELS[i], buckets[i].sum());
+        }
+        return histogram;
+    }
+
+    /**
+     * 在群组的compute中调用，保证同一群组的新旧人数转换不交错
+     */
+    private Long transition(Long current, Long next) {
+        if (current != null) {
+            totalMembers.add(-current);
+            buckets[bucketOf(current)].decrement();
+        } else if (next != null) {
+            totalGroups.increment();
+        }
+        if (next != null) {
+            totalMembers.add(next);
+            buckets[bucketOf(next)].increment();
+        } else if (current != null) {
+            totalGroups.decrement();
+        }
+        return next;
+    }
+
+    private static int bucketOf(long size) {
+        for (int i = 0; i < BUCKET_BOUNDS.length; i++) {
+            if (size <= BUCKET_BOUNDS[i]) {
+                return i;
+            }
+        }
+        return BUCKET_BOUNDS.length;
+    }
+}
@@ -0,0 +1,219 @@
+package com.cqcloud.platform.service;
+
+import com.cqcloud.platform.cluster.JournaledMembershipStore;
+import com.cqcloud.platform.cluster.MembershipJournal;
+import com.cqcloud.platform.cluster.MembershipSnapshot;
+import com.cqcloud.platform.cluster.MembershipStore;
+import com.cqcloud.platform.config.SseProperties;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 群组状态快照服务
+ * <p>
+ * 定期把群组、管理员和成员关系写入二进制快照文件，可选记录增量变更日志。
+ * 启动时由 {@link GroupMembersManager} 在接受连接之前批量恢复，重连的客户端只需重新绑定连接，
+ * 不再逐个加入群组、广播成员变更。停机时先于连接排空保存最后一次快照并停止记录，
+ * 排空关闭连接引起的成员移除不会写入快照。
+ * 成员关系保存在Redis中时（sse.cluster.store=redis）无需快照，不启用。
+ * @author weimeilayer@gmail.com ✨
+ * @date 💓💕 2024年4月12日 🐬🐇 💓💕
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class GroupSnapshotService implements SmartLifecycle {
+
+    private final MembershipStore membershipStore;
+    private final SseProperties sseProperties;
+    private final ObjectMapper objectMapper;
+
+    private final LongAdder snapshots = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+
+    private volatile boolean running;
+    private volatile long lastSnapshotAt;
+    private volatile long lastSnapshotMillis;
+    private volatile int lastSnapshotGroups;
+    private volatile long restoreMillis;
+    private volatile int restoredGroups;
+    private volatile int restoredClients;
+    private volatile int replayedChanges;
+
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * 从快照和变更日志恢复群组状态，随后立即写一份新快照并截断日志
+     * @return 恢复的客户端ID，未启用或没有快照时为空
+     */
+    public synchronized Set<String> restore() {
+        if (!isActive()) {
+            return new HashSet<>();
+        }
+        long startedAt = System.currentTimeMillis();
+        try {
+            MembershipSnapshot.read(snapshotFile(), membershipStore, objectMapper);
+            MembershipJournal journal = journal();
+            if (journal != null) {
+                replayedChanges = journal.replay(membershipStore);
+            }
+        } catch (IOException | RuntimeException e) {
+            log.error("恢复群组快照失败，使用已载入的部分状态启动: file={}", snapshotFile(), e);
+        }
+
+        // 重放的变更可能移除或新增了成员，以存储中的最终状态为准
+        Set<String> restored = new HashSet<>();
+        Set<String> groups = membershipStore.getAllGroups();
+        groups.forEach(groupId -> restored.addAll(membershipStore.getMembers(groupId)));
+        restoredGroups = groups.size();
+        restoredClients = restored.size();
+        restoreMillis = System.currentTimeMillis() - startedAt;
+        if (restoredGroups > 0) {
+            log.info("恢复群组快照: groups={}, clients={}, replayedChanges={}, costMillis={}",
+                    restoredGroups, restoredClients, replayedChanges, restoreMillis);
+        }
+
+        snapshot();
+        return restored;
+    }
+
+    /**
+     * 立即保存一次快照
+     * @return 是否成功
+     */
+    public synchronized boolean snapshot() {
+        if (!isActive()) {
+            return false;
+        }
+        long startedAt = System.currentTimeMillis();
+        try {
+            MembershipJournal journal = journal();
+            if (journal != null) {
+                journal.rotate(running);
+            }
+            lastSnapshotGroups = MembershipSnapshot.write(membershipStore, snapshotFile(), objectMapper);
+            if (journal != null) {
+                journal.discardPrevious();
+            }
+            lastSnapshotAt = System.currentTimeMillis();
+            lastSnapshotMillis = lastSnapshotAt - startedAt;
+            snapshots.increment();
+            log.debug("保存群组快照: groups={}, costMillis={}", lastSnapshotGroups, lastSnapshotMillis);
+            return true;
+        } catch (IOException | RuntimeException e) {
+            failures.increment();
+            log.warn("保存群组快照失败: file={}", snapshotFile(), e);
+            return false;
+        }
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        if (!isActive()) {
+            return;
+        }
+        MembershipJournal journal = journal();
+        if (journal != null) {
+            try {
+                journal.open();
+            } catch (IOException e) {
+                log.warn("打开群组变更日志失败，仅定期保存快照", e);
+            }
+        }
+        long intervalMillis = Math.max(1000, sseProperties.getSnapshot().getInterval().toMillis());
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "sse-group-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::snapshot, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        if (scheduler == null) {
+            return;
+        }
+        // 不中断进行中的快照，等它写完后再保存最后一次
+        scheduler.shutdown();
+        // 停止记录后保存最后一次快照，之后排空引起的成员移除不再持久化
+        MembershipJournal journal = journal();
+        if (journal != null) {
+            journal.close();
+        }
+        snapshot();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * 在连接排空之前停止
+     */
+    @Override
+    public int getPhase() {
+        return SmartLifecycle.DEFAULT_PHASE - 256;
+    }
+
+    /**
+     * 获取快照统计信息
+     */
+    public Map<String, Object> getStatistics() {
+        MembershipJournal journal = journal();
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", isActive());
+        stats.put("snapshots", snapshots.sum());
+        stats.put("failures", failures.sum());
+        stats.put("lastSnapshotAt", lastSnapshotAt);
+        stats.put("lastSnapshotMillis", lastSnapshotMillis);
+        stats.put("lastSnapshotGroups", lastSnapshotGroups);
+        stats.put("restoredGroups", restoredGroups);
+        stats.put("restoredClients", restoredClients);
+        stats.put("replayedChanges", replayedChanges);
+        stats.put("restoreMillis", restoreMillis);
+        stats.put("changeLogAppended", journal != null ? journal.getAppended() : 0);
+        stats.put("changeLogFailed", journal != null ? journal.getFailed() : 0);
+        try {
+            Path file = snapshotFile();
+            stats.put("snapshotBytes", Files.exists(file) ? Files.size(file) : 0);
+        } catch (IOException e) {
+            stats.put("snapshotBytes", -1);
+        }
+        return stats;
+    }
+
+    /**
+     * Redis存储本身持久化，不需要快照
+     */
+    private boolean isActive() {
+        return sseProperties.getSnapshot().isEnabled()
+                && !"redis".equalsIgnoreCase(sseProperties.getCluster().getStore());
+    }
+
+    private MembershipJournal journal() {
+        return membershipStore instanceof JournaledMembershipStore journaled ? journaled.getJournal() : null;
+    }
+
+    private Path snapshotFile() {
+        return Path.of(sseProperties.getSnapshot().getPath());
+    }
+}
@@ -0,0 +1,133 @@
+package com.cqcloud.platform.service;
+
+import com.cqcloud.platform.config.SseProperties;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * 大群组分片扇出
+ * <p>
+ * 成员数达到阈值的群组不在发布线程中逐个写出：成员快照按客户端哈希分片，
+ * 第i个分片固定由第i个单线程写出，多个分片并行；同一客户端总在同一线程写出，
+ * 同一群组的事件对每个客户端保持发布顺序。分片队列有界，写线程积压时新的扇出任务被丢弃。
+ * @author weimeilayer@gmail.com ✨
+ * @date 💓💕 2024年4月12日 🐬🐇 💓💕
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class LargeGroupFanout {
+
+    private final SseProperties sseProperties;
+
+    private final LongAdder fanOuts = new LongAdder();
+    private final LongAdder shardTasks = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    private ThreadPoolExecutor[] shardExecutors;
+
+    @PostConstruct
+    public void init() {
+        int shards = Math.max(1, sseProperties.getLargeGroup().getShards());
+        int queueCapacity = Math.max(1, sseProperties.getLargeGroup().getQueueCapacity());
+        shardExecutors = new ThreadPoolExecutor[shards];
+        for (int i = 0; i < shards; i++) {
+            String name = "sse-large-group-" + (i + 1);
+            shardExecutors[i] = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queueCapacity),
+                    runnable -> {
+                        Thread thread = new Thread(runnable, name);
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        for (ThreadPoolExecutor executor : shardExecutors) {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * 成员数是否达到大群组阈值
+     */
+    public boolean isLarge(int memberCount) {
+        int threshold = sseProperties.getLargeGroup().getThreshold();
+        return threshold > 0 && memberCount >= threshold;
+    }
+
+    /**
+     * 分片数
+     */
+    public int getShardCount() {
+        return shardExecutors.length;
+    }
+
+    /**
+     * 客户端所在分片
+     */
+    public static int shardOf(String clientId, int shards) {
+        return Math.floorMod(clientId.hashCode(), shards);
+    }
+
+    /**
+     * 各分片并行写出，立即返回
+     * @param shards      按 {@link #shardOf} 分好的成员快照，长度等于分片数
+     * @param shardWriter 写出一个分片的成员
+     */
+    public void fanOut(String[][] shards, Consumer<String[]> shardWriter) {
+        fanOuts.increment();
+        for (int i = 0; i < shards.length; i++) {
+            String[] members = shards[i];
+            if (members.length == 0) {
+                continue;
+            }
+            try {
+                shardExecutors[i].execute(() -> {
+                    try {
+                        shardWriter.accept(members);
+                    } catch (RuntimeException e) {
+                        log.warn("大群组分片写出失败: members={}", members.length, e);
+                    }
+                });
+                shardTasks.increment();
+            } catch (RejectedExecutionException e) {
+                // 停机中或分片队列已满，该分片成员收不到本条事件
+                rejected.increment();
+                log.debug("大群组分片任务被拒绝: shard={}, members={}", i, members.length);
+            }
+        }
+    }
+
+    /**
+     * 获取扇出统计信息
+     */
+    public Map<String, Object> getStatistics() {
+        int queued = 0;
+        for (ThreadPoolExecutor executor : shardExecutors) {
+            queued += executor.getQueue().size();
+        }
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("threshold", sseProperties.getLargeGroup().getThreshold());
+        stats.put("shards", shardExecutors.length);
+        stats.put("fanOuts", fanOuts.sum());
+        stats.put("shardTasks", shardTasks.sum());
+        stats.put("queuedShardTasks", queued);
+        stats.put("queueCapacity", sseProperties.getLargeGroup().getQueueCapacity());
+        stats.put("rejected", rejected.sum());
+        return stats;
+    }
+}
@@ -0,0 +1,195 @@
+package com.cqcloud.platform.service;
+
+import com.cqcloud.platform.config.SseProperties;
+import com.cqcloud.platform.dto.GroupEvent;
+import com.cqcloud.platform.dto.GroupMemberChange;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 群组成员变更合并服务
+ * <p>
+ * 多人同时加入时逐个通知会产生 O(N²) 次写出：窗口内同一群组的加入、离开先累积，
+ * 窗口结束时合并为一个 group_member_change 事件（列出加入和离开的成员）发送给群组成员；
+ * 窗口内先加入后离开的成员相互抵消。窗口为0时逐个发送。
+ * 大群组的成员变更按 sse.large-group.roster-sample-rate 采样发送，默认不发送。
+ * @author weimeilayer@gmail.com ✨
+ * @date 💓💕 2024年4月12日 🐬🐇 💓💕
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class MemberChangeBatcher {
+
+    private static final String JOIN = "join";
+
+    private final GroupMessageService groupMessageService;
+    private final GroupMembersManager groupMembersManager;
+    private final LargeGroupFanout largeGroupFanout;
+    private final SseProperties sseProperties;
+
+    // 待发送的变更：groupId -> Batch
+    private final Map<String, Batch> pending = new ConcurrentHashMap<>();
+
+    private final LongAdder recorded = new LongAdder();
+    private final LongAdder flushed = new LongAdder();
+    private final LongAdder suppressed = new LongAdder();
+
+    private ScheduledExecutorService scheduler;
+
+    @PostConstruct
+    public void init() {
+        long windowMillis = sseProperties.getMemberChange().getWindow().toMillis();
+        if (windowMillis <= 0) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "sse-member-change");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::flushAll, windowMillis, windowMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            flushAll();
+        }
+    }
+
+    /**
+     * 记录一次成员变更
+     */
+    public void record(GroupEvent groupEvent) {
+        String groupId = groupEvent.getGroupId();
+        boolean large = largeGroupFanout.isLarge(groupMembersManager.getGroupMemberCount(groupId));
+        // 不发送成员变更的大群组不再累积
+        if (large && sseProperties.getLargeGroup().getRosterSampleRate() <= 0) {
+            suppressed.increment();
+            return;
+        }
+        if (scheduler == null) {
+            if (!large || sampled()) {
+                groupMessageService.sendMemberChangeEvent(groupId, groupEvent);
+            }
+            return;
+        }
+        recorded.increment();
+        int size;
+        // 取到的批次恰好被发送线程取走时，换新批次重试
+        do {
+            size = pending.computeIfAbsent(groupId, key -> new Batch()).add(groupEvent);
+        } while (size < 0);
+        if (size >= sseProperties.getMemberChange().getMaxBatch()) {
+            try {
+                scheduler.execute(() -> flush(groupId));
+            } catch (RejectedExecutionException e) {
+                // 停机中，由销毁时的最后一次发送处理
+            }
+        }
+    }
+
+    /**
+     * 获取合并统计信息
+     */
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("pendingGroups", pending.size());
+        stats.put("recorded", recorded.sum());
+        stats.put("flushed", flushed.sum());
+        stats.put("suppressed", suppressed.sum());
+        return stats;
+    }
+
+    private void flushAll() {
+        try {
+            pending.keySet().forEach(this::flush);
+        } catch (RuntimeException e) {
+            log.warn("发送成员变更事件失败", e);
+        }
+    }
+
+    private void flush(String groupId) {
+        Batch batch = pending.remove(groupId);
+        if (batch == null) {
+            return;
+        }
+        GroupMemberChange change = batch.drain(groupId);
+        if (change.getJoined().isEmpty() && change.getLeft().isEmpty()) {
+            return;
+        }
+        if (largeGroupFanout.isLarge(groupMembersManager.getGroupMemberCount(groupId)) && !sampled()) {
+            return;
+        }
+        flushed.increment();
+        groupMessageService.sendMemberChangeEvent(groupId, change);
+    }
+
+    /**
+     * 大群组成员变更是否抽中发送，未抽中计入抑制数
+     */
+    private boolean sampled() {
+        if (ThreadLocalRandom.current().nextDouble() < sseProperties.getLargeGroup().getRosterSampleRate()) {
+            return true;
+        }
+        suppressed.increment();
+        return false;
+    }
+
+    /**
+     * 单个群组窗口内累积的变更
+     */
+    private static class Batch {
+
+        private final Map<String, GroupEvent> joined = new LinkedHashMap<>();
+        private final Map<String, GroupEvent> left = new LinkedHashMap<>();
+        private boolean drained;
+
+        /**
+         * @return 累积的变更数，-1表示批次已被取走
+         */
+        synchronized int add(GroupEvent groupEvent) {
+            if (drained) {
+                return -1;
+            }
+            String clientId = groupEvent.getClientId();
+            if (JOIN.equals(groupEvent.getAction())) {
+                // 窗口内离开后又加入，成员关系未变
+                if (left.remove(clientId) == null) {
+                    joined.put(clientId, groupEvent);
+                }
+            } else if (joined.remove(clientId) == null) {
+                left.put(clientId, groupEvent);
+            }
+            return joined.size() + left.size();
+        }
+
+        synchronized GroupMemberChange drain(String groupId) {
+            drained = true;
+            return GroupMemberChange.builder()
+                    .groupId(groupId)
+                    .joined(new ArrayList<>(joined.values()))
+                    .left(new ArrayList<>(left.values()))
+                    .timestamp(LocalDateTime.now())
+                    .build();
+        }
+    }
+}
@@ -0,0 +1,369 @@
+package com.cqcloud.platform.service;
+
+import com.cqcloud.platform.dto.NotificationMessage;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * 消息过滤器
+ * <p>
+ * 连接时声明一次，编译为谓词后在扇出时直接求值，不匹配的消息不会被序列化和写出。语法示例：
+ * <pre>
+ * type in ('chat', 'system') and extra.region == 'east'
+ * not (priority == 'LOW' or sender == 'robot')
+ * </pre>
+ * 支持 ==、!=、in、not in、exists，以及 and/or/not 和括号。
+ * 字段为 NotificationMessage 的属性，extra.xxx、data.xxx 访问嵌套的 Map。
+ * 表达式长度和括号/not 嵌套层数有上限，连续的 and/or 展开为列表求值，不随条件数加深调用栈。
+ * @author weimeilayer@gmail.com ✨
+ * @date 💓💕 2024年4月12日 🐬🐇 💓💕
+ */
+public final class MessageFilter implements Predicate<NotificationMessage> {
+
+    // 表达式最大长度
+    static final int MAX_LENGTH = 1024;
+    // 括号和 not 的最大嵌套层数
+    static final int MAX_DEPTH = 16;
+
+    private final String expression;
+    private final Predicate<NotificationMessage> predicate;
+
+    private MessageFilter(String expression, Predicate<NotificationMessage> predicate) {
+        this.expression = expression;
+        this.predicate = predicate;
+    }
+
+    /**
+     * 编译过滤表达式
+     * @throws IllegalArgumentException 表达式语法错误
+     */
+    public static MessageFilter compile(String expression) {
+        if (expression == null || expression.isBlank()) {
+            throw new IllegalArgumentException("过滤表达式不能为空");
+        }
+        if (expression.length() > MAX_LENGTH) {
+            throw new IllegalArgumentException("过滤表达式长度不能超过" + MAX_LENGTH + "个字符");
+        }
+        Parser parser = new Parser(expression, tokenize(expression));
+        Predicate<NotificationMessage> predicate = parser.parseOr();
+        if (!parser.atEnd()) {
+            throw parser.error("多余的内容");
+        }
+        return new MessageFilter(expression, predicate);
+    }
+
+    @Override
+    public boolean test(NotificationMessage message) {
+        return predicate.test(message);
+    }
+
+    public String getExpression() {
+        return expression;
+    }
+
+    @Override
+    public String toString() {
+        return expression;
+    }
+
+    /**
+     * 字段访问器，编译期解析
+     */
+    private static Function<NotificationMessage, Object> accessor(String field) {
+        String[] path = field.split("\\.");
+        Function<NotificationMessage, Object> root = switch (path[0]) {
+            case "id" -> NotificationMessage::getId;
+            case "type" -> NotificationMessage::getType;
+            case "title" -> NotificationMessage::getTitle;
+            case "content" -> NotificationMessage::getContent;
+            case "sender" -> NotificationMessage::getSender;
+            case "receiver" -> NotificationMessage::getReceiver;
+            case "groupId" -> NotificationMessage::getGroupId;
+            case "topic" -> NotificationMessage::getTopic;
+            case "channel" -> NotificationMessage::getChannel;
+            case "priority" -> NotificationMessage::getPriority;
+            case "persistent" -> NotificationMessage::isPersistent;
+            case "extra" -> NotificationMessage::getExtra;
+            case "data" -> NotificationMessage::getData;
+            default -> throw new IllegalArgumentException("不支持的过滤字段: " + field);
+        };
+        if (path.length == 1) {
+            return root;
+        }
+        return message -> {
+            Object value = root.apply(message);
+            for (int i = 1; i < path.length && value != null; i++) {
+                value = value instanceof Map<?, ?> map ? map.get(path[i]) : null;
+            }
+            return value;
+        };
+    }
+
+    private static String stringValue(Object value) {
+        return value == null ? null : String.valueOf(value);
+    }
+
+    private static List<Token> tokenize(String expression) {
+        List<Token> tokens = new ArrayList<>();
+        int i = 0;
+        int length = expression.length();
+        while (i < length) {
+            char c = expression.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (c == '(' || c == ')' || c == ',') {
+                tokens.add(new Token(TokenType.SYMBOL, String.valueOf(c), i));
+                i++;
+            } else if (c == '\'' || c == '"') {
+                int end = expression.indexOf(c, i + 1);
+                if (end < 0) {
+                    throw new IllegalArgumentException("字符串未闭合: 位置 " + i);
+                }
+                tokens.add(new Token(TokenType.STRING, expression.substring(i + 1, end), i));
+                i = end + 1;
+            } else if (c == '=' || c == '!' || c == '&' || c == '|') {
+                String op = i + 1 < length ? expression.substring(i, i + 2) : String.valueOf(c);
+                switch (op) {
+                    case "==", "!=", "&&", "||" -> {
+                        tokens.add(new Token(TokenType.SYMBOL, op, i));
+                        i += 2;
+                    }
+                    default -> {
+                        if (c != '!') {
+                            throw new IllegalArgumentException("无法识别的运算符: 位置 " + i);
+                        }
+                        tokens.add(new Token(TokenType.SYMBOL, "!", i));
+                        i++;
+                    }
+                }
+            } else {
+                int start = i;
+                while (i < length && isWordChar(expression.charAt(i))) {
+                    i++;
+                }
+                if (start == i) {
+                    throw new IllegalArgumentException("无法识别的字符 '" + c + "': 位置 " + i);
+                }
+                tokens.add(new Token(TokenType.WORD, expression.substring(start, i), start));
+            }
+        }
+        return tokens;
+    }
+
+    private static boolean isWordChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '.' || c == '-';
+    }
+
+    private enum TokenType {
+        WORD, STRING, SYMBOL
+    }
+
+    private record Token(TokenType type, String text, int position) {
+
+        boolean isKeyword(String keyword) {
+            return type == TokenType.WORD && text.toLowerCase(Locale.ROOT).equals(keyword);
+        }
+
+        boolean isSymbol(String symbol) {
+            return type == TokenType.SYMBOL && text.equals(symbol);
+        }
+    }
+
+    /**
+     * 递归下降解析
+     */
+    private static class Parser {
+
+        private final String expression;
+        private final List<Token> tokens;
+        private int index;
+        private int depth;
+
+        Parser(String expression, List<Token> tokens) {
+            this.expression = expression;
+            this.tokens = tokens;
+        }
+
+        Predicate<NotificationMessage> parseOr() {
+            List<Predicate<NotificationMessage>> operands = new ArrayList<>();
+            operands.add(parseAnd());
+            while (peekKeyword("or") || peekSymbol("||")) {
+                index++;
+                operands.add(parseAnd());
+            }
+            if (operands.size() == 1) {
+                return operands.get(0);
+            }
+            Predicate<NotificationMessage>[] any = toArray(operands);
+            return message -> {
+                for (Predicate<NotificationMessage> operand : any) {
+                    if (operand.test(message)) {
+                        return true;
+                    }
+                }
+                return false;
+            };
+        }
+
+        Predicate<NotificationMessage> parseAnd() {
+            List<Predicate<NotificationMessage>> operands = new ArrayList<>();
+            operands.add(parseUnary());
+            while (peekKeyword("and") || peekSymbol("&&")) {
+                index++;
+                operands.add(parseUnary());
+            }
+            if (operands.size() == 1) {
+                return operands.get(0);
+            }
+            Predicate<NotificationMessage>[] all = toArray(operands);
+            return message -> {
+                for (Predicate<NotificationMessage> operand : all) {
+                    if (!operand.test(message)) {
+                        return false;
+                    }
+                }
+                return true;
+            };
+        }
+
+        Predicate<NotificationMessage> parseUnary() {
+            if (peekKeyword("not") || peekSymbol("!")) {
+                enter();
+                index++;
+                Predicate<NotificationMessage> inner = parseUnary().negate();
+                depth--;
+                return inner;
+            }
+            if (peekSymbol("(")) {
+                enter();
+                index++;
+                Predicate<NotificationMessage> inner = parseOr();
+                expectSymbol(")");
+                depth--;
+                return inner;
+            }
+            return parseComparison();
+        }
+
+        Predicate<NotificationMessage> parseComparison() {
+            Token fieldToken = next();
+            if (fieldToken.type() != TokenType.WORD) {
+                throw error("此处应为字段名");
+            }
+            Function<NotificationMessage, Object> field = accessor(fieldToken.text());
+
+            if (peekSymbol("==") || peekSymbol("!=")) {
+                boolean equals = next().text().equals("==");
+                String expected = parseValue();
+                Predicate<NotificationMessage> predicate = message -> {
+                    String actual = stringValue(field.apply(message));
+                    return expected == null ? actual == null : expected.equals(actual);
+                };
+                return equals ? predicate : predicate.negate();
+            }
+
+            boolean negated = false;
+            if (peekKeyword("not")) {
+                index++;
+                negated = true;
+                if (!peekKeyword("in")) {
+                    throw error("此处应为 in");
+                }
+            }
+            if (peekKeyword("in")) {
+                index++;
+                Set<String> values = parseList();
+                Predicate<NotificationMessage> predicate = message -> {
+                    String actual = stringValue(field.apply(message));
+                    return actual != null && values.contains(actual);
+                };
+                return negated ? predicate.negate() : predicate;
+            }
+            if (peekKeyword("exists")) {
+                index++;
+                return message -> field.apply(message) != null;
+            }
+            throw error("此处应为 ==、!=、in 或 exists");
+        }
+
+        Set<String> parseList() {
+            expectSymbol("(");
+            Set<String> values = new HashSet<>();
+            do {
+                String value = parseValue();
+                if (value != null) {
+                    values.add(value);
+                }
+            } while (acceptSymbol(","));
+            expectSymbol(")");
+            return values;
+        }
+
+        String parseValue() {
+            Token token = next();
+            if (token.type() == TokenType.STRING) {
+                return token.text();
+            }
+            if (token.type() == TokenType.WORD) {
+                return token.isKeyword("null") ? null : token.text();
+            }
+            throw error("此处应为值");
+        }
+
+        boolean atEnd() {
+            return index >= tokens.size();
+        }
+
+        private void enter() {
+            if (++depth > MAX_DEPTH) {
+                throw error("嵌套层数不能超过" + MAX_DEPTH);
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private static Predicate<NotificationMessage>[] toArray(List<Predicate<NotificationMessage>> operands) {
+            return operands.toArray(new Predicate[0]);
+        }
+
+        private Token next() {
+            if (atEnd()) {
+                throw error("表达式意外结束");
+            }
+            return tokens.get(index++);
+        }
+
+        private boolean peekKeyword(String keyword) {
+            return !atEnd() && tokens.get(index).isKeyword(keyword);
+        }
+
+        private boolean peekSymbol(String symbol) {
+            return !atEnd() && tokens.get(index).isSymbol(symbol);
+        }
+
+        private boolean acceptSymbol(String symbol) {
+            if (peekSymbol(symbol)) {
+                index++;
+                return true;
+            }
+            return false;
+        }
+
+        private void expectSymbol(String symbol) {
+            if (!acceptSymbol(symbol)) {
+                throw error("此处应为 '" + symbol + "'");
+            }
+        }
+
+        IllegalArgumentException error(String reason) {
+            int position = atEnd() ? expression.length() : tokens.get(index).position();
+            return new IllegalArgumentException("过滤表达式错误（位置 " + position + "）: " + reason);
+        }
+    }
+}
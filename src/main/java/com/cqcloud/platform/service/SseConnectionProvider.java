@@ -0,0 +1,18 @@
+package com.cqcloud.platform.service;
+
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.Map;
+
+/**
+ * SSE连接来源，停机排空时据此收集需要关闭的连接
+ * @author weimeilayer@gmail.com ✨
+ * @date 💓💕 2024年4月12日 🐬🐇 💓💕
+ */
+public interface SseConnectionProvider {
+
+    /**
+     * 当前连接快照：clientId -> emitter
+     */
+    Map<String, SseEmitter> getConnections();
+}
@@ -0,0 +1,172 @@
+package com.cqcloud.platform.service;
+
+import com.cqcloud.platform.config.SseProperties;
+import com.cqcloud.platform.dto.SseEvent;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 停机排空服务
+ * <p>
+ * 停机时先于Web服务器优雅停机执行：给每个客户端发送带随机retry的shutdown事件，
+ * 分批关闭连接，并在关闭前写完出站队列中积压的事件，避免所有客户端同时重连到其他节点。
+ * @author weimeilayer@gmail.com ✨
+ * @date 💓💕 2024年4月12日 🐬🐇 💓💕
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class SseDrainService implements SmartLifecycle {
+
+    private static final String SHUTDOWN_EVENT = "shutdown";
+
+    private final ObjectProvider<SseConnectionProvider> connectionProviders;
+    private final SseOutboundWriter sseOutboundWriter;
+    private final SseProperties sseProperties;
+
+    private volatile boolean running;
+    private volatile boolean draining;
+
+    @Override
+    public void start() {
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        try {
+            if (sseProperties.getShutdown().isDrainEnabled()) {
+                drain();
+            }
+        } finally {
+            running = false;
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * 在Web服务器优雅停机之前执行
+     */
+    @Override
+    public int getPhase() {
+        return SmartLifecycle.DEFAULT_PHASE - 512;
+    }
+
+    /**
+     * 是否正在排空
+     */
+    public boolean isDraining() {
+        return draining;
+    }
+
+    /**
+     * 排空期间拒绝新连接：发送带随机retry的shutdown事件后关闭
+     */
+    public SseEmitter rejectConnection() {
+        SseEmitter emitter = new SseEmitter();
+        try {
+            emitter.send(shutdownEvent(randomRetry()).toSseEventBuilder());
+            emitter.complete();
+        } catch (IOException e) {
+            emitter.completeWithError(e);
+        }
+        return emitter;
+    }
+
+    /**
+     * 分批排空所有连接
+     */
+    public void drain() {
+        draining = true;
+        SseProperties.Shutdown shutdown = sseProperties.getShutdown();
+
+        // 同一个emitter可能被多个来源登记，按对象去重
+        Map<SseEmitter, String> unique = new IdentityHashMap<>();
+        connectionProviders.orderedStream().forEach(provider ->
+                provider.getConnections().forEach((clientId, emitter) -> unique.putIfAbsent(emitter, clientId)));
+        if (unique.isEmpty()) {
+            return;
+        }
+
+        List<SseEmitter> connections = new ArrayList<>(unique.keySet());
+        Collections.shuffle(connections);
+        log.info("开始排空SSE连接: connections={}, waves={}", connections.size(), shutdown.getWaves());
+
+        int waves = Math.max(1, Math.min(shutdown.getWaves(), connections.size()));
+        long waveDelay = shutdown.getCloseWindow().toMillis() / waves;
+        int waveSize = (connections.size() + waves - 1) / waves;
+        CountDownLatch closed = new CountDownLatch(connections.size());
+
+        ScheduledExecutorService waveExecutor = Executors.newSingleThreadScheduledExecutor();
+        try {
+            for (int wave = 0; wave < waves; wave++) {
+                List<SseEmitter> batch = connections.subList(
+                        Math.min(wave * waveSize, connections.size()),
+                        Math.min((wave + 1) * waveSize, connections.size()));
+                waveExecutor.schedule(() -> closeWave(batch, closed), wave * waveDelay, TimeUnit.MILLISECONDS);
+            }
+
+            if (!closed.await(shutdown.getTimeout().toMillis(), TimeUnit.MILLISECONDS)) {
+                log.warn("SSE连接排空超时，剩余: {}", closed.getCount());
+            } else {
+                log.info("SSE连接排空完成: connections={}", connections.size());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            waveExecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * 关闭一批连接：shutdown事件排在出站队列末尾，写完后再关闭
+     */
+    private void closeWave(List<SseEmitter> batch, CountDownLatch closed) {
+        for (SseEmitter emitter : batch) {
+            SseEvent event = shutdownEvent(randomRetry());
+            sseOutboundWriter.enqueue(emitter, event.toSseEventBuilder().build(), success -> {
+                try {
+                    emitter.complete();
+                } catch (Exception e) {
+                    // 忽略完成异常
+                } finally {
+                    closed.countDown();
+                }
+            });
+        }
+    }
+
+    private long randomRetry() {
+        SseProperties.Shutdown shutdown = sseProperties.getShutdown();
+        long window = Math.max(1, shutdown.getReconnectWindow().toMillis());
+        return shutdown.getMinRetry().toMillis() + ThreadLocalRandom.current().nextLong(window);
+    }
+
+    private static SseEvent shutdownEvent(long retry) {
+        return SseEvent.builder()
+                .event(SHUTDOWN_EVENT)
+                .data("服务器即将停机，请稍后重连")
+                .retry(retry)
+                .build();
+    }
+}
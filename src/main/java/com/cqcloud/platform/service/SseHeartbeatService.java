@@ -0,0 +1,143 @@
+package com.cqcloud.platform.service;
+
+import com.cqcloud.platform.config.SseProperties;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 空闲连接心跳服务
+ * <p>
+ * 定时检查所有连接最近一次写入的时间，只向空闲超过间隔的连接发送一个注释帧（":"），
+ * 客户端EventSource会忽略注释；有消息写出的连接不发送。心跳帧预先编码为常量，
+ * 经出站写入器异步写出，不阻塞检查线程；写出失败或积压超过上限的连接由出站写入器关闭。
+ * @author weimeilayer@gmail.com ✨
+ * @date 💓💕 2024年4月12日 🐬🐇 💓💕
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class SseHeartbeatService {
+
+    private static final Set<ResponseBodyEmitter.DataWithMediaType> HEARTBEAT_FRAME = Collections.singleton(
+            new ResponseBodyEmitter.DataWithMediaType(":\n\n".getBytes(StandardCharsets.UTF_8), MediaType.TEXT_PLAIN));
+
+    private final SseProperties sseProperties;
+    private final WriteStallMonitor writeStallMonitor;
+    private final SseOutboundWriter sseOutboundWriter;
+    private final ObjectProvider<SseConnectionProvider> connectionProviders;
+
+    // 发送过心跳的连接，连接消失后释放其出站队列
+    private final Set<SseEmitter> heartbeatEmitters = ConcurrentHashMap.newKeySet();
+
+    private final LongAdder ticks = new LongAdder();
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder deferred = new LongAdder();
+
+    private ScheduledExecutorService scheduler;
+
+    @PostConstruct
+    public void init() {
+        SseProperties.Heartbeat heartbeat = sseProperties.getHeartbeat();
+        if (!heartbeat.isEnabled()) {
+            return;
+        }
+        long intervalMillis = Math.max(100, heartbeat.getCheckInterval().toMillis());
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "sse-heartbeat");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::tick, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * 空闲心跳间隔（毫秒），未启用时为null
+     */
+    public Long getIdleIntervalMillis() {
+        SseProperties.Heartbeat heartbeat = sseProperties.getHeartbeat();
+        return heartbeat.isEnabled() ? heartbeat.getIdleInterval().toMillis() : null;
+    }
+
+    /**
+     * 获取心跳统计信息
+     */
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", sseProperties.getHeartbeat().isEnabled());
+        stats.put("idleIntervalMillis", sseProperties.getHeartbeat().getIdleInterval().toMillis());
+        stats.put("ticks", ticks.sum());
+        stats.put("sent", sent.sum());
+        stats.put("failed", failed.sum());
+        stats.put("deferred", deferred.sum());
+        return stats;
+    }
+
+    /**
+     * 一次检查：向所有空闲连接批量发送心跳
+     */
+    private void tick() {
+        try {
+            SseProperties.Heartbeat heartbeat = sseProperties.getHeartbeat();
+            long idleBefore = System.currentTimeMillis() - heartbeat.getIdleInterval().toMillis();
+            ticks.increment();
+
+            // 同一连接可能同时登记在多个注册表中，按对象标识去重
+            Set<SseEmitter> live = Collections.newSetFromMap(new IdentityHashMap<>());
+            connectionProviders.orderedStream()
+                    .forEach(provider -> live.addAll(provider.getConnections().values()));
+
+            int budget = heartbeat.getMaxPerTick();
+            for (SseEmitter emitter : live) {
+                if (writeStallMonitor.getLastWriteAt(emitter) > idleBefore
+                        || writeStallMonitor.isEvicted(emitter)
+                        || sseOutboundWriter.getQueuedCount(emitter) > 0) {
+                    continue;
+                }
+                if (budget-- <= 0) {
+                    deferred.increment();
+                    continue;
+                }
+                heartbeatEmitters.add(emitter);
+                sseOutboundWriter.enqueue(emitter, HEARTBEAT_FRAME, success -> (success ? sent : failed).increment());
+            }
+
+            writeStallMonitor.retainActivity(live);
+            heartbeatEmitters.removeIf(emitter -> {
+                if (live.contains(emitter)) {
+                    return false;
+                }
+                sseOutboundWriter.release(emitter);
+                return true;
+            });
+        } catch (RuntimeException e) {
+            log.warn("发送心跳失败", e);
+        }
+    }
+}
@@ -0,0 +1,286 @@
+package com.cqcloud.platform.service;
+
+import com.cqcloud.platform.config.SseProperties;
+import com.cqcloud.platform.event.ConnectionStalledEvent;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * SSE出站写入器
+ * <p>
+ * 每个连接一个串行队列，由共享的写线程池异步写出：同一连接的事件保持顺序，
+ * 积压的多个事件合并为一次写出和一次flush，慢连接只占用自己的队列。
+ * 积压超过上限的连接丢弃新事件并由写线程关闭，不会留下仍然打开却已不再投递的连接。
+ * 启用多租户时，租户连接的队列在租户自己的发送线程池中写出。
+ * @author weimeilayer@gmail.com ✨
+ * @date 💓💕 2024年4月12日 🐬🐇 💓💕
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class SseOutboundWriter {
+
+    private final SseProperties sseProperties;
+    private final WriteStallMonitor writeStallMonitor;
+    private final DeliveryTracer deliveryTracer;
+    private final TenantService tenantService;
+
+    // 连接队列：emitter -> channel
+    private final Map<SseEmitter, Channel> channels = new ConcurrentHashMap<>();
+
+    private final LongAdder enqueued = new LongAdder();
+    private final LongAdder written = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+
+    private ExecutorService writerExecutor;
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger counter = new AtomicInteger();
+        writerExecutor = Executors.newFixedThreadPool(sseProperties.getOutbound().getThreads(), runnable -> {
+            Thread thread = new Thread(runnable, "sse-writer-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void destroy() {
+        writerExecutor.shutdown();
+    }
+
+    /**
+     * 写入结果回调
+     */
+    @FunctionalInterface
+    public interface WriteCallback {
+        void onResult(boolean success);
+    }
+
+    /**
+     * 将事件帧加入连接的出站队列
+     * @return false表示队列已满被丢弃（回调同样会收到失败），连接随后被关闭
+     */
+    public boolean enqueue(SseEmitter emitter, Set<ResponseBodyEmitter.DataWithMediaType> frames,
+                           WriteCallback callback) {
+        return enqueue(emitter, frames, null, callback);
+    }
+
+    /**
+     * 将事件帧加入连接的出站队列，采样事件记录排队和写出延迟
+     * @return false表示队列已满被丢弃（回调同样会收到失败），连接随后被关闭
+     */
+    public boolean enqueue(SseEmitter emitter, Set<ResponseBodyEmitter.DataWithMediaType> frames,
+                           DeliveryTracer.Trace trace, WriteCallback callback) {
+        Channel channel = channels.computeIfAbsent(emitter, Channel::new);
+        if (channel.size.incrementAndGet() > sseProperties.getOutbound().getMaxQueuedPerConnection()) {
+            channel.size.decrementAndGet();
+            dropped.increment();
+            complete(callback, false);
+            // 由写线程关闭，发布线程不等待该连接进行中的写出
+            if (channel.overflowed.compareAndSet(false, true)) {
+                channel.schedule();
+            }
+            return false;
+        }
+        channel.queue.offer(new Task(frames, callback, trace, trace != null ? System.nanoTime() : 0));
+        enqueued.increment();
+        channel.schedule();
+        return true;
+    }
+
+    /**
+     * 连接关闭后释放队列，未写出的事件按失败回调
+     */
+    public void release(SseEmitter emitter) {
+        Channel channel = channels.remove(emitter);
+        if (channel != null) {
+            channel.failPending();
+        }
+    }
+
+    /**
+     * 写入阻塞被驱逐的连接：释放出站队列
+     */
+    @EventListener
+    public void onConnectionStalled(ConnectionStalledEvent event) {
+        release(event.getEmitter());
+    }
+
+    /**
+     * 连接当前积压的事件数
+     */
+    public int getQueuedCount(SseEmitter emitter) {
+        Channel channel = channels.get(emitter);
+        return channel != null ? channel.size.get() : 0;
+    }
+
+    /**
+     * 获取写入统计信息
+     */
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("channels", channels.size());
+        stats.put("queued", channels.values().stream().mapToInt(channel -> channel.size.get()).sum());
+        stats.put("enqueued", enqueued.sum());
+        stats.put("written", written.sum());
+        stats.put("failed", failed.sum());
+        stats.put("dropped", dropped.sum());
+        return stats;
+    }
+
+    private static void complete(WriteCallback callback, boolean success) {
+        if (callback == null) {
+            return;
+        }
+        try {
+            callback.onResult(success);
+        } catch (RuntimeException e) {
+            log.warn("写入回调异常", e);
+        }
+    }
+
+    private record Task(Set<ResponseBodyEmitter.DataWithMediaType> frames, WriteCallback callback,
+                        DeliveryTracer.Trace trace, long enqueuedNanos) {
+    }
+
+    /**
+     * 单个连接的串行出站队列
+     */
+    private class Channel implements Runnable {
+
+        private final SseEmitter emitter;
+        private final Executor executor;
+        private final Queue<Task> queue = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger size = new AtomicInteger();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private final AtomicBoolean overflowed = new AtomicBoolean();
+        private volatile boolean closed;
+
+        Channel(SseEmitter emitter) {
+            this.emitter = emitter;
+            Executor tenantExecutor = tenantService.executorFor(emitter);
+            this.executor = tenantExecutor != null ? tenantExecutor : writerExecutor;
+        }
+
+        void schedule() {
+            if (scheduled.compareAndSet(false, true)) {
+                try {
+                    executor.execute(this);
+                } catch (RejectedExecutionException e) {
+                    scheduled.set(false);
+                    failPending();
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                drain();
+            } finally {
+                scheduled.set(false);
+            }
+            // 释放调度标记后仍有新事件或待关闭，重新调度
+            if (!closed && (!queue.isEmpty() || overflowed.get())) {
+                schedule();
+            }
+        }
+
+        private void drain() {
+            if (overflowed.get()) {
+                closeOverflowed();
+                return;
+            }
+            int maxBatch = sseProperties.getOutbound().getMaxBatch();
+            List<Task> batch = new ArrayList<>();
+            Task task;
+            while (batch.size() < maxBatch && (task = queue.poll()) != null) {
+                size.decrementAndGet();
+                deliveryTracer.dequeued(task.trace(), task.enqueuedNanos());
+                batch.add(task);
+            }
+            if (batch.isEmpty()) {
+                return;
+            }
+
+            Set<ResponseBodyEmitter.DataWithMediaType> frames = new LinkedHashSet<>();
+            batch.forEach(item -> frames.addAll(item.frames()));
+
+            boolean success;
+            try {
+                long writeStart = System.nanoTime();
+                writeStallMonitor.write(null, emitter, () -> emitter.send(frames));
+                success = true;
+                written.add(batch.size());
+                batch.forEach(item -> deliveryTracer.written(item.trace(), null, writeStart));
+            } catch (Exception e) {
+                log.debug("出站写入失败: {}", e.getMessage());
+                success = false;
+                failed.add(batch.size());
+                channels.remove(emitter, this);
+                try {
+                    emitter.completeWithError(e);
+                } catch (Exception ignored) {
+                    // 忽略完成异常
+                }
+            }
+
+            for (Task item : batch) {
+                complete(item.callback(), success);
+            }
+            if (!success) {
+                failPending();
+            }
+        }
+
+        /**
+         * 积压超过上限：未写出的事件按失败回调，关闭连接
+         */
+        private void closeOverflowed() {
+            closed = true;
+            channels.remove(emitter, this);
+            failPending();
+            log.warn("连接出站队列积压超过上限，关闭连接");
+            try {
+                emitter.completeWithError(new IOException("出站队列已满"));
+            } catch (Exception ignored) {
+                // 忽略完成异常
+            }
+        }
+
+        void failPending() {
+            Task task;
+            while ((task = queue.poll()) != null) {
+                size.decrementAndGet();
+                failed.increment();
+                complete(task.callback(), false);
+            }
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package com.cqcloud.platform.service;
+
+import com.cqcloud.platform.config.SseProperties;
+import com.cqcloud.platform.dto.SseEvent;
+import com.cqcloud.platform.util.TokenBucket;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 发布与连接限流（按用户、群组和全局的令牌桶）
+ * @author weimeilayer@gmail.com ✨
+ * @date 💓💕 2024年4月12日 🐬🐇 💓💕
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class SseRateLimiter {
+
+    private final SseProperties sseProperties;
+
+    // 令牌桶：key -> bucket
+    private final Map<String, TokenBucket> buckets = new ConcurrentHashMap<>();
+
+    private final LongAdder publishRejected = new LongAdder();
+    private final LongAdder connectRejected = new LongAdder();
+
+    private final ScheduledExecutorService cleanupExecutor =
+            Executors.newSingleThreadScheduledExecutor();
+
+    @PostConstruct
+    public void init() {
+        // 清理已回满的令牌桶
+        cleanupExecutor.scheduleAtFixedRate(() -> buckets.values().removeIf(TokenBucket::isIdle),
+                60, 60, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        cleanupExecutor.shutdown();
+    }
+
+    /**
+     * 发布限流
+     * <p>
+     * 依次检查用户、群组和全局令牌桶，任一被拒绝时退还前面已取得的令牌，
+     * 被单个用户或群组的限额拒绝的请求不会占用全局额度。
+     * @param userId  发布者，匿名请求使用 {@link #publisherKey} 得到的来源地址
+     * @param groupId 目标群组，可为空
+     * @return 0表示放行，否则为建议的重试等待毫秒数
+     * @throws IllegalArgumentException 发布者为空
+     */
+    public long tryPublish(String userId, String groupId) {
+        if (userId == null || userId.isBlank()) {
+            throw new IllegalArgumentException("发布者标识不能为空");
+        }
+        SseProperties.RateLimit rateLimit = sseProperties.getRateLimit();
+        if (!rateLimit.isEnabled()) {
+            return 0;
+        }
+        long wait = acquireAll(
+                bucket("publish:user:" + userId, rateLimit.getPublishPerUser()),
+                groupId != null ? bucket("publish:group:" + groupId, rateLimit.getPublishPerGroup()) : null,
+                bucket("publish:global", rateLimit.getPublishGlobal()));
+        if (wait > 0) {
+            publishRejected.increment();
+            log.debug("发布被限流: userId={}, groupId={}", userId, groupId);
+        }
+        return toMillis(wait);
+    }
+
+    /**
+     * 发布者的限流标识：有用户ID时使用用户ID，否则使用请求来源地址
+     */
+    public static String publisherKey(String userId, HttpServletRequest request) {
+        if (userId != null && !userId.isBlank()) {
+            return userId;
+        }
+        return "addr:" + request.getRemoteAddr();
+    }
+
+    /**
+     * 连接准入
+     * @param userId 用户或客户端标识
+     * @return 0表示放行，否则为建议的重连等待毫秒数（已加随机抖动）
+     */
+    public long tryConnect(String userId) {
+        SseProperties.RateLimit rateLimit = sseProperties.getRateLimit();
+        if (!rateLimit.isEnabled()) {
+            return 0;
+        }
+        long wait = acquireAll(
+                userId != null ? bucket("connect:user:" + userId, rateLimit.getConnectPerUser()) : null,
+                bucket("connect:global", rateLimit.getConnectGlobal()));
+        if (wait == 0) {
+            return 0;
+        }
+        connectRejected.increment();
+        log.debug("连接被限流: userId={}", userId);
+
+        // 加抖动，避免被拒绝的客户端同时重连
+        long retry = Math.max(rateLimit.getMinRetryMillis(), toMillis(wait));
+        return retry + ThreadLocalRandom.current().nextLong(retry / 2 + 1);
+    }
+
+    /**
+     * 创建拒绝连接的发射器：发送带retry的事件后立即关闭
+     */
+    public SseEmitter rejectConnection(long retryMillis) {
+        SseEmitter emitter = new SseEmitter();
+        try {
+            emitter.send(SseEvent.builder()
+                    .event("rate_limited")
+                    .data("连接过于频繁，请稍后重试")
+                    .retry(retryMillis)
+                    .build()
+                    .toSseEventBuilder());
+            emitter.complete();
+        } catch (IOException e) {
+            emitter.completeWithError(e);
+        }
+        return emitter;
+    }
+
+    /**
+     * 获取限流统计信息
+     */
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", sseProperties.getRateLimit().isEnabled());
+        stats.put("buckets", buckets.size());
+        stats.put("publishRejected", publishRejected.sum());
+        stats.put("connectRejected", connectRejected.sum());
+        return stats;
+    }
+
+    /**
+     * 依次从多个令牌桶各取一个令牌，全部取得才放行；未启用的桶为null，跳过
+     * @return 0表示全部取得，否则为拒绝的桶需要等待的纳秒数（已取得的令牌已退还）
+     */
+    private static long acquireAll(TokenBucket... chain) {
+        for (int i = 0; i < chain.length; i++) {
+            if (chain[i] == null) {
+                continue;
+            }
+            long wait = chain[i].tryAcquire();
+            if (wait > 0) {
+                for (int j = 0; j < i; j++) {
+                    if (chain[j] != null) {
+                        chain[j].refund();
+                    }
+                }
+                return wait;
+            }
+        }
+        return 0;
+    }
+
+    private TokenBucket bucket(String key, SseProperties.Limit limit) {
+        if (limit == null || limit.getRate() <= 0) {
+            return null;
+        }
+        TokenBucket bucket = buckets.get(key);
+        if (bucket == null) {
+            bucket = buckets.computeIfAbsent(key, k -> new TokenBucket(limit.getRate(), limit.getBurst()));
+        }
+        return bucket;
+    }
+
+    private static long toMillis(long nanos) {
+        return nanos <= 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(nanos) + 1;
+    }
+}
@@ -1,24 +1,35 @@
 package com.cqcloud.platform.service;
 
+import com.cqcloud.platform.codec.PayloadCodec;
 import com.cqcloud.platform.dto.ClientInfo;
+import com.cqcloud.platform.dto.ConnectionQuery;
 import com.cqcloud.platform.dto.GroupEvent;
 import com.cqcloud.platform.dto.SseEvent;
+import com.cqcloud.platform.event.ConnectionStalledEvent;
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.io.IOException;
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
@@ -30,13 +41,18 @@ import java.util.concurrent.TimeUnit;
 @Slf4j
 @Service
 @RequiredArgsConstructor
-public class SseService {
+public class SseService implements SseConnectionProvider {
+
+    private final PayloadCodec payloadCodec;
+    private final WriteStallMonitor writeStallMonitor;
+    private final TenantService tenantService;
 
     private final Map<String, SseEmitter> clientEmitters = new ConcurrentHashMap<>();
-    private final Map<String, ClientInfo> clientInfos = new ConcurrentHashMap<>();
+    // 按客户端ID排序，支持游标分页
+    private final ConcurrentNavigableMap<String, ClientInfo> clientInfos = new ConcurrentSkipListMap<>();
     private final Map<String, Set<String>> groupMembers = new ConcurrentHashMap<>();
 
-    // 线程池处理异步发送
+    // 线程池处理异步发送，租户连接使用租户自己的线程池
     private final ExecutorService asyncExecutor = Executors.newFixedThreadPool(10);
     private final ScheduledExecutorService heartbeatExecutor =
             Executors.newSingleThreadScheduledExecutor();
@@ -53,6 +69,15 @@ public class SseService {
         asyncExecutor.shutdown();
         heartbeatExecutor.shutdown();
 
+        // 先写完已提交的发送任务
+        try {
+            if (!asyncExecutor.awaitTermination(5, TimeUnit.SECONDS)) {
+                log.warn("发送任务未在停机前完成");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
         // 关闭所有连接
         clientEmitters.values().forEach(SseEmitter::complete);
         clientEmitters.clear();
@@ -64,6 +89,16 @@ public class SseService {
      */
     public SseEmitter createConnection(String clientId, String userId,
                                        String sessionId, String userAgent) {
+        return createConnection(clientId, userId, sessionId, userAgent, null);
+    }
+
+    /**
+     * 创建租户的SSE连接
+     * @param tenantId 租户ID，未启用多租户时为null
+     * @return SSE发射器，超过租户连接数上限时为下发拒绝事件后已关闭的发射器
+     */
+    public SseEmitter createConnection(String clientId, String userId,
+                                       String sessionId, String userAgent, String tenantId) {
 
         // 移除旧的连接（如果有）
         SseEmitter oldEmitter = clientEmitters.remove(clientId);
@@ -73,6 +108,9 @@ public class SseService {
 
         // 创建新的发射器
         SseEmitter emitter = new SseEmitter(30 * 60 * 1000L);
+        if (!tenantService.register(tenantId, clientId, emitter)) {
+            return tenantService.rejectConnection(tenantId);
+        }
         clientEmitters.put(clientId, emitter);
 
         // 记录客户端信息
@@ -83,6 +121,7 @@ public class SseService {
                 .userAgent(userAgent)
                 .connectTime(LocalDateTime.now())
                 .lastHeartbeat(LocalDateTime.now())
+                .online(true)
                 .build();
         clientInfos.put(clientId, clientInfo);
 
@@ -94,7 +133,7 @@ public class SseService {
 
         emitter.onTimeout(() -> {
             log.warn("连接超时: {}", clientId);
-            sendHeartbeat(clientId); // 尝试发送心跳
+            removeConnection(clientId);
         });
 
         emitter.onError(ex -> {
@@ -116,16 +155,24 @@ public class SseService {
             return false;
         }
 
-        asyncExecutor.submit(() -> {
-            try {
-                emitter.send(event);
-                updateClientActivity(clientId);
-                log.debug("消息发送成功: clientId={}, event={}", clientId, event.getEvent());
-            } catch (IOException e) {
-                log.error("发送消息失败: clientId={}", clientId, e);
-                removeConnection(clientId);
-            }
-        });
+        Executor tenantExecutor = tenantService.executorFor(emitter);
+        Executor executor = tenantExecutor != null ? tenantExecutor : asyncExecutor;
+        try {
+            executor.execute(() -> {
+                try {
+                    writeStallMonitor.write(clientId, emitter,
+                            () -> emitter.send(SseEmitter.event().data(payloadCodec.encode(event))));
+                    updateClientActivity(clientId);
+                    log.debug("消息发送成功: clientId={}, event={}", clientId, event.getEvent());
+                } catch (IOException e) {
+                    log.error("发送消息失败: clientId={}", clientId, e);
+                    removeConnection(clientId);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            log.warn("发送队列已满，丢弃消息: clientId={}", clientId);
+            return false;
+        }
 
         return true;
     }
@@ -185,37 +232,37 @@ public class SseService {
     }
 
     /**
-     * 发送心跳
+     * 定期心跳检测：空闲连接由心跳服务定时写出注释帧，超过阈值仍没有任何写出成功的连接视为失效
      */
-    private void sendHeartbeat(String clientId) {
-        SseEvent heartbeat = SseEvent.builder()
-                .event("heartbeat")
-                .data(LocalDateTime.now().toString())
-                .build();
+    private void checkHeartbeat() {
+        LocalDateTime threshold = LocalDateTime.now().minusMinutes(2);
 
-        if (!sendToClient(clientId, heartbeat)) {
-            log.info("心跳检测失败，移除连接: {}", clientId);
+        List<String> expired = new ArrayList<>();
+        clientInfos.values().forEach(info -> {
+            refreshLastHeartbeat(info);
+            if (info.getLastHeartbeat().isBefore(threshold)) {
+                expired.add(info.getClientId());
+            }
+        });
+        // 与其他断开路径一样经 removeConnection 移除，释放租户连接名额
+        expired.forEach(clientId -> {
+            log.info("心跳超时，移除连接: {}", clientId);
             removeConnection(clientId);
-        }
+        });
     }
 
     /**
-     * 定期心跳检测
+     * 以最近一次写出（包括心跳注释帧）的时间更新客户端活动时间
      */
-    private void checkHeartbeat() {
-        LocalDateTime threshold = LocalDateTime.now().minusMinutes(2);
-
-        clientInfos.entrySet().removeIf(entry -> {
-            if (entry.getValue().getLastHeartbeat().isBefore(threshold)) {
-                log.info("心跳超时，移除连接: {}", entry.getKey());
-                SseEmitter emitter = clientEmitters.remove(entry.getKey());
-                if (emitter != null) {
-                    emitter.complete();
-                }
-                return true;
+    private void refreshLastHeartbeat(ClientInfo info) {
+        SseEmitter emitter = clientEmitters.get(info.getClientId());
+        long lastWriteAt = emitter != null ? writeStallMonitor.getLastWriteAt(emitter) : 0;
+        if (lastWriteAt > 0) {
+            LocalDateTime lastWrite = LocalDateTime.ofInstant(Instant.ofEpochMilli(lastWriteAt), ZoneId.systemDefault());
+            if (lastWrite.isAfter(info.getLastHeartbeat())) {
+                info.setLastHeartbeat(lastWrite);
             }
-            return false;
-        });
+        }
     }
 
     /**
@@ -234,13 +281,29 @@ public class SseService {
     private void removeConnection(String clientId) {
         SseEmitter emitter = clientEmitters.remove(clientId);
         if (emitter != null) {
+            tenantService.unregister(clientId, emitter);
             try {
                 emitter.complete();
             } catch (Exception e) {
                 // 忽略完成异常
             }
         }
+        forgetConnection(clientId);
+    }
 
+    /**
+     * 写入阻塞被驱逐的连接：只从注册表移除，由阻塞的写线程返回后关闭
+     */
+    @EventListener
+    public void onConnectionStalled(ConnectionStalledEvent event) {
+        String clientId = event.getClientId();
+        if (clientId != null && clientEmitters.remove(clientId, event.getEmitter())) {
+            tenantService.unregister(clientId, event.getEmitter());
+            forgetConnection(clientId);
+        }
+    }
+
+    private void forgetConnection(String clientId) {
         clientInfos.remove(clientId);
 
         // 从所有群组中移除
@@ -249,6 +312,11 @@ public class SseService {
         log.info("连接移除: {}", clientId);
     }
 
+    @Override
+    public Map<String, SseEmitter> getConnections() {
+        return Map.copyOf(clientEmitters);
+    }
+
     /**
      * 获取活跃连接数
      */
@@ -258,8 +326,30 @@ public class SseService {
 
     /**
      * 获取客户端信息
+     *
+     * @deprecated 连接数大时会一次性复制全部客户端信息，请使用 {@link #getActiveClients(ConnectionQuery)} 分页遍历
      */
+    @Deprecated
     public List<ClientInfo> getActiveClients() {
-        return new ArrayList<>(clientInfos.values());
+        List<ClientInfo> clients = new ArrayList<>();
+        getActiveClients(new ConnectionQuery()).forEachRemaining(clients::add);
+        return clients;
+    }
+
+    /**
+     * 按客户端ID有序遍历客户端信息，从游标之后开始，过滤条件在遍历时逐个判断
+     */
+    public Iterator<ClientInfo> getActiveClients(ConnectionQuery query) {
+        Map<String, ClientInfo> clients = query.getCursor() != null
+                ? clientInfos.tailMap(query.getCursor(), false)
+                : clientInfos;
+        Set<String> members = query.getGroupId() != null
+                ? groupMembers.getOrDefault(query.getGroupId(), Set.of())
+                : null;
+        return clients.values().stream()
+                .filter(info -> query.getUserId() == null || query.getUserId().equals(info.getUserId()))
+                .filter(info -> members == null || members.contains(info.getClientId()))
+                .filter(info -> query.matchesConnectTime(info.getConnectTime()))
+                .iterator();
     }
 }
\ No newline at end of file
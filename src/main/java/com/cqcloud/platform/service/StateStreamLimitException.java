@@ -0,0 +1,19 @@
+package com.cqcloud.platform.service;
+
+import lombok.Getter;
+
+/**
+ * 状态流数量已达上限，拒绝创建新的状态流
+ * @author weimeilayer@gmail.com ✨
+ * @date 💓💕 2024年4月12日 🐬🐇 💓💕
+ */
+@Getter
+public class StateStreamLimitException extends RuntimeException {
+
+    private final int maxStreams;
+
+    public StateStreamLimitException(int maxStreams) {
+        super("状态流数量超过上限: " + maxStreams);
+        this.maxStreams = maxStreams;
+    }
+}
@@ -0,0 +1,292 @@
+package com.cqcloud.platform.service;
+
+import com.cqcloud.platform.codec.PayloadCodec;
+import com.cqcloud.platform.config.SseProperties;
+import com.cqcloud.platform.dto.SseEvent;
+import com.cqcloud.platform.dto.StateDelta;
+import com.cqcloud.platform.util.JsonDiff;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 增量状态流服务
+ * <p>
+ * 服务端保存每个状态流最后发送的版本，更新时只向客户端发送JSON Patch补丁；
+ * 客户端首次接收、重连、版本不连续或到达快照周期时发送全量快照。
+ * @author weimeilayer@gmail.com ✨
+ * @date 💓💕 2024年4月12日 🐬🐇 💓💕
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class StateStreamService {
+
+    private static final String SNAPSHOT_EVENT = "state_snapshot";
+    private static final String PATCH_EVENT = "state_patch";
+
+    private final GroupMembersManager groupMembersManager;
+    private final GroupMessageService groupMessageService;
+    private final ObjectMapper objectMapper;
+    private final PayloadCodec payloadCodec;
+    private final SseProperties sseProperties;
+
+    // 状态流：scope(group:xxx / client:xxx) -> streamKey -> 状态
+    private final Map<String, Map<String, StreamState>> streams = new ConcurrentHashMap<>();
+
+    // 状态流总数
+    private final AtomicInteger streamCount = new AtomicInteger();
+
+    // 客户端已接收的版本：clientId -> 游标
+    private final Map<String, ClientCursor> cursors = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService cleanupExecutor =
+            Executors.newSingleThreadScheduledExecutor();
+
+    @PostConstruct
+    public void init() {
+        cleanupExecutor.scheduleAtFixedRate(this::purgeCursors, 60, 60, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        cleanupExecutor.shutdown();
+    }
+
+    /**
+     * 发布群组状态
+     */
+    public void publishToGroup(String groupId, String streamKey, Object state) {
+        publish(groupScope(groupId), streamKey, groupMembersManager.getGroupMembers(groupId), state);
+    }
+
+    /**
+     * 发布客户端状态
+     */
+    public void publishToClient(String clientId, String streamKey, Object state) {
+        publish(clientScope(clientId), streamKey, Set.of(clientId), state);
+    }
+
+    /**
+     * 向（重新）连接的客户端发送群组及其自身状态流的全量快照
+     */
+    public void sendSnapshots(String clientId, String groupId) {
+        sendScopeSnapshots(clientId, groupScope(groupId));
+        sendScopeSnapshots(clientId, clientScope(clientId));
+    }
+
+    /**
+     * 删除群组状态流
+     */
+    public void removeGroupStream(String groupId, String streamKey) {
+        removeStream(groupScope(groupId), streamKey);
+    }
+
+    /**
+     * 删除客户端状态流
+     */
+    public void removeClientStream(String clientId, String streamKey) {
+        removeStream(clientScope(clientId), streamKey);
+    }
+
+    private void publish(String scope, String streamKey, Collection<String> recipients, Object state) {
+        JsonNode document = objectMapper.valueToTree(state);
+        StreamState stream = getOrCreateStream(scope, streamKey);
+
+        synchronized (stream) {
+            if (document.equals(stream.document)) {
+                return;
+            }
+
+            long baseVersion = stream.version;
+            ArrayNode patch = stream.document != null ? JsonDiff.diff(stream.document, document) : null;
+            stream.version++;
+            stream.document = document;
+
+            SseProperties.Delta delta = sseProperties.getDelta();
+            long now = System.currentTimeMillis();
+            boolean snapshot = patch == null
+                    || (delta.getSnapshotEvery() > 0 && stream.version % delta.getSnapshotEvery() == 0)
+                    || now - stream.lastSnapshotAt >= delta.getSnapshotInterval().toMillis();
+
+            String snapshotJson = writeSnapshot(scope, streamKey, stream);
+            String patchJson = null;
+            if (!snapshot) {
+                patchJson = write(StateDelta.builder()
+                        .channel(scope)
+                        .streamKey(streamKey)
+                        .version(stream.version)
+                        .baseVersion(baseVersion)
+                        .patch(patch)
+                        .build());
+                // 补丁不比快照小时直接发快照
+                snapshot = patchJson.length() >= snapshotJson.length();
+            }
+            if (snapshot) {
+                stream.lastSnapshotAt = now;
+            }
+
+            String streamId = scope + "/" + streamKey;
+            for (String clientId : recipients) {
+                ClientCursor cursor = cursorOf(clientId);
+                if (cursor == null) {
+                    continue;
+                }
+                Long known = cursor.versions.get(streamId);
+                boolean full = snapshot || known == null || known != baseVersion;
+                deliver(clientId, cursor, streamId, stream.version,
+                        full ? SNAPSHOT_EVENT : PATCH_EVENT, full ? snapshotJson : patchJson);
+            }
+        }
+    }
+
+    private void sendScopeSnapshots(String clientId, String scope) {
+        Map<String, StreamState> scoped = streams.get(scope);
+        if (scoped == null) {
+            return;
+        }
+        ClientCursor cursor = cursorOf(clientId);
+        if (cursor == null) {
+            return;
+        }
+        scoped.forEach((streamKey, stream) -> {
+            synchronized (stream) {
+                if (stream.document != null) {
+                    deliver(clientId, cursor, scope + "/" + streamKey, stream.version,
+                            SNAPSHOT_EVENT, writeSnapshot(scope, streamKey, stream));
+                }
+            }
+        });
+    }
+
+    private void deliver(String clientId, ClientCursor cursor, String streamId, long version,
+                         String eventName, String payload) {
+        SseEvent sseEvent = SseEvent.builder()
+                .event(eventName)
+                .data(payload)
+                .build();
+
+        if (groupMessageService.sendToClient(clientId, sseEvent)) {
+            cursor.versions.put(streamId, version);
+        } else {
+            // 发送失败，下次按快照发送
+            cursor.versions.remove(streamId);
+        }
+    }
+
+    /**
+     * 获取客户端游标，连接已更换时重置（重连后先发送快照）
+     */
+    private ClientCursor cursorOf(String clientId) {
+        SseEmitter emitter = groupMessageService.getClientEmitter(clientId);
+        if (emitter == null) {
+            cursors.remove(clientId);
+            return null;
+        }
+        return cursors.compute(clientId, (key, cursor) ->
+                cursor == null || cursor.emitter != emitter ? new ClientCursor(emitter) : cursor);
+    }
+
+    /**
+     * 获取或创建状态流
+     * <p>
+     * 创建在 scope 的映射内完成，超过上限时异常抛出 compute，不会留下空的 scope。
+     * @throws StateStreamLimitException 状态流数量已达上限
+     */
+    private StreamState getOrCreateStream(String scope, String streamKey) {
+        Map<String, StreamState> scoped = streams.get(scope);
+        StreamState stream = scoped != null ? scoped.get(streamKey) : null;
+        if (stream != null) {
+            return stream;
+        }
+        return streams.compute(scope, (key, existing) -> {
+            Map<String, StreamState> target = existing != null ? existing : new ConcurrentHashMap<>();
+            if (!target.containsKey(streamKey)) {
+                int maxStreams = sseProperties.getDelta().getMaxStreams();
+                // 先占位再比较，不同 scope 并发创建时总数也不会超过上限
+                if (streamCount.incrementAndGet() > maxStreams) {
+                    streamCount.decrementAndGet();
+                    throw new StateStreamLimitException(maxStreams);
+                }
+                target.put(streamKey, new StreamState());
+            }
+            return target;
+        }).get(streamKey);
+    }
+
+    private void removeStream(String scope, String streamKey) {
+        streams.computeIfPresent(scope, (key, scoped) -> {
+            if (scoped.remove(streamKey) != null) {
+                streamCount.decrementAndGet();
+            }
+            return scoped.isEmpty() ? null : scoped;
+        });
+        String streamId = scope + "/" + streamKey;
+        cursors.values().forEach(cursor -> cursor.versions.remove(streamId));
+    }
+
+    /**
+     * 清理已断开客户端的游标
+     */
+    private void purgeCursors() {
+        cursors.entrySet().removeIf(entry ->
+                groupMessageService.getClientEmitter(entry.getKey()) != entry.getValue().emitter);
+    }
+
+    private String writeSnapshot(String scope, String streamKey, StreamState stream) {
+        return write(StateDelta.builder()
+                .channel(scope)
+                .streamKey(streamKey)
+                .version(stream.version)
+                .data(stream.document)
+                .build());
+    }
+
+    private String write(StateDelta stateDelta) {
+        return payloadCodec.encode(stateDelta);
+    }
+
+    private static String groupScope(String groupId) {
+        return "group:" + groupId;
+    }
+
+    private static String clientScope(String clientId) {
+        return "client:" + clientId;
+    }
+
+    /**
+     * 状态流
+     */
+    private static class StreamState {
+        private JsonNode document;
+        private long version;
+        private long lastSnapshotAt;
+    }
+
+    /**
+     * 客户端已接收版本
+     */
+    private static class ClientCursor {
+        private final SseEmitter emitter;
+        private final Map<String, Long> versions = new ConcurrentHashMap<>();
+
+        ClientCursor(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+    }
+}
@@ -0,0 +1,359 @@
+package com.cqcloud.platform.service;
+
+import com.cqcloud.platform.config.SseProperties;
+import com.cqcloud.platform.dto.GroupInfo;
+import com.cqcloud.platform.dto.SseEvent;
+import com.cqcloud.platform.event.ClientDisconnectedEvent;
+import com.cqcloud.platform.event.ConnectionStalledEvent;
+import com.cqcloud.platform.util.TokenBucket;
+import jakarta.annotation.PreDestroy;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * 多租户隔离服务
+ * <p>
+ * 租户ID取自请求属性或请求头（请求头只接受已配置的租户）。每个租户有独立的有界发送线程池（连接的出站写出和群组扇出都在其中执行）、
+ * 连接数上限和发布速率，互不占用；群组归属创建它的租户（元数据 tenantId），其他租户不能加入或发送。
+ * 未启用时所有方法放行，发送在调用线程或共享线程池中执行。
+ * @author weimeilayer@gmail.com ✨
+ * @date 💓💕 2024年4月12日 🐬🐇 💓💕
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class TenantService {
+
+    /**
+     * 群组元数据中的租户键
+     */
+    public static final String TENANT_METADATA_KEY = "tenantId";
+
+    private static final Pattern TENANT_ID = Pattern.compile("[A-Za-z0-9_.-]{1,64}");
+
+    // 空闲线程回收时间，不活跃的租户不占用线程
+    private static final long KEEP_ALIVE_SECONDS = 60;
+
+    private final SseProperties sseProperties;
+    private final GroupMembersManager groupMembersManager;
+
+    // 租户状态：tenantId -> state
+    private final Map<String, TenantState> tenants = new ConcurrentHashMap<>();
+
+    // 连接登记：clientId -> registration
+    private final Map<String, Registration> clients = new ConcurrentHashMap<>();
+
+    // 出站写入器按emitter查找租户
+    private final Map<SseEmitter, TenantState> emitterTenants = new ConcurrentHashMap<>();
+
+    @PreDestroy
+    public void destroy() {
+        tenants.values().forEach(state -> state.executor.shutdown());
+    }
+
+    /**
+     * 是否启用多租户隔离
+     */
+    public boolean isEnabled() {
+        return sseProperties.getTenant().isEnabled();
+    }
+
+    /**
+     * 从请求中解析租户ID：请求属性优先，其次请求头，都没有时使用默认租户
+     * <p>
+     * 请求属性由上游认证过滤器设置，可以是任意租户；请求头由客户端提供，只接受默认租户和
+     * sse.tenant.quotas 中配置的租户，避免伪造的租户ID占满租户数上限。
+     * @return 租户ID，未启用时为null
+     * @throws ResponseStatusException 租户ID格式不合法（400）、请求头中的租户未配置或租户数已达上限（403）
+     */
+    public String resolve(HttpServletRequest request) {
+        SseProperties.Tenant config = sseProperties.getTenant();
+        if (!config.isEnabled()) {
+            return null;
+        }
+        Object attribute = request.getAttribute(config.getAttribute());
+        String tenantId = attribute != null ? attribute.toString() : request.getHeader(config.getHeader());
+        if (tenantId == null || tenantId.isBlank()) {
+            tenantId = config.getDefaultTenant();
+        }
+        if (!TENANT_ID.matcher(tenantId).matches()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "租户ID格式不合法");
+        }
+        if (attribute == null && !tenantId.equals(config.getDefaultTenant())
+                && !config.getQuotas().containsKey(tenantId)) {
+            throw new ResponseStatusException(HttpStatus.FORBIDDEN, "未知租户");
+        }
+        state(tenantId);
+        return tenantId;
+    }
+
+    /**
+     * 登记连接并检查连接数上限；同一客户端重连复用原来的名额
+     * @return false表示超过租户连接数上限
+     */
+    public boolean register(String tenantId, String clientId, SseEmitter emitter) {
+        if (tenantId == null) {
+            return true;
+        }
+        TenantState state = state(tenantId);
+        Registration previous = clients.get(clientId);
+        if (previous != null && previous.state == state) {
+            emitterTenants.remove(previous.emitter);
+        } else {
+            int maxConnections = quota(tenantId).getMaxConnections();
+            if (state.connections.incrementAndGet() > maxConnections && maxConnections > 0) {
+                state.connections.decrementAndGet();
+                state.connectRejected.increment();
+                log.warn("租户连接数已达上限: tenantId={}, clientId={}, maxConnections={}",
+                        tenantId, clientId, maxConnections);
+                return false;
+            }
+            // 同一客户端换了租户，释放原租户的名额
+            if (previous != null) {
+                unregister(clientId, previous.emitter);
+            }
+        }
+        clients.put(clientId, new Registration(state, emitter));
+        emitterTenants.put(emitter, state);
+        return true;
+    }
+
+    /**
+     * 注销连接，只在登记的仍是该emitter时生效
+     * @param emitter 已关闭的连接，为null时不比较
+     */
+    public void unregister(String clientId, SseEmitter emitter) {
+        Registration registration = clients.get(clientId);
+        if (registration == null || (emitter != null && registration.emitter != emitter)) {
+            return;
+        }
+        if (clients.remove(clientId, registration)) {
+            emitterTenants.remove(registration.emitter);
+            registration.state.connections.decrementAndGet();
+        }
+    }
+
+    @EventListener
+    public void onClientDisconnected(ClientDisconnectedEvent event) {
+        unregister(event.getClientId(), null);
+    }
+
+    @EventListener
+    public void onConnectionStalled(ConnectionStalledEvent event) {
+        if (event.getClientId() != null) {
+            unregister(event.getClientId(), event.getEmitter());
+        }
+    }
+
+    /**
+     * 连接所属租户，未登记时为null
+     */
+    public String tenantOf(String clientId) {
+        Registration registration = clients.get(clientId);
+        return registration != null ? registration.state.tenantId : null;
+    }
+
+    /**
+     * 连接所属租户的发送线程池，未登记时为null
+     */
+    public Executor executorFor(SseEmitter emitter) {
+        TenantState state = emitterTenants.get(emitter);
+        return state != null ? state.executor : null;
+    }
+
+    /**
+     * 发布限流
+     * @return 0表示放行，否则为建议的重试等待毫秒数
+     */
+    public long tryPublish(String tenantId) {
+        if (tenantId == null) {
+            return 0;
+        }
+        TenantState state = state(tenantId);
+        if (state.publishBucket == null) {
+            state.published.increment();
+            return 0;
+        }
+        long wait = state.publishBucket.tryAcquire();
+        if (wait > 0) {
+            state.publishRejected.increment();
+            return TimeUnit.NANOSECONDS.toMillis(wait) + 1;
+        }
+        state.published.increment();
+        return 0;
+    }
+
+    /**
+     * 在租户的发送线程池中执行发送任务；未启用时在调用线程中执行
+     * @return false表示租户发送队列已满
+     */
+    public boolean execute(String tenantId, Runnable task) {
+        if (tenantId == null) {
+            task.run();
+            return true;
+        }
+        TenantState state = state(tenantId);
+        try {
+            state.executor.execute(task);
+            return true;
+        } catch (RejectedExecutionException e) {
+            state.tasksRejected.increment();
+            log.warn("租户发送队列已满: tenantId={}", tenantId);
+            return false;
+        }
+    }
+
+    /**
+     * 群组是否可被该租户访问；群组不存在时以该租户名义创建
+     */
+    public boolean claimGroup(String tenantId, String groupId, String userId) {
+        if (tenantId == null) {
+            return true;
+        }
+        GroupInfo groupInfo = groupMembersManager.getOrCreateGroup(groupId, userId,
+                Map.of(TENANT_METADATA_KEY, tenantId));
+        return tenantId.equals(ownerOf(groupInfo));
+    }
+
+    /**
+     * 已存在的群组是否属于该租户，群组不存在时返回true
+     */
+    public boolean canAccessGroup(String tenantId, String groupId) {
+        if (tenantId == null) {
+            return true;
+        }
+        GroupInfo groupInfo = groupMembersManager.getGroupInfo(groupId);
+        return groupInfo == null || tenantId.equals(ownerOf(groupInfo));
+    }
+
+    /**
+     * 创建拒绝连接的发射器：发送事件后立即关闭
+     */
+    public SseEmitter rejectConnection(String tenantId) {
+        SseEmitter emitter = new SseEmitter();
+        try {
+            emitter.send(SseEvent.builder()
+                    .event("tenant_quota_exceeded")
+                    .data(Map.of("tenantId", tenantId, "message", "租户连接数已达上限"))
+                    .build()
+                    .toSseEventBuilder());
+            emitter.complete();
+        } catch (IOException e) {
+            emitter.completeWithError(e);
+        }
+        return emitter;
+    }
+
+    /**
+     * 获取各租户统计信息
+     */
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> perTenant = new TreeMap<>();
+        tenants.forEach((tenantId, state) -> {
+            Map<String, Object> stats = new HashMap<>();
+            stats.put("connections", state.connections.get());
+            stats.put("maxConnections", quota(tenantId).getMaxConnections());
+            stats.put("published", state.published.sum());
+            stats.put("publishRejected", state.publishRejected.sum());
+            stats.put("connectRejected", state.connectRejected.sum());
+            stats.put("tasksRejected", state.tasksRejected.sum());
+            stats.put("activeThreads", state.executor.getActiveCount());
+            stats.put("queuedTasks", state.executor.getQueue().size());
+            stats.put("completedTasks", state.executor.getCompletedTaskCount());
+            perTenant.put(tenantId, stats);
+        });
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", isEnabled());
+        stats.put("tenants", perTenant);
+        return stats;
+    }
+
+    private String ownerOf(GroupInfo groupInfo) {
+        Object owner = groupInfo.getMetadata() != null ? groupInfo.getMetadata().get(TENANT_METADATA_KEY) : null;
+        // 未记录租户的群组（启用多租户前创建）归默认租户
+        return owner != null ? owner.toString() : sseProperties.getTenant().getDefaultTenant();
+    }
+
+    private TenantState state(String tenantId) {
+        TenantState state = tenants.get(tenantId);
+        if (state != null) {
+            return state;
+        }
+        if (tenants.size() >= sseProperties.getTenant().getMaxTenants()) {
+            throw new ResponseStatusException(HttpStatus.FORBIDDEN, "租户数已达上限");
+        }
+        return tenants.computeIfAbsent(tenantId, key -> new TenantState(key, quota(key)));
+    }
+
+    /**
+     * 租户配额，未覆盖的项使用默认配额
+     */
+    private SseProperties.Quota quota(String tenantId) {
+        SseProperties.Tenant config = sseProperties.getTenant();
+        SseProperties.Quota defaults = config.getQuota();
+        SseProperties.Quota override = config.getQuotas().get(tenantId);
+        if (override == null) {
+            return defaults;
+        }
+        return new SseProperties.Quota(
+                override.getThreads() != null ? override.getThreads() : defaults.getThreads(),
+                override.getQueueCapacity() != null ? override.getQueueCapacity() : defaults.getQueueCapacity(),
+                override.getMaxConnections() != null ? override.getMaxConnections() : defaults.getMaxConnections(),
+                override.getPublishRate() != null ? override.getPublishRate() : defaults.getPublishRate());
+    }
+
+    private record Registration(TenantState state, SseEmitter emitter) {
+    }
+
+    /**
+     * 单个租户的线程池、令牌桶和计数
+     */
+    private static class TenantState {
+        private final String tenantId;
+        private final ThreadPoolExecutor executor;
+        private final TokenBucket publishBucket;
+        private final AtomicInteger connections = new AtomicInteger();
+        private final LongAdder published = new LongAdder();
+        private final LongAdder publishRejected = new LongAdder();
+        private final LongAdder connectRejected = new LongAdder();
+        private final LongAdder tasksRejected = new LongAdder();
+
+        TenantState(String tenantId, SseProperties.Quota quota) {
+            this.tenantId = tenantId;
+            int threads = Math.max(1, quota.getThreads());
+            AtomicInteger counter = new AtomicInteger();
+            this.executor = new ThreadPoolExecutor(threads, threads, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<>(Math.max(1, quota.getQueueCapacity())),
+                    runnable -> {
+                        Thread thread = new Thread(runnable, "sse-tenant-" + tenantId + "-" + counter.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+            this.executor.allowCoreThreadTimeOut(true);
+            SseProperties.Limit rate = quota.getPublishRate();
+            this.publishBucket = rate != null && rate.getRate() > 0 && rate.getBurst() > 0
+                    ? new TokenBucket(rate.getRate(), rate.getBurst())
+                    : null;
+        }
+    }
+}
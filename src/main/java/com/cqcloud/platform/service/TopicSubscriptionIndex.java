@@ -0,0 +1,228 @@
+package com.cqcloud.platform.service;
+
+import com.cqcloud.platform.config.SseProperties;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 主题订阅索引
+ * <p>
+ * 主题按"."分段组织成前缀树，"*"匹配一段，"#"匹配零或多段（如 orders.*、tenant.42.alerts.#）。
+ * 匹配耗时与主题深度和匹配到的节点数相关，与订阅总数无关，多个"#"的模式也不会按组合数增长；
+ * 解析结果按主题缓存，订阅变化时失效。
+ * @author weimeilayer@gmail.com ✨
+ * @date 💓💕 2024年4月12日 🐬🐇 💓💕
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class TopicSubscriptionIndex {
+
+    private static final String SEPARATOR = "\\.";
+    private static final String SINGLE_WILDCARD = "*";
+    private static final String MULTI_WILDCARD = "#";
+
+    // 主题最大段数，限制匹配的递归深度
+    static final int MAX_SEGMENTS = 128;
+
+    private final SseProperties sseProperties;
+
+    private final Node root = new Node(false);
+
+    // 客户端订阅：clientId -> Set<pattern>
+    private final Map<String, Set<String>> clientPatterns = new ConcurrentHashMap<>();
+
+    // 解析结果缓存：topic -> Set<clientId>
+    private final Map<String, Set<String>> resolvedCache = new ConcurrentHashMap<>();
+    private final AtomicLong generation = new AtomicLong();
+
+    /**
+     * 订阅主题
+     */
+    public synchronized boolean subscribe(String clientId, String pattern) {
+        String[] segments = parse(pattern, true);
+        Node node = root;
+        for (String segment : segments) {
+            node = node.children.computeIfAbsent(segment, k -> new Node(MULTI_WILDCARD.equals(k)));
+        }
+        if (!node.subscribers.add(clientId)) {
+            return false;
+        }
+        clientPatterns.computeIfAbsent(clientId, k -> ConcurrentHashMap.newKeySet()).add(pattern);
+        invalidate();
+        log.debug("订阅主题: clientId={}, pattern={}", clientId, pattern);
+        return true;
+    }
+
+    /**
+     * 取消订阅
+     */
+    public synchronized boolean unsubscribe(String clientId, String pattern) {
+        Set<String> patterns = clientPatterns.get(clientId);
+        if (patterns == null || !patterns.remove(pattern)) {
+            return false;
+        }
+        if (patterns.isEmpty()) {
+            clientPatterns.remove(clientId);
+        }
+        remove(root, parse(pattern, true), 0, clientId);
+        invalidate();
+        log.debug("取消订阅主题: clientId={}, pattern={}", clientId, pattern);
+        return true;
+    }
+
+    /**
+     * 取消客户端的全部订阅
+     */
+    public synchronized void unsubscribeAll(String clientId) {
+        Set<String> patterns = clientPatterns.remove(clientId);
+        if (patterns == null) {
+            return;
+        }
+        patterns.forEach(pattern -> remove(root, parse(pattern, true), 0, clientId));
+        invalidate();
+    }
+
+    /**
+     * 获取与主题匹配的订阅者
+     */
+    public Set<String> match(String topic) {
+        Set<String> cached = resolvedCache.get(topic);
+        if (cached != null) {
+            return cached;
+        }
+
+        long expected = generation.get();
+        Set<String> result = new HashSet<>();
+        collect(root, parse(topic, false), 0, result, new IdentityHashMap<>());
+        Set<String> resolved = Collections.unmodifiableSet(result);
+
+        // 解析期间订阅发生变化时不缓存，避免缓存过期结果
+        if (resolvedCache.size() < sseProperties.getTopic().getMaxCachedTopics()
+                && generation.get() == expected) {
+            resolvedCache.put(topic, resolved);
+            if (generation.get() != expected) {
+                resolvedCache.remove(topic);
+            }
+        }
+        return resolved;
+    }
+
+    /**
+     * 获取客户端的订阅
+     */
+    public Set<String> getClientSubscriptions(String clientId) {
+        Set<String> patterns = clientPatterns.get(clientId);
+        return patterns != null ? new HashSet<>(patterns) : Collections.emptySet();
+    }
+
+    /**
+     * 获取订阅统计信息
+     */
+    public Map<String, Object> getStatistics() {
+        return Map.of(
+                "subscribedClients", clientPatterns.size(),
+                "subscriptions", clientPatterns.values().stream().mapToInt(Set::size).sum(),
+                "cachedTopics", resolvedCache.size()
+        );
+    }
+
+    /**
+     * 匹配状态为(节点, 已匹配段数)，每个状态只展开一次；"#"节点每次可以再吞掉一段或继续匹配子节点，
+     * 多个"#"的模式也只需 O(节点数×主题深度) 次展开，不会按组合数增长
+     */
+    private void collect(Node node, String[] segments, int index, Set<String> result, Map<Node, BitSet> visited) {
+        BitSet indexes = visited.computeIfAbsent(node, key -> new BitSet(segments.length + 1));
+        if (indexes.get(index)) {
+            return;
+        }
+        indexes.set(index);
+
+        if (node.multi && index < segments.length) {
+            collect(node, segments, index + 1, result, visited);
+        }
+
+        // "#"匹配零段：不消耗主题段进入"#"节点
+        Node multi = node.children.get(MULTI_WILDCARD);
+        if (multi != null) {
+            collect(multi, segments, index, result, visited);
+        }
+
+        if (index == segments.length) {
+            result.addAll(node.subscribers);
+            return;
+        }
+
+        Node exact = node.children.get(segments[index]);
+        if (exact != null) {
+            collect(exact, segments, index + 1, result, visited);
+        }
+        Node single = node.children.get(SINGLE_WILDCARD);
+        if (single != null) {
+            collect(single, segments, index + 1, result, visited);
+        }
+    }
+
+    /**
+     * 删除订阅并回收空节点
+     */
+    private boolean remove(Node node, String[] segments, int index, String clientId) {
+        if (index == segments.length) {
+            node.subscribers.remove(clientId);
+        } else {
+            Node child = node.children.get(segments[index]);
+            if (child != null && remove(child, segments, index + 1, clientId)) {
+                node.children.remove(segments[index]);
+            }
+        }
+        return node.subscribers.isEmpty() && node.children.isEmpty();
+    }
+
+    private void invalidate() {
+        generation.incrementAndGet();
+        resolvedCache.clear();
+    }
+
+    private static String[] parse(String topic, boolean allowWildcards) {
+        if (topic == null || topic.isBlank()) {
+            throw new IllegalArgumentException("主题不能为空");
+        }
+        String[] segments = topic.split(SEPARATOR, -1);
+        if (segments.length > MAX_SEGMENTS) {
+            throw new IllegalArgumentException("主题层级不能超过" + MAX_SEGMENTS + "段: " + topic);
+        }
+        for (String segment : segments) {
+            if (segment.isEmpty()) {
+                throw new IllegalArgumentException("主题格式错误: " + topic);
+            }
+            if (!allowWildcards && (SINGLE_WILDCARD.equals(segment) || MULTI_WILDCARD.equals(segment))) {
+                throw new IllegalArgumentException("发布主题不能包含通配符: " + topic);
+            }
+        }
+        return segments;
+    }
+
+    /**
+     * 前缀树节点
+     */
+    private static class Node {
+        private final Map<String, Node> children = new ConcurrentHashMap<>();
+        private final Set<String> subscribers = ConcurrentHashMap.newKeySet();
+        // 是否为"#"节点
+        private final boolean multi;
+
+        Node(boolean multi) {
+            this.multi = multi;
+        }
+    }
+}
@@ -0,0 +1,291 @@
+package com.cqcloud.platform.service;
+
+import com.cqcloud.platform.config.SseProperties;
+import com.cqcloud.platform.event.ConnectionStalledEvent;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 写入阻塞检测服务
+ * <p>
+ * 客户端TCP窗口写满后 {@link SseEmitter#send} 会阻塞调用线程。所有写入经由本服务登记开始时间，
+ * 后台定时检查阻塞超过阈值的写入：驱逐对应连接（发布 {@link ConnectionStalledEvent} 由各注册表移除并释放缓冲），
+ * 中断阻塞的写线程，之后对该连接的写入直接失败，不再占用新的线程；阻塞的写入返回后由写线程关闭连接。
+ * 启用心跳时同时记录每个连接最近一次写入完成的时间，供心跳判断连接是否空闲。
+ * @author weimeilayer@gmail.com ✨
+ * @date 💓💕 2024年4月12日 🐬🐇 💓💕
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class WriteStallMonitor {
+
+    // 驱逐记录保留时长，超过后连接早已关闭
+    private static final long EVICTED_RETENTION_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+    // 写入时间的记录精度，同一秒内的多次写入只更新一次
+    private static final long ACTIVITY_RESOLUTION_MILLIS = 1000;
+
+    private final SseProperties sseProperties;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ObjectProvider<SseConnectionProvider> connectionProviders;
+
+    // 进行中的写入
+    private final Set<InFlight> inFlight = ConcurrentHashMap.newKeySet();
+
+    // 已驱逐的连接：emitter -> 驱逐时间
+    private final Map<SseEmitter, Long> evicted = new ConcurrentHashMap<>();
+
+    // 最近一次写入完成时间：emitter -> 时间
+    private final Map<SseEmitter, Long> lastWrites = new ConcurrentHashMap<>();
+
+    private final LongAdder writes = new LongAdder();
+    private final LongAdder stalled = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAccumulator maxBlockedMillis = new LongAccumulator(Math::max, 0);
+
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * 一次写入操作
+     */
+    @FunctionalInterface
+    public interface Write {
+        void run() throws IOException;
+    }
+
+    @PostConstruct
+    public void init() {
+        SseProperties.Stall stall = sseProperties.getStall();
+        if (!stall.isEnabled()) {
+            return;
+        }
+        long intervalMillis = Math.max(100, stall.getCheckInterval().toMillis());
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "sse-stall");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::detectStalls, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * 登记并执行一次写入
+     * @param clientId 客户端ID，未知时传null
+     * @throws IOException 写入失败，或连接已因写入阻塞被驱逐
+     */
+    public void write(String clientId, SseEmitter emitter, Write write) throws IOException {
+        if (!sseProperties.getStall().isEnabled()) {
+            write.run();
+            recordActivity(emitter);
+            return;
+        }
+        // 先登记再检查：驱逐时先记录连接再标记登记的写入，两者之间不会漏掉
+        InFlight current = new InFlight(clientId, emitter, Thread.currentThread(), System.currentTimeMillis());
+        inFlight.add(current);
+        if (evicted.containsKey(emitter)) {
+            finish(current);
+            rejected.increment();
+            throw new IOException("连接写入阻塞已被驱逐");
+        }
+        writes.increment();
+        try {
+            write.run();
+            recordActivity(emitter);
+        } catch (IOException e) {
+            if (current.evicted) {
+                throw new IOException("连接写入阻塞已被驱逐", e);
+            }
+            throw e;
+        } finally {
+            maxBlockedMillis.accumulate(System.currentTimeMillis() - current.startedAt);
+            if (finish(current)) {
+                closeQuietly(emitter);
+            }
+        }
+    }
+
+    /**
+     * 结束登记的写入
+     * <p>
+     * 与驱逐持有同一把锁：结束之后驱逐不会再中断该线程，中断只可能落在本次写入上，
+     * 在这里清除，不会带到线程池中的后续任务。
+     * @return 写入期间是否被驱逐
+     */
+    private boolean finish(InFlight current) {
+        boolean wasEvicted;
+        synchronized (current) {
+            current.finished = true;
+            wasEvicted = current.evicted;
+        }
+        inFlight.remove(current);
+        if (wasEvicted) {
+            // 清除驱逐时设置的中断标记
+            Thread.interrupted();
+        }
+        return wasEvicted;
+    }
+
+    /**
+     * 连接是否已因写入阻塞被驱逐
+     */
+    public boolean isEvicted(SseEmitter emitter) {
+        return evicted.containsKey(emitter);
+    }
+
+    /**
+     * 连接最近一次写入完成的时间，未记录过的连接从本次查询时开始计
+     * @return 毫秒时间戳，未启用心跳时为0
+     */
+    public long getLastWriteAt(SseEmitter emitter) {
+        if (!sseProperties.getHeartbeat().isEnabled()) {
+            return 0;
+        }
+        return lastWrites.computeIfAbsent(emitter, key -> System.currentTimeMillis());
+    }
+
+    /**
+     * 只保留仍然存在的连接的写入时间
+     */
+    public void retainActivity(Set<SseEmitter> emitters) {
+        lastWrites.keySet().retainAll(emitters);
+    }
+
+    /**
+     * 获取写入阻塞统计信息
+     */
+    public Map<String, Object> getStatistics() {
+        long now = System.currentTimeMillis();
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("enabled", sseProperties.getStall().isEnabled());
+        stats.put("thresholdMillis", sseProperties.getStall().getThreshold().toMillis());
+        stats.put("inFlight", inFlight.size());
+        stats.put("longestInFlightMillis", inFlight.stream()
+                .mapToLong(write -> now - write.startedAt).max().orElse(0));
+        stats.put("maxBlockedMillis", maxBlockedMillis.get());
+        stats.put("writes", writes.sum());
+        stats.put("stalled", stalled.sum());
+        stats.put("rejected", rejected.sum());
+        stats.put("evicted", evicted.size());
+        return stats;
+    }
+
+    /**
+     * 检查阻塞超过阈值的写入并驱逐对应连接
+     */
+    private void detectStalls() {
+        try {
+            SseProperties.Stall stall = sseProperties.getStall();
+            long now = System.currentTimeMillis();
+            long startedBefore = now - stall.getThreshold().toMillis();
+
+            for (InFlight write : inFlight) {
+                if (write.startedAt < startedBefore && !write.evicted) {
+                    evict(write, now - write.startedAt, stall.isInterruptWriter());
+                }
+            }
+            evicted.values().removeIf(evictedAt -> evictedAt < now - EVICTED_RETENTION_MILLIS);
+        } catch (RuntimeException e) {
+            log.warn("写入阻塞检测失败", e);
+        }
+    }
+
+    private void evict(InFlight write, long blockedMillis, boolean interrupt) {
+        if (evicted.putIfAbsent(write.emitter, System.currentTimeMillis()) != null) {
+            return;
+        }
+        // 同一连接上排队等待的写入一并标记，返回后不再写入已关闭的连接
+        for (InFlight other : inFlight) {
+            if (other.emitter == write.emitter) {
+                // 写入已结束时不再中断，线程可能已在执行其他任务
+                synchronized (other) {
+                    if (!other.finished) {
+                        other.evicted = true;
+                        if (interrupt) {
+                            other.thread.interrupt();
+                        }
+                    }
+                }
+            }
+        }
+        stalled.increment();
+        String clientId = write.clientId != null ? write.clientId : resolveClientId(write.emitter);
+        log.warn("连接写入阻塞超过阈值，驱逐: clientId={}, blockedMillis={}, thread={}",
+                clientId, blockedMillis, write.thread.getName());
+        eventPublisher.publishEvent(new ConnectionStalledEvent(this, clientId, write.emitter, blockedMillis));
+    }
+
+    private void recordActivity(SseEmitter emitter) {
+        if (!sseProperties.getHeartbeat().isEnabled()) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        Long last = lastWrites.get(emitter);
+        if (last == null || now - last >= ACTIVITY_RESOLUTION_MILLIS) {
+            lastWrites.put(emitter, now);
+        }
+    }
+
+    /**
+     * 出站写入器不知道客户端ID，驱逐时从连接提供方中查找
+     */
+    private String resolveClientId(SseEmitter emitter) {
+        return connectionProviders.orderedStream()
+                .flatMap(provider -> provider.getConnections().entrySet().stream())
+                .filter(entry -> entry.getValue() == emitter)
+                .map(Map.Entry::getKey)
+                .findFirst()
+                .orElse(null);
+    }
+
+    private static void closeQuietly(SseEmitter emitter) {
+        try {
+            emitter.complete();
+        } catch (Exception e) {
+            // 忽略完成异常
+        }
+    }
+
+    /**
+     * 进行中的写入，按对象标识区分；驱逐标记和写入结束在该对象的锁内设置
+     */
+    private static class InFlight {
+        private final String clientId;
+        private final SseEmitter emitter;
+        private final Thread thread;
+        private final long startedAt;
+        private volatile boolean evicted;
+        private boolean finished;
+
+        InFlight(String clientId, SseEmitter emitter, Thread thread, long startedAt) {
+            this.clientId = clientId;
+            this.emitter = emitter;
+            this.thread = thread;
+            this.startedAt = startedAt;
+        }
+    }
+}
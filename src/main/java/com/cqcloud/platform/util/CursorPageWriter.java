@@ -0,0 +1,99 @@
+package com.cqcloud.platform.util;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * 游标分页的流式JSON输出
+ * <p>
+ * 边遍历边写出与 {@code ApiResponse} 相同结构的响应：
+ * {@code {"success":true,"message":"成功","data":{...,"items":[...],"nextCursor":...},"timestamp":...}}，
+ * 不先在内存中构建完整列表。
+ * @author weimeilayer@gmail.com ✨
+ * @date 💓💕 2024年4月12日 🐬🐇 💓💕
+ */
+public final class CursorPageWriter {
+
+    public static final int MAX_LIMIT = 1000;
+
+    // 每写出若干条刷新一次，避免大页全部堆积在输出缓冲中
+    private static final int FLUSH_EVERY = 256;
+
+    private CursorPageWriter() {
+    }
+
+    /**
+     * 限制每页数量在 [1, MAX_LIMIT] 之间
+     */
+    public static int clampLimit(int limit) {
+        return Math.max(1, Math.min(limit, MAX_LIMIT));
+    }
+
+    /**
+     * 从有序数据源写出一页：多取一个元素判断是否还有下一页，下一页游标为本页最后一个元素的游标
+     * @param summary  写在items之前的汇总字段
+     * @param source   已定位到游标之后、已过滤的有序数据源
+     * @param cursorOf 元素对应的游标
+     */
+    public static <T> StreamingResponseBody streamPage(ObjectMapper objectMapper, Map<String, Object> summary,
+                                                       Iterator<T> source, int limit,
+                                                       Function<? super T, String> cursorOf) {
+        return out -> {
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+                writeHead(generator, summary);
+                T last = null;
+                int written = 0;
+                while (written < limit && source.hasNext()) {
+                    last = source.next();
+                    generator.writeObject(last);
+                    if (++written % FLUSH_EVERY == 0) {
+                        generator.flush();
+                    }
+                }
+                String nextCursor = written == limit && source.hasNext() ? cursorOf.apply(last) : null;
+                writeTail(generator, nextCursor);
+            }
+        };
+    }
+
+    /**
+     * 写出已由存储分好的一页
+     */
+    public static StreamingResponseBody writePage(ObjectMapper objectMapper, Map<String, Object> summary,
+                                                  Iterator<?> items, String nextCursor) {
+        return out -> {
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+                writeHead(generator, summary);
+                while (items.hasNext()) {
+                    generator.writeObject(items.next());
+                }
+                writeTail(generator, nextCursor);
+            }
+        };
+    }
+
+    private static void writeHead(JsonGenerator generator, Map<String, Object> summary) throws IOException {
+        generator.writeStartObject();
+        generator.writeBooleanField("success", true);
+        generator.writeStringField("message", "成功");
+        generator.writeObjectFieldStart("data");
+        for (Map.Entry<String, Object> entry : summary.entrySet()) {
+            generator.writeObjectField(entry.getKey(), entry.getValue());
+        }
+        generator.writeArrayFieldStart("items");
+    }
+
+    private static void writeTail(JsonGenerator generator, String nextCursor) throws IOException {
+        generator.writeEndArray();
+        generator.writeStringField("nextCursor", nextCursor);
+        generator.writeEndObject();
+        generator.writeNumberField("timestamp", System.currentTimeMillis());
+        generator.writeEndObject();
+    }
+}
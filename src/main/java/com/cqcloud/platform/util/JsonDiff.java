@@ -0,0 +1,86 @@
+package com.cqcloud.platform.util;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * JSON差异计算，输出JSON Patch（RFC 6902）风格的操作列表
+ * @author weimeilayer@gmail.com ✨
+ * @date 💓💕 2024年4月12日 🐬🐇 💓💕
+ */
+public final class JsonDiff {
+
+    private JsonDiff() {
+    }
+
+    /**
+     * 计算从source到target的补丁
+     */
+    public static ArrayNode diff(JsonNode source, JsonNode target) {
+        ArrayNode patch = JsonNodeFactory.instance.arrayNode();
+        diff(patch, "", source, target);
+        return patch;
+    }
+
+    private static void diff(ArrayNode patch, String path, JsonNode source, JsonNode target) {
+        if (source.equals(target)) {
+            return;
+        }
+
+        if (source.isObject() && target.isObject()) {
+            Iterator<String> names = source.fieldNames();
+            while (names.hasNext()) {
+                String name = names.next();
+                if (!target.has(name)) {
+                    patch.add(operation("remove", path + "/" + escape(name)));
+                }
+            }
+            for (Map.Entry<String, JsonNode> field : target.properties()) {
+                String fieldPath = path + "/" + escape(field.getKey());
+                JsonNode previous = source.get(field.getKey());
+                if (previous == null) {
+                    patch.add(operation("add", fieldPath).set("value", field.getValue()));
+                } else {
+                    diff(patch, fieldPath, previous, field.getValue());
+                }
+            }
+            return;
+        }
+
+        if (source.isArray() && target.isArray()) {
+            int common = Math.min(source.size(), target.size());
+            for (int i = 0; i < common; i++) {
+                diff(patch, path + "/" + i, source.get(i), target.get(i));
+            }
+            for (int i = common; i < target.size(); i++) {
+                patch.add(operation("add", path + "/" + i).set("value", target.get(i)));
+            }
+            // 从尾部删除，保证下标在应用过程中不变
+            for (int i = source.size() - 1; i >= common; i--) {
+                patch.add(operation("remove", path + "/" + i));
+            }
+            return;
+        }
+
+        patch.add(operation("replace", path).set("value", target));
+    }
+
+    private static ObjectNode operation(String op, String path) {
+        ObjectNode operation = JsonNodeFactory.instance.objectNode();
+        operation.put("op", op);
+        operation.put("path", path);
+        return operation;
+    }
+
+    /**
+     * JSON Pointer转义（RFC 6901）
+     */
+    private static String escape(String name) {
+        return name.replace("~", "~0").replace("/", "~1");
+    }
+}
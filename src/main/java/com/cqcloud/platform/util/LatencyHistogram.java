@@ -0,0 +1,92 @@
+package com.cqcloud.platform.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 无锁延迟直方图
+ * <p>
+ * 按微秒取以2为底的对数分桶，记录只做一次计数器自增；
+ * 分位数取所在桶的上限，误差不超过一倍，足以区分排队和序列化等阶段的量级变化。
+ * @author weimeilayer@gmail.com ✨
+ * @date 💓💕 2024年4月12日 🐬🐇 💓💕
+ */
+public class LatencyHistogram {
+
+    // 第i个桶记录 [2^(i-1), 2^i) 微秒，最后一个桶约为35分钟以上
+    private static final int BUCKETS = 32;
+
+    private final LongAdder[] buckets = new LongAdder[BUCKETS];
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sumMicros = new LongAdder();
+    private final LongAccumulator maxMicros = new LongAccumulator(Math::max, 0);
+
+    public LatencyHistogram() {
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * 记录一次延迟
+     */
+    public void record(long nanos) {
+        long micros = Math.max(0, TimeUnit.NANOSECONDS.toMicros(nanos));
+        buckets[Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros))].increment();
+        count.increment();
+        sumMicros.add(micros);
+        maxMicros.accumulate(micros);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * 汇总：次数、平均值、分位数和最大值（毫秒）
+     */
+    public Map<String, Object> snapshot() {
+        long[] counts = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = buckets[i].sum();
+            total += counts[i];
+        }
+
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("count", total);
+        snapshot.put("meanMillis", total > 0 ? toMillis(sumMicros.sum() / total) : 0);
+        long max = maxMicros.get();
+        snapshot.put("p50Millis", percentile(counts, total, 0.50, max));
+        snapshot.put("p90Millis", percentile(counts, total, 0.90, max));
+        snapshot.put("p99Millis", percentile(counts, total, 0.99, max));
+        snapshot.put("p999Millis", percentile(counts, total, 0.999, max));
+        snapshot.put("maxMillis", toMillis(max));
+        return snapshot;
+    }
+
+    /**
+     * 分位数所在桶的上限，不超过记录到的最大值
+     */
+    private static double percentile(long[] counts, long total, double quantile, long maxMicros) {
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(total * quantile);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return toMillis(Math.min(i == 0 ? 0 : 1L << i, maxMicros));
+            }
+        }
+        return toMillis(maxMicros);
+    }
+
+    private static double toMillis(long micros) {
+        return micros / 1000.0;
+    }
+}
@@ -0,0 +1,126 @@
+package com.cqcloud.platform.util;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * 可复用的开放寻址字符串集合
+ * <p>
+ * 线性探测，元素直接存放在数组中，不为每个元素分配节点对象；
+ * 记录已占用的槽位，{@link #clear()} 只清理用过的槽位，适合按线程复用做去重。
+ * 非线程安全。
+ * @author weimeilayer@gmail.com ✨
+ * @date 💓💕 2024年4月12日 🐬🐇 💓💕
+ */
+public class OpenAddressingSet {
+
+    private static final int MIN_CAPACITY = 16;
+
+    private String[] table;
+    private int[] usedSlots;
+    private int size;
+
+    public OpenAddressingSet() {
+        this(MIN_CAPACITY);
+    }
+
+    /**
+     * @param expectedSize 预计元素数
+     */
+    public OpenAddressingSet(int expectedSize) {
+        int capacity = tableSizeFor(expectedSize);
+        this.table = new String[capacity];
+        this.usedSlots = new int[capacity / 2];
+    }
+
+    /**
+     * 添加元素
+     * @return false表示已存在
+     */
+    public boolean add(String value) {
+        if (size >= usedSlots.length) {
+            resize(table.length * 2);
+        }
+        int mask = table.length - 1;
+        int slot = mix(value.hashCode()) & mask;
+        String current;
+        while ((current = table[slot]) != null) {
+            if (current.equals(value)) {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+        table[slot] = value;
+        usedSlots[size++] = slot;
+        return true;
+    }
+
+    /**
+     * 是否包含元素
+     */
+    public boolean contains(String value) {
+        int mask = table.length - 1;
+        int slot = mix(value.hashCode()) & mask;
+        String current;
+        while ((current = table[slot]) != null) {
+            if (current.equals(value)) {
+                return true;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return false;
+    }
+
+    /**
+     * 按添加顺序遍历
+     */
+    public void forEach(Consumer<String> action) {
+        for (int i = 0; i < size; i++) {
+            action.accept(table[usedSlots[i]]);
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int capacity() {
+        return table.length;
+    }
+
+    /**
+     * 清空集合，只清理已占用的槽位
+     */
+    public void clear() {
+        for (int i = 0; i < size; i++) {
+            table[usedSlots[i]] = null;
+        }
+        size = 0;
+    }
+
+    private void resize(int newCapacity) {
+        String[] oldTable = table;
+        int[] oldSlots = usedSlots;
+        int oldSize = size;
+        table = new String[newCapacity];
+        usedSlots = new int[newCapacity / 2];
+        size = 0;
+        for (int i = 0; i < oldSize; i++) {
+            add(oldTable[oldSlots[i]]);
+        }
+        Arrays.fill(oldTable, null);
+    }
+
+    private static int mix(int hash) {
+        int h = hash * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private static int tableSizeFor(int expectedSize) {
+        return Integer.highestOneBit(Math.max(MIN_CAPACITY, expectedSize * 2) - 1) << 1;
+    }
+}
@@ -0,0 +1,37 @@
+package com.cqcloud.platform.util;
+
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ * SSE事件帧工具
+ * @author weimeilayer@gmail.com ✨
+ * @date 💓💕 2024年4月12日 🐬🐇 💓💕
+ */
+public final class SseFrames {
+
+    private SseFrames() {
+    }
+
+    /**
+     * 把文本事件帧预先拼接并编码为一个UTF-8字节帧
+     * <p>
+     * 事件帧由字段文本和数据多段组成，每个连接写出时逐段经消息转换器编码；
+     * 预编码后每个连接只做一次字节写出。含非文本数据的帧原样返回。
+     */
+    public static Set<ResponseBodyEmitter.DataWithMediaType> preEncode(Set<ResponseBodyEmitter.DataWithMediaType> frames) {
+        StringBuilder text = new StringBuilder();
+        for (ResponseBodyEmitter.DataWithMediaType frame : frames) {
+            if (!(frame.getData() instanceof String data)) {
+                return frames;
+            }
+            text.append(data);
+        }
+        byte[] bytes = text.toString().getBytes(StandardCharsets.UTF_8);
+        return Collections.singleton(new ResponseBodyEmitter.DataWithMediaType(bytes, MediaType.TEXT_PLAIN));
+    }
+}
@@ -0,0 +1,76 @@
+package com.cqcloud.platform.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 无锁令牌桶
+ * <p>
+ * 采用GCRA（理论到达时间）实现：状态只有一个long，获取令牌只需一次CAS。
+ * @author weimeilayer@gmail.com ✨
+ * @date 💓💕 2024年4月12日 🐬🐇 💓💕
+ */
+public class TokenBucket {
+
+    /**
+     * 每个令牌的补充间隔（纳秒）
+     */
+    private final long intervalNanos;
+
+    /**
+     * 桶容量对应的时间容差（纳秒）
+     */
+    private final long burstNanos;
+
+    /**
+     * 理论到达时间
+     */
+    private final AtomicLong theoreticalArrival;
+
+    /**
+     * @param ratePerSecond 每秒补充的令牌数
+     * @param burst         桶容量
+     */
+    public TokenBucket(double ratePerSecond, int burst) {
+        if (ratePerSecond <= 0 || burst <= 0) {
+            throw new IllegalArgumentException("令牌桶参数必须大于0");
+        }
+        this.intervalNanos = Math.max(1L, (long) (1_000_000_000L / ratePerSecond));
+        this.burstNanos = intervalNanos * burst;
+        this.theoreticalArrival = new AtomicLong(System.nanoTime() - burstNanos);
+    }
+
+    /**
+     * 尝试获取一个令牌
+     * @return 0表示获取成功，否则为需要等待的纳秒数
+     */
+    public long tryAcquire() {
+        while (true) {
+            long now = System.nanoTime();
+            long current = theoreticalArrival.get();
+            long next = Math.max(current, now - burstNanos) + intervalNanos;
+            long wait = next - now;
+            if (wait > 0) {
+                return wait;
+            }
+            if (theoreticalArrival.compareAndSet(current, next)) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * 退还一个刚获取的令牌，用于同时需要多个令牌桶放行而其他桶拒绝的情况
+     * <p>
+     * 理论到达时间回退一个间隔，不会低于获取前的位置，桶内令牌数不会超过容量。
+     */
+    public void refund() {
+        theoreticalArrival.addAndGet(-intervalNanos);
+    }
+
+    /**
+     * 桶是否已满（长时间未使用）
+     */
+    public boolean isIdle() {
+        return theoreticalArrival.get() <= System.nanoTime() - burstNanos;
+    }
+}
@@ -0,0 +1,159 @@
+package com.cqcloud.platform.cluster;
+
+import com.cqcloud.platform.dto.GroupInfo;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 群组变更日志：重放、快照轮换和不完整记录
+ * @author weimeilayer@gmail.com ✨
+ * @date 💓💕 2024年4月12日 🐬🐇 💓💕
+ */
+class MembershipJournalTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @TempDir
+    Path workDir;
+
+    private Path journalFile;
+    private Path snapshotFile;
+    private MembershipJournal journal;
+    private JournaledMembershipStore store;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        journalFile = workDir.resolve("groups.journal");
+        snapshotFile = workDir.resolve("groups.snapshot");
+        journal = new MembershipJournal(journalFile, objectMapper);
+        journal.open();
+        store = new JournaledMembershipStore(new InMemoryMembershipStore(), journal);
+    }
+
+    @Test
+    void replayRebuildsAllChangeTypes() throws IOException {
+        store.saveGroup(group("g1"));
+        store.saveGroup(group("g2"));
+        store.saveGroup(group("g3"));
+        store.addMember("g1", "c1");
+        store.addMember("g1", "c2");
+        store.addMember("g2", "c1");
+        store.addMember("g2", "c3");
+        store.addAdministrator("g1", "admin");
+        store.removeMember("g1", "c2");
+        store.removeClients(List.of("c3"));
+        store.deleteGroup("g3");
+        journal.close();
+
+        InMemoryMembershipStore restored = new InMemoryMembershipStore();
+        int replayed = new MembershipJournal(journalFile, objectMapper).replay(restored);
+
+        assertThat(replayed).isEqualTo(journal.getAppended());
+        assertState(restored);
+    }
+
+    @Test
+    void snapshotPlusRotatedJournalRestoresLatestState() throws IOException {
+        store.saveGroup(group("g1"));
+        store.addMember("g1", "c1");
+        store.addMember("g1", "c2");
+
+        journal.rotate(true);
+        MembershipSnapshot.write(store, snapshotFile, objectMapper);
+        journal.discardPrevious();
+
+        // 快照之后的修改只在新日志中
+        store.saveGroup(group("g2"));
+        store.addMember("g2", "c1");
+        store.removeMember("g1", "c2");
+        journal.close();
+
+        InMemoryMembershipStore restored = new InMemoryMembershipStore();
+        MembershipSnapshot.read(snapshotFile, restored, objectMapper);
+        assertThat(new MembershipJournal(journalFile, objectMapper).replay(restored)).isEqualTo(3);
+
+        assertThat(restored.getAllGroups()).containsExactlyInAnyOrder("g1", "g2");
+        assertThat(restored.getMembers("g1")).containsExactly("c1");
+        assertThat(restored.getMembers("g2")).containsExactly("c1");
+    }
+
+    @Test
+    void failedSnapshotKeepsPreviousJournal() throws IOException {
+        store.saveGroup(group("g1"));
+        store.addMember("g1", "c1");
+        // 轮换后快照失败，没有删除 .prev
+        journal.rotate(true);
+        store.addMember("g1", "c2");
+        journal.rotate(true);
+        store.addMember("g1", "c3");
+        journal.close();
+
+        InMemoryMembershipStore restored = new InMemoryMembershipStore();
+        assertThat(new MembershipJournal(journalFile, objectMapper).replay(restored)).isEqualTo(4);
+        assertThat(restored.getMembers("g1")).containsExactlyInAnyOrder("c1", "c2", "c3");
+    }
+
+    @Test
+    void truncatedTailRecordIsIgnored() throws IOException {
+        store.saveGroup(group("g1"));
+        store.addMember("g1", "c1");
+        store.addMember("g1", "c2");
+        journal.close();
+
+        // 模拟写到一半时进程崩溃
+        byte[] bytes = Files.readAllBytes(journalFile);
+        Files.write(journalFile, Arrays.copyOf(bytes, bytes.length - 2));
+
+        InMemoryMembershipStore restored = new InMemoryMembershipStore();
+        assertThat(new MembershipJournal(journalFile, objectMapper).replay(restored)).isEqualTo(2);
+        assertThat(restored.getMembers("g1")).containsExactly("c1");
+    }
+
+    @Test
+    void closedJournalDropsChanges() throws IOException {
+        journal.close();
+        store.saveGroup(group("g1"));
+        store.addMember("g1", "c1");
+
+        assertThat(journal.getAppended()).isZero();
+        assertThat(new MembershipJournal(journalFile, objectMapper).replay(new InMemoryMembershipStore())).isZero();
+    }
+
+    private void assertState(MembershipStore restored) {
+        assertThat(restored.getAllGroups()).containsExactlyInAnyOrder("g1", "g2");
+        assertThat(restored.getMembers("g1")).containsExactly("c1");
+        assertThat(restored.getMembers("g2")).containsExactly("c1");
+        assertThat(restored.getClientGroups("c1")).containsExactlyInAnyOrder("g1", "g2");
+        assertThat(restored.getClientGroups("c3")).isEmpty();
+        GroupInfo g1 = restored.getGroup("g1");
+        assertThat(g1.getAdministrators()).contains("admin");
+        assertThat(g1.getMaxMembers()).isEqualTo(50);
+        assertThat(g1.getMetadata()).containsEntry("topic", "g1");
+    }
+
+    private static GroupInfo group(String groupId) {
+        return GroupInfo.builder()
+                .groupId(groupId)
+                .groupName("群组" + groupId)
+                .creator("owner")
+                .createTime(new Date())
+                .maxMembers(50)
+                .metadata(Map.of("topic", groupId))
+                .administrators(new HashSet<>(Set.of("owner")))
+                .build();
+    }
+}
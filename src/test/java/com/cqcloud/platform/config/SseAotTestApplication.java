@@ -0,0 +1,37 @@
+package com.cqcloud.platform.config;
+
+import com.cqcloud.platform.service.GroupMembersManager;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.autoconfigure.data.redis.RedisAutoConfiguration;
+import org.springframework.boot.autoconfigure.data.redis.RedisRepositoriesAutoConfiguration;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * AOT测试用的最小应用：不扫描 com.cqcloud.platform，只通过自动配置加载
+ * @author weimeilayer@gmail.com ✨
+ * @date 💓💕 2024年4月12日 🐬🐇 💓💕
+ */
+@SpringBootConfiguration
+@EnableAutoConfiguration(exclude = {RedisAutoConfiguration.class, RedisRepositoriesAutoConfiguration.class})
+public class SseAotTestApplication {
+
+    static final String STARTED_MARKER = "SSE_AOT_CONTEXT_STARTED";
+
+    static final String STARTUP_MILLIS_PREFIX = "SSE_STARTUP_MILLIS=";
+
+    public static void main(String[] args) {
+        try (ConfigurableApplicationContext context = SpringApplication.run(SseAotTestApplication.class, args)) {
+            // 从JVM启动到上下文就绪的耗时，包含类加载，与节点扩容时的等待时间一致
+            System.out.println(STARTUP_MILLIS_PREFIX + ManagementFactory.getRuntimeMXBean().getUptime());
+            GroupMembersManager groupMembersManager = context.getBean(GroupMembersManager.class);
+            groupMembersManager.createGroup("g1", "u1", "aot");
+            if (groupMembersManager.isGroupExists("g1")) {
+                System.out.println(STARTED_MARKER);
+            }
+        }
+    }
+}
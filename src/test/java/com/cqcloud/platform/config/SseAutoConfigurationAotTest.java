@@ -0,0 +1,113 @@
+package com.cqcloud.platform.config;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.SpringApplicationAotProcessor;
+import org.springframework.context.aot.AbstractAotProcessor;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * AOT处理后只依赖 {@link SseAutoConfiguration} 的应用（{@link SseAotTestApplication}）可以启动
+ * <p>
+ * 构建期处理生成Bean定义代码和运行时提示，编译后在新进程中以 spring.aot.enabled=true 启动，
+ * 与原生镜像使用同一份生成代码，不走反射扫描。
+ * 同时以常规方式启动一次，输出两种方式从JVM启动到上下文就绪的耗时作为启动时间基线，
+ * 不对耗时做断言，避免受构建机负载影响。
+ * @author weimeilayer@gmail.com ✨
+ * @date 💓💕 2024年4月12日 🐬🐇 💓💕
+ */
+class SseAutoConfigurationAotTest {
+
+    @TempDir
+    Path workDir;
+
+    @Test
+    void aotProcessedContextStarts() throws Exception {
+        Path sources = workDir.resolve("sources");
+        Path resources = workDir.resolve("resources");
+        Path classes = workDir.resolve("classes");
+
+        AbstractAotProcessor.Settings settings = AbstractAotProcessor.Settings.builder()
+                .sourceOutput(sources)
+                .resourceOutput(resources)
+                .classOutput(classes)
+                .groupId("com.cqcloud.platform")
+                .artifactId("sse-aot-test")
+                .build();
+        new SpringApplicationAotProcessor(SseAotTestApplication.class, settings, new String[0]).process();
+
+        // 运行时提示包含DTO的绑定反射
+        Path reflectConfig;
+        try (Stream<Path> files = Files.walk(resources)) {
+            reflectConfig = files.filter(path -> path.endsWith("reflect-config.json")).findFirst().orElseThrow();
+        }
+        assertThat(Files.readString(reflectConfig))
+                .contains("com.cqcloud.platform.dto.GroupInfo")
+                .contains("com.cqcloud.platform.dto.NotificationMessage")
+                .contains("com.cqcloud.platform.cluster.ClusterRouter$RoutedEvent");
+
+        String classpath = classes + File.pathSeparator + resources + File.pathSeparator
+                + System.getProperty("java.class.path");
+        compile(sources, classes, classpath);
+
+        long aotMillis = start(classpath, true);
+        long jitMillis = start(classpath, false);
+        System.out.printf("SSE启动耗时: aot=%dms, regular=%dms%n", aotMillis, jitMillis);
+    }
+
+    /**
+     * 在新进程中启动应用，返回从JVM启动到上下文就绪的毫秒数
+     */
+    private long start(String classpath, boolean aot) throws Exception {
+        Path output = workDir.resolve(aot ? "app-aot.log" : "app.log");
+        Process process = new ProcessBuilder(
+                Path.of(System.getProperty("java.home"), "bin", "java").toString(),
+                "-Dspring.aot.enabled=" + aot,
+                "-cp", classpath,
+                SseAotTestApplication.class.getName(),
+                "--server.port=0")
+                .redirectErrorStream(true)
+                .redirectOutput(output.toFile())
+                .start();
+        boolean exited = process.waitFor(2, TimeUnit.MINUTES);
+        if (!exited) {
+            process.destroyForcibly();
+        }
+        String log = Files.readString(output, StandardCharsets.UTF_8);
+
+        assertThat(exited).as(log).isTrue();
+        assertThat(process.exitValue()).as(log).isZero();
+        assertThat(log).contains(SseAotTestApplication.STARTED_MARKER);
+        return log.lines()
+                .filter(line -> line.startsWith(SseAotTestApplication.STARTUP_MILLIS_PREFIX))
+                .mapToLong(line -> Long.parseLong(
+                        line.substring(SseAotTestApplication.STARTUP_MILLIS_PREFIX.length()).trim()))
+                .findFirst()
+                .orElseThrow();
+    }
+
+    private static void compile(Path sources, Path classes, String classpath) throws IOException {
+        List<String> arguments = new ArrayList<>(List.of(
+                "-proc:none", "-parameters", "-encoding", "UTF-8",
+                "-cp", classpath, "-d", classes.toString()));
+        try (Stream<Path> files = Files.walk(sources)) {
+            files.filter(path -> path.toString().endsWith(".java")).forEach(path -> arguments.add(path.toString()));
+        }
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        assertThat(compiler.run(null, null, null, arguments.toArray(String[]::new)))
+                .as("编译AOT生成的代码").isZero();
+    }
+}
@@ -0,0 +1,58 @@
+package com.cqcloud.platform.handler;
+
+import com.cqcloud.platform.config.SseProperties;
+import com.cqcloud.platform.service.GroupMessageService;
+import com.cqcloud.platform.service.SseRateLimiter;
+import com.cqcloud.platform.service.TopicSubscriptionIndex;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 主题订阅：只能操作本用户自己的连接
+ * @author weimeilayer@gmail.com ✨
+ * @date 💓💕 2024年4月12日 🐬🐇 💓💕
+ */
+class TopicSseHandlerTest {
+
+    private TopicSubscriptionIndex topicSubscriptionIndex;
+    private TopicSseHandler handler;
+
+    @BeforeEach
+    void setUp() {
+        SseProperties sseProperties = new SseProperties();
+        topicSubscriptionIndex = new TopicSubscriptionIndex(sseProperties);
+        GroupMessageService groupMessageService = mock(GroupMessageService.class);
+        when(groupMessageService.getClientUserId("c1")).thenReturn("alice");
+        handler = new TopicSseHandler(topicSubscriptionIndex, groupMessageService,
+                new SseRateLimiter(sseProperties), null);
+    }
+
+    @Test
+    void ownerCanSubscribeAndUnsubscribe() {
+        assertThat(handler.subscribe("c1", "alice", "news.*").getStatusCode().value()).isEqualTo(200);
+        assertThat(topicSubscriptionIndex.getClientSubscriptions("c1")).containsExactly("news.*");
+
+        assertThat(handler.unsubscribe("c1", "alice", "news.*").getStatusCode().value()).isEqualTo(200);
+        assertThat(topicSubscriptionIndex.getClientSubscriptions("c1")).isEmpty();
+    }
+
+    @Test
+    void otherUserIsForbidden() {
+        assertThat(handler.subscribe("c1", "mallory", "news.*").getStatusCode().value()).isEqualTo(403);
+        assertThat(topicSubscriptionIndex.getClientSubscriptions("c1")).isEmpty();
+
+        topicSubscriptionIndex.subscribe("c1", "news.*");
+        assertThat(handler.unsubscribe("c1", "mallory", "news.*").getStatusCode().value()).isEqualTo(403);
+        assertThat(topicSubscriptionIndex.getClientSubscriptions("c1")).containsExactly("news.*");
+    }
+
+    @Test
+    void unknownConnectionIsNotFound() {
+        assertThat(handler.subscribe("c2", "alice", "news.*").getStatusCode().value()).isEqualTo(404);
+        assertThat(handler.unsubscribe("c2", "alice", "news.*").getStatusCode().value()).isEqualTo(404);
+    }
+}
@@ -0,0 +1,210 @@
+package com.cqcloud.platform.service;
+
+import com.cqcloud.platform.codec.JacksonPayloadCodec;
+import com.cqcloud.platform.config.SseProperties;
+import com.cqcloud.platform.dto.BulkPublishItem;
+import com.cqcloud.platform.dto.BulkPublishResult;
+import com.cqcloud.platform.dto.MessageRequest;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 批量发布：按连接合并写出、逐条结果和投递数、租户隔离
+ * @author weimeilayer@gmail.com ✨
+ * @date 💓💕 2024年4月12日 🐬🐇 💓💕
+ */
+class BulkPublishServiceTest {
+
+    private final Map<String, Set<ResponseBodyEmitter.DataWithMediaType>> written = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> userClients = new HashMap<>();
+    private GroupMembersManager groupMembersManager;
+    private GroupMessageService groupMessageService;
+    private TopicSubscriptionIndex topicSubscriptionIndex;
+    private TenantService tenantService;
+    private DeliveryAckService deliveryAckService;
+    private SseProperties sseProperties;
+    private BulkPublishService bulkPublishService;
+
+    @BeforeEach
+    void setUp() {
+        sseProperties = new SseProperties();
+        sseProperties.getTenant().setEnabled(true);
+        tenantService = new TenantService(sseProperties, null);
+        groupMembersManager = mock(GroupMembersManager.class);
+        groupMessageService = mock(GroupMessageService.class);
+        when(groupMessageService.accepts(anyString(), any())).thenReturn(true);
+        when(groupMessageService.sendFrames(anyString(), any())).thenAnswer(invocation -> {
+            written.put(invocation.getArgument(0), invocation.getArgument(1));
+            return true;
+        });
+        topicSubscriptionIndex = new TopicSubscriptionIndex(sseProperties);
+        deliveryAckService = new DeliveryAckService(sseProperties);
+        ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+        bulkPublishService = new BulkPublishService(groupMembersManager, groupMessageService, topicSubscriptionIndex,
+                new SseRateLimiter(sseProperties), deliveryAckService,
+                new JacksonPayloadCodec(objectMapper, List.of(), 8192), sseProperties, tenantService);
+
+        connect("a1", "acme", "alice");
+        connect("a2", "acme", "bob");
+        connect("g1", "globex", "alice");
+    }
+
+    @AfterEach
+    void tearDown() {
+        tenantService.destroy();
+    }
+
+    @Test
+    void itemsForSameConnectionAreWrittenOnce() {
+        when(groupMembersManager.getGroupMembers("room")).thenReturn(Set.of("a1", "a2"));
+
+        List<BulkPublishResult> results = bulkPublishService.publish("sender", List.of(
+                item("CLIENT", "a1"),
+                item("USER", "alice"),
+                item("GROUP", "room")));
+
+        verify(groupMessageService, times(1)).sendFrames(eq("a1"), any());
+        verify(groupMessageService, times(1)).sendFrames(eq("a2"), any());
+        verify(groupMessageService, times(1)).sendFrames(eq("g1"), any());
+        // a1的一次写出按条目顺序包含三条消息
+        String a1 = render(written.get("a1"));
+        List<Integer> positions = new ArrayList<>();
+        results.forEach(result -> positions.add(a1.indexOf(result.getMessageId())));
+        assertThat(positions).doesNotContain(-1).isSorted();
+        assertThat(render(written.get("a2"))).contains(results.get(2).getMessageId())
+                .doesNotContain(results.get(0).getMessageId());
+    }
+
+    @Test
+    void resultsFollowItemOrderWithPerItemErrors() {
+        List<BulkPublishResult> results = bulkPublishService.publish("sender", Arrays.asList(
+                item("CLIENT", "a1"),
+                BulkPublishItem.builder().targetType("CLIENT").build(),
+                item("CHANNEL", "x"),
+                BulkPublishItem.builder().targetType("USER").targetId("bob").build(),
+                null,
+                item("user", "bob")));
+
+        assertThat(results).extracting(BulkPublishResult::getIndex).containsExactly(0, 1, 2, 3, 4, 5);
+        assertThat(results).extracting(BulkPublishResult::isSuccess)
+                .containsExactly(true, false, false, false, false, true);
+        assertThat(results).extracting(BulkPublishResult::getError).containsExactly(
+                null, "目标类型和目标ID不能为空", "不支持的目标类型: CHANNEL", "消息内容不能为空",
+                "目标类型和目标ID不能为空", null);
+        assertThat(results.get(0).getMessageId()).isNotBlank().isNotEqualTo(results.get(5).getMessageId());
+        assertThat(written).containsOnlyKeys("a1", "a2");
+    }
+
+    @Test
+    void deliveredCountsOnlySuccessfulWritesToAcceptingConnections() {
+        when(groupMembersManager.getGroupMembers("room")).thenReturn(Set.of("a1", "a2", "g1"));
+        // a2过滤掉该消息，g1写出失败
+        when(groupMessageService.accepts(eq("a2"), any())).thenReturn(false);
+        when(groupMessageService.sendFrames(eq("g1"), any())).thenReturn(false);
+
+        List<BulkPublishResult> results = bulkPublishService.publish("sender", List.of(
+                item("GROUP", "room"),
+                item("USER", "alice"),
+                item("GROUP", "empty")));
+
+        assertThat(results).extracting(BulkPublishResult::isSuccess).containsExactly(true, true, true);
+        assertThat(results).extracting(BulkPublishResult::getDelivered).containsExactly(1, 1, 0);
+        verify(groupMessageService, times(1)).sendFrames(eq("g1"), any());
+    }
+
+    @Test
+    void tooManyItemsAreRejected() {
+        sseProperties.getBulk().setMaxItems(2);
+
+        assertThatThrownBy(() -> bulkPublishService.publish("sender", List.of(
+                item("CLIENT", "a1"), item("CLIENT", "a1"), item("CLIENT", "a1"))))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThat(bulkPublishService.publish("sender", List.of())).isEmpty();
+        assertThat(written).isEmpty();
+    }
+
+    @Test
+    void clientInOtherTenantIsTreatedAsNotConnected() {
+        List<BulkPublishResult> results = bulkPublishService.publish("sender", "acme", List.of(
+                item("CLIENT", "a1"),
+                item("CLIENT", "g1"),
+                item("CLIENT", "missing")));
+
+        assertThat(results).extracting(BulkPublishResult::isSuccess).containsExactly(true, false, false);
+        assertThat(results.get(1).getError()).isEqualTo(results.get(2).getError().replace("missing", "g1"));
+        assertThat(written).containsOnlyKeys("a1");
+    }
+
+    @Test
+    void userGroupAndTopicRecipientsAreFilteredByTenant() {
+        when(groupMembersManager.getGroupMembers("room")).thenReturn(Set.of("a2", "g1"));
+        topicSubscriptionIndex.subscribe("a2", "news.#");
+        topicSubscriptionIndex.subscribe("g1", "news.#");
+
+        List<BulkPublishResult> results = bulkPublishService.publish("sender", "acme", List.of(
+                item("USER", "alice"),
+                item("GROUP", "room"),
+                item("TOPIC", "news.today")));
+
+        assertThat(results).extracting(BulkPublishResult::getDelivered).containsExactly(1, 1, 1);
+        assertThat(written).containsOnlyKeys("a1", "a2");
+    }
+
+    @Test
+    void withoutTenantAllRecipientsAreReached() {
+        List<BulkPublishResult> results = bulkPublishService.publish("sender", List.of(item("USER", "alice")));
+
+        assertThat(results.get(0).getDelivered()).isEqualTo(2);
+        assertThat(written).containsOnlyKeys("a1", "g1");
+    }
+
+    private void connect(String clientId, String tenantId, String userId) {
+        SseEmitter emitter = new SseEmitter();
+        tenantService.register(tenantId, clientId, emitter);
+        when(groupMessageService.getClientEmitter(clientId)).thenReturn(emitter);
+        Set<String> clients = userClients.computeIfAbsent(userId, key -> new HashSet<>());
+        clients.add(clientId);
+        when(groupMessageService.getUserClients(userId)).thenReturn(clients);
+    }
+
+    private static String render(Set<ResponseBodyEmitter.DataWithMediaType> frames) {
+        StringBuilder text = new StringBuilder();
+        for (ResponseBodyEmitter.DataWithMediaType frame : frames) {
+            Object data = frame.getData();
+            text.append(data instanceof byte[] bytes ? new String(bytes, StandardCharsets.UTF_8) : data);
+        }
+        return text.toString();
+    }
+
+    static BulkPublishItem item(String targetType, String targetId) {
+        return BulkPublishItem.builder()
+                .targetType(targetType)
+                .targetId(targetId)
+                .message(MessageRequest.builder().content("hello " + targetId).build())
+                .build();
+    }
+}
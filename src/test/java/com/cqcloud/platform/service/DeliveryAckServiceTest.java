@@ -0,0 +1,131 @@
+package com.cqcloud.platform.service;
+
+import com.cqcloud.platform.config.SseProperties;
+import com.cqcloud.platform.event.ClientDisconnectedEvent;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.awaitility.Awaitility.await;
+
+/**
+ * 确认窗口：确认、溢出、超时重发、重连重发
+ * @author weimeilayer@gmail.com ✨
+ * @date 💓💕 2024年4月12日 🐬🐇 💓💕
+ */
+class DeliveryAckServiceTest {
+
+    private SseProperties sseProperties;
+    private DeliveryAckService deliveryAckService;
+    private final List<String> redelivered = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        sseProperties = new SseProperties();
+        sseProperties.getAck().setMaxPending(3);
+        sseProperties.getAck().setMaxBatch(10);
+        sseProperties.getAck().setMaxAttempts(3);
+        sseProperties.getAck().setTimeout(Duration.ofMillis(200));
+        deliveryAckService = new DeliveryAckService(sseProperties);
+        deliveryAckService.init();
+        deliveryAckService.setRedelivery((clientId, frames) -> {
+            redelivered.add(clientId + ":" + frames.iterator().next().getData());
+            return true;
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        deliveryAckService.destroy();
+    }
+
+    @Test
+    void tracksOnlyAckModeClients() {
+        deliveryAckService.onConnect("plain", false);
+        deliveryAckService.track("plain", "e1", frame("e1"));
+
+        assertThat(deliveryAckService.isAckMode("plain")).isFalse();
+        assertThat(deliveryAckService.getPendingCount("plain")).isZero();
+    }
+
+    @Test
+    void acknowledgeRemovesPendingEvents() {
+        deliveryAckService.onConnect("c1", true);
+        deliveryAckService.track("c1", "e1", frame("e1"));
+        deliveryAckService.track("c1", "e2", frame("e2"));
+
+        assertThat(deliveryAckService.acknowledge("c1", List.of("e1", "unknown"))).isEqualTo(1);
+        assertThat(deliveryAckService.getPendingCount("c1")).isEqualTo(1);
+        assertThat(deliveryAckService.acknowledge("other", List.of("e2"))).isZero();
+    }
+
+    @Test
+    void overflowDropsOldestEvent() {
+        deliveryAckService.onConnect("c1", true);
+        for (int i = 1; i <= 4; i++) {
+            deliveryAckService.track("c1", "e" + i, frame("e" + i));
+        }
+
+        assertThat(deliveryAckService.getPendingCount("c1")).isEqualTo(3);
+        assertThat(deliveryAckService.acknowledge("c1", List.of("e1"))).isZero();
+        assertThat(deliveryAckService.getStatistics()).containsEntry("overflowed", 1L);
+    }
+
+    @Test
+    void rejectsOversizedBatch() {
+        deliveryAckService.onConnect("c1", true);
+
+        assertThatThrownBy(() -> deliveryAckService.acknowledge("c1", Collections.nCopies(11, "e")))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void reconnectResendsPendingInOrder() {
+        deliveryAckService.onConnect("c1", true);
+        deliveryAckService.track("c1", "e1", frame("e1"));
+        deliveryAckService.track("c1", "e2", frame("e2"));
+        deliveryAckService.onClientDisconnected(new ClientDisconnectedEvent(this, "c1", "u1"));
+
+        deliveryAckService.onConnect("c1", true);
+
+        assertThat(redelivered).containsExactly("c1:e1", "c1:e2");
+    }
+
+    @Test
+    void unacknowledgedEventsAreResentUntilMaxAttempts() {
+        deliveryAckService.onConnect("c1", true);
+        deliveryAckService.track("c1", "e1", frame("e1"));
+
+        // 首次发送算一次，之后最多重发 maxAttempts-1 次，然后放弃
+        await().atMost(Duration.ofSeconds(5))
+                .until(() -> deliveryAckService.getPendingCount("c1") == 0);
+        assertThat(redelivered).containsExactly("c1:e1", "c1:e1");
+        assertThat(deliveryAckService.getStatistics()).containsEntry("expired", 1L);
+    }
+
+    @Test
+    void disconnectedWindowIsNotResent() throws InterruptedException {
+        deliveryAckService.onConnect("c1", true);
+        deliveryAckService.track("c1", "e1", frame("e1"));
+        deliveryAckService.onClientDisconnected(new ClientDisconnectedEvent(this, "c1", "u1"));
+
+        Thread.sleep(600);
+
+        assertThat(redelivered).isEmpty();
+        assertThat(deliveryAckService.getPendingCount("c1")).isEqualTo(1);
+    }
+
+    private static Set<ResponseBodyEmitter.DataWithMediaType> frame(String data) {
+        return Set.of(new ResponseBodyEmitter.DataWithMediaType(data, MediaType.TEXT_PLAIN));
+    }
+}
@@ -0,0 +1,104 @@
+package com.cqcloud.platform.service;
+
+import com.cqcloud.platform.cluster.ClusterPresenceService;
+import com.cqcloud.platform.cluster.InMemoryClusterBus;
+import com.cqcloud.platform.cluster.InMemoryMembershipStore;
+import com.cqcloud.platform.config.SseProperties;
+import com.cqcloud.platform.dto.GroupInfo;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+
+/**
+ * 群组成员管理：创建群组不覆盖已有群组
+ * @author weimeilayer@gmail.com ✨
+ * @date 💓💕 2024年4月12日 🐬🐇 💓💕
+ */
+class GroupMembersManagerTest {
+
+    private GroupMembersManager groupMembersManager;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        groupMembersManager = new GroupMembersManager(new InMemoryMembershipStore(), new InMemoryClusterBus(),
+                mock(ClusterPresenceService.class), new SseProperties(), mock(ObjectProvider.class),
+                mock(GroupSnapshotService.class));
+        groupMembersManager.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        groupMembersManager.destroy();
+    }
+
+    @Test
+    void createExistingGroupIsRejectedWithoutOverwriting() {
+        groupMembersManager.createGroup("g1", "alice", "first", 10, Map.of());
+
+        assertThatThrownBy(() -> groupMembersManager.createGroup("g1", "mallory", "second", null, Map.of()))
+                .isInstanceOf(GroupExistsException.class);
+
+        GroupInfo groupInfo = groupMembersManager.getGroupInfo("g1");
+        assertThat(groupInfo.getCreator()).isEqualTo("alice");
+        assertThat(groupInfo.getGroupName()).isEqualTo("first");
+        assertThat(groupInfo.getMaxMembers()).isEqualTo(10);
+    }
+
+    @Test
+    void concurrentCreatesHaveExactlyOneWinner() throws Exception {
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<String>> results = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            String creator = "u" + i;
+            results.add(executor.submit(() -> {
+                start.await();
+                try {
+                    groupMembersManager.createGroup("g1", creator, creator, null, Map.of());
+                    return creator;
+                } catch (GroupExistsException e) {
+                    return null;
+                }
+            }));
+        }
+        start.countDown();
+
+        List<String> winners = new ArrayList<>();
+        for (Future<String> result : results) {
+            String winner = result.get(5, TimeUnit.SECONDS);
+            if (winner != null) {
+                winners.add(winner);
+            }
+        }
+        executor.shutdown();
+
+        assertThat(winners).hasSize(1);
+        assertThat(groupMembersManager.getGroupInfo("g1").getCreator()).isEqualTo(winners.get(0));
+    }
+
+    @Test
+    void joinAutoCreatesMissingGroupOnce() {
+        groupMembersManager.joinGroup("c1", "alice", "g1");
+        groupMembersManager.joinGroup("c2", "bob", "g1");
+
+        assertThat(groupMembersManager.getGroupInfo("g1").getCreator()).isEqualTo("alice");
+        assertThat(groupMembersManager.isMemberInGroup("c1", "g1")).isTrue();
+        assertThat(groupMembersManager.isMemberInGroup("c2", "g1")).isTrue();
+    }
+}
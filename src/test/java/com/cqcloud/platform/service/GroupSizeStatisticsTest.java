@@ -0,0 +1,92 @@
+package com.cqcloud.platform.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 群组规模统计：直方图区间、前N个群组、增量转换的总数
+ * @author weimeilayer@gmail.com ✨
+ * @date 💓💕 2024年4月12日 🐬🐇 💓💕
+ */
+class GroupSizeStatisticsTest {
+
+    private final GroupSizeStatistics statistics = new GroupSizeStatistics();
+
+    @Test
+    void sizesFallIntoInclusiveUpperBoundBuckets() {
+        long[] sizes = {0, 1, 2, 10, 11, 100, 101, 1_000, 1_001, 10_000, 10_001, 100_000, 100_001};
+        for (int i = 0; i < sizes.length; i++) {
+            statistics.set("g" + i, sizes[i]);
+        }
+
+        assertThat(statistics.histogram()).containsExactly(
+                Map.entry("0", 1L),
+                Map.entry("1", 1L),
+                Map.entry("2-10", 2L),
+                Map.entry("11-100", 2L),
+                Map.entry("101-1000", 2L),
+                Map.entry("1001-10000", 2L),
+                Map.entry("10001-100000", 2L),
+                Map.entry(">100000", 1L));
+    }
+
+    @Test
+    void transitionsMoveGroupBetweenBucketsAndKeepTotals() {
+        statistics.add("g1", 0);
+        assertThat(statistics.getTotalGroups()).isEqualTo(1);
+        assertThat(statistics.histogram()).containsEntry("0", 1L);
+
+        statistics.add("g1", 1);
+        statistics.add("g1", 1);
+        statistics.add("g2", 5);
+        assertThat(statistics.getTotalGroups()).isEqualTo(2);
+        assertThat(statistics.getTotalMembers()).isEqualTo(7);
+        assertThat(statistics.histogram())
+                .containsEntry("0", 0L)
+                .containsEntry("1", 0L)
+                .containsEntry("2-10", 2L);
+
+        // 人数不会减到负数
+        statistics.add("g1", -5);
+        assertThat(statistics.getTotalMembers()).isEqualTo(5);
+        assertThat(statistics.histogram()).containsEntry("0", 1L).containsEntry("2-10", 1L);
+
+        // 以存储为准覆盖人数
+        statistics.set("g2", 50);
+        assertThat(statistics.getTotalGroups()).isEqualTo(2);
+        assertThat(statistics.getTotalMembers()).isEqualTo(50);
+        assertThat(statistics.histogram()).containsEntry("2-10", 0L).containsEntry("11-100", 1L);
+
+        statistics.remove("g2");
+        statistics.remove("missing");
+        assertThat(statistics.getTotalGroups()).isEqualTo(1);
+        assertThat(statistics.getTotalMembers()).isZero();
+        assertThat(statistics.histogram().values().stream().mapToLong(Long::longValue).sum()).isEqualTo(1);
+    }
+
+    @Test
+    void topGroupsKeepsLargestInDescendingOrder() {
+        for (int i = 1; i <= 20; i++) {
+            statistics.set("g" + i, (i * 7L) % 23);
+        }
+
+        List<Map<String, Object>> top = statistics.topGroups(3);
+
+        assertThat(top).extracting(group -> group.get("members")).containsExactly(22L, 21L, 20L);
+        assertThat(top).extracting(group -> group.get("groupId")).containsExactly("g13", "g3", "g16");
+    }
+
+    @Test
+    void topGroupsReturnsAllWhenFewerThanLimit() {
+        statistics.set("small", 1);
+        statistics.set("large", 9);
+
+        assertThat(statistics.topGroups(10))
+                .extracting(group -> group.get("groupId"))
+                .containsExactly("large", "small");
+    }
+}
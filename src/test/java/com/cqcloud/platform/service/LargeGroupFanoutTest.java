@@ -0,0 +1,75 @@
+package com.cqcloud.platform.service;
+
+import com.cqcloud.platform.config.SseProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 大群组分片扇出：分片队列有界
+ * @author weimeilayer@gmail.com ✨
+ * @date 💓💕 2024年4月12日 🐬🐇 💓💕
+ */
+class LargeGroupFanoutTest {
+
+    private LargeGroupFanout fanout;
+
+    @BeforeEach
+    void setUp() {
+        SseProperties sseProperties = new SseProperties();
+        sseProperties.getLargeGroup().setShards(1);
+        sseProperties.getLargeGroup().setQueueCapacity(2);
+        fanout = new LargeGroupFanout(sseProperties);
+        fanout.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        fanout.destroy();
+    }
+
+    @Test
+    void dropsShardTasksBeyondQueueCapacity() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        String[][] shards = {{"c1"}};
+
+        // 第一个任务占住写线程，随后两个排队，其余被拒绝
+        fanout.fanOut(shards, members -> {
+            started.countDown();
+            await(release);
+        });
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+        for (int i = 0; i < 4; i++) {
+            fanout.fanOut(shards, members -> { });
+        }
+
+        assertThat(fanout.getStatistics())
+                .containsEntry("shardTasks", 3L)
+                .containsEntry("queuedShardTasks", 2)
+                .containsEntry("rejected", 2L);
+        release.countDown();
+    }
+
+    @Test
+    void skipsEmptyShards() {
+        fanout.fanOut(new String[][]{{}}, members -> { });
+
+        assertThat(fanout.getStatistics())
+                .containsEntry("fanOuts", 1L)
+                .containsEntry("shardTasks", 0L);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
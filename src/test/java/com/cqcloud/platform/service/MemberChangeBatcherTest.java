@@ -0,0 +1,153 @@
+package com.cqcloud.platform.service;
+
+import com.cqcloud.platform.config.SseProperties;
+import com.cqcloud.platform.dto.GroupEvent;
+import com.cqcloud.platform.dto.GroupMemberChange;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+/**
+ * 群组成员变更合并：加入离开抵消、批次被取走时重试、达到上限提前发送
+ * @author weimeilayer@gmail.com ✨
+ * @date 💓💕 2024年4月12日 🐬🐇 💓💕
+ */
+class MemberChangeBatcherTest {
+
+    private GroupMessageService groupMessageService;
+    private SseProperties sseProperties;
+    private MemberChangeBatcher batcher;
+
+    @BeforeEach
+    void setUp() {
+        groupMessageService = mock(GroupMessageService.class);
+        sseProperties = new SseProperties();
+        // 窗口足够长，由测试显式触发发送
+        sseProperties.getMemberChange().setWindow(Duration.ofHours(1));
+        sseProperties.getMemberChange().setMaxBatch(3);
+        batcher = new MemberChangeBatcher(groupMessageService, mock(GroupMembersManager.class),
+                mock(LargeGroupFanout.class), sseProperties);
+        batcher.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        batcher.destroy();
+    }
+
+    @Test
+    void joinThenLeaveWithinWindowCancelsOut() {
+        batcher.record(event("c1", "join"));
+        batcher.record(event("c1", "leave"));
+        // 离开后又加入，成员关系未变
+        batcher.record(event("c2", "leave"));
+        batcher.record(event("c2", "join"));
+        batcher.record(event("c3", "join"));
+
+        flushAll();
+
+        GroupMemberChange change = sentChange();
+        assertThat(change.getJoined()).extracting(GroupEvent::getClientId).containsExactly("c3");
+        assertThat(change.getLeft()).isEmpty();
+        assertThat(batcher.getStatistics()).containsEntry("flushed", 1L).containsEntry("pendingGroups", 0);
+    }
+
+    @Test
+    void fullyCancelledBatchIsNotSent() {
+        batcher.record(event("c1", "join"));
+        batcher.record(event("c1", "leave"));
+
+        flushAll();
+
+        verify(groupMessageService, never()).sendMemberChangeEvent(eq("g1"), any());
+        assertThat(batcher.getStatistics()).containsEntry("recorded", 2L).containsEntry("flushed", 0L);
+    }
+
+    @Test
+    void drainedBatchIsRetriedWithNewBatch() {
+        // 记录线程取到批次后、加入变更前，发送线程恰好取走该批次
+        ReflectionTestUtils.setField(batcher, "pending", new ConcurrentHashMap<String, Object>() {
+            private boolean raced;
+
+            @Override
+            public Object computeIfAbsent(String key, Function<? super String, ?> mappingFunction) {
+                Object batch = super.computeIfAbsent(key, mappingFunction);
+                if (!raced) {
+                    raced = true;
+                    ReflectionTestUtils.invokeMethod(batcher, "flush", key);
+                }
+                return batch;
+            }
+        });
+
+        batcher.record(event("c1", "join"));
+
+        assertThat(batcher.getStatistics()).containsEntry("pendingGroups", 1);
+        flushAll();
+        assertThat(sentChange().getJoined()).extracting(GroupEvent::getClientId).containsExactly("c1");
+    }
+
+    @Test
+    void reachingMaxBatchFlushesBeforeWindowEnds() {
+        batcher.record(event("c1", "join"));
+        batcher.record(event("c2", "join"));
+        verify(groupMessageService, never()).sendMemberChangeEvent(eq("g1"), any());
+
+        batcher.record(event("c3", "leave"));
+
+        await().atMost(Duration.ofSeconds(5)).untilAsserted(() ->
+                verify(groupMessageService).sendMemberChangeEvent(eq("g1"), any(GroupMemberChange.class)));
+        GroupMemberChange change = sentChange();
+        assertThat(change.getJoined()).extracting(GroupEvent::getClientId).containsExactly("c1", "c2");
+        assertThat(change.getLeft()).extracting(GroupEvent::getClientId).containsExactly("c3");
+    }
+
+    @Test
+    void zeroWindowSendsEachChangeImmediately() {
+        batcher.destroy();
+        sseProperties.getMemberChange().setWindow(Duration.ZERO);
+        batcher = new MemberChangeBatcher(groupMessageService, mock(GroupMembersManager.class),
+                mock(LargeGroupFanout.class), sseProperties);
+        batcher.init();
+
+        GroupEvent join = event("c1", "join");
+        batcher.record(join);
+
+        verify(groupMessageService).sendMemberChangeEvent("g1", join);
+        assertThat(batcher.getStatistics()).containsEntry("recorded", 0L);
+    }
+
+    private void flushAll() {
+        ReflectionTestUtils.invokeMethod(batcher, "flushAll");
+    }
+
+    private GroupMemberChange sentChange() {
+        ArgumentCaptor<Object> captor = ArgumentCaptor.forClass(Object.class);
+        verify(groupMessageService).sendMemberChangeEvent(eq("g1"), captor.capture());
+        return (GroupMemberChange) captor.getValue();
+    }
+
+    private static GroupEvent event(String clientId, String action) {
+        return GroupEvent.builder()
+                .clientId(clientId)
+                .userId("u-" + clientId)
+                .groupId("g1")
+                .action(action)
+                .build();
+    }
+}
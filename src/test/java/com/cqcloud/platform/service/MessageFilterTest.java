@@ -0,0 +1,111 @@
+package com.cqcloud.platform.service;
+
+import com.cqcloud.platform.dto.NotificationMessage;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.StringJoiner;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+/**
+ * 过滤表达式解析与求值
+ * @author weimeilayer@gmail.com ✨
+ * @date 💓💕 2024年4月12日 🐬🐇 💓💕
+ */
+class MessageFilterTest {
+
+    private final NotificationMessage chat = NotificationMessage.builder()
+            .type("chat")
+            .sender("alice")
+            .priority("HIGH")
+            .extra(Map.of("region", "east"))
+            .build();
+
+    @Test
+    void comparesFieldsAndNestedMaps() {
+        assertThat(MessageFilter.compile("type == 'chat'").test(chat)).isTrue();
+        assertThat(MessageFilter.compile("type != chat").test(chat)).isFalse();
+        assertThat(MessageFilter.compile("extra.region == \"east\"").test(chat)).isTrue();
+        assertThat(MessageFilter.compile("extra.zone exists").test(chat)).isFalse();
+        assertThat(MessageFilter.compile("receiver == null").test(chat)).isTrue();
+    }
+
+    @Test
+    void supportsInAndNotIn() {
+        assertThat(MessageFilter.compile("type in ('chat', 'system')").test(chat)).isTrue();
+        assertThat(MessageFilter.compile("sender not in ('robot')").test(chat)).isTrue();
+        assertThat(MessageFilter.compile("receiver in ('bob')").test(chat)).isFalse();
+    }
+
+    @Test
+    void combinesWithPrecedence() {
+        // and 优先于 or
+        assertThat(MessageFilter.compile("type == 'x' or type == 'chat' and sender == 'alice'").test(chat)).isTrue();
+        assertThat(MessageFilter.compile("(type == 'x' or type == 'chat') and sender == 'bob'").test(chat)).isFalse();
+        assertThat(MessageFilter.compile("not (priority == 'LOW' || sender == 'robot')").test(chat)).isTrue();
+        assertThat(MessageFilter.compile("!type == 'chat' && sender == 'alice'").test(chat)).isFalse();
+    }
+
+    @Test
+    void longFlatChainsDoNotDeepenRecursion() {
+        StringJoiner or = new StringJoiner(" or ");
+        for (int i = 0; i < 60; i++) {
+            or.add("type == t" + i);
+        }
+        MessageFilter filter = MessageFilter.compile(or + " or type == chat");
+
+        assertThat(filter.test(chat)).isTrue();
+        assertThat(filter.test(NotificationMessage.builder().type("other").build())).isFalse();
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "type ==",
+            "type = 'chat'",
+            "type == 'chat",
+            "(type == 'chat'",
+            "type == 'chat')",
+            "type in 'chat'",
+            "type not == 'chat'",
+            "unknown == 'x'",
+            "type == 'chat' and",
+            "type == 'chat' extra",
+            "type ~ 'chat'",
+            "   "
+    })
+    void rejectsMalformedExpressions(String expression) {
+        assertThatThrownBy(() -> MessageFilter.compile(expression))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void rejectsOverDeepNesting() {
+        String tooDeep = "(".repeat(MessageFilter.MAX_DEPTH + 1) + "type == chat" + ")".repeat(MessageFilter.MAX_DEPTH + 1);
+        String tooManyNots = "not ".repeat(MessageFilter.MAX_DEPTH + 1) + "type == chat";
+
+        assertThat(MessageFilter.compile("(".repeat(MessageFilter.MAX_DEPTH) + "type == chat"
+                + ")".repeat(MessageFilter.MAX_DEPTH)).test(chat)).isTrue();
+        assertThatThrownBy(() -> MessageFilter.compile(tooDeep))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("嵌套");
+        assertThatThrownBy(() -> MessageFilter.compile(tooManyNots))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("嵌套");
+    }
+
+    @Test
+    void rejectsOverlongExpressionBeforeParsing() {
+        String deep = "(".repeat(100_000) + "type == chat" + ")".repeat(100_000);
+
+        assertTimeoutPreemptively(Duration.ofSeconds(1), () ->
+                assertThatThrownBy(() -> MessageFilter.compile(deep))
+                        .isInstanceOf(IllegalArgumentException.class)
+                        .hasMessageContaining(String.valueOf(MessageFilter.MAX_LENGTH)));
+    }
+}
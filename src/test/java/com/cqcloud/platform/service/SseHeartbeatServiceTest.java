@@ -0,0 +1,136 @@
+package com.cqcloud.platform.service;
+
+import com.cqcloud.platform.config.SseProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anySet;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 空闲连接心跳：只选空闲连接，每次检查按上限发送，超出部分推迟到下次
+ * @author weimeilayer@gmail.com ✨
+ * @date 💓💕 2024年4月12日 🐬🐇 💓💕
+ */
+class SseHeartbeatServiceTest {
+
+    private SseProperties sseProperties;
+    private WriteStallMonitor writeStallMonitor;
+    private SseOutboundWriter sseOutboundWriter;
+    private final Map<String, SseEmitter> connections = new LinkedHashMap<>();
+    private final Map<String, SseEmitter> otherConnections = new HashMap<>();
+    private SseHeartbeatService heartbeatService;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        sseProperties = new SseProperties();
+        writeStallMonitor = mock(WriteStallMonitor.class);
+        sseOutboundWriter = mock(SseOutboundWriter.class);
+        ObjectProvider<SseConnectionProvider> providers = mock(ObjectProvider.class);
+        when(providers.orderedStream()).thenAnswer(invocation -> Stream.of(
+                (SseConnectionProvider) () -> connections,
+                (SseConnectionProvider) () -> otherConnections));
+        // 未调用init，不启动定时线程，由测试逐次检查
+        heartbeatService = new SseHeartbeatService(sseProperties, writeStallMonitor, sseOutboundWriter, providers);
+    }
+
+    @Test
+    void onlyIdleConnectionsReceiveHeartbeat() {
+        SseEmitter idle = connect("idle");
+        SseEmitter recent = connect("recent");
+        SseEmitter evicted = connect("evicted");
+        SseEmitter queued = connect("queued");
+        when(writeStallMonitor.getLastWriteAt(recent)).thenReturn(System.currentTimeMillis());
+        when(writeStallMonitor.isEvicted(evicted)).thenReturn(true);
+        when(sseOutboundWriter.getQueuedCount(queued)).thenReturn(1);
+
+        tick();
+
+        verify(sseOutboundWriter).enqueue(eq(idle), anySet(), any(SseOutboundWriter.WriteCallback.class));
+        verify(sseOutboundWriter, never()).enqueue(eq(recent), anySet(), any(SseOutboundWriter.WriteCallback.class));
+        verify(sseOutboundWriter, never()).enqueue(eq(evicted), anySet(), any(SseOutboundWriter.WriteCallback.class));
+        verify(sseOutboundWriter, never()).enqueue(eq(queued), anySet(), any(SseOutboundWriter.WriteCallback.class));
+    }
+
+    @Test
+    void connectionInSeveralRegistriesGetsOneHeartbeat() {
+        SseEmitter emitter = connect("c1");
+        otherConnections.put("c1", emitter);
+
+        tick();
+
+        verify(sseOutboundWriter, times(1)).enqueue(eq(emitter), anySet(), any(SseOutboundWriter.WriteCallback.class));
+    }
+
+    @Test
+    void heartbeatsBeyondBudgetAreDeferred() {
+        sseProperties.getHeartbeat().setMaxPerTick(2);
+        for (int i = 0; i < 5; i++) {
+            connect("c" + i);
+        }
+
+        tick();
+
+        verify(sseOutboundWriter, times(2)).enqueue(any(SseEmitter.class), anySet(), any(SseOutboundWriter.WriteCallback.class));
+        assertThat(heartbeatService.getStatistics()).containsEntry("deferred", 3L).containsEntry("ticks", 1L);
+
+        // 下一次检查重新计算预算
+        tick();
+        verify(sseOutboundWriter, times(4)).enqueue(any(SseEmitter.class), anySet(), any(SseOutboundWriter.WriteCallback.class));
+        assertThat(heartbeatService.getStatistics()).containsEntry("deferred", 6L);
+    }
+
+    @Test
+    void writeResultsAreCounted() {
+        connect("c1");
+        connect("c2");
+
+        tick();
+
+        ArgumentCaptor<SseOutboundWriter.WriteCallback> callbacks =
+                ArgumentCaptor.forClass(SseOutboundWriter.WriteCallback.class);
+        verify(sseOutboundWriter, times(2)).enqueue(any(SseEmitter.class), anySet(), callbacks.capture());
+        callbacks.getAllValues().get(0).onResult(true);
+        callbacks.getAllValues().get(1).onResult(false);
+        assertThat(heartbeatService.getStatistics()).containsEntry("sent", 1L).containsEntry("failed", 1L);
+    }
+
+    @Test
+    void goneConnectionReleasesOutboundQueue() {
+        SseEmitter emitter = connect("c1");
+        tick();
+        verify(sseOutboundWriter, never()).release(emitter);
+
+        connections.remove("c1");
+        tick();
+
+        verify(sseOutboundWriter).release(emitter);
+    }
+
+    private SseEmitter connect(String clientId) {
+        SseEmitter emitter = new SseEmitter();
+        connections.put(clientId, emitter);
+        return emitter;
+    }
+
+    private void tick() {
+        ReflectionTestUtils.invokeMethod(heartbeatService, "tick");
+    }
+}
@@ -0,0 +1,171 @@
+package com.cqcloud.platform.service;
+
+import com.cqcloud.platform.config.SseProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+/**
+ * 出站写入：顺序、合并写出、队列上限和写入失败
+ * @author weimeilayer@gmail.com ✨
+ * @date 💓💕 2024年4月12日 🐬🐇 💓💕
+ */
+class SseOutboundWriterTest {
+
+    private SseProperties sseProperties;
+    private TenantService tenantService;
+    private SseOutboundWriter writer;
+    private final List<Boolean> results = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        sseProperties = new SseProperties();
+        sseProperties.getOutbound().setThreads(2);
+        sseProperties.getOutbound().setMaxQueuedPerConnection(3);
+        sseProperties.getStall().setEnabled(false);
+        tenantService = new TenantService(sseProperties, null);
+        WriteStallMonitor writeStallMonitor = new WriteStallMonitor(sseProperties, event -> { }, null);
+        writer = new SseOutboundWriter(sseProperties, writeStallMonitor, new DeliveryTracer(sseProperties), tenantService);
+        writer.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        writer.destroy();
+        tenantService.destroy();
+    }
+
+    @Test
+    void backlogIsWrittenInOrderAsOneBatch() throws Exception {
+        RecordingEmitter emitter = new RecordingEmitter();
+        emitter.blockNextWrite();
+
+        writer.enqueue(emitter, frame("e0"), results::add);
+        assertThat(emitter.writing.await(5, TimeUnit.SECONDS)).isTrue();
+        for (int i = 1; i <= 3; i++) {
+            writer.enqueue(emitter, frame("e" + i), results::add);
+        }
+        emitter.release.countDown();
+
+        await().atMost(5, TimeUnit.SECONDS).until(() -> results.size() == 4);
+        // 写线程阻塞期间积压的事件合并为一次写出
+        assertThat(emitter.writes).containsExactly(List.of("e0"), List.of("e1", "e2", "e3"));
+        assertThat(results).containsOnly(true);
+        assertThat(writer.getStatistics()).containsEntry("written", 4L).containsEntry("queued", 0);
+    }
+
+    @Test
+    void overflowDropsEventAndClosesConnection() throws Exception {
+        RecordingEmitter emitter = new RecordingEmitter();
+        emitter.blockNextWrite();
+
+        writer.enqueue(emitter, frame("e0"), results::add);
+        assertThat(emitter.writing.await(5, TimeUnit.SECONDS)).isTrue();
+        for (int i = 1; i <= 3; i++) {
+            assertThat(writer.enqueue(emitter, frame("e" + i), results::add)).isTrue();
+        }
+        assertThat(writer.enqueue(emitter, frame("e4"), results::add)).isFalse();
+
+        assertThat(results).containsExactly(false);
+        assertThat(writer.getQueuedCount(emitter)).isEqualTo(3);
+        assertThat(writer.getStatistics()).containsEntry("dropped", 1L);
+        emitter.release.countDown();
+
+        // 写线程写完进行中的事件后关闭连接，积压的事件按失败回调，不会留下打开的连接
+        await().atMost(5, TimeUnit.SECONDS).until(() -> emitter.closedWith != null);
+        await().atMost(5, TimeUnit.SECONDS).until(() -> results.size() == 5);
+        assertThat(emitter.writes).containsExactly(List.of("e0"));
+        assertThat(results).containsExactly(false, true, false, false, false);
+        assertThat(writer.getStatistics()).containsEntry("channels", 0).containsEntry("failed", 3L);
+    }
+
+    @Test
+    void failedWriteFailsBatchAndPendingEvents() throws Exception {
+        RecordingEmitter emitter = new RecordingEmitter();
+        emitter.blockNextWrite();
+        emitter.failWrites = true;
+
+        writer.enqueue(emitter, frame("e0"), results::add);
+        assertThat(emitter.writing.await(5, TimeUnit.SECONDS)).isTrue();
+        writer.enqueue(emitter, frame("e1"), results::add);
+        emitter.release.countDown();
+
+        await().atMost(5, TimeUnit.SECONDS).until(() -> results.size() == 2);
+        assertThat(results).containsOnly(false);
+        assertThat(writer.getStatistics()).containsEntry("failed", 2L).containsEntry("channels", 0);
+    }
+
+    @Test
+    void releaseFailsQueuedEvents() throws Exception {
+        RecordingEmitter emitter = new RecordingEmitter();
+        emitter.blockNextWrite();
+
+        writer.enqueue(emitter, frame("e0"), results::add);
+        assertThat(emitter.writing.await(5, TimeUnit.SECONDS)).isTrue();
+        writer.enqueue(emitter, frame("e1"), results::add);
+        writer.release(emitter);
+
+        assertThat(results).containsExactly(false);
+        assertThat(writer.getQueuedCount(emitter)).isZero();
+        emitter.release.countDown();
+    }
+
+    private static Set<ResponseBodyEmitter.DataWithMediaType> frame(String data) {
+        return Set.of(new ResponseBodyEmitter.DataWithMediaType(data, MediaType.TEXT_PLAIN));
+    }
+
+    /**
+     * 记录每次写出的帧，可让下一次写出阻塞或失败
+     */
+    private static class RecordingEmitter extends SseEmitter {
+        private final List<List<Object>> writes = new CopyOnWriteArrayList<>();
+        private final CountDownLatch writing = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+        private volatile boolean block;
+        private volatile boolean failWrites;
+        private volatile Throwable closedWith;
+
+        void blockNextWrite() {
+            block = true;
+        }
+
+        @Override
+        public void send(Set<ResponseBodyEmitter.DataWithMediaType> items) throws IOException {
+            if (block) {
+                block = false;
+                writing.countDown();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            if (failWrites) {
+                throw new IOException("连接已断开");
+            }
+            List<Object> data = new ArrayList<>();
+            items.forEach(item -> data.add(item.getData()));
+            writes.add(data);
+        }
+
+        @Override
+        public void completeWithError(Throwable ex) {
+            closedWith = ex;
+            super.completeWithError(ex);
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.cqcloud.platform.service;
+
+import com.cqcloud.platform.config.SseProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * 发布限流：检查顺序、令牌退还和匿名发布者
+ * @author weimeilayer@gmail.com ✨
+ * @date 💓💕 2024年4月12日 🐬🐇 💓💕
+ */
+class SseRateLimiterTest {
+
+    private SseRateLimiter rateLimiter;
+
+    @BeforeEach
+    void setUp() {
+        SseProperties sseProperties = new SseProperties();
+        SseProperties.RateLimit rateLimit = sseProperties.getRateLimit();
+        rateLimit.setEnabled(true);
+        rateLimit.setPublishPerUser(new SseProperties.Limit(0.001, 2));
+        rateLimit.setPublishPerGroup(new SseProperties.Limit(0.001, 3));
+        rateLimit.setPublishGlobal(new SseProperties.Limit(0.001, 4));
+        rateLimiter = new SseRateLimiter(sseProperties);
+    }
+
+    @AfterEach
+    void tearDown() {
+        rateLimiter.destroy();
+    }
+
+    @Test
+    void userLimitRejectionDoesNotConsumeGlobalTokens() {
+        assertThat(rateLimiter.tryPublish("noisy", null)).isZero();
+        assertThat(rateLimiter.tryPublish("noisy", null)).isZero();
+        for (int i = 0; i < 10; i++) {
+            assertThat(rateLimiter.tryPublish("noisy", null)).isPositive();
+        }
+
+        // 全局容量4，noisy只用掉2个
+        assertThat(rateLimiter.tryPublish("u1", null)).isZero();
+        assertThat(rateLimiter.tryPublish("u2", null)).isZero();
+        assertThat(rateLimiter.tryPublish("u3", null)).isPositive();
+        assertThat(rateLimiter.getStatistics()).containsEntry("publishRejected", 11L);
+    }
+
+    @Test
+    void groupRejectionRefundsUserToken() {
+        assertThat(rateLimiter.tryPublish("u1", "g1")).isZero();
+        assertThat(rateLimiter.tryPublish("u2", "g1")).isZero();
+        assertThat(rateLimiter.tryPublish("u3", "g1")).isZero();
+        assertThat(rateLimiter.tryPublish("u1", "g1")).isPositive();
+
+        // 被群组拒绝的那次没有占用u1的额度
+        assertThat(rateLimiter.tryPublish("u1", null)).isZero();
+    }
+
+    @Test
+    void anonymousPublishersAreLimitedByAddress() {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.setRemoteAddr("10.0.0.8");
+        String key = SseRateLimiter.publisherKey(null, request);
+
+        assertThat(key).isEqualTo("addr:10.0.0.8");
+        assertThat(SseRateLimiter.publisherKey("u1", request)).isEqualTo("u1");
+        assertThat(rateLimiter.tryPublish(key, null)).isZero();
+        assertThat(rateLimiter.tryPublish(key, null)).isZero();
+        assertThat(rateLimiter.tryPublish(key, null)).isPositive();
+        assertThatThrownBy(() -> rateLimiter.tryPublish(null, null)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
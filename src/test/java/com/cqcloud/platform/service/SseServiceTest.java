@@ -0,0 +1,94 @@
+package com.cqcloud.platform.service;
+
+import com.cqcloud.platform.codec.JacksonPayloadCodec;
+import com.cqcloud.platform.config.SseProperties;
+import com.cqcloud.platform.dto.ClientInfo;
+import com.cqcloud.platform.dto.ConnectionQuery;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 连接服务：心跳超时移除连接时释放租户名额
+ * @author weimeilayer@gmail.com ✨
+ * @date 💓💕 2024年4月12日 🐬🐇 💓💕
+ */
+class SseServiceTest {
+
+    private TenantService tenantService;
+    private SseService sseService;
+
+    @BeforeEach
+    void setUp() {
+        SseProperties sseProperties = new SseProperties();
+        sseProperties.getHeartbeat().setEnabled(false);
+        sseProperties.getTenant().setEnabled(true);
+        sseProperties.getTenant().getQuotas().put("acme", new SseProperties.Quota(1, 10, 1, null));
+        tenantService = new TenantService(sseProperties, null);
+        WriteStallMonitor writeStallMonitor = new WriteStallMonitor(sseProperties, event -> { }, null);
+        ObjectMapper objectMapper = new ObjectMapper();
+        sseService = new SseService(new JacksonPayloadCodec(objectMapper, List.of(), 8192),
+                writeStallMonitor, tenantService);
+    }
+
+    @AfterEach
+    void tearDown() {
+        sseService.destroy();
+        tenantService.destroy();
+    }
+
+    @Test
+    void heartbeatTimeoutReleasesTenantConnection() {
+        sseService.createConnection("c1", "u1", null, null, "acme");
+        assertThat(tenantConnections("acme")).isEqualTo(1);
+
+        // 超过两分钟没有任何写出
+        ClientInfo info = sseService.getActiveClients(new ConnectionQuery()).next();
+        info.setLastHeartbeat(LocalDateTime.now().minusMinutes(5));
+        ReflectionTestUtils.invokeMethod(sseService, "checkHeartbeat");
+
+        assertThat(sseService.getActiveConnectionCount()).isZero();
+        assertThat(tenantService.tenantOf("c1")).isNull();
+        assertThat(tenantConnections("acme")).isZero();
+
+        // 名额已释放，新连接可以建立
+        sseService.createConnection("c2", "u2", null, null, "acme");
+        assertThat(sseService.getConnections()).containsOnlyKeys("c2");
+        assertThat(tenantConnections("acme")).isEqualTo(1);
+    }
+
+    @Test
+    void activeConnectionsSurviveHeartbeatCheck() {
+        sseService.createConnection("c1", "u1", null, null, "acme");
+
+        ReflectionTestUtils.invokeMethod(sseService, "checkHeartbeat");
+
+        assertThat(sseService.getConnections()).containsOnlyKeys("c1");
+        assertThat(tenantConnections("acme")).isEqualTo(1);
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    void deprecatedActiveClientsListsEveryConnection() {
+        sseService.createConnection("c1", "u1", null, null, null);
+        sseService.createConnection("c2", "u2", null, null, null);
+
+        assertThat(sseService.getActiveClients())
+                .extracting(ClientInfo::getClientId)
+                .containsExactly("c1", "c2");
+    }
+
+    @SuppressWarnings("unchecked")
+    private int tenantConnections(String tenantId) {
+        Map<String, Object> tenants = (Map<String, Object>) tenantService.getStatistics().get("tenants");
+        return (int) ((Map<String, Object>) tenants.get(tenantId)).get("connections");
+    }
+}
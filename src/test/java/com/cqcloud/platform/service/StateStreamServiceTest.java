@@ -0,0 +1,101 @@
+package com.cqcloud.platform.service;
+
+import com.cqcloud.platform.codec.JacksonPayloadCodec;
+import com.cqcloud.platform.config.SseProperties;
+import com.cqcloud.platform.dto.SseEvent;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 增量状态流：快照与补丁、状态流数量上限
+ * @author weimeilayer@gmail.com ✨
+ * @date 💓💕 2024年4月12日 🐬🐇 💓💕
+ */
+class StateStreamServiceTest {
+
+    private final List<SseEvent> delivered = new CopyOnWriteArrayList<>();
+    private SseProperties sseProperties;
+    private StateStreamService stateStreamService;
+
+    @BeforeEach
+    void setUp() {
+        sseProperties = new SseProperties();
+        sseProperties.getDelta().setMaxStreams(2);
+        ObjectMapper objectMapper = new ObjectMapper();
+
+        GroupMessageService groupMessageService = mock(GroupMessageService.class);
+        when(groupMessageService.getClientEmitter(anyString())).thenReturn(new SseEmitter());
+        when(groupMessageService.sendToClient(anyString(), any(SseEvent.class))).thenAnswer(invocation -> {
+            delivered.add(invocation.getArgument(1));
+            return true;
+        });
+
+        stateStreamService = new StateStreamService(mock(GroupMembersManager.class), groupMessageService,
+                objectMapper, new JacksonPayloadCodec(objectMapper, List.of(), 8192), sseProperties);
+    }
+
+    @AfterEach
+    void tearDown() {
+        stateStreamService.destroy();
+    }
+
+    @Test
+    void sendsSnapshotFirstThenPatches() {
+        // 补丁不比快照小时会直接发快照，状态需足够大
+        String title = "x".repeat(256);
+        stateStreamService.publishToClient("c1", "board", Map.of("title", title, "count", 1));
+        stateStreamService.publishToClient("c1", "board", Map.of("title", title, "count", 2));
+        // 状态未变化不发送
+        stateStreamService.publishToClient("c1", "board", Map.of("title", title, "count", 2));
+
+        assertThat(delivered).extracting(SseEvent::getEvent).containsExactly("state_snapshot", "state_patch");
+        assertThat((String) delivered.get(1).getData()).contains("\"replace\"").contains("/count");
+    }
+
+    @Test
+    void rejectsStreamsBeyondLimitWithoutLeavingEmptyScope() {
+        stateStreamService.publishToClient("c1", "a", Map.of("v", 1));
+        stateStreamService.publishToClient("c1", "b", Map.of("v", 1));
+
+        assertThatThrownBy(() -> stateStreamService.publishToClient("c2", "a", Map.of("v", 1)))
+                .isInstanceOf(StateStreamLimitException.class);
+        assertThat(streams()).containsOnlyKeys("client:c1");
+
+        // 已有的状态流仍可更新，删除后释放名额
+        stateStreamService.publishToClient("c1", "a", Map.of("v", 2));
+        stateStreamService.removeClientStream("c1", "b");
+        stateStreamService.publishToClient("c2", "a", Map.of("v", 1));
+        assertThat(streams()).containsOnlyKeys("client:c1", "client:c2");
+    }
+
+    @Test
+    void removingLastStreamDropsScope() {
+        stateStreamService.publishToClient("c1", "a", Map.of("v", 1));
+        stateStreamService.removeClientStream("c1", "a");
+        stateStreamService.removeClientStream("c1", "a");
+
+        assertThat(streams()).isEmpty();
+        stateStreamService.publishToClient("c2", "a", Map.of("v", 1));
+        stateStreamService.publishToClient("c2", "b", Map.of("v", 1));
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, ?> streams() {
+        return (Map<String, ?>) ReflectionTestUtils.getField(stateStreamService, "streams");
+    }
+}
@@ -0,0 +1,96 @@
+package com.cqcloud.platform.service;
+
+import com.cqcloud.platform.config.SseProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * 租户解析与连接配额
+ * @author weimeilayer@gmail.com ✨
+ * @date 💓💕 2024年4月12日 🐬🐇 💓💕
+ */
+class TenantServiceTest {
+
+    private SseProperties sseProperties;
+    private TenantService tenantService;
+
+    @BeforeEach
+    void setUp() {
+        sseProperties = new SseProperties();
+        SseProperties.Tenant tenant = sseProperties.getTenant();
+        tenant.setEnabled(true);
+        tenant.setMaxTenants(3);
+        tenant.getQuotas().put("acme", new SseProperties.Quota(1, 10, 1, null));
+        tenantService = new TenantService(sseProperties, null);
+    }
+
+    @AfterEach
+    void tearDown() {
+        tenantService.destroy();
+    }
+
+    @Test
+    void resolvesDefaultAndConfiguredHeaderTenants() {
+        assertThat(tenantService.resolve(new MockHttpServletRequest())).isEqualTo("default");
+        assertThat(tenantService.resolve(withHeader("acme"))).isEqualTo("acme");
+    }
+
+    @Test
+    void rejectsUnknownHeaderTenantsWithoutConsumingCapacity() {
+        for (int i = 0; i < 10; i++) {
+            String tenantId = "random-" + i;
+            assertThatThrownBy(() -> tenantService.resolve(withHeader(tenantId)))
+                    .isInstanceOfSatisfying(ResponseStatusException.class,
+                            e -> assertThat(e.getStatusCode()).isEqualTo(HttpStatus.FORBIDDEN));
+        }
+        assertThat(tenantService.resolve(withHeader("acme"))).isEqualTo("acme");
+        assertThat(tenants()).containsOnlyKeys("acme");
+    }
+
+    @Test
+    void trustsRequestAttribute() {
+        MockHttpServletRequest request = withHeader("ignored");
+        request.setAttribute(sseProperties.getTenant().getAttribute(), "tenant-from-auth");
+
+        assertThat(tenantService.resolve(request)).isEqualTo("tenant-from-auth");
+    }
+
+    @Test
+    void rejectsMalformedTenantId() {
+        assertThatThrownBy(() -> tenantService.resolve(withHeader("bad tenant!")))
+                .isInstanceOfSatisfying(ResponseStatusException.class,
+                        e -> assertThat(e.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST));
+    }
+
+    @Test
+    void enforcesConnectionQuotaAndReusesSlotOnReconnect() {
+        assertThat(tenantService.register("acme", "c1", new SseEmitter())).isTrue();
+        assertThat(tenantService.register("acme", "c1", new SseEmitter())).isTrue();
+        assertThat(tenantService.register("acme", "c2", new SseEmitter())).isFalse();
+
+        tenantService.unregister("c1", null);
+        assertThat(tenantService.register("acme", "c2", new SseEmitter())).isTrue();
+        assertThat(tenantService.tenantOf("c2")).isEqualTo("acme");
+    }
+
+    private static MockHttpServletRequest withHeader(String tenantId) {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader("X-Tenant-Id", tenantId);
+        return request;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> tenants() {
+        return (Map<String, Object>) tenantService.getStatistics().get("tenants");
+    }
+}
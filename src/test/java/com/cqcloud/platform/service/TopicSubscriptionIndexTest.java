@@ -0,0 +1,103 @@
+package com.cqcloud.platform.service;
+
+import com.cqcloud.platform.config.SseProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+/**
+ * 主题订阅索引匹配
+ * @author weimeilayer@gmail.com ✨
+ * @date 💓💕 2024年4月12日 🐬🐇 💓💕
+ */
+class TopicSubscriptionIndexTest {
+
+    private TopicSubscriptionIndex index;
+
+    @BeforeEach
+    void setUp() {
+        index = new TopicSubscriptionIndex(new SseProperties());
+    }
+
+    @Test
+    void exactTopicMatchesOnlyItself() {
+        index.subscribe("c1", "orders.created");
+
+        assertThat(index.match("orders.created")).containsExactly("c1");
+        assertThat(index.match("orders.updated")).isEmpty();
+        assertThat(index.match("orders.created.eu")).isEmpty();
+    }
+
+    @Test
+    void singleWildcardMatchesExactlyOneSegment() {
+        index.subscribe("c1", "orders.*");
+        index.subscribe("c2", "*.created");
+
+        assertThat(index.match("orders.created")).containsExactlyInAnyOrder("c1", "c2");
+        assertThat(index.match("orders.updated")).containsExactly("c1");
+        assertThat(index.match("orders")).isEmpty();
+        assertThat(index.match("orders.created.eu")).isEmpty();
+    }
+
+    @Test
+    void multiWildcardMatchesSeveralSegments() {
+        index.subscribe("c1", "tenant.42.#");
+
+        assertThat(index.match("tenant.42.alerts")).containsExactly("c1");
+        assertThat(index.match("tenant.42.alerts.cpu.high")).containsExactly("c1");
+        assertThat(index.match("tenant.43.alerts")).isEmpty();
+    }
+
+    @Test
+    void multiWildcardMatchesZeroSegments() {
+        index.subscribe("c1", "tenant.42.#");
+        index.subscribe("c2", "#");
+        index.subscribe("c3", "a.#.b");
+
+        assertThat(index.match("tenant.42")).containsExactlyInAnyOrder("c1", "c2");
+        assertThat(index.match("a.b")).containsExactlyInAnyOrder("c2", "c3");
+        assertThat(index.match("a.x.y.b")).containsExactlyInAnyOrder("c2", "c3");
+        assertThat(index.match("a.x.y")).containsExactly("c2");
+    }
+
+    @Test
+    void cachedResultIsInvalidatedBySubscriptionChanges() {
+        index.subscribe("c1", "orders.*");
+        assertThat(index.match("orders.created")).containsExactly("c1");
+
+        index.subscribe("c2", "orders.#");
+        assertThat(index.match("orders.created")).containsExactlyInAnyOrder("c1", "c2");
+
+        index.unsubscribe("c1", "orders.*");
+        assertThat(index.match("orders.created")).containsExactly("c2");
+
+        index.unsubscribeAll("c2");
+        assertThat(index.match("orders.created")).isEmpty();
+        assertThat(index.getClientSubscriptions("c2")).isEmpty();
+    }
+
+    @Test
+    void manyMultiWildcardsMatchInPolynomialTime() {
+        index.subscribe("c1", "#.#.#.#.#.#.#.#");
+        index.subscribe("c2", "#.#.#.#.#.#.#.#.never");
+        String topic = String.join(".", Collections.nCopies(TopicSubscriptionIndex.MAX_SEGMENTS, "x"));
+
+        assertTimeoutPreemptively(Duration.ofSeconds(2), () ->
+                assertThat(index.match(topic)).containsExactly("c1"));
+    }
+
+    @Test
+    void rejectsInvalidTopics() {
+        String tooDeep = String.join(".", Collections.nCopies(TopicSubscriptionIndex.MAX_SEGMENTS + 1, "x"));
+
+        assertThatThrownBy(() -> index.match("orders.*")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> index.subscribe("c1", "orders..created")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> index.match(tooDeep)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,109 @@
+package com.cqcloud.platform.service;
+
+import com.cqcloud.platform.config.SseProperties;
+import com.cqcloud.platform.event.ConnectionStalledEvent;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.awaitility.Awaitility.await;
+
+/**
+ * 写入阻塞检测：驱逐、中断和中断标记清理
+ * @author weimeilayer@gmail.com ✨
+ * @date 💓💕 2024年4月12日 🐬🐇 💓💕
+ */
+class WriteStallMonitorTest {
+
+    private final List<Object> events = new CopyOnWriteArrayList<>();
+    private final ExecutorService pool = Executors.newSingleThreadExecutor();
+    private WriteStallMonitor monitor;
+
+    @BeforeEach
+    void setUp() {
+        SseProperties sseProperties = new SseProperties();
+        sseProperties.getStall().setThreshold(Duration.ofMillis(200));
+        sseProperties.getStall().setCheckInterval(Duration.ofMillis(100));
+        monitor = new WriteStallMonitor(sseProperties, events::add, null);
+        monitor.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        monitor.destroy();
+        pool.shutdownNow();
+    }
+
+    @Test
+    void stalledWriteIsInterruptedAndConnectionEvicted() throws Exception {
+        SseEmitter emitter = new SseEmitter();
+
+        Future<Throwable> blocked = pool.submit(() -> {
+            try {
+                monitor.write("c1", emitter, WriteStallMonitorTest::blockingWrite);
+                return null;
+            } catch (IOException e) {
+                return e;
+            }
+        });
+
+        assertThat(blocked.get(5, TimeUnit.SECONDS))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("驱逐");
+        assertThat(monitor.isEvicted(emitter)).isTrue();
+        // 先中断写线程再发布事件，写入返回时事件可能尚未发布
+        await().atMost(Duration.ofSeconds(5)).until(() -> !events.isEmpty());
+        assertThat(events).singleElement().isInstanceOf(ConnectionStalledEvent.class);
+        assertThatThrownBy(() -> monitor.write("c1", emitter, () -> { }))
+                .isInstanceOf(IOException.class);
+        assertThat(monitor.getStatistics()).containsEntry("stalled", 1L).containsEntry("rejected", 1L);
+    }
+
+    @Test
+    void pooledThreadIsNotLeftInterrupted() throws Exception {
+        SseEmitter emitter = new SseEmitter();
+        pool.submit(() -> {
+            try {
+                monitor.write("c1", emitter, WriteStallMonitorTest::blockingWrite);
+            } catch (IOException e) {
+                // 预期被驱逐
+            }
+        }).get(5, TimeUnit.SECONDS);
+
+        // 同一线程执行的下一个任务不应看到中断标记
+        assertThat(pool.submit(() -> Thread.currentThread().isInterrupted()).get(5, TimeUnit.SECONDS)).isFalse();
+    }
+
+    @Test
+    void finishedWritesAreNeverInterrupted() throws Exception {
+        SseEmitter emitter = new SseEmitter();
+        monitor.write("c1", emitter, () -> { });
+
+        Thread.sleep(400);
+
+        assertThat(Thread.currentThread().isInterrupted()).isFalse();
+        assertThat(monitor.isEvicted(emitter)).isFalse();
+        assertThat(monitor.getStatistics()).containsEntry("inFlight", 0).containsEntry("writes", 1L);
+    }
+
+    private static void blockingWrite() throws IOException {
+        try {
+            Thread.sleep(10_000);
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException("写入被中断");
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.cqcloud.platform.util;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * JSON差异计算：补丁内容和应用结果
+ * @author weimeilayer@gmail.com ✨
+ * @date 💓💕 2024年4月12日 🐬🐇 💓💕
+ */
+class JsonDiffTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void identicalDocumentsProduceEmptyPatch() throws Exception {
+        JsonNode document = json("{'a':1,'b':[1,2,{'c':null}]}");
+
+        assertThat(JsonDiff.diff(document, document.deepCopy())).isEmpty();
+    }
+
+    @Test
+    void objectChangesUseAddRemoveReplace() throws Exception {
+        ArrayNode patch = JsonDiff.diff(json("{'a':1,'b':2,'n':{'x':1}}"), json("{'a':1,'c':3,'n':{'x':2}}"));
+
+        assertThat(patch).containsExactlyInAnyOrder(
+                json("{'op':'remove','path':'/b'}"),
+                json("{'op':'add','path':'/c','value':3}"),
+                json("{'op':'replace','path':'/n/x','value':2}"));
+    }
+
+    @Test
+    void arrayRemovalsGoFromTheTail() throws Exception {
+        ArrayNode patch = JsonDiff.diff(json("[1,2,3,4]"), json("[1,9]"));
+
+        assertThat(patch).containsExactly(
+                json("{'op':'replace','path':'/1','value':9}"),
+                json("{'op':'remove','path':'/3'}"),
+                json("{'op':'remove','path':'/2'}"));
+    }
+
+    @Test
+    void escapesPointerCharacters() throws Exception {
+        ArrayNode patch = JsonDiff.diff(json("{}"), json("{'a/b~c':1}"));
+
+        assertThat(patch.get(0).get("path").asText()).isEqualTo("/a~1b~0c");
+    }
+
+    @ParameterizedTest
+    @CsvSource(delimiter = '|', value = {
+            "{'a':1}|{'a':'1'}",
+            "{'a':{'b':[1,2]}}|{'a':{'b':[2,1,0]}}",
+            "{'list':[{'id':1},{'id':2}]}|{'list':[{'id':1,'v':true}]}",
+            "[1,2,3]|{'a':1}",
+            "{'a':null}|{'a':{'b':null},'c':[]}",
+            "{'x/y':1,'m~n':2}|{'x/y':2}"
+    })
+    void patchTransformsSourceIntoTarget(String source, String target) throws Exception {
+        JsonNode from = json(source);
+        JsonNode to = json(target);
+
+        assertThat(apply(from.deepCopy(), JsonDiff.diff(from, to))).isEqualTo(to);
+    }
+
+    private JsonNode json(String text) throws Exception {
+        return objectMapper.readTree(text.replace('\'', '"'));
+    }
+
+    /**
+     * 按顺序应用补丁，只支持 JsonDiff 生成的 add/remove/replace
+     */
+    private static JsonNode apply(JsonNode document, ArrayNode patch) {
+        for (JsonNode operation : patch) {
+            String path = operation.get("path").asText();
+            String op = operation.get("op").asText();
+            if (path.isEmpty()) {
+                document = operation.get("value");
+                continue;
+            }
+            int split = path.lastIndexOf('/');
+            JsonNode parent = document.at(path.substring(0, split));
+            String name = path.substring(split + 1).replace("~1", "/").replace("~0", "~");
+            if (parent instanceof ObjectNode object) {
+                if ("remove".equals(op)) {
+                    object.remove(name);
+                } else {
+                    object.set(name, operation.get("value"));
+                }
+            } else {
+                ArrayNode array = (ArrayNode) parent;
+                int index = Integer.parseInt(name);
+                switch (op) {
+                    case "remove" -> array.remove(index);
+                    case "add" -> array.insert(index, operation.get("value"));
+                    default -> array.set(index, operation.get("value"));
+                }
+            }
+        }
+        return document;
+    }
+}
@@ -0,0 +1,98 @@
+package com.cqcloud.platform.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 开放寻址集合：去重、冲突、扩容和复用
+ * @author weimeilayer@gmail.com ✨
+ * @date 💓💕 2024年4月12日 🐬🐇 💓💕
+ */
+class OpenAddressingSetTest {
+
+    @Test
+    void addsAndDeduplicates() {
+        OpenAddressingSet set = new OpenAddressingSet();
+
+        assertThat(set.add("a")).isTrue();
+        assertThat(set.add("b")).isTrue();
+        assertThat(set.add("a")).isFalse();
+
+        assertThat(set.size()).isEqualTo(2);
+        assertThat(set.contains("a")).isTrue();
+        assertThat(set.contains("c")).isFalse();
+    }
+
+    @Test
+    void handlesHashCollisions() {
+        // "Aa" 与 "BB" 的 hashCode 相同
+        OpenAddressingSet set = new OpenAddressingSet();
+        set.add("Aa");
+        set.add("BB");
+        set.add("AaBB");
+        set.add("BBAa");
+
+        assertThat(set.size()).isEqualTo(4);
+        assertThat(set.contains("BB")).isTrue();
+        assertThat(set.contains("BBBB")).isFalse();
+    }
+
+    @Test
+    void growsAndKeepsInsertionOrder() {
+        OpenAddressingSet set = new OpenAddressingSet(4);
+        int initialCapacity = set.capacity();
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            expected.add("client-" + i);
+            set.add("client-" + i);
+        }
+
+        List<String> visited = new ArrayList<>();
+        set.forEach(visited::add);
+
+        assertThat(set.capacity()).isGreaterThan(initialCapacity);
+        // 装载因子不超过0.5
+        assertThat(set.size()).isLessThanOrEqualTo(set.capacity() / 2);
+        assertThat(visited).containsExactlyElementsOf(expected);
+        expected.forEach(value -> assertThat(set.contains(value)).isTrue());
+    }
+
+    @Test
+    void clearKeepsCapacityForReuse() {
+        OpenAddressingSet set = new OpenAddressingSet();
+        for (int i = 0; i < 100; i++) {
+            set.add("c" + i);
+        }
+        int capacity = set.capacity();
+
+        set.clear();
+
+        assertThat(set.isEmpty()).isTrue();
+        assertThat(set.capacity()).isEqualTo(capacity);
+        assertThat(set.contains("c1")).isFalse();
+        assertThat(set.add("c1")).isTrue();
+        assertThat(set.size()).isEqualTo(1);
+    }
+
+    @Test
+    void matchesHashSetOnRandomInput() {
+        Random random = new Random(42);
+        OpenAddressingSet set = new OpenAddressingSet();
+        for (int round = 0; round < 5; round++) {
+            Set<String> reference = new HashSet<>();
+            for (int i = 0; i < 2000; i++) {
+                String value = Integer.toString(random.nextInt(3000), 36);
+                assertThat(set.add(value)).isEqualTo(reference.add(value));
+            }
+            assertThat(set.size()).isEqualTo(reference.size());
+            set.clear();
+        }
+    }
+}
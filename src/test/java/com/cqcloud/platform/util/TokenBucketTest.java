@@ -0,0 +1,77 @@
+package com.cqcloud.platform.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * GCRA令牌桶：突发容量、补充速率和退还
+ * @author weimeilayer@gmail.com ✨
+ * @date 💓💕 2024年4月12日 🐬🐇 💓💕
+ */
+class TokenBucketTest {
+
+    @Test
+    void allowsBurstThenRejectsWithWait() {
+        TokenBucket bucket = new TokenBucket(1, 5);
+
+        for (int i = 0; i < 5; i++) {
+            assertThat(bucket.tryAcquire()).isZero();
+        }
+        long wait = bucket.tryAcquire();
+
+        // 每秒补充一个令牌，下一个令牌最多等待一个间隔
+        assertThat(wait).isPositive().isLessThanOrEqualTo(TimeUnit.SECONDS.toNanos(1));
+        assertThat(bucket.isIdle()).isFalse();
+    }
+
+    @Test
+    void refillsAtConfiguredRate() throws InterruptedException {
+        TokenBucket bucket = new TokenBucket(20, 1);
+        assertThat(bucket.tryAcquire()).isZero();
+        assertThat(bucket.tryAcquire()).isPositive();
+
+        // 20个/秒，间隔50毫秒
+        Thread.sleep(60);
+
+        assertThat(bucket.tryAcquire()).isZero();
+        assertThat(bucket.tryAcquire()).isPositive();
+    }
+
+    @Test
+    void refillNeverExceedsBurst() throws InterruptedException {
+        TokenBucket bucket = new TokenBucket(100, 3);
+
+        // 空闲远超过回满时间，仍只能突发3个
+        Thread.sleep(100);
+
+        assertThat(bucket.isIdle()).isTrue();
+        int granted = 0;
+        while (bucket.tryAcquire() == 0) {
+            granted++;
+        }
+        assertThat(granted).isBetween(3, 4);
+    }
+
+    @Test
+    void refundReturnsToken() {
+        TokenBucket bucket = new TokenBucket(1, 2);
+        assertThat(bucket.tryAcquire()).isZero();
+        assertThat(bucket.tryAcquire()).isZero();
+        assertThat(bucket.tryAcquire()).isPositive();
+
+        bucket.refund();
+
+        assertThat(bucket.tryAcquire()).isZero();
+        assertThat(bucket.tryAcquire()).isPositive();
+    }
+
+    @Test
+    void rejectsInvalidParameters() {
+        assertThatThrownBy(() -> new TokenBucket(0, 1)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new TokenBucket(1, 0)).isInstanceOf(IllegalArgumentException.class);
+    }
+}